@@ -1,10 +1,10 @@
 package com.clearblade.java.api;
 
 import com.clearblade.java.api.auth.Auth;
-import com.clearblade.java.api.auth.AuthException;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 
 /**
@@ -17,6 +17,8 @@ import java.util.Map;
  * </ul>
  * <strong>*You must call initialize(String systemKey, String systemSecret) or its other variants to initialize the API*</strong>
  * </p>
+ * <p>The configuration managed here is the one of the default {@link ClearBladeClient}. Applications working with
+ * several systems or users create a ClearBladeClient for each of them instead.</p>
  *
  * @author  Clyde Byrd III, Aaron Allsbrook, Michael Sprague
  * @since   1.0
@@ -30,7 +32,7 @@ public class ClearBlade {
 	private static boolean initError = false;
 	private static String masterSecret;					    // App's Admin Password; has access to Everything
 
-	private static InitOptions _initOptions;
+	private static ClearBladeClient _defaultClient;
 
 	/**
 	 * Returns the version of the API that is currently in use.
@@ -54,7 +56,15 @@ public class ClearBlade {
 	 * @return InitOptions instance.
 	 */
 	public static InitOptions getInitOptions() {
-	    return _initOptions;
+	    return _defaultClient.getInitOptions();
+	}
+
+	/**
+	 * Returns the client created by initialize, used by the objects created with their public constructors.
+	 * @return the default client, or null before initialization
+	 */
+	public static ClearBladeClient getDefaultClient() {
+		return _defaultClient;
 	}
 
 	/**
@@ -62,7 +72,7 @@ public class ClearBlade {
 	 * @return Current auth method
 	 */
 	public static Auth getAuth() {
-		return _initOptions.getAuth();
+		return _defaultClient.getAuth();
 	}
 
 	// --------------------------------
@@ -74,7 +84,7 @@ public class ClearBlade {
 	 * @return uri of the backend
 	 */
 	public static String getPlatformUrl() {
-		return _initOptions.getPlatformUrl();
+		return _defaultClient.getInitOptions().getPlatformUrl();
 	}
 
 	/**
@@ -90,7 +100,7 @@ public class ClearBlade {
 	 * Typically scenarios are https://platform.clearblade.com
 	 */
 	public static void setPlatformUrl(String platformUrl){
-		_initOptions.setPlatformUrl(platformUrl);
+		_defaultClient.getInitOptions().setPlatformUrl(platformUrl);
 	}
 
 	/**
@@ -107,7 +117,7 @@ public class ClearBlade {
 	 * @param messagingUrl the string that will be set as the url
 	 */
 	public static void setMessagingUrl(String messagingUrl) {
-		_initOptions.setMessagingUrl(messagingUrl);
+		_defaultClient.getInitOptions().setMessagingUrl(messagingUrl);
 	}
 
 	/**
@@ -123,7 +133,7 @@ public class ClearBlade {
 	 * @return URL of message broker
 	 */
 	public static String getMessagingUrl() {
-		return _initOptions.getMessagingUrl();
+		return _defaultClient.getInitOptions().getMessagingUrl();
 	}
 
 	/**
@@ -139,7 +149,7 @@ public class ClearBlade {
 	 * @return logging boolean
 	 */
 	public static boolean isLogging() {
-	    return _initOptions.isEnableLogging();
+	    return _defaultClient != null && _defaultClient.isLogging();
 	}
 
 	/**
@@ -148,7 +158,7 @@ public class ClearBlade {
 	 * @param value determines API logging
 	 */
 	public static void setLogging(boolean value) {
-	    _initOptions.setEnableLogging(value);
+	    _defaultClient.getInitOptions().setEnableLogging(value);
 	}
 
 	/**
@@ -157,7 +167,7 @@ public class ClearBlade {
 	 * @return milliseconds
 	 */
 	public static int getCallTimeout() {
-		return _initOptions.getCallTimeout();
+		return _defaultClient.getInitOptions().getCallTimeout();
 	}
 
 	/**
@@ -166,7 +176,7 @@ public class ClearBlade {
 	 * @param timeout milliseconds until http request is aborted
 	 */
 	public static void setCallTimeout(int timeout) {
-		_initOptions.setCallTimeout(timeout);
+		_defaultClient.getInitOptions().setCallTimeout(timeout);
 	}
 
 	/**
@@ -174,7 +184,7 @@ public class ClearBlade {
 	 * is not recommended for any scenario other than development
 	 */
 	public static void setAllowUntrusted(boolean allowUntrustedCertificates){
-		_initOptions.setAllowUntrusted(allowUntrustedCertificates);
+		_defaultClient.getInitOptions().setAllowUntrusted(allowUntrustedCertificates);
 	}
 
 	/**
@@ -182,7 +192,7 @@ public class ClearBlade {
 	 * @return boolean value for using untrusted backend servers
 	 */
 	public static boolean isAllowUntrusted(){
-		return _initOptions.isAllowUntrusted();
+		return _defaultClient.getInitOptions().isAllowUntrusted();
 	}
 
 	/**
@@ -190,7 +200,7 @@ public class ClearBlade {
 	 */
 	@Deprecated
 	public static boolean getAllowUntrusted(){
-		return _initOptions.isAllowUntrusted();
+		return _defaultClient.getInitOptions().isAllowUntrusted();
 	}
 
 	// --------------------------------
@@ -206,19 +216,9 @@ public class ClearBlade {
 	 */
     public static void initialize(String systemKey, String systemSecret, InitOptions options, InitCallback callback) {
 
-    	// uses copy constructor on given options
-
-    	_initOptions = new InitOptions(options);
-
-	    // checks system parameters
+		// checks system parameters and copies the given options
 
-		if (systemKey == null || systemKey.length() <= 0) {
-		    throw new IllegalArgumentException("systemKey must be a non-empty String");
-		}
-
-		if (systemSecret == null || systemSecret.length() <= 0) {
-			throw new IllegalArgumentException("systemSecret must be a non-empty String");
-		}
+		ClearBladeClient client = replaceDefaultClient(systemKey, systemSecret, options);
 
 		// sets global system info
 
@@ -227,15 +227,38 @@ public class ClearBlade {
 
 		// authenticates
 
-		try {
-			Auth auth = options.getAuth();
-			auth.doAuth();
-			callback.done(true);
+		client.initialize(callback);
+	}
+
+	/**
+	 * Initializes the API like {@link #initialize(String, String, InitOptions, InitCallback)}, without blocking the
+	 * calling thread, see {@link ClearBladeClient#initializeAsync()}.
+	 * @param systemKey the system key to use.
+	 * @param systemSecret the system secret to use.
+	 * @param options the options to use when initializing the SDK.
+	 * @return a future completed with the default client once it is ready
+	 */
+	public static CompletableFuture<ClearBladeClient> initializeAsync(String systemKey, String systemSecret, InitOptions options) {
+
+		ClearBladeClient client = replaceDefaultClient(systemKey, systemSecret, options);
+
+		Util.setSystemKey(systemKey);
+		Util.setSystemSecret(systemSecret);
+
+		return client.initializeAsync();
+	}
 
-		} catch (AuthException e) {
-			String errmsg = String.format("authentication error: %s", e.getMessage());
-			callback.error(new ClearBladeException(errmsg, e));
+	/**
+	 * Creates the new default client, which may take over the Auth of the current one, then closes the current one.
+	 */
+	private static ClearBladeClient replaceDefaultClient(String systemKey, String systemSecret, InitOptions options) {
+		ClearBladeClient previous = _defaultClient;
+		ClearBladeClient client = new ClearBladeClient(systemKey, systemSecret, options, previous);
+		_defaultClient = client;
+		if (previous != null) {
+			previous.close();
 		}
+		return client;
 	}
 
 	/**
@@ -0,0 +1,431 @@
+package com.clearblade.java.api;
+
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import com.clearblade.java.api.auth.Auth;
+import com.clearblade.java.api.auth.AuthException;
+import com.clearblade.java.api.auth.AuthManager;
+import com.clearblade.java.api.internal.ConnectionWarmer;
+import com.clearblade.java.api.internal.HeaderSet;
+import com.clearblade.java.api.internal.RetryBudget;
+import com.google.gson.JsonObject;
+
+/**
+ * A connection to one ClearBlade system. The client owns its options, its authentication, its TLS settings and the MQTT
+ * clients created from it, and the queries, items, collections and code calls it creates use them instead of the
+ * static configuration of {@link ClearBlade}:
+ * <pre>
+ * ClearBladeClient tenant = new ClearBladeClient(systemKey, systemSecret, new InitOptions().setAuth(auth));
+ * tenant.initialize(callback);
+ * Item[] items = tenant.query(collectionId).fetchSync();
+ * </pre>
+ *
+ * Clients share no state, so an application serving several systems or users creates one client for each of them.
+ * {@link ClearBlade#initialize(String, String, InitOptions, InitCallback)} creates the default client, used by the
+ * objects created with their public constructors.
+ */
+public class ClearBladeClient implements AutoCloseable {
+
+	/**
+	 * Runs the steps of the asynchronous initializations, which block on the network.
+	 */
+	private static final ExecutorService INIT_THREADS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "clearblade-init");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final String systemKey;
+	private final String systemSecret;
+	private final InitOptions options;
+	private final AuthManager authManager;
+	private final List<MqttClient> mqttClients;
+	private final HeaderSet systemHeaders;
+	private final ConnectionWarmer warmer;
+	private final RetryBudget retryBudget;
+	private final RetryMetrics retryMetrics;
+
+	private volatile SSLSocketFactory untrustedSocketFactory;
+	private volatile HeaderSet authHeaders;		// header set of the last auth headers used
+	private volatile CompletableFuture<Void> authentication;	// authentication started by initializeAsync
+	private volatile boolean closed;
+
+	/**
+	 * Creates a client for the given system. The options are copied, and their Auth is bound to this client: each
+	 * client needs its own Auth, as the Auth holds the token of the client.
+	 * @param systemKey the system key to use.
+	 * @param systemSecret the system secret to use.
+	 * @param options the options of the client.
+	 * @throws IllegalArgumentException if the system key or system secret are missing, or if the Auth of the options
+	 * is bound to another client that is not closed
+	 */
+	public ClearBladeClient(String systemKey, String systemSecret, InitOptions options) {
+		this(systemKey, systemSecret, options, null);
+	}
+
+	/**
+	 * Creates a client taking over the Auth of the given client, which the caller closes once this one is created.
+	 * @param replaced client the Auth may still be bound to, or null
+	 */
+	ClearBladeClient(String systemKey, String systemSecret, InitOptions options, ClearBladeClient replaced) {
+
+		if (systemKey == null || systemKey.length() <= 0) {
+			throw new IllegalArgumentException("systemKey must be a non-empty String");
+		}
+
+		if (systemSecret == null || systemSecret.length() <= 0) {
+			throw new IllegalArgumentException("systemSecret must be a non-empty String");
+		}
+
+		this.systemKey = systemKey;
+		this.systemSecret = systemSecret;
+		this.options = new InitOptions(options);
+		this.closed = false;
+		this.authManager = new AuthManager(this.options.getAuth(), this.options.getTokenRefreshMargin(),
+				this.options.getTokenCache(), systemKey);
+		this.mqttClients = new CopyOnWriteArrayList<>();
+		this.untrustedSocketFactory = null;
+		this.authHeaders = HeaderSet.EMPTY;
+		this.authentication = null;
+
+		Map<String, String> headers = new LinkedHashMap<>();
+		headers.put("CLEARBLADE-SYSTEMKEY", systemKey);
+		headers.put("CLEARBLADE-SYSTEMSECRET", systemSecret);
+		headers.put("Accept", "application/json");
+		headers.put("Accept-Charset", "UTF-8");
+		this.systemHeaders = HeaderSet.of(headers);
+		this.warmer = new ConnectionWarmer(this);
+		this.retryBudget = new RetryBudget(this.options.getRetryPolicy().getBudgetRatio(), this.options.getRetryPolicy().getBudgetMaxRetries());
+		this.retryMetrics = new RetryMetrics();
+
+		Auth auth = this.options.getAuth();
+		synchronized (auth) {
+			ClearBladeClient bound = auth.getClient();
+			if (bound != null && bound != replaced && !bound.isClosed()) {
+				throw new IllegalArgumentException("the Auth is already bound to another client, set a new Auth for each client");
+			}
+			auth.setClient(this);
+		}
+	}
+
+	/**
+	 * Authenticates the client, or restores its cached token when a token cache is set. The token is then renewed in
+	 * the background before it expires, when its expiry is known, and the connections to the platform are kept warm
+	 * when a keep-warm interval is set.
+	 * @param callback the callback object to use on success/error.
+	 */
+	public void initialize(InitCallback callback) {
+		try {
+			authManager.authenticate();
+			warmer.keepWarm(options.getKeepWarmInterval(), options.getWarmConnections());
+			callback.done(true);
+
+		} catch (AuthException e) {
+			String errmsg = String.format("authentication error: %s", e.getMessage());
+			callback.error(new ClearBladeException(errmsg, e));
+		}
+	}
+
+	/**
+	 * Initializes the client without blocking the calling thread. The authentication and the warm-up of the
+	 * connections to the platform (DNS lookup, TCP and TLS set-up) run in parallel, and the MQTT clients requested with
+	 * {@link #mqttClientAsync(String, int, MqttClientOptions)} connect as soon as the authentication completes:
+	 * <pre>
+	 * CompletableFuture&lt;ClearBladeClient&gt; ready = client.initializeAsync();
+	 * CompletableFuture&lt;MqttClient&gt; mqtt = client.mqttClientAsync(clientId, 1, new MqttClientOptions());
+	 * CompletableFuture.allOf(ready, mqtt).join();
+	 * </pre>
+	 * A failed warm-up does not fail the initialization.
+	 * @return a future completed with this client once it is authenticated and warmed up, or completed exceptionally
+	 *         with a {@link ClearBladeException} if the authentication fails
+	 */
+	public CompletableFuture<ClearBladeClient> initializeAsync() {
+
+		CompletableFuture<Void> authenticating = CompletableFuture.runAsync(() -> {
+			try {
+				authManager.authenticate();
+			} catch (AuthException e) {
+				String errmsg = String.format("authentication error: %s", e.getMessage());
+				throw new CompletionException(new ClearBladeException(errmsg, e));
+			}
+		}, INIT_THREADS);
+		authentication = authenticating;
+
+		CompletableFuture<Boolean> warmingUp = CompletableFuture.supplyAsync(this::warmUp, INIT_THREADS);
+
+		return authenticating.thenCombine(warmingUp, (authenticated, warm) -> {
+			warmer.keepWarm(options.getKeepWarmInterval(), options.getWarmConnections());
+			return this;
+		});
+	}
+
+	/**
+	 * Opens connections to the platform ahead of the API calls, as many as set by
+	 * {@link InitOptions#setWarmConnections(int)}, and resolves the messaging host, so the next calls skip the DNS
+	 * lookup, the TCP connection set-up and the TLS handshake. MQTT connections are opened ahead of demand with
+	 * {@link #mqttClientAsync(String, int, MqttClientOptions)}.
+	 * @return true if every connection could be opened
+	 */
+	public boolean warmUp() {
+		return warmer.warmUp(options.getWarmConnections());
+	}
+
+	/**
+	 * Same as {@link #mqttClient(String, int, MqttClientOptions)}, connecting in the background. When the client is
+	 * being initialized by {@link #initializeAsync()}, the connection starts once the authentication completes.
+	 * @return a future completed with the connected MQTT client, or completed exceptionally with a
+	 *         {@link ClearBladeException} if the authentication or the connection fails
+	 */
+	public CompletableFuture<MqttClient> mqttClientAsync(String clientIdentifier, int qualityOfService, MqttClientOptions mqttOptions) {
+		CompletableFuture<Void> authenticating = authentication;
+		if (authenticating == null) {
+			authenticating = CompletableFuture.completedFuture(null);
+		}
+		return authenticating.thenApplyAsync(authenticated -> {
+			try {
+				return mqttClient(clientIdentifier, qualityOfService, mqttOptions);
+			} catch (ClearBladeException e) {
+				throw new CompletionException(e);
+			}
+		}, INIT_THREADS);
+	}
+
+	// --------------------------------
+	// Configuration
+	// --------------------------------
+
+	public String getSystemKey() {
+		return systemKey;
+	}
+
+	public String getSystemSecret() {
+		return systemSecret;
+	}
+
+	/**
+	 * @return the options of this client. Changes to the returned instance apply to the following API calls.
+	 */
+	public InitOptions getInitOptions() {
+		return options;
+	}
+
+	public Auth getAuth() {
+		return options.getAuth();
+	}
+
+	/**
+	 * @return the manager renewing the token of the Auth of this client
+	 */
+	public AuthManager getAuthManager() {
+		return authManager;
+	}
+
+	public String getPlatformUrl() {
+		return options.getPlatformUrl();
+	}
+
+	public String getMessagingUrl() {
+		return options.getMessagingUrl();
+	}
+
+	public int getCallTimeout() {
+		return options.getCallTimeout();
+	}
+
+	public boolean isAllowUntrusted() {
+		return options.isAllowUntrusted();
+	}
+
+	public boolean isLogging() {
+		return options.isEnableLogging();
+	}
+
+	/**
+	 * Returns the socket factory for the HTTPS calls of this client: null when the default trust store is used, or a
+	 * factory accepting any certificate when untrusted servers are allowed. The factory is created once and set on each
+	 * connection of this client, leaving the JVM default untouched.
+	 * @return the socket factory, or null to use the default one
+	 * @throws GeneralSecurityException if the SSL context cannot be created
+	 */
+	public SSLSocketFactory getSslSocketFactory() throws GeneralSecurityException {
+		if (!isAllowUntrusted()) {
+			return null;
+		}
+		SSLSocketFactory factory = untrustedSocketFactory;
+		if (factory == null) {
+			synchronized (this) {
+				factory = untrustedSocketFactory;
+				if (factory == null) {
+					factory = createUntrustedSocketFactory();
+					untrustedSocketFactory = factory;
+				}
+			}
+		}
+		return factory;
+	}
+
+	/**
+	 * @return the budget bounding the retries of the API calls of this client, set up from the retry policy of the
+	 *         options when the client is created
+	 */
+	public RetryBudget getRetryBudget() {
+		return retryBudget;
+	}
+
+	/**
+	 * @return the metrics of the retries of the API calls of this client
+	 */
+	public RetryMetrics getRetryMetrics() {
+		return retryMetrics;
+	}
+
+	/**
+	 * @return the headers set on every API call of this client: system key and secret, and accepted content
+	 */
+	public HeaderSet getSystemHeaders() {
+		return systemHeaders;
+	}
+
+	/**
+	 * Returns the header set of the given auth headers. The set is built again only when the headers change, that
+	 * is when the Auth gets a new token, so the calls made with the same token share it.
+	 * @param headers the request headers of the Auth of this client
+	 */
+	public HeaderSet getAuthHeaderSet(Map<String, String> headers) {
+		HeaderSet headerSet = authHeaders;
+		if (!headerSet.matches(headers)) {
+			headerSet = HeaderSet.of(headers);
+			authHeaders = headerSet;
+		}
+		return headerSet;
+	}
+
+	// --------------------------------
+	// Factories
+	// --------------------------------
+
+	public Query query(String collectionId) {
+		return query(collectionId, false);
+	}
+
+	public Query query(String id, boolean byName) {
+		Query query = new Query(id, byName);
+		query.client = this;
+		return query;
+	}
+
+	public Collection collection(String collectionId) {
+		return collection(collectionId, false);
+	}
+
+	public Collection collection(String id, boolean byName) {
+		Collection collection = new Collection(id, byName);
+		collection.client = this;
+		return collection;
+	}
+
+	public Item item(String collectionId) {
+		return item(collectionId, false);
+	}
+
+	public Item item(String collectionId, boolean byName) {
+		Item item = new Item(collectionId, byName);
+		item.client = this;
+		return item;
+	}
+
+	public Code code(String serviceName) {
+		Code code = new Code(serviceName);
+		code.client = this;
+		return code;
+	}
+
+	public Code code(String serviceName, JsonObject params) {
+		Code code = new Code(serviceName, params);
+		code.client = this;
+		return code;
+	}
+
+	/**
+	 * Connects a new MQTT client to the messaging URL of this client, authenticated with its Auth. The MQTT client is
+	 * disconnected when this client is closed.
+	 */
+	public MqttClient mqttClient(String clientIdentifier, int qualityOfService, MqttClientOptions mqttOptions) throws ClearBladeException {
+		MqttClient mqttClient = new MqttClient(getMessagingUrl(), getAuth(), systemKey, clientIdentifier, qualityOfService, MqttClient.AUTO_RECONNECT, mqttOptions);
+		mqttClient.setAuthManager(authManager);
+		mqttClients.add(mqttClient);
+		return mqttClient;
+	}
+
+	/**
+	 * Same as {@link #mqttClient(String, int, MqttClientOptions)} using MQTT 5.
+	 */
+	public Mqtt5Client mqtt5Client(String clientIdentifier, int qualityOfService, MqttClientOptions mqttOptions) throws ClearBladeException {
+		Mqtt5Client mqttClient = new Mqtt5Client(getMessagingUrl(), getAuth(), systemKey, clientIdentifier, qualityOfService, MqttClient.AUTO_RECONNECT, mqttOptions);
+		mqttClient.setAuthManager(authManager);
+		mqttClients.add(mqttClient);
+		return mqttClient;
+	}
+
+	/**
+	 * Stops the background token refresh and keep-warm, and disconnects the MQTT clients created from this client.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		authManager.close();
+		warmer.stop();
+		for (MqttClient mqttClient : mqttClients) {
+			try {
+				// also stops the clients waiting to reconnect
+				mqttClient.disconnect();
+			} catch (ClearBladeException e) {
+				String errmsg = String.format("(ClearBladeClient) disconnect error: %s", e.getMessage());
+				System.out.println(errmsg);
+			}
+		}
+		mqttClients.clear();
+	}
+
+	/**
+	 * @return whenever {@link #close()} was called
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Returns a socket factory accepting any certificate, for platform servers without a signed certificate.
+	 */
+	private static SSLSocketFactory createUntrustedSocketFactory() throws GeneralSecurityException {
+		SSLContext ctx = SSLContext.getInstance("TLS");
+		ctx.init(null, new TrustManager[] {
+			new X509TrustManager() {
+				public X509Certificate[] getAcceptedIssuers() {
+					return new X509Certificate[0];
+				}
+
+				public void checkClientTrusted(X509Certificate[] chain, String authType) {
+				}
+
+				public void checkServerTrusted(X509Certificate[] chain, String authType) {
+				}
+			}
+		}, new java.security.SecureRandom());
+		return ctx.getSocketFactory();
+	}
+}
@@ -1,5 +1,6 @@
 package com.clearblade.java.api;
 
+import com.clearblade.java.api.auth.AuthContext;
 import com.clearblade.java.api.internal.PlatformResponse;
 import com.clearblade.java.api.internal.RequestEngine;
 import com.clearblade.java.api.internal.RequestProperties;
@@ -14,6 +15,8 @@ public class Code {
 	private JsonObject parameters; 
 	
 	private RequestEngine request;
+	ClearBladeClient client;			// client making the API calls, null for the default client
+	AuthContext authContext;	// credentials of the API calls, null for the Auth of the client
 
 	public Code(String serName, JsonObject params){
 		serviceName = serName;
@@ -27,7 +30,7 @@ public class Code {
 	}
 	
 	public void executeWithParams(final CodeCallback callback){
-		RequestProperties headers = new RequestProperties.Builder().method("POST").endPoint("api/v/1/code/" +Util.getSystemKey() + "/" + serviceName).body(parameters).build();
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("POST").endPoint("api/v/1/code/" +Util.getSystemKey(client) + "/" + serviceName).body(parameters).build();
 		request.setHeaders(headers);
 
 		PlatformResponse result= request.execute();
@@ -45,7 +48,7 @@ public class Code {
 	}
 	
 	public void executeWithoutParams(final CodeCallback callback){
-		RequestProperties headers = new RequestProperties.Builder().method("POST").endPoint("api/v/1/code/" +Util.getSystemKey() + "/" + serviceName).build();
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("POST").endPoint("api/v/1/code/" +Util.getSystemKey(client) + "/" + serviceName).build();
 		request.setHeaders(headers);
 
 		PlatformResponse result= request.execute();
@@ -75,4 +78,16 @@ public class Code {
 	}
 	
 	
+
+	/**
+	 * Sets the credentials used by the API calls of this code, in place of the Auth of its client.
+	 * @param authContext the credentials to use, null to use the Auth of the client
+	 */
+	public void setAuthContext(AuthContext authContext) {
+		this.authContext = authContext;
+	}
+
+	public AuthContext getAuthContext() {
+		return authContext;
+	}
 }
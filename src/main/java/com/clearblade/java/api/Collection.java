@@ -3,6 +3,7 @@ package com.clearblade.java.api;
 import java.util.ArrayList;
 import java.util.Iterator;
 
+import com.clearblade.java.api.auth.AuthContext;
 import com.clearblade.java.api.internal.PlatformResponse;
 import com.clearblade.java.api.internal.RequestEngine;
 import com.clearblade.java.api.internal.RequestProperties;
@@ -65,6 +66,8 @@ public class Collection implements Iterable<Item>{
 	
 	private boolean byName = false;
 	private RequestEngine request;	// used to make API requests
+	ClearBladeClient client;		// client making the API calls, null for the default client
+	AuthContext authContext;	// credentials of the API calls, null for the Auth of the client
 
 	/**
 	 * Constructs a new ClearBladeCollection of the specified type
@@ -89,7 +92,7 @@ public class Collection implements Iterable<Item>{
 	public void create(String columns, final DataCallback callback) {
 		JsonObject cols = convertJsonToJsonObject(columns);
 		request = new RequestEngine();
-		RequestProperties headers = new RequestProperties.Builder().method("POST").endPoint("api/data/" + collectionId).body(cols).build();
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("POST").endPoint("api/data/" + collectionId).body(cols).build();
 		request.setHeaders(headers);
 		PlatformResponse result= request.execute();
 		if(result.isError()) {
@@ -102,6 +105,54 @@ public class Collection implements Iterable<Item>{
 		}
 	}
 	
+	/**
+	 * Returns a new, unsaved Item of this collection holding the given properties.
+	 * @param properties the properties of the item
+	 * @return the new Item
+	 */
+	public Item newItem(JsonObject properties) {
+		Item item = new Item(collectionId, byName);
+		item.client = client;
+		item.authContext = authContext;
+		item.json = properties;
+		return item;
+	}
+
+	/**
+	 * Creates the given Items in the Cloud with a single API call.
+	 * <strong>Use only if you plan to do your own threading</strong>
+	 * @param items the new Items to create
+	 * @throws ClearBladeException will be thrown if the API call failed
+	 */
+	public void insertSync(Item[] items) throws ClearBladeException {
+		JsonArray rows = new JsonArray();
+		for (Item item : items) {
+			rows.add(item.json);
+		}
+		doInsert(rows);
+	}
+
+	protected void doInsert(JsonArray rows) throws ClearBladeException {
+
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("POST").endPoint(getEndPoint()).body(rows).build();
+		RequestEngine request = new RequestEngine(headers);
+
+		PlatformResponse<String> result = request.execute();
+
+		if(result.isError()) {
+			Util.logger("Insert", result.getData(), true);
+			String errmsg = String.format("Call to insert failed: %s", result.getData());
+			throw new ClearBladeException(errmsg);
+		}
+	}
+
+	private String getEndPoint() {
+		if (byName) {
+			return "api/v/1/collection/" + Util.getSystemKey(client) + "/" + collectionId;
+		}
+		return "api/v/1/data/" + collectionId;
+	}
+
 	private JsonObject convertJsonToJsonObject(String json) {
 		// parse json string in to JsonElement
 		try {
@@ -116,6 +167,8 @@ public class Collection implements Iterable<Item>{
 	
 	public void update(final DataCallback callback) {
 		Query query = new Query();
+		query.client = client;
+		query.authContext = authContext;
 		query.setCollectionId(collectionId);
 		query.fetch(new DataCallback(){
 
@@ -143,6 +196,8 @@ public class Collection implements Iterable<Item>{
 	 */
 	public void remove(DataCallback callback) {
 		Query query = new Query(collectionId, byName);
+		query.client = client;
+		query.authContext = authContext;
 		query.remove(callback);
 	}
 
@@ -187,6 +242,12 @@ public class Collection implements Iterable<Item>{
 	public void fetch(Query query, final DataCallback callback) {
 	
 		query.setCollectionId(collectionId, byName);
+		if (query.client == null) {
+			query.client = client;
+		}
+		if (query.authContext == null) {
+			query.authContext = authContext;
+		}
 		query.fetch(new DataCallback(){
 
 			@Override
@@ -223,6 +284,8 @@ public class Collection implements Iterable<Item>{
 	 */
 	public void fetchAll(final DataCallback callback) {
 		Query query = new Query(collectionId, byName);
+		query.client = client;
+		query.authContext = authContext;
 		query.fetch(new DataCallback(){
 
 			@Override
@@ -241,6 +304,8 @@ public class Collection implements Iterable<Item>{
 	
 	public Item[] fetchAllSync() throws ClearBladeException{
 		Query query = new Query(collectionId, byName);
+		query.client = client;
+		query.authContext = authContext;
 	
 		return query.fetchSync();
 	}
@@ -314,7 +379,10 @@ public class Collection implements Iterable<Item>{
 				if (temp.entrySet().size()==0){
 					return (new Item[0]);
 				}else {
-					items.add(new Item(temp, getCollectionId(), byName));
+					Item item = new Item(temp, getCollectionId(), byName);
+					item.client = client;
+					item.authContext = authContext;
+					items.add(item);
 //					for (Entry<String, JsonElement> entry : temp.entrySet()) {
 //					    JsonObject elementTemp = entry.getValue().getAsJsonObject();//.getAsJsonArray("unterfeld");
 //					    
@@ -329,5 +397,16 @@ public class Collection implements Iterable<Item>{
 		ret = (Item[]) items.toArray(ret);
 		return ret;
 	}
-	
+
+	/**
+	 * Sets the credentials used by the API calls of this collection, in place of the Auth of its client.
+	 * @param authContext the credentials to use, null to use the Auth of the client
+	 */
+	public void setAuthContext(AuthContext authContext) {
+		this.authContext = authContext;
+	}
+
+	public AuthContext getAuthContext() {
+		return authContext;
+	}
 }
@@ -0,0 +1,76 @@
+package com.clearblade.java.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput metrics for a consumer group (shared subscription) on a single {@link MqttClient}. Counters are updated
+ * on the message delivery path without locking.
+ */
+public class ConsumerGroupMetrics {
+
+	private final String group;
+	private final LongAdder messages;
+	private final LongAdder bytes;
+	private volatile long startedAt;
+
+	ConsumerGroupMetrics(String group) {
+		this.group = group;
+		this.messages = new LongAdder();
+		this.bytes = new LongAdder();
+		this.startedAt = System.nanoTime();
+	}
+
+	void record(int payloadLength) {
+		messages.increment();
+		bytes.add(payloadLength);
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * @return number of messages received by this client for the group since creation or the last reset
+	 */
+	public long getMessageCount() {
+		return messages.sum();
+	}
+
+	/**
+	 * @return number of payload bytes received by this client for the group since creation or the last reset
+	 */
+	public long getByteCount() {
+		return bytes.sum();
+	}
+
+	/**
+	 * @return average number of messages per second since creation or the last reset
+	 */
+	public double getMessagesPerSecond() {
+		double seconds = (System.nanoTime() - startedAt) / 1e9;
+		return seconds <= 0 ? 0 : messages.sum() / seconds;
+	}
+
+	/**
+	 * @return average number of payload bytes per second since creation or the last reset
+	 */
+	public double getBytesPerSecond() {
+		double seconds = (System.nanoTime() - startedAt) / 1e9;
+		return seconds <= 0 ? 0 : bytes.sum() / seconds;
+	}
+
+	/**
+	 * Resets the counters, starting a new measurement period.
+	 */
+	public void reset() {
+		messages.reset();
+		bytes.reset();
+		startedAt = System.nanoTime();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ConsumerGroupMetrics{group=%s, messages=%d, bytes=%d, messagesPerSecond=%.1f}",
+				group, getMessageCount(), getByteCount(), getMessagesPerSecond());
+	}
+}
@@ -2,6 +2,7 @@ package com.clearblade.java.api;
 
 import com.clearblade.java.api.auth.AnonAuth;
 import com.clearblade.java.api.auth.Auth;
+import com.clearblade.java.api.auth.TokenCache;
 import com.clearblade.java.api.auth.UserAuth;
 
 /**
@@ -15,6 +16,12 @@ import com.clearblade.java.api.auth.UserAuth;
  *   enableLogging - false
  *   callTimeout - false
  *   allowUntrusted - false
+ *   reauthOnUnauthorized - true
+ *   tokenRefreshMargin - 60000 (milliseconds)
+ *   tokenCache - [EMPTY] (tokens are not saved)
+ *   warmConnections - 1 (connections opened to the platform by a warm-up)
+ *   keepWarmInterval - 0 (milliseconds, idle connections are not kept warm)
+ *   retryPolicy - {@link RetryPolicy} defaults (3 attempts for idempotent calls)
  */
 public class InitOptions {
 
@@ -28,6 +35,12 @@ public class InitOptions {
     private boolean _enableLogging;
     private int _callTimeout;
     private boolean _allowUntrusted;
+    private boolean _reauthOnUnauthorized;
+    private long _tokenRefreshMargin;
+    private TokenCache _tokenCache;
+    private int _warmConnections;
+    private long _keepWarmInterval;
+    private RetryPolicy _retryPolicy;
 
     public InitOptions() {
         this._platformUrl = "https://platform.clearblade.com";
@@ -40,6 +53,12 @@ public class InitOptions {
         this._enableLogging = false;
         this._callTimeout = 30000;
         this._allowUntrusted = false;
+        this._reauthOnUnauthorized = true;
+        this._tokenRefreshMargin = 60000;
+        this._tokenCache = null;
+        this._warmConnections = 1;
+        this._keepWarmInterval = 0;
+        this._retryPolicy = new RetryPolicy();
     }
 
     public InitOptions(InitOptions other) {
@@ -48,11 +67,17 @@ public class InitOptions {
 
         this._email = other._email;
         this._password = other._password;
-        this._auth = other._auth; // TODO: Copy auth instead of just getting same reference?
+        this._auth = other._auth; // shared, a client rejects an Auth bound to another open client
 
         this._enableLogging = other._enableLogging;
         this._callTimeout = other._callTimeout;
         this._allowUntrusted = other._allowUntrusted;
+        this._reauthOnUnauthorized = other._reauthOnUnauthorized;
+        this._tokenRefreshMargin = other._tokenRefreshMargin;
+        this._tokenCache = other._tokenCache;
+        this._warmConnections = other._warmConnections;
+        this._keepWarmInterval = other._keepWarmInterval;
+        this._retryPolicy = new RetryPolicy(other._retryPolicy);
     }
 
     // Getters
@@ -81,6 +106,30 @@ public class InitOptions {
         return this._allowUntrusted;
     }
 
+    public boolean isReauthOnUnauthorized() {
+        return this._reauthOnUnauthorized;
+    }
+
+    public long getTokenRefreshMargin() {
+        return this._tokenRefreshMargin;
+    }
+
+    public TokenCache getTokenCache() {
+        return this._tokenCache;
+    }
+
+    public int getWarmConnections() {
+        return this._warmConnections;
+    }
+
+    public long getKeepWarmInterval() {
+        return this._keepWarmInterval;
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return this._retryPolicy;
+    }
+
     // Setters
 
     public InitOptions setPlatformUrl(String platformUrl) {
@@ -142,4 +191,72 @@ public class InitOptions {
         this._allowUntrusted = allow;
         return this;
     }
+
+    /**
+     * When enabled, a GET, PUT or DELETE call rejected with a 401 status renews the token once and is sent again.
+     * Concurrent calls rejected with the same token share a single authentication.
+     */
+    public InitOptions setReauthOnUnauthorized(boolean reauth) {
+        this._reauthOnUnauthorized = reauth;
+        return this;
+    }
+
+    /**
+     * Sets how long before its expiry a token is renewed in the background, in milliseconds. Applies when the platform
+     * reports the expiry of its tokens; zero disables the background refresh.
+     */
+    public InitOptions setTokenRefreshMargin(long margin) {
+        if (margin < 0) {
+            throw new IllegalArgumentException("tokenRefreshMargin must not be negative");
+        }
+        this._tokenRefreshMargin = margin;
+        return this;
+    }
+
+    /**
+     * Saves the tokens to the given cache, so that the following runs start with the token of the previous one while it
+     * is valid, instead of authenticating first. The reused token is checked in the background, and replaced if the
+     * platform rejects it.
+     */
+    public InitOptions setTokenCache(TokenCache tokenCache) {
+        this._tokenCache = tokenCache;
+        return this;
+    }
+
+    /**
+     * Sets how many connections to the platform are opened by a warm-up, and kept open for the following calls. The
+     * JVM keeps at most 5 idle connections per server unless the http.maxConnections system property is raised.
+     */
+    public InitOptions setWarmConnections(int warmConnections) {
+        if (warmConnections < 0) {
+            throw new IllegalArgumentException("warmConnections must not be negative");
+        }
+        this._warmConnections = warmConnections;
+        return this;
+    }
+
+    /**
+     * Sets how often the connections to the platform are warmed up again once the client is initialized, in
+     * milliseconds, so that idle connections closed by the server or the JVM are replaced before the next call. Zero
+     * disables it.
+     */
+    public InitOptions setKeepWarmInterval(long keepWarmInterval) {
+        if (keepWarmInterval < 0) {
+            throw new IllegalArgumentException("keepWarmInterval must not be negative");
+        }
+        this._keepWarmInterval = keepWarmInterval;
+        return this;
+    }
+
+    /**
+     * Sets how the API calls failing with a transient error are retried, {@link RetryPolicy#none()} to send each call
+     * once.
+     */
+    public InitOptions setRetryPolicy(RetryPolicy retryPolicy) {
+        if (retryPolicy == null) {
+            throw new IllegalArgumentException("retryPolicy must not be null");
+        }
+        this._retryPolicy = new RetryPolicy(retryPolicy);
+        return this;
+    }
 }
@@ -6,6 +6,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import com.clearblade.java.api.auth.AuthContext;
 import com.clearblade.java.api.internal.PlatformResponse;
 import com.clearblade.java.api.internal.RequestEngine;
 import com.clearblade.java.api.internal.RequestProperties;
@@ -57,7 +58,9 @@ public class Item {
 	private JsonObject changes;			// All changes made to json variable are recorded here.
 	private final String collectionId; 	// collection the item belongs to.
 	private boolean byName;				// Flag to reference collection by name 
-	private RequestEngine request;		// API caller
+	private transient RequestEngine request;	// API caller
+	transient ClearBladeClient client;	// client making the API calls, null for the default client
+	transient AuthContext authContext;	// credentials of the API calls, null for the Auth of the client
 	
 
 	/**
@@ -196,6 +199,8 @@ public class Item {
 	public void destroy (DataCallback callback)  {
 		
 		Query query= new Query(collectionId);
+		query.client = client;
+		query.authContext = authContext;
 		query.equalTo("item_id", this.getString("item_id"));
 		query.remove(callback);
 	}
@@ -382,7 +387,7 @@ public class Item {
 	private void loadSetup(String itemId){
 		JsonObject queryString = new JsonObject();
 		queryString.addProperty("item_id", itemId);
-		RequestProperties headers = new RequestProperties.Builder().method("GET").endPoint(getEndPoint()).qs(queryString).build();
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("GET").endPoint(getEndPoint()).qs(queryString).build();
 		request.setHeaders(headers);
 		
 	}
@@ -390,7 +395,7 @@ public class Item {
 	private String getEndPoint(){
 		String endPoint = "";
 		if(byName){
-			endPoint = "api/v/1/collection/"+Util.getSystemKey() +"/" +collectionId;
+			endPoint = "api/v/1/collection/"+Util.getSystemKey(client) +"/" +collectionId;
 		}else{
 			endPoint = "api/v/1/data/" +collectionId;
 		}
@@ -455,7 +460,7 @@ public class Item {
 	private void saveSetup(){
 		RequestProperties headers = null;
 		if(this.getString("item_id") == null ) {
-			headers = new RequestProperties.Builder().method("POST").endPoint(getEndPoint()).body(this.json).build();
+			headers = new RequestProperties.Builder(client).authContext(authContext).method("POST").endPoint(getEndPoint()).body(this.json).build();
 		} else {
 			// Create Payload object
 			JsonObject payload = new JsonObject();
@@ -463,7 +468,7 @@ public class Item {
 			JsonObject query = new JsonObject();
 			query.addProperty("item_id", this.getString("item_id"));
 			payload.addProperty("query", query.toString());
-			headers = new RequestProperties.Builder().method("PUT").endPoint(getEndPoint()).body(payload).build();
+			headers = new RequestProperties.Builder(client).authContext(authContext).method("PUT").endPoint(getEndPoint()).body(payload).build();
 		}
 
 		request.setHeaders(headers);
@@ -566,4 +571,16 @@ public class Item {
 		}
 		this.json.remove(property);
 	}
+
+	/**
+	 * Sets the credentials used by the API calls of this item, in place of the Auth of its client.
+	 * @param authContext the credentials to use, null to use the Auth of the client
+	 */
+	public void setAuthContext(AuthContext authContext) {
+		this.authContext = authContext;
+	}
+
+	public AuthContext getAuthContext() {
+		return authContext;
+	}
 }
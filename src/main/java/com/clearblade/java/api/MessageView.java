@@ -0,0 +1,102 @@
+package com.clearblade.java.api;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Lightweight, read-only view over an incoming MQTT message. The payload is exposed as-is (no copies) and is only
+ * decoded to a String (UTF-8) the first time {@link #asString()} is called, so handlers only pay for the
+ * representation they actually use.
+ *
+ * Instances are only valid for the duration of the callback; handlers that keep the payload around should copy it.
+ */
+public final class MessageView {
+
+	private final String topic;
+	private final byte[] payload;
+	private final int qos;
+	private final boolean retained;
+	private final Map<String, String> userProperties;
+
+	private String decoded;
+
+	public MessageView(String topic, byte[] payload, int qos, boolean retained) {
+		this(topic, payload, qos, retained, Collections.emptyMap());
+	}
+
+	public MessageView(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) {
+		this.topic = topic;
+		this.payload = payload;
+		this.qos = qos;
+		this.retained = retained;
+		this.userProperties = userProperties;
+		this.decoded = null;
+	}
+
+	/**
+	 * @return the topic the message was published to
+	 */
+	public String getTopic() {
+		return topic;
+	}
+
+	/**
+	 * @return the raw payload bytes. The returned array is not a copy, and must not be modified.
+	 */
+	public byte[] getBytes() {
+		return payload;
+	}
+
+	/**
+	 * @return a read-only ByteBuffer wrapping the payload (no copy)
+	 */
+	public ByteBuffer getByteBuffer() {
+		return ByteBuffer.wrap(payload).asReadOnlyBuffer();
+	}
+
+	/**
+	 * @return the payload length in bytes
+	 */
+	public int getLength() {
+		return payload.length;
+	}
+
+	/**
+	 * @return the quality of service the message was delivered with
+	 */
+	public int getQos() {
+		return qos;
+	}
+
+	/**
+	 * @return whenever the message was a retained message
+	 */
+	public boolean isRetained() {
+		return retained;
+	}
+
+	/**
+	 * @return the MQTT 5 user properties of the message (see {@link Mqtt5Client}), empty with MQTT 3.1.1
+	 */
+	public Map<String, String> getUserProperties() {
+		return userProperties;
+	}
+
+	/**
+	 * Decodes the payload as UTF-8. Decoding happens at most once per message.
+	 * @return the payload as a String
+	 */
+	public String asString() {
+		if (decoded == null) {
+			decoded = new String(payload, StandardCharsets.UTF_8);
+		}
+		return decoded;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MessageView{topic=%s, length=%d, qos=%d}", topic, payload.length, qos);
+	}
+}
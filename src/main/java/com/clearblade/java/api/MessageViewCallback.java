@@ -0,0 +1,16 @@
+package com.clearblade.java.api;
+
+/**
+ * MessageCallback that receives messages as a {@link MessageView} instead of the legacy byte[] / String pair. When a
+ * MessageViewCallback is used, neither {@link #done(String, byte[])} nor {@link #done(String, String)} are called, and
+ * the payload is never decoded unless the handler asks for it.
+ */
+public abstract class MessageViewCallback extends MessageCallback {
+
+	/**
+	 * Override to receive a message.
+	 * @param message view over the message, only valid during this call
+	 */
+	public abstract void done(MessageView message);
+
+}
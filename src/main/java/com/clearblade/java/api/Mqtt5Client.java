@@ -0,0 +1,425 @@
+package com.clearblade.java.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import com.clearblade.java.api.auth.Auth;
+import org.eclipse.paho.client.mqttv3.MqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.mqttv5.client.DisconnectedBufferOptions;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.client.MqttDisconnectResponse;
+import org.eclipse.paho.mqttv5.client.persist.MemoryPersistence;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.MqttReturnCode;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+
+/**
+ * {@link MqttClient} speaking MQTT 5 instead of MQTT 3.1.1, with the same API. On top of it, MQTT 5 brings:
+ *
+ *   topic aliases - topics sent repeatedly are replaced by a two-byte alias, in both directions (see
+ *     {@link MqttClientOptions#setTopicAliasMaximum(int)})
+ *   session expiry - the broker keeps the session for a while after a disconnect, instead of either forever or not
+ *     at all (see {@link MqttClientOptions#setSessionExpiryInterval(Long)})
+ *   receive maximum - the broker does not send more unacknowledged QoS 1 / 2 messages than the client can take (see
+ *     {@link MqttClientOptions#setReceiveMaximum(Integer)})
+ *   user properties - key / value metadata sent along the messages, instead of inside the payloads (see
+ *     {@link #publish(String, byte[], int, boolean, Map)} and {@link MessageView#getUserProperties()})
+ *
+ * The broker must support MQTT 5. The in-flight state is kept in memory: {@link MqttClientOptions#createPersistence()}
+ * provides MQTT 3.1.1 persistences only.
+ */
+public class Mqtt5Client extends MqttClient {
+
+	/**
+	 * paho MQTT 5 client, null while not connected.
+	 */
+	protected MqttAsyncClient mqtt5Client;
+
+	private final MqttActionListener publishListener;
+
+	public Mqtt5Client(String clientIdentifier) throws ClearBladeException {
+		this(ClearBlade.getMessagingUrl(), ClearBlade.getAuth(), Util.getSystemKey(), clientIdentifier, QUALITY_OF_SERVICE, AUTO_RECONNECT, new MqttClientOptions());
+	}
+
+	public Mqtt5Client(String clientIdentifier, int qualityOfService, MqttClientOptions options) throws ClearBladeException {
+		this(ClearBlade.getMessagingUrl(), ClearBlade.getAuth(), Util.getSystemKey(), clientIdentifier, qualityOfService, AUTO_RECONNECT, options);
+	}
+
+	/**
+	 * @param url messaging URL
+	 * @param auth authentication method to use for the connection
+	 * @param systemKey system key
+	 * @param clientIdentifier the unique identifier for this client
+	 * @param qualityOfService default quality of service
+	 * @param autoReconnect connects right away, and reconnects automatically when the connection is lost
+	 * @param options connection options
+	 */
+	public Mqtt5Client(String url, Auth auth, String systemKey, String clientIdentifier, int qualityOfService, boolean autoReconnect, MqttClientOptions options) throws ClearBladeException {
+		// the parent constructor would connect before this class is initialized
+		super(url, auth, systemKey, clientIdentifier, qualityOfService, false, options);
+
+		this.mqtt5Client = null;
+		this.publishListener = new PublishListener();
+
+		setAutoReconnect(autoReconnect);
+		if (autoReconnect) {
+			this.connect();
+		}
+	}
+
+	/**
+	 * Publishes the given message (bytes) to the given topic, along with the given user properties.
+	 * @param topic topic to publish to
+	 * @param payload message to publish
+	 * @param qos quality of service
+	 * @param retained flag to set whether topic message is retained
+	 * @param userProperties metadata delivered with the message
+	 * @throws ClearBladeException if publish fails
+	 */
+	public void publish(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) throws ClearBladeException {
+		publishMessage(topic, payload, qos, retained, userProperties);
+	}
+
+	/**
+	 * Publishes the given message (bytes) to the given topic, along with the given user properties, without waiting
+	 * for its delivery.
+	 * @param userProperties metadata delivered with the message
+	 * @return future completed once the message is delivered
+	 * @see MqttClient#publishAsync(String, byte[], int, boolean)
+	 */
+	public CompletableFuture<Void> publishAsync(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) {
+		return publishMessageAsync(topic, payload, qos, retained, userProperties);
+	}
+
+	@Override
+	public int getBufferedMessageCount() {
+		MqttAsyncClient client = mqtt5Client;
+		return client == null ? 0 : client.getBufferedMessageCount();
+	}
+
+	// Transport
+
+	@Override
+	public boolean isConnected() {
+		MqttAsyncClient client = mqtt5Client;
+		return client != null && client.isConnected();
+	}
+
+	@Override
+	protected boolean isOpen() {
+		return mqtt5Client != null;
+	}
+
+	@Override
+	protected void openTransport() throws ClearBladeException {
+
+		if (!auth().isAuthed()) {
+			throw new IllegalStateException("auth method not authenticated");
+		}
+
+		MqttAsyncClient client = null;
+		try {
+			client = createClient();
+			client.setCallback(new Callback());
+
+			if (options().getOfflineBufferSize() > 0) {
+				DisconnectedBufferOptions bufferOptions = new DisconnectedBufferOptions();
+				bufferOptions.setBufferEnabled(true);
+				bufferOptions.setBufferSize(options().getOfflineBufferSize());
+				bufferOptions.setDeleteOldestMessages(options().isDeleteOldestBufferedMessages());
+				client.setBufferOpts(bufferOptions);
+			}
+
+			mqtt5Client = client;
+			waitFor(client.connect(connectionOptions()));
+
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			mqtt5Client = null;
+			if (client != null) {
+				try {
+					// forced, as a connect that timed out may still be in progress
+					client.close(true);
+				} catch (org.eclipse.paho.mqttv5.common.MqttException closeError) {
+					// the connect error is the one reported
+				}
+			}
+			String errmsg = String.format("(MqttClient) could not connect to %s: %s", url, e.getMessage());
+			throw new ClearBladeException(errmsg, e);
+		}
+	}
+
+	@Override
+	protected void closeTransport() throws MqttException {
+		MqttAsyncClient client = mqtt5Client;
+		try {
+			// Paho refuses to disconnect a lost connection
+			if (client.isConnected()) {
+				waitFor(client.disconnect());
+			}
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			throw convert(e);
+		} finally {
+			mqtt5Client = null;
+			try {
+				client.close();
+			} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+				// still connected after a failed disconnect, whose error is the one reported
+			}
+		}
+	}
+
+	@Override
+	protected void reconnectTransport() throws MqttException {
+		try {
+			waitFor(mqtt5Client.connect(connectionOptions()));
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			throw convert(e);
+		}
+	}
+
+	@Override
+	protected void sendPublish(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) throws MqttException {
+		try {
+			IMqttToken token = mqtt5Client.publish(topic, message(payload, qos, retained, userProperties));
+			if (options().getOfflineBufferSize() > 0 && !mqtt5Client.isConnected()) {
+				// handed to the offline buffer instead of blocking until the client reconnects
+				return;
+			}
+			waitFor(token);
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			throw convert(e);
+		}
+	}
+
+	@Override
+	protected void sendPublishAsync(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties,
+			CompletableFuture<Void> future) throws MqttException {
+		try {
+			MqttMessage message = message(payload, qos, retained, userProperties);
+			if (future == null) {
+				mqtt5Client.publish(topic, message);
+			} else {
+				mqtt5Client.publish(topic, message, future, publishListener);
+			}
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			throw convert(e);
+		}
+	}
+
+	@Override
+	protected void sendSubscribe(String topic, int qos) throws MqttException {
+		sendSubscribe(new String[] { topic }, new int[] { qos });
+	}
+
+	@Override
+	protected void sendSubscribe(String[] topics, int[] qos) throws MqttException {
+		try {
+			IMqttToken token = mqtt5Client.subscribe(topics, qos);
+			waitFor(token);
+			checkReasonCodes(token);
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			throw convert(e);
+		}
+	}
+
+	@Override
+	protected void sendUnsubscribe(String topic) throws MqttException {
+		sendUnsubscribe(new String[] { topic });
+	}
+
+	@Override
+	protected void sendUnsubscribe(String[] topics) throws MqttException {
+		try {
+			IMqttToken token = mqtt5Client.unsubscribe(topics);
+			waitFor(token);
+			checkReasonCodes(token);
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			throw convert(e);
+		}
+	}
+
+	// Misc
+
+	/**
+	 * package-protected (default when nothing is specified) method that returns a new, unconnected Paho MQTT 5 client.
+	 */
+	MqttAsyncClient createClient() throws org.eclipse.paho.mqttv5.common.MqttException {
+		return new MqttAsyncClient(url, clientIdentifier, new MemoryPersistence());
+	}
+
+	/**
+	 * @return the Paho options for a new connection, using the current auth token
+	 */
+	MqttConnectionOptions connectionOptions() {
+
+		MqttClientOptions options = options();
+		MqttConnectionOptions result = new MqttConnectionOptions();
+		result.setCleanStart(options.isCleanSession());
+		result.setUserName(connectToken());
+		result.setPassword(systemKey.getBytes());
+		result.setConnectionTimeout(options.getConnectionTimeout());
+		// a reconnect policy replaces Paho's automatic reconnect, which would keep retrying with the first token
+		result.setAutomaticReconnect(getAutoreconnect() && options.getReconnectPolicy() == null);
+		result.setSessionExpiryInterval(options.getSessionExpiryInterval());
+		result.setReceiveMaximum(options.getReceiveMaximum());
+		if (options.getTopicAliasMaximum() > 0) {
+			result.setTopicAliasMaximum(options.getTopicAliasMaximum());
+		}
+		return result;
+	}
+
+	private void waitFor(IMqttToken token) throws org.eclipse.paho.mqttv5.common.MqttException {
+		token.waitForCompletion(options().getConnectionTimeout() * 1000L);
+	}
+
+	private static MqttMessage message(byte[] payload, int qos, boolean retained, Map<String, String> userProperties) {
+
+		MqttMessage message = new MqttMessage(payload, qos, retained, null);
+		if (userProperties != null && !userProperties.isEmpty()) {
+			List<UserProperty> properties = new ArrayList<>(userProperties.size());
+			userProperties.forEach((key, value) -> properties.add(new UserProperty(key, value)));
+			MqttProperties mqttProperties = new MqttProperties();
+			mqttProperties.setUserProperties(properties);
+			message.setProperties(mqttProperties);
+		}
+		return message;
+	}
+
+	/**
+	 * @return the MQTT 3.1.1 delivery token expected by {@link MqttClient.OnDeliveryComplete}, for the given MQTT 5
+	 * token
+	 */
+	private MqttDeliveryToken deliveryToken(IMqttToken token) {
+		MqttDeliveryToken result = new MqttDeliveryToken(clientIdentifier);
+		result.internalTok.setMessageID(token.getMessageId());
+		if (token.getTopics() != null) {
+			result.internalTok.setTopics(token.getTopics());
+		}
+		result.internalTok.setUserContext(token.getUserContext());
+		try {
+			MqttMessage message = token.getMessage();
+			if (message != null) {
+				org.eclipse.paho.client.mqttv3.MqttMessage delivered = new org.eclipse.paho.client.mqttv3.MqttMessage(message.getPayload());
+				delivered.setQos(message.getQos());
+				delivered.setRetained(message.isRetained());
+				result.internalTok.setMessage(delivered);
+			}
+		} catch (org.eclipse.paho.mqttv5.common.MqttException e) {
+			// the token is reported without its message
+		}
+		return result;
+	}
+
+	private static Map<String, String> userProperties(MqttMessage message) {
+
+		MqttProperties properties = message.getProperties();
+		if (properties == null || properties.getUserProperties() == null || properties.getUserProperties().isEmpty()) {
+			return Collections.emptyMap();
+		}
+		Map<String, String> result = new LinkedHashMap<>();
+		for (UserProperty property : properties.getUserProperties()) {
+			// MQTT 5 allows a key to be repeated, the last value wins
+			result.put(property.getKey(), property.getValue());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * Fails when the broker rejected some of the topics of a subscribe / unsubscribe (reason codes 0x80 and above).
+	 */
+	private static void checkReasonCodes(IMqttToken token) throws MqttException {
+		int[] reasonCodes = token.getReasonCodes();
+		if (reasonCodes == null) {
+			return;
+		}
+		for (int reasonCode : reasonCodes) {
+			if (reasonCode >= 0x80) {
+				throw new MqttException(reasonCode);
+			}
+		}
+	}
+
+	/**
+	 * @return the MQTT 3.1.1 equivalent of the given exception, as expected by {@link MqttClient}
+	 */
+	static MqttException convert(org.eclipse.paho.mqttv5.common.MqttException e) {
+		int reasonCode = e.getReasonCode();
+		if (reasonCode == MqttReturnCode.RETURN_CODE_BAD_USERNAME_OR_PASSWORD
+				|| reasonCode == MqttReturnCode.RETURN_CODE_BAD_AUTHENTICATION) {
+			reasonCode = MqttException.REASON_CODE_FAILED_AUTHENTICATION;
+		} else if (reasonCode == MqttReturnCode.RETURN_CODE_NOT_AUTHORIZED) {
+			reasonCode = MqttException.REASON_CODE_NOT_AUTHORIZED;
+		}
+		return new MqttException(reasonCode, e);
+	}
+
+	/**
+	 * Forwards the events of the Paho MQTT 5 client to the {@link MqttClient} callbacks.
+	 */
+	private class Callback implements MqttCallback {
+
+		@Override
+		public void disconnected(MqttDisconnectResponse response) {
+			Throwable cause = response.getException();
+			if (cause == null) {
+				String errmsg = String.format("disconnected by the server (reason code %d: %s)", response.getReturnCode(), response.getReasonString());
+				cause = new MqttException(response.getReturnCode(), new IllegalStateException(errmsg));
+			}
+			connectionLost(cause);
+		}
+
+		@Override
+		public void mqttErrorOccurred(org.eclipse.paho.mqttv5.common.MqttException exception) {
+			String errmsg = String.format("(MqttClient) protocol error: %s", exception.getMessage());
+			System.out.println(errmsg);
+		}
+
+		@Override
+		public void messageArrived(String topic, MqttMessage message) {
+			dispatch(topic, message.getPayload(), message.getQos(), message.isRetained(), userProperties(message));
+		}
+
+		@Override
+		public void deliveryComplete(IMqttToken token) {
+			Mqtt5Client.this.deliveryComplete(deliveryToken(token));
+		}
+
+		@Override
+		public void connectComplete(boolean reconnect, String serverURI) {
+			Mqtt5Client.this.connectComplete(reconnect, serverURI);
+		}
+
+		@Override
+		public void authPacketArrived(int reasonCode, MqttProperties properties) {
+			// enhanced authentication is not used, the token is sent as the user name
+		}
+	}
+
+	/**
+	 * Releases the inflight slot of an asynchronous publish and completes its future.
+	 */
+	private class PublishListener implements MqttActionListener {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void onSuccess(IMqttToken token) {
+			completePublish((CompletableFuture<Void>) token.getUserContext(), null);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void onFailure(IMqttToken token, Throwable cause) {
+			completePublish((CompletableFuture<Void>) token.getUserContext(), cause);
+		}
+	}
+}
@@ -1,11 +1,25 @@
 package com.clearblade.java.api;
 
+import java.io.IOException;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.clearblade.java.api.auth.Auth;
+import com.clearblade.java.api.auth.AuthException;
+import com.clearblade.java.api.auth.AuthManager;
+import com.clearblade.java.api.codec.Codec;
+import com.clearblade.java.api.codec.PayloadCodec;
+import com.clearblade.java.api.internal.PahoMqttClient;
+import com.clearblade.java.api.internal.TimerWheel;
 import org.eclipse.paho.client.mqttv3.*;
 
 
@@ -17,7 +31,42 @@ public class MqttClient implements MqttCallbackExtended {
 
 	static final int QUALITY_OF_SERVICE = 0;
 	static final boolean AUTO_RECONNECT = true;
-	static final MqttClientPersistence MQTT_CLIENT_PERSISTENCE = null;
+	static final int SUBSCRIBE_BATCH_SIZE = 500;
+
+	/**
+	 * Topic level inserted between a request topic and its reply address: "&lt;topic&gt;/_req/&lt;client&gt;/&lt;id&gt;".
+	 */
+	static final String REQUEST_LEVEL = "_req";
+
+	/**
+	 * First level of reply topics: "_reply/&lt;client&gt;/&lt;id&gt;".
+	 */
+	static final String REPLY_LEVEL = "_reply";
+
+	/**
+	 * Request timeouts of all clients, with a 10ms precision.
+	 */
+	private static final TimerWheel REQUEST_TIMEOUTS = new TimerWheel(10, TimeUnit.MILLISECONDS, 512, "clearblade-mqtt-request-timeouts");
+
+	/**
+	 * Times the reconnect attempts of the clients using a {@link ReconnectPolicy}, which then run on
+	 * {@link #RECONNECT_THREADS}.
+	 */
+	private static final ScheduledExecutorService RECONNECTS = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "clearblade-mqtt-reconnect");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Runs the reconnect attempts, which block on the authentication and the connection, so that a broker or platform
+	 * slow to answer one client does not delay the reconnects of the others.
+	 */
+	private static final ExecutorService RECONNECT_THREADS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "clearblade-mqtt-connect");
+		thread.setDaemon(true);
+		return thread;
+	});
 
 	@FunctionalInterface
 	public interface OnConnectionComplete {
@@ -29,6 +78,24 @@ public class MqttClient implements MqttCallbackExtended {
 	    void onConnectionLost(Throwable cause);
 	}
 
+	@FunctionalInterface
+	public interface OnDeliveryComplete {
+		void onDeliveryComplete(IMqttDeliveryToken token);
+	}
+
+	/**
+	 * Handler of the requests received by {@link #respond(String, OnRequest)}.
+	 */
+	@FunctionalInterface
+	public interface OnRequest {
+		/**
+		 * @param topic topic the request was sent to
+		 * @param payload request payload
+		 * @return reply payload, or null to not reply
+		 */
+		byte[] onRequest(String topic, byte[] payload) throws Exception;
+	}
+
 	/**
 	 * The messaging URL this client is using.
 	 */
@@ -59,21 +126,101 @@ public class MqttClient implements MqttCallbackExtended {
 	 */
 	private boolean autoReconnect;
 
+	/**
+	 * Connection options (inflight window, ...).
+	 */
+	private final MqttClientOptions options;
+
 	/**
 	 * paho MqttClient instance.
 	 */
 	protected org.eclipse.paho.client.mqttv3.MqttClient mqttClient;
 
 	/**
-	 * Contains the MessageCallback instances for each topic. This lets the user have different handling logic
-	 * depending on the topic.
+	 * paho MqttAsyncClient backing mqttClient, used for non-blocking publishing.
+	 */
+	protected IMqttAsyncClient mqttAsyncClient;
+
+	/**
+	 * Held while the transport is reconnected or closed, so a disconnect does not close it under a reconnect attempt.
+	 */
+	private final Object transportLock = new Object();
+
+	/**
+	 * Permits for publishes awaiting acknowledgement, sized by {@link MqttClientOptions#getMaxInflight()} like Paho's
+	 * own window. Every QoS 1 / 2 publish holds one (synchronous ones until they return, asynchronous ones and request
+	 * replies until delivered), so Paho never rejects a publish for having too many in flight. Asynchronous QoS 0
+	 * publishes hold one as well until sent.
+	 */
+	private final Semaphore inflightWindow;
+
+	/**
+	 * Completes (or fails) the future passed as user context of each asynchronous publish.
+	 */
+	private final IMqttActionListener publishListener;
+
+	/**
+	 * Current routing snapshot of the subscriptions. It is read without locking by the MQTT callback thread, and
+	 * replaced as a whole (under subscriptionsLock) whenever subscriptions change.
+	 */
+	private volatile SubscriptionTable subscriptions;
+
+	/**
+	 * Serializes the changes to the subscriptions snapshot.
+	 */
+	private final Object subscriptionsLock;
+
+	/**
+	 * Contains the MessageCallback instances for each topic, as of the current snapshot (read-only). This lets the
+	 * user have different handling logic depending on the topic.
+	 */
+	protected volatile Map<String, MessageCallback> callbackByTopic;
+
+	/**
+	 * Contains the quality of service for each topic, as of the current snapshot (read-only).
+	 */
+	protected volatile Map<String, Integer> qosByTopic;
+
+	/**
+	 * Throughput metrics for each consumer group this client subscribed to.
+	 */
+	private final Map<String, ConsumerGroupMetrics> metricsByGroup;
+
+	/**
+	 * Requests awaiting their reply, by correlation id. Entries are removed on reply, timeout or disconnect.
+	 */
+	private final Map<String, PendingRequest> pendingRequests;
+
+	private final AtomicLong lastCorrelationId;
+
+	private final RequestMetrics requestMetrics;
+
+	/**
+	 * Prefix of the topics replies to this client's requests arrive on.
+	 */
+	private final String replyTopicPrefix;
+
+	private volatile boolean replySubscribed;
+
+	/**
+	 * Next reconnect attempt, when the connection was lost and a {@link ReconnectPolicy} is used.
+	 */
+	private volatile ScheduledFuture<?> reconnectTask;
+
+	/**
+	 * Set while a reconnect attempt made by the policy is connecting, so it is reported as a reconnection.
+	 */
+	private volatile boolean reconnectInProgress;
+
+	/**
+	 * Token manager of the ClearBladeClient this client was created from, null for a standalone client.
 	 */
-	protected Map<String, MessageCallback> callbackByTopic;
+	private volatile AuthManager authManager;
 
 	/**
-	 * Contains the quality of service for each topic.
+	 * Auth headers of the token sent with the last connection attempt.
 	 */
-	protected Map<String, Integer> qosByTopic;
+	private volatile Map<String, String> connectHeaders;
 
 	/**
 	 * Functional-interface callback for connection complete events.
@@ -85,6 +232,11 @@ public class MqttClient implements MqttCallbackExtended {
 	 */
 	private OnConnectionLost onConnectionLost;
 
+	/**
+	 * Functional-interface callback for delivery complete events.
+	 */
+	private OnDeliveryComplete onDeliveryComplete;
+
 	/**
 	 * Creates a new MqttClient instance using the given identifier. URL and auth method will be obtained from the
 	 * global ClearBlade singleton.
@@ -110,6 +262,27 @@ public class MqttClient implements MqttCallbackExtended {
 	 * @param autoReconnect whenever the client should automatically connect / reconnect.
 	 */
 	public MqttClient(String url, Auth auth, String systemKey, String clientIdentifier, int qualityOfService, boolean autoReconnect) throws ClearBladeException {
+		this(url, auth, systemKey, clientIdentifier, qualityOfService, autoReconnect, new MqttClientOptions());
+	}
+
+	/**
+	 * Creates a new MqttClient instance using the given identifier, quality of service and options. URL and auth
+	 * method will be obtained from the global ClearBlade singleton.
+	 */
+	public MqttClient(String clientIdentifier, int qualityOfService, MqttClientOptions options) throws ClearBladeException {
+		this(ClearBlade.getMessagingUrl(), ClearBlade.getAuth(), Util.getSystemKey(), clientIdentifier, qualityOfService, AUTO_RECONNECT, options);
+	}
+
+	/**
+	 * Creates a new MqttClient instance using the given information.
+	 * @param url the messaging url to connect to
+	 * @param auth the authentication method to use
+	 * @param clientIdentifier the unique identifier for this client
+	 * @param qualityOfService the default quality of service to use
+	 * @param autoReconnect whenever the client should automatically connect / reconnect.
+	 * @param options connection options
+	 */
+	public MqttClient(String url, Auth auth, String systemKey, String clientIdentifier, int qualityOfService, boolean autoReconnect, MqttClientOptions options) throws ClearBladeException {
 
 		this.url = url;
 		this.auth = auth;
@@ -117,11 +290,24 @@ public class MqttClient implements MqttCallbackExtended {
 		this.clientIdentifier = clientIdentifier;
 		this.defaultQualityOfService = qualityOfService;
 		this.autoReconnect = autoReconnect;
+		this.options = new MqttClientOptions(options);
 		this.mqttClient = null;
-		this.callbackByTopic = new HashMap<>();
-		this.qosByTopic = new HashMap<>();
+		this.mqttAsyncClient = null;
+		this.inflightWindow = new Semaphore(this.options.getMaxInflight());
+		this.publishListener = new PublishListener();
+		this.subscriptionsLock = new Object();
+		this.setSubscriptions(SubscriptionTable.EMPTY);
+		this.metricsByGroup = new ConcurrentHashMap<>();
+		this.pendingRequests = new ConcurrentHashMap<>();
+		this.lastCorrelationId = new AtomicLong();
+		this.requestMetrics = new RequestMetrics(pendingRequests::size);
+		this.replyTopicPrefix = String.format("%s/%s/", REPLY_LEVEL, topicLevel(clientIdentifier));
+		this.replySubscribed = false;
+		this.reconnectTask = null;
+		this.reconnectInProgress = false;
 		this.onConnectionComplete = null;
 		this.onConnectionLost = null;
+		this.onDeliveryComplete = null;
 
 		if (autoReconnect) {
 			this.connect();
@@ -158,15 +344,148 @@ public class MqttClient implements MqttCallbackExtended {
 		this.onConnectionLost = callback;
 	}
 
+	/**
+	 * Callback to use when the delivery of a published message completes (after PUBACK / PUBCOMP for QoS 1 / 2, and
+	 * after the message is written to the network for QoS 0).
+	 */
+	public void onDeliveryComplete(OnDeliveryComplete callback) {
+		this.onDeliveryComplete = callback;
+	}
+
+	/**
+	 * @return the number of messages published while disconnected and waiting to be replayed
+	 */
+	public int getBufferedMessageCount() {
+		return mqttAsyncClient == null ? 0 : mqttAsyncClient.getBufferedMessageCount();
+	}
+
+	// Transport: the Paho MQTT 3.1.1 client, replaced by Mqtt5Client
+
+	/**
+	 * @return whenever a connection was opened (even if it is currently lost) and not closed since
+	 */
+	protected boolean isOpen() {
+		return mqttClient != null;
+	}
+
+	/**
+	 * Opens a new connection.
+	 */
+	protected void openTransport() throws ClearBladeException {
+		mqttClient = connectPaho();
+		mqttAsyncClient = ((PahoMqttClient) mqttClient).getAsyncClient();
+	}
+
+	/**
+	 * Closes the connection for good.
+	 */
+	protected void closeTransport() throws MqttException {
+		org.eclipse.paho.client.mqttv3.MqttClient client = mqttClient;
+		try {
+			// Paho refuses to disconnect a lost connection
+			if (client.isConnected()) {
+				client.disconnect();
+			}
+		} finally {
+			mqttClient = null;
+			mqttAsyncClient = null;
+			try {
+				client.close();
+			} catch (MqttException e) {
+				// still connected after a failed disconnect, whose error is the one reported
+			}
+		}
+	}
+
+	/**
+	 * Reconnects the lost connection, with a fresh token.
+	 */
+	protected void reconnectTransport() throws MqttException {
+		mqttClient.connect(connectOptions());
+	}
+
+	/**
+	 * Publishes a message and waits for its delivery, or hands it to the offline buffer while disconnected.
+	 * @param userProperties metadata of the message, empty unless sent by {@link Mqtt5Client}
+	 */
+	protected void sendPublish(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) throws MqttException {
+		if (options.getOfflineBufferSize() > 0 && !mqttClient.isConnected()) {
+			// hands the message to the offline buffer instead of blocking until the client reconnects
+			mqttAsyncClient.publish(topic, payload, qos, retained);
+			return;
+		}
+
+		mqttClient.publish(topic, payload, qos, retained);
+	}
+
+	/**
+	 * Publishes a message without waiting for its delivery.
+	 * @param userProperties metadata of the message, empty unless sent by {@link Mqtt5Client}
+	 * @param future future to pass to {@link #completePublish} once the delivery completes, or null when the
+	 * publish does not hold a slot of the inflight window
+	 */
+	protected void sendPublishAsync(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties,
+			CompletableFuture<Void> future) throws MqttException {
+		if (future == null) {
+			mqttAsyncClient.publish(topic, payload, qos, retained);
+		} else {
+			mqttAsyncClient.publish(topic, payload, qos, retained, future, publishListener);
+		}
+	}
+
+	protected void sendSubscribe(String topic, int qos) throws MqttException {
+		mqttClient.subscribe(topic, qos);
+	}
+
+	protected void sendSubscribe(String[] topics, int[] qos) throws MqttException {
+		mqttClient.subscribe(topics, qos);
+	}
+
+	protected void sendUnsubscribe(String topic) throws MqttException {
+		mqttClient.unsubscribe(topic);
+	}
+
+	protected void sendUnsubscribe(String[] topics) throws MqttException {
+		mqttClient.unsubscribe(topics);
+	}
+
+	/**
+	 * Releases the inflight slot of an asynchronous publish and completes its future.
+	 * @param error cause of the failure, or null when the message was delivered
+	 */
+	protected void completePublish(CompletableFuture<Void> future, Throwable error) {
+		inflightWindow.release();
+		if (error == null) {
+			future.complete(null);
+		} else {
+			String errmsg = String.format("(MqttClient) publish error: %s", error.getMessage());
+			future.completeExceptionally(new ClearBladeException(errmsg, error));
+		}
+	}
+
+	/**
+	 * @return the number of publishes currently holding a slot of the inflight window
+	 */
+	public int getInflightCount() {
+		return options.getMaxInflight() - inflightWindow.availablePermits();
+	}
+
 	/**
 	 * Tries to connect to the MQTT service specified by the supplied parameters during object construction.
 	 * @throws ClearBladeException if connection fails.
 	 */
 	public void connect() throws ClearBladeException {
-		if (mqttClient != null && mqttClient.isConnected()) {
+		if (isConnected()) {
 			return;
 		}
-		mqttClient = connectPaho();
+		openTransport();
+	}
+
+	/**
+	 * @return whenever the client is currently connected to the MQTT service
+	 */
+	public boolean isConnected() {
+		return mqttClient != null && mqttClient.isConnected();
 	}
 
 	/**
@@ -177,17 +496,22 @@ public class MqttClient implements MqttCallbackExtended {
 	 */
 	public boolean disconnect() throws ClearBladeException {
 
-		if (mqttClient == null) {
-			return true;
-		}
+		cancelReconnect();
 
-		try {
-			mqttClient.disconnect();
-			mqttClient = null;
+		synchronized (transportLock) {
+			if (!isOpen()) {
+				return true;
+			}
 
-		} catch(MqttException e) {
-			String errmsg = String.format("(MqttClient) disconnect error");
-			throw new ClearBladeException(errmsg, e);
+			try {
+				closeTransport();
+
+			} catch(MqttException e) {
+				String errmsg = String.format("(MqttClient) disconnect error");
+				throw new ClearBladeException(errmsg, e);
+			} finally {
+				failPendingRequests("(MqttClient) request error: client disconnected");
+			}
 		}
 
 		return true;
@@ -223,14 +547,242 @@ public class MqttClient implements MqttCallbackExtended {
 	 * @throws ClearBladeException if publish fails
 	 */
 	public void publish(String topic, byte[] payload, int qos, boolean retained) throws ClearBladeException {
+		publishMessage(topic, payload, qos, retained, Collections.emptyMap());
+	}
+
+	/**
+	 * Publishes a message through the offline buffer, see {@link #publish(String, byte[], int, boolean)}.
+	 * @param userProperties metadata of the message, empty unless sent by {@link Mqtt5Client}
+	 */
+	protected void publishMessage(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) throws ClearBladeException {
+
+		payload = encode(topic, payload);
+
+		// QoS 0 publishes are not counted by Paho's inflight window
+		boolean windowed = qos > 0;
+		if (windowed) {
+			try {
+				inflightWindow.acquire();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new ClearBladeException("(MqttClient) publish interrupted", e);
+			}
+		}
 
 		try {
-			mqttClient.publish(topic, payload, qos, retained);
+			sendPublish(topic, payload, qos, retained, userProperties);
 
 		} catch (MqttException e) {
 			String errmsg = String.format("(MqttClient) publish error: %s", e.getMessage());
 			throw new ClearBladeException(errmsg, e);
+		} finally {
+			if (windowed) {
+				inflightWindow.release();
+			}
+		}
+	}
+
+	/**
+	 * Publishes the given value to the given topic, serialized with the given codec.
+	 * @param topic topic to publish to
+	 * @param value value to publish
+	 * @param codec codec serializing the value
+	 * @throws ClearBladeException if serialization or publish fails
+	 */
+	public <T> void publish(String topic, T value, Codec<T> codec) throws ClearBladeException {
+		publish(topic, value, codec, defaultQualityOfService, false);
+	}
+
+	/**
+	 * Publishes the given value to the given topic, serialized with the given codec, using the given quality of
+	 * service.
+	 * @param topic topic to publish to
+	 * @param value value to publish
+	 * @param codec codec serializing the value
+	 * @param qos quality of service
+	 * @param retained flag to set whether topic message is retained
+	 * @throws ClearBladeException if serialization or publish fails
+	 */
+	public <T> void publish(String topic, T value, Codec<T> codec, int qos, boolean retained) throws ClearBladeException {
+		byte[] payload;
+		try {
+			payload = codec.encode(value);
+		} catch (IOException | RuntimeException e) {
+			String errmsg = String.format("(MqttClient) serialization error on topic %s: %s", topic, e.getMessage());
+			throw new ClearBladeException(errmsg, e);
+		}
+		publish(topic, payload, qos, retained);
+	}
+
+	/**
+	 * Publishes the given message (bytes) to the given topic without waiting for the broker's acknowledgement. At
+	 * most {@link MqttClientOptions#getMaxInflight()} publishes can be in flight at the same time; once the window
+	 * is full this method blocks until a slot frees up.
+	 * @param topic topic to publish to
+	 * @param payload message to publish
+	 * @param qos quality of service
+	 * @param retained flag to set whether topic message is retained
+	 * @return future completed once delivery is complete, or completed exceptionally with a ClearBladeException
+	 */
+	public CompletableFuture<Void> publishAsync(String topic, byte[] payload, int qos, boolean retained) {
+		return publishMessageAsync(topic, payload, qos, retained, Collections.emptyMap());
+	}
+
+	/**
+	 * Publishes a message within the inflight window, see {@link #publishAsync(String, byte[], int, boolean)}.
+	 * @param userProperties metadata of the message, empty unless sent by {@link Mqtt5Client}
+	 */
+	protected CompletableFuture<Void> publishMessageAsync(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) {
+
+		CompletableFuture<Void> future = new CompletableFuture<>();
+
+		if (!isOpen()) {
+			future.completeExceptionally(new ClearBladeException("(MqttClient) publish error: client is not connected"));
+			return future;
+		}
+
+		try {
+			payload = encode(topic, payload);
+		} catch (ClearBladeException e) {
+			future.completeExceptionally(e);
+			return future;
+		}
+
+		try {
+			inflightWindow.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			future.completeExceptionally(new ClearBladeException("(MqttClient) publish interrupted", e));
+			return future;
+		}
+
+		try {
+			sendPublishAsync(topic, payload, qos, retained, userProperties, future);
+
+		} catch (MqttException | RuntimeException e) {
+			inflightWindow.release();
+			String errmsg = String.format("(MqttClient) publish error: %s", e.getMessage());
+			future.completeExceptionally(new ClearBladeException(errmsg, e));
+		}
+
+		return future;
+	}
+
+	/**
+	 * Similar to {@link #publishAsync(String, byte[], int, boolean)} but uses the default quality of service and
+	 * no retained flag.
+	 */
+	public CompletableFuture<Void> publishAsync(String topic, byte[] payload) {
+		return publishAsync(topic, payload, defaultQualityOfService, false);
+	}
+
+	/**
+	 * Waits until every asynchronous publish issued so far has completed. Used to flush a batch of
+	 * {@link #publishAsync} calls.
+	 * @param timeout maximum time to wait, in milliseconds
+	 * @return true if the inflight window drained, false if the timeout elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean flush(long timeout) throws InterruptedException {
+		int permits = options.getMaxInflight();
+		if (!inflightWindow.tryAcquire(permits, timeout, TimeUnit.MILLISECONDS)) {
+			return false;
 		}
+		inflightWindow.release(permits);
+		return true;
+	}
+
+	/**
+	 * Sends a request to the given topic and waits for a reply, using the default quality of service.
+	 * @see #request(String, byte[], int, long)
+	 */
+	public CompletableFuture<byte[]> request(String topic, byte[] payload, long timeout) {
+		return request(topic, payload, defaultQualityOfService, timeout);
+	}
+
+	/**
+	 * Sends a request to the given topic and returns the reply once the responder (see
+	 * {@link #respond(String, OnRequest)}) sends it. The request is published on
+	 * "&lt;topic&gt;/_req/&lt;client&gt;/&lt;id&gt;", and replies come back on "_reply/&lt;client&gt;/&lt;id&gt;" through a
+	 * single wildcard subscription shared by all the requests of this client, made on the first request.
+	 *
+	 * The future is completed on the MQTT callback thread (or the timeout thread), so dependent actions should be
+	 * quick or use the *Async methods of CompletableFuture.
+	 * @param topic topic the responder listens on
+	 * @param payload request payload
+	 * @param qos quality of service of the request
+	 * @param timeout maximum time to wait for the reply, in milliseconds
+	 * @return future completed with the reply payload, or completed exceptionally with a ClearBladeException (caused
+	 * by a TimeoutException when no reply came in time)
+	 */
+	public CompletableFuture<byte[]> request(String topic, byte[] payload, int qos, long timeout) {
+
+		CompletableFuture<byte[]> future = new CompletableFuture<>();
+
+		if (!isOpen()) {
+			requestMetrics.recordFailed();
+			future.completeExceptionally(new ClearBladeException("(MqttClient) request error: client is not connected"));
+			return future;
+		}
+
+		try {
+			subscribeReplies();
+		} catch (ClearBladeException e) {
+			requestMetrics.recordFailed();
+			future.completeExceptionally(e);
+			return future;
+		} catch (RuntimeException e) {
+			// the client was disconnected concurrently
+			requestMetrics.recordFailed();
+			future.completeExceptionally(new ClearBladeException(String.format("(MqttClient) request error: %s", e.getMessage()), e));
+			return future;
+		}
+
+		String correlationId = Long.toString(lastCorrelationId.incrementAndGet(), Character.MAX_RADIX);
+		PendingRequest request = new PendingRequest(future);
+		pendingRequests.put(correlationId, request);
+		request.timeout = REQUEST_TIMEOUTS.schedule(() -> expireRequest(correlationId, topic, timeout), timeout, TimeUnit.MILLISECONDS);
+		requestMetrics.recordSent();
+
+		String requestTopic = String.format("%s/%s/%s/%s", topic, REQUEST_LEVEL, topicLevel(clientIdentifier), correlationId);
+		publishAsync(requestTopic, payload, qos, false).whenComplete((ignored, error) -> {
+			if (error != null) {
+				failRequest(correlationId, error);
+			}
+		});
+
+		return future;
+	}
+
+	/**
+	 * Answers the requests sent to the given topic with {@link #request(String, byte[], long)}. The handler runs on the
+	 * MQTT callback thread; its reply is published without waiting for the broker's acknowledgement.
+	 * @param topic topic to answer requests on
+	 * @param qos quality of service of the subscription and of the replies
+	 * @param handler handler computing the reply of each request
+	 * @throws ClearBladeException when subscription fails
+	 */
+	public void respond(String topic, int qos, OnRequest handler) throws ClearBladeException {
+		subscribe(String.format("%s/%s/+/+", topic, REQUEST_LEVEL), qos, new MessageViewCallback() {
+			@Override
+			public void done(MessageView message) {
+				reply(topic, qos, handler, message);
+			}
+		});
+	}
+
+	/**
+	 * Similar to {@link #respond(String, int, OnRequest)}, using the default quality of service.
+	 */
+	public void respond(String topic, OnRequest handler) throws ClearBladeException {
+		respond(topic, defaultQualityOfService, handler);
+	}
+
+	/**
+	 * @return metrics of the requests made by this client
+	 */
+	public RequestMetrics getRequestMetrics() {
+		return requestMetrics;
 	}
 
 	/**
@@ -252,9 +804,10 @@ public class MqttClient implements MqttCallbackExtended {
 	 */
 	public void subscribe(String topic, int qos, MessageCallback callback) throws ClearBladeException {
 		try {
-			mqttClient.subscribe(topic, qos);
-			callbackByTopic.put(topic, callback);
-			qosByTopic.put(topic, qos);
+			sendSubscribe(topic, qos);
+			synchronized (subscriptionsLock) {
+				setSubscriptions(subscriptions.with(topic, qos, callback));
+			}
 
 		} catch (MqttException e) {
 			String errmsg = String.format("(MqttClient) subscribe error: %s", e.getMessage());
@@ -262,21 +815,170 @@ public class MqttClient implements MqttCallbackExtended {
 		}
 	}
 
+	/**
+	 * Subscribes to the given topic, decoding the messages with the given codec before handing them to the callback.
+	 * @param topic topic to subscribe to
+	 * @param codec codec deserializing the messages
+	 * @param callback callback to use for decoded messages or errors
+	 * @throws ClearBladeException when subscription fails
+	 */
+	public <T> void subscribe(String topic, Codec<T> codec, TypedMessageCallback<T> callback) throws ClearBladeException {
+		subscribe(topic, defaultQualityOfService, codec, callback);
+	}
+
+	/**
+	 * Similar to {@link #subscribe(String, Codec, TypedMessageCallback)}, using the given quality of service.
+	 */
+	public <T> void subscribe(String topic, int qos, Codec<T> codec, TypedMessageCallback<T> callback) throws ClearBladeException {
+		subscribe(topic, qos, new TypedMessageAdapter<>(codec, callback));
+	}
+
+	/**
+	 * Subscribes to the given topic as a member of the given consumer group, using a "$share/&lt;group&gt;/&lt;topic&gt;"
+	 * shared subscription. The broker splits the topic's messages between all the clients of the same group, instead
+	 * of sending every message to each of them.
+	 * @param group consumer group name
+	 * @param topic topic (filter) to subscribe to
+	 * @param callback callback to use for incoming messages or errors
+	 * @throws ClearBladeException when subscription fails
+	 */
+	public void subscribeShared(String group, String topic, MessageCallback callback) throws ClearBladeException {
+		subscribeShared(group, topic, defaultQualityOfService, callback);
+	}
+
+	/**
+	 * Similar to {@link #subscribeShared(String, String, MessageCallback)}, using the given quality of service.
+	 */
+	public void subscribeShared(String group, String topic, int qos, MessageCallback callback) throws ClearBladeException {
+		subscribe(SharedSubscription.format(group, topic), qos, callback);
+		metricsByGroup.computeIfAbsent(group, ConsumerGroupMetrics::new);
+	}
+
+	/**
+	 * Leaves the given consumer group for the given topic.
+	 * @throws ClearBladeException when unsubscribe fails
+	 */
+	public boolean unsubscribeShared(String group, String topic) throws ClearBladeException {
+		return unsubscribe(SharedSubscription.format(group, topic));
+	}
+
+	/**
+	 * @return throughput metrics of the given consumer group on this client, or null if it never subscribed to it
+	 */
+	public ConsumerGroupMetrics getConsumerGroupMetrics(String group) {
+		return metricsByGroup.get(group);
+	}
+
+	/**
+	 * @return throughput metrics of every consumer group this client subscribed to
+	 */
+	public Map<String, ConsumerGroupMetrics> getConsumerGroupMetrics() {
+		return Collections.unmodifiableMap(metricsByGroup);
+	}
+
 	/**
 	 * Resubscribes to all the topics this client has subscribed to so far. Any errors are reported to the message
 	 * callback rather than throwing them.
 	 */
 	public void resubscribe() {
-	    callbackByTopic.forEach((topic, callback) -> {
-	    	try {
-	    	    int qos = qosByTopic.get(topic);
-	    		mqttClient.subscribe(topic, qos);
-
-	    	} catch (MqttException e) {
-	    		String errmsg = String.format("(MqttClient) resubscribe error: %s", e.getMessage());
-	    		callback.error(new ClearBladeException(errmsg, e));
-		   }
-		});
+
+		List<SubscriptionTable.Route> routes = new ArrayList<>(subscriptions.routes());
+
+		// packs up to SUBSCRIBE_BATCH_SIZE topic filters in each SUBSCRIBE packet
+
+		for (int start = 0; start < routes.size(); start += SUBSCRIBE_BATCH_SIZE) {
+			List<SubscriptionTable.Route> batch = routes.subList(start, Math.min(start + SUBSCRIBE_BATCH_SIZE, routes.size()));
+
+			String[] batchTopics = new String[batch.size()];
+			int[] batchQos = new int[batch.size()];
+			for (int idx = 0; idx < batchTopics.length; idx++) {
+				batchTopics[idx] = batch.get(idx).topic;
+				batchQos[idx] = batch.get(idx).qos;
+			}
+
+			try {
+				sendSubscribe(batchTopics, batchQos);
+
+			} catch (MqttException e) {
+				String errmsg = String.format("(MqttClient) resubscribe error: %s", e.getMessage());
+				ClearBladeException error = new ClearBladeException(errmsg, e);
+
+				// reports the error once to each distinct callback of the failed batch
+				Set<MessageCallback> callbacks = Collections.newSetFromMap(new IdentityHashMap<>());
+				for (SubscriptionTable.Route route : batch) {
+					if (callbacks.add(route.callback)) {
+						route.callback.error(error);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Subscribes to all the given topics, using the given message callback for handling messages. Topics are sent
+	 * in as few SUBSCRIBE packets as possible, instead of one packet (and one round trip) per topic.
+	 * @param qosByTopic quality of service for each topic to subscribe to
+	 * @param callback callback to use for incoming messages or errors
+	 * @throws ClearBladeException when subscription fails; topics of the batches sent before the failing one
+	 * remain subscribed
+	 */
+	public void subscribe(Map<String, Integer> qosByTopic, MessageCallback callback) throws ClearBladeException {
+
+		List<Map.Entry<String, Integer>> entries = new ArrayList<>(qosByTopic.entrySet());
+
+		for (int start = 0; start < entries.size(); start += SUBSCRIBE_BATCH_SIZE) {
+			List<Map.Entry<String, Integer>> batch = entries.subList(start, Math.min(start + SUBSCRIBE_BATCH_SIZE, entries.size()));
+
+			Map<String, Integer> subscribed = new LinkedHashMap<>();
+			String[] batchTopics = new String[batch.size()];
+			int[] batchQos = new int[batch.size()];
+			for (int idx = 0; idx < batchTopics.length; idx++) {
+				batchTopics[idx] = batch.get(idx).getKey();
+				batchQos[idx] = batch.get(idx).getValue();
+				subscribed.put(batchTopics[idx], batchQos[idx]);
+			}
+
+			try {
+				sendSubscribe(batchTopics, batchQos);
+
+			} catch (MqttException e) {
+				String errmsg = String.format("(MqttClient) subscribe error: %s", e.getMessage());
+				throw new ClearBladeException(errmsg, e);
+			}
+
+			synchronized (subscriptionsLock) {
+				setSubscriptions(subscriptions.with(subscribed, callback));
+			}
+		}
+	}
+
+	/**
+	 * Unsubscribes from all the given topics, using as few UNSUBSCRIBE packets as possible.
+	 * @param topics topics to unsubscribe from
+	 * @throws ClearBladeException when unsubscribe fails; topics of the batches sent before the failing one
+	 * remain unsubscribed
+	 */
+	public boolean unsubscribe(java.util.Collection<String> topics) throws ClearBladeException {
+
+		List<String> all = new ArrayList<>(topics);
+
+		for (int start = 0; start < all.size(); start += SUBSCRIBE_BATCH_SIZE) {
+			String[] batchTopics = all.subList(start, Math.min(start + SUBSCRIBE_BATCH_SIZE, all.size())).toArray(new String[0]);
+
+			try {
+				sendUnsubscribe(batchTopics);
+
+			} catch (MqttException e) {
+				String errmsg = String.format("(MqttClient) unsubscribe error: %s", e.getMessage());
+				throw new ClearBladeException(errmsg, e);
+			}
+
+			synchronized (subscriptionsLock) {
+				setSubscriptions(subscriptions.without(Arrays.asList(batchTopics)));
+			}
+		}
+
+		return true;
 	}
 
 	/**
@@ -286,9 +988,10 @@ public class MqttClient implements MqttCallbackExtended {
 	 */
 	public boolean unsubscribe(String topic) throws ClearBladeException {
 		try {
-			mqttClient.unsubscribe(topic);
-			callbackByTopic.remove(topic);
-			qosByTopic.remove(topic);
+			sendUnsubscribe(topic);
+			synchronized (subscriptionsLock) {
+				setSubscriptions(subscriptions.without(Collections.singleton(topic)));
+			}
 			return true;
 
 		} catch (MqttException e) {
@@ -302,6 +1005,11 @@ public class MqttClient implements MqttCallbackExtended {
 	@Override
 	public void connectComplete(boolean reconnected, String url) {
 
+		if (reconnectInProgress) {
+			reconnectInProgress = false;
+			reconnected = true;
+		}
+
 		String msg = String.format("(MqttClient) %s complete: %s", reconnected ? "reconnection" : "connection", url);
 		System.out.println(msg);
 
@@ -317,54 +1025,224 @@ public class MqttClient implements MqttCallbackExtended {
 		System.out.println(msg);
 
 		if (this.onConnectionLost != null) { this.onConnectionLost.onConnectionLost(arg0); }
+
+		if (autoReconnect && options.getReconnectPolicy() != null) {
+			scheduleReconnect(0, false);
+		}
 	}
 
 	@Override
 	public void messageArrived(String topic, MqttMessage message) {
+		dispatch(topic, message.getPayload(), message.getQos(), message.isRetained(), Collections.emptyMap());
+	}
+
+	@Override
+	public void deliveryComplete(IMqttDeliveryToken arg0) {
+		if (this.onDeliveryComplete != null) { this.onDeliveryComplete.onDeliveryComplete(arg0); }
+	}
 
-		byte[] payload = message.getPayload();
+	// Misc
 
-		MessageCallback callback = callbackByTopic.get(topic);
+	/**
+	 * Routes an incoming message to the pending request or the subscription it belongs to.
+	 * @param userProperties MQTT 5 user properties of the message, empty with MQTT 3.1.1
+	 */
+	void dispatch(String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) {
 
-		if (callback != null) {
-			callback.done(topic, payload);
-			callback.done(topic, new String(payload));
-		} else if (callbackByTopic.size() > 0) { //Check for wildcards
+		if (topic.startsWith(replyTopicPrefix)) {
+			completeRequest(topic.substring(replyTopicPrefix.length()), payload);
+			return;
+		}
 
-			Set<String> keys = callbackByTopic.keySet();
-			List<String> newKeys = new ArrayList<>();
-			keys.forEach(key -> {
-				String newKey = key.replace("+", ".*").replace("#", ".*");//replace mqtt wildcards with regex
-				newKeys.add(newKey);
-			});
+		// a single volatile read: the whole dispatch uses one consistent snapshot
+		SubscriptionTable table = subscriptions;
 
-			List<String> allMatches = new ArrayList<>();
- 			newKeys.forEach(key -> {
-				Pattern pattern = Pattern.compile(key);
+		if (!table.isEmpty()) {
+			SubscriptionTable.Route route = table.route(topic);
+			if (route == null) {
+				return;
+			}
 
-				if (topic.matches(key)) {
-					List<String> matching = keys.stream()
-							.filter(pattern.asPredicate())
-							.collect(Collectors.toList());//check key set against keys with regex
-					allMatches.addAll(matching);
+			if (route.group != null) {
+				ConsumerGroupMetrics metrics = metricsByGroup.get(route.group);
+				if (metrics != null) {
+					metrics.record(payload.length);
 				}
-			});
-			if (allMatches.size() == 1) {//if there's more than one match, there's a problem
-				callback = callbackByTopic.get(allMatches.get(0));
-				callback.done(topic, payload);
-				callback.done(topic, new String(payload));
 			}
+
+			PayloadCodec codec = options.getPayloadCodec(topic);
+			if (codec != null) {
+				try {
+					payload = codec.decode(payload);
+				} catch (IOException | RuntimeException e) {
+					String errmsg = String.format("(MqttClient) %s decode error on topic %s: %s", codec.getName(), topic, e.getMessage());
+					route.callback.error(new ClearBladeException(errmsg, e));
+					return;
+				}
+			}
+
+			deliver(route.callback, topic, payload, qos, retained, userProperties);
 		} else {
 		    String errmsg = String.format("(MqttClient) could not handle message for topic: %s", topic);
 		    System.out.println(errmsg);
 		}
 	}
 
-	@Override
-	public void deliveryComplete(IMqttDeliveryToken arg0) {
+	/**
+	 * Encodes the given payload with the codec configured for the topic, if any.
+	 */
+	byte[] encode(String topic, byte[] payload) throws ClearBladeException {
+		PayloadCodec codec = options.getPayloadCodec(topic);
+		if (codec == null) {
+			return payload;
+		}
+		try {
+			return codec.encode(payload);
+		} catch (IOException | RuntimeException e) {
+			String errmsg = String.format("(MqttClient) %s encode error on topic %s: %s", codec.getName(), topic, e.getMessage());
+			throw new ClearBladeException(errmsg, e);
+		}
 	}
 
-	// Misc
+	/**
+	 * Makes the wildcard subscription replies to this client's requests arrive on, once.
+	 */
+	private void subscribeReplies() throws ClearBladeException {
+		if (replySubscribed) {
+			return;
+		}
+		synchronized (pendingRequests) {
+			if (!replySubscribed) {
+				// messageArrived intercepts the replies, the callback only receives subscription errors
+				subscribe(replyTopicPrefix + "+", defaultQualityOfService, new MessageCallback());
+				replySubscribed = true;
+			}
+		}
+	}
+
+	private void completeRequest(String correlationId, byte[] payload) {
+
+		PendingRequest request = pendingRequests.remove(correlationId);
+		if (request == null) {
+			requestMetrics.recordLateReply();
+			return;
+		}
+		request.cancelTimeout();
+
+		String replyTopic = replyTopicPrefix + correlationId;
+		try {
+			PayloadCodec codec = options.getPayloadCodec(replyTopic);
+			if (codec != null) {
+				payload = codec.decode(payload);
+			}
+		} catch (IOException | RuntimeException e) {
+			requestMetrics.recordFailed();
+			String errmsg = String.format("(MqttClient) decode error on topic %s: %s", replyTopic, e.getMessage());
+			request.future.completeExceptionally(new ClearBladeException(errmsg, e));
+			return;
+		}
+
+		requestMetrics.recordCompleted(System.nanoTime() - request.sentAt);
+		request.future.complete(payload);
+	}
+
+	private void expireRequest(String correlationId, String topic, long timeout) {
+		PendingRequest request = pendingRequests.remove(correlationId);
+		if (request != null) {
+			requestMetrics.recordTimedOut();
+			String errmsg = String.format("(MqttClient) request timed out after %d ms on topic %s", timeout, topic);
+			request.future.completeExceptionally(new ClearBladeException(errmsg, new TimeoutException(errmsg)));
+		}
+	}
+
+	private void failRequest(String correlationId, Throwable error) {
+		PendingRequest request = pendingRequests.remove(correlationId);
+		if (request != null) {
+			request.cancelTimeout();
+			requestMetrics.recordFailed();
+			request.future.completeExceptionally(error);
+		}
+	}
+
+	private void failPendingRequests(String errmsg) {
+		for (String correlationId : new ArrayList<>(pendingRequests.keySet())) {
+			failRequest(correlationId, new ClearBladeException(errmsg));
+		}
+	}
+
+	/**
+	 * Runs a request handler and publishes its reply to the requester.
+	 */
+	private void reply(String topic, int qos, OnRequest handler, MessageView message) {
+
+		// "<topic>/_req/<client>/<id>"
+		String requestTopic = message.getTopic();
+		int idStart = requestTopic.lastIndexOf('/');
+		int clientStart = requestTopic.lastIndexOf('/', idStart - 1);
+		String replyTopic = String.format("%s/%s/%s", REPLY_LEVEL, requestTopic.substring(clientStart + 1, idStart), requestTopic.substring(idStart + 1));
+
+		try {
+			byte[] reply = handler.onRequest(topic, message.getBytes());
+			if (reply == null || !isOpen()) {
+				return;
+			}
+			if (qos == 0) {
+				sendPublishAsync(replyTopic, encode(replyTopic, reply), qos, false, Collections.emptyMap(), null);
+				return;
+			}
+			// runs on the MQTT callback thread, which completes the publishes and so cannot wait for a slot
+			if (!inflightWindow.tryAcquire()) {
+				throw new ClearBladeException("inflight window is full");
+			}
+			CompletableFuture<Void> sent = new CompletableFuture<>();
+			sent.whenComplete((ignored, error) -> {
+				if (error != null) {
+					String errmsg = String.format("(MqttClient) could not reply to request on topic %s: %s", requestTopic, error.getMessage());
+					System.out.println(errmsg);
+				}
+			});
+			try {
+				sendPublishAsync(replyTopic, encode(replyTopic, reply), qos, false, Collections.emptyMap(), sent);
+			} catch (Exception e) {
+				inflightWindow.release();
+				throw e;
+			}
+		} catch (Exception e) {
+			String errmsg = String.format("(MqttClient) could not reply to request on topic %s: %s", requestTopic, e.getMessage());
+			System.out.println(errmsg);
+		}
+	}
+
+	/**
+	 * @return the given client identifier usable as a single topic level
+	 */
+	private static String topicLevel(String clientIdentifier) {
+		return clientIdentifier.replace('/', '_').replace('+', '_').replace('#', '_');
+	}
+
+	/**
+	 * Publishes a new subscriptions snapshot. Callers hold subscriptionsLock, except the constructor.
+	 */
+	private void setSubscriptions(SubscriptionTable table) {
+		this.subscriptions = table;
+		this.callbackByTopic = table.callbacks();
+		this.qosByTopic = table.qos();
+	}
+
+	/**
+	 * Hands the given message to the callback. {@link MessageViewCallback} instances receive a lazy view over the
+	 * payload, while plain MessageCallback instances keep receiving both the byte[] and the String versions.
+	 */
+	void deliver(MessageCallback callback, String topic, byte[] payload, int qos, boolean retained, Map<String, String> userProperties) {
+
+		if (callback instanceof MessageViewCallback) {
+			((MessageViewCallback) callback).done(new MessageView(topic, payload, qos, retained, userProperties));
+			return;
+		}
+
+		callback.done(topic, payload);
+		callback.done(topic, new String(payload));
+	}
 
 	/**
 	 * package-protected (default when nothing is specified) method that returns a new Paho MqttClient based on
@@ -376,16 +1254,21 @@ public class MqttClient implements MqttCallbackExtended {
 			throw new IllegalStateException("auth method not authenticated");
 		}
 
-		MqttConnectOptions options = new MqttConnectOptions();
-		options.setCleanSession(true);
-		options.setUserName(auth.getToken());
-		options.setPassword(systemKey.toCharArray());
-		options.setConnectionTimeout(5);
-		options.setAutomaticReconnect(autoReconnect);
+		MqttConnectOptions options = connectOptions();
 
 		try {
-			org.eclipse.paho.client.mqttv3.MqttClient result = new org.eclipse.paho.client.mqttv3.MqttClient(url, clientIdentifier, MQTT_CLIENT_PERSISTENCE);
+			PahoMqttClient result = new PahoMqttClient(url, clientIdentifier, this.options.createPersistence());
 			result.setCallback(this);
+
+			if (this.options.getOfflineBufferSize() > 0) {
+				DisconnectedBufferOptions bufferOptions = new DisconnectedBufferOptions();
+				bufferOptions.setBufferEnabled(true);
+				bufferOptions.setBufferSize(this.options.getOfflineBufferSize());
+				bufferOptions.setPersistBuffer(true);
+				bufferOptions.setDeleteOldestMessages(this.options.isDeleteOldestBufferedMessages());
+				result.getAsyncClient().setBufferOpts(bufferOptions);
+			}
+
 			result.connect(options);
 			return result;
 
@@ -394,5 +1277,200 @@ public class MqttClient implements MqttCallbackExtended {
 			throw new ClearBladeException(errmsg, e);
 		}
 	}
-}
 
+	/**
+	 * Decodes the payloads of a typed subscription, without going through the String conversion.
+	 */
+	static class TypedMessageAdapter<T> extends MessageViewCallback {
+
+		private final Codec<T> codec;
+		private final TypedMessageCallback<T> callback;
+
+		TypedMessageAdapter(Codec<T> codec, TypedMessageCallback<T> callback) {
+			this.codec = codec;
+			this.callback = callback;
+		}
+
+		@Override
+		public void done(MessageView message) {
+			T value;
+			try {
+				value = codec.decode(message.getBytes());
+			} catch (IOException | RuntimeException e) {
+				String errmsg = String.format("(MqttClient) deserialization error on topic %s: %s", message.getTopic(), e.getMessage());
+				callback.error(new ClearBladeException(errmsg, e));
+				return;
+			}
+			callback.done(message.getTopic(), value);
+		}
+
+		@Override
+		public void error(ClearBladeException exception) {
+			callback.error(exception);
+		}
+	}
+
+	/**
+	 * A request awaiting its reply.
+	 */
+	private static class PendingRequest {
+
+		final CompletableFuture<byte[]> future;
+		final long sentAt;
+		volatile TimerWheel.Timeout timeout;
+
+		PendingRequest(CompletableFuture<byte[]> future) {
+			this.future = future;
+			this.sentAt = System.nanoTime();
+		}
+
+		void cancelTimeout() {
+			TimerWheel.Timeout current = timeout;
+			if (current != null) {
+				current.cancel();
+			}
+		}
+	}
+
+	Auth auth() {
+		return auth;
+	}
+
+	MqttClientOptions options() {
+		return options;
+	}
+
+	/**
+	 * Renews the token through the given manager when the broker rejects it, so the MQTT clients of a ClearBladeClient
+	 * share a single authentication with each other and with its API calls.
+	 */
+	void setAuthManager(AuthManager authManager) {
+		this.authManager = authManager;
+	}
+
+	/**
+	 * @return the token to send with a new connection, remembered as the one to renew if the broker rejects it
+	 */
+	String connectToken() {
+		connectHeaders = auth.getRequestHeaders();
+		return auth.getToken();
+	}
+
+	/**
+	 * @return the Paho options for a new connection, using the current auth token
+	 */
+	MqttConnectOptions connectOptions() {
+		MqttConnectOptions options = new MqttConnectOptions();
+		options.setCleanSession(this.options.isCleanSession());
+		options.setUserName(connectToken());
+		options.setPassword(systemKey.toCharArray());
+		options.setConnectionTimeout(this.options.getConnectionTimeout());
+		// a reconnect policy replaces Paho's automatic reconnect, which would keep retrying with the first token
+		options.setAutomaticReconnect(autoReconnect && this.options.getReconnectPolicy() == null);
+		options.setMaxInflight(this.options.getMaxInflight());
+		return options;
+	}
+
+	/**
+	 * Schedules the given reconnect attempt after the delay chosen by the reconnect policy.
+	 * @param attempt number of the attempt, starting at 0
+	 * @param authRejected whenever the previous attempt failed because the token was rejected
+	 */
+	private void scheduleReconnect(int attempt, boolean authRejected) {
+
+		ReconnectPolicy policy = options.getReconnectPolicy();
+		if (policy.getMaxAttempts() > 0 && attempt >= policy.getMaxAttempts()) {
+			String errmsg = String.format("(MqttClient) giving up reconnecting after %d attempts", attempt);
+			System.out.println(errmsg);
+			return;
+		}
+
+		reconnectTask = RECONNECTS.schedule(() -> RECONNECT_THREADS.execute(() -> reconnect(attempt, authRejected)),
+				policy.getDelay(attempt), TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Makes a reconnect attempt, refreshing the auth token first when needed, and schedules the next attempt if it
+	 * fails.
+	 */
+	void reconnect(int attempt, boolean authRejected) {
+
+		if (!isOpen() || isConnected()) {
+			// disconnected on purpose, or already reconnected
+			return;
+		}
+
+		try {
+			if (authRejected || !auth.isAuthed()) {
+				renewAuth();
+			} else if (attempt == 0 && options.getReconnectPolicy().isRefreshAuth()) {
+				try {
+					auth.doCheck();
+				} catch (AuthException e) {
+					renewAuth();
+				}
+			}
+
+			synchronized (transportLock) {
+				if (!isOpen() || isConnected()) {
+					// disconnected while authenticating
+					return;
+				}
+				reconnectInProgress = true;
+				reconnectTransport();
+			}
+
+		} catch (AuthException e) {
+			reconnectInProgress = false;
+			String errmsg = String.format("(MqttClient) reconnect attempt %d, authentication error: %s", attempt + 1, e.getMessage());
+			System.out.println(errmsg);
+			scheduleReconnect(attempt + 1, true);
+
+		} catch (MqttException e) {
+			reconnectInProgress = false;
+			String errmsg = String.format("(MqttClient) reconnect attempt %d error: %s", attempt + 1, e.getMessage());
+			System.out.println(errmsg);
+			boolean rejected = e.getReasonCode() == MqttException.REASON_CODE_FAILED_AUTHENTICATION
+					|| e.getReasonCode() == MqttException.REASON_CODE_NOT_AUTHORIZED;
+			scheduleReconnect(attempt + 1, rejected);
+		}
+	}
+
+	/**
+	 * Renews the token rejected by the broker, once for all the clients sharing the auth manager.
+	 */
+	private void renewAuth() throws AuthException {
+		AuthManager manager = authManager;
+		if (manager == null) {
+			auth.doAuth();
+		} else if (!manager.reauthenticate(connectHeaders != null ? connectHeaders : auth.getRequestHeaders())) {
+			throw new AuthException("token renewal failed");
+		}
+	}
+
+	private void cancelReconnect() {
+		ScheduledFuture<?> task = reconnectTask;
+		if (task != null) {
+			task.cancel(false);
+			reconnectTask = null;
+		}
+	}
+
+	/**
+	 * Releases the inflight slot of an asynchronous publish and completes its future.
+	 */
+	private class PublishListener implements IMqttActionListener {
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void onSuccess(IMqttToken token) {
+			completePublish((CompletableFuture<Void>) token.getUserContext(), null);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void onFailure(IMqttToken token, Throwable cause) {
+			completePublish((CompletableFuture<Void>) token.getUserContext(), cause);
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package com.clearblade.java.api;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import com.clearblade.java.api.codec.PayloadCodec;
+import com.clearblade.java.api.codec.PayloadCodecs;
+import com.clearblade.java.api.persistence.MappedJournalPersistence;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
+
+/**
+ * MqttClientOptions is used for customizing a {@link MqttClient} connection. The following values are used by default:
+ *
+ *   maxInflight - 10 (maximum number of unacknowledged QoS 1 / 2 publishes)
+ *   cleanSession - true
+ *   persistence - [EMPTY] (in-memory, messages are lost when the process exits)
+ *   offlineBufferSize - 0 (publishing while disconnected fails)
+ *   deleteOldestBufferedMessages - false (publishing fails once the offline buffer is full)
+ *   payloadCodecs - [EMPTY] (payloads are sent as given)
+ *   connectionTimeout - 5 (seconds)
+ *   reconnectPolicy - [EMPTY] (Paho's automatic reconnect, retrying with the same token)
+ *   sessionExpiryInterval - [EMPTY] (MQTT 5 only, the session ends with the connection)
+ *   receiveMaximum - [EMPTY] (MQTT 5 only, 65535)
+ *   topicAliasMaximum - 0 (MQTT 5 only, the broker does not alias the topics it sends)
+ *
+ * In order for QoS 1 / 2 messages to survive reconnects and process restarts, use a disk-backed persistence together
+ * with {@link #setCleanSession(boolean)} set to false (a clean session discards the persisted state on every connect).
+ */
+public class MqttClientOptions {
+
+    private int _maxInflight;
+    private boolean _cleanSession;
+    private Supplier<MqttClientPersistence> _persistence;
+    private int _offlineBufferSize;
+    private boolean _deleteOldestBufferedMessages;
+    private Map<String, PayloadCodec> _payloadCodecs;
+    private int _connectionTimeout;
+    private ReconnectPolicy _reconnectPolicy;
+    private Long _sessionExpiryInterval;
+    private Integer _receiveMaximum;
+    private int _topicAliasMaximum;
+
+    public MqttClientOptions() {
+        this._maxInflight = 10;
+        this._cleanSession = true;
+        this._persistence = null;
+        this._offlineBufferSize = 0;
+        this._deleteOldestBufferedMessages = false;
+        this._payloadCodecs = new LinkedHashMap<>();
+        this._connectionTimeout = 5;
+        this._reconnectPolicy = null;
+        this._sessionExpiryInterval = null;
+        this._receiveMaximum = null;
+        this._topicAliasMaximum = 0;
+    }
+
+    public MqttClientOptions(MqttClientOptions other) {
+        this._maxInflight = other._maxInflight;
+        this._cleanSession = other._cleanSession;
+        this._persistence = other._persistence;
+        this._offlineBufferSize = other._offlineBufferSize;
+        this._deleteOldestBufferedMessages = other._deleteOldestBufferedMessages;
+        this._payloadCodecs = new LinkedHashMap<>(other._payloadCodecs);
+        this._connectionTimeout = other._connectionTimeout;
+        this._reconnectPolicy = other._reconnectPolicy == null ? null : new ReconnectPolicy(other._reconnectPolicy);
+        this._sessionExpiryInterval = other._sessionExpiryInterval;
+        this._receiveMaximum = other._receiveMaximum;
+        this._topicAliasMaximum = other._topicAliasMaximum;
+    }
+
+    // Getters
+
+    public int getMaxInflight() {
+        return this._maxInflight;
+    }
+
+    public boolean isCleanSession() {
+        return this._cleanSession;
+    }
+
+    /**
+     * @return the persistence to use for a new connection, or null for in-memory persistence
+     */
+    public MqttClientPersistence createPersistence() {
+        return this._persistence == null ? null : this._persistence.get();
+    }
+
+    public int getOfflineBufferSize() {
+        return this._offlineBufferSize;
+    }
+
+    public boolean isDeleteOldestBufferedMessages() {
+        return this._deleteOldestBufferedMessages;
+    }
+
+    /**
+     * @return the codec of the first topic filter matching the given topic, or null if payloads on this topic are
+     * sent as given
+     */
+    public PayloadCodec getPayloadCodec(String topic) {
+        if (this._payloadCodecs.isEmpty()) {
+            return null;
+        }
+        for (Map.Entry<String, PayloadCodec> entry : this._payloadCodecs.entrySet()) {
+            if (SharedSubscription.matches(entry.getKey(), topic)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    public Map<String, PayloadCodec> getPayloadCodecs() {
+        return Collections.unmodifiableMap(this._payloadCodecs);
+    }
+
+    public int getConnectionTimeout() {
+        return this._connectionTimeout;
+    }
+
+    public ReconnectPolicy getReconnectPolicy() {
+        return this._reconnectPolicy;
+    }
+
+    public Long getSessionExpiryInterval() {
+        return this._sessionExpiryInterval;
+    }
+
+    public Integer getReceiveMaximum() {
+        return this._receiveMaximum;
+    }
+
+    public int getTopicAliasMaximum() {
+        return this._topicAliasMaximum;
+    }
+
+    // Setters
+
+    /**
+     * Sets the size of the inflight window: how many publishes may be awaiting acknowledgement at the same time.
+     * Synchronous and asynchronous QoS 1 / 2 publishes, as well as request replies, all count against it;
+     * {@link MqttClient#publish} and {@link MqttClient#publishAsync} block the caller once the window is full, while a
+     * reply that finds it full is dropped. Asynchronous QoS 0 publishes hold a slot until sent.
+     */
+    public MqttClientOptions setMaxInflight(int maxInflight) {
+        if (maxInflight <= 0) {
+            throw new IllegalArgumentException("maxInflight must be greater than zero");
+        }
+        this._maxInflight = maxInflight;
+        return this;
+    }
+
+    public MqttClientOptions setCleanSession(boolean cleanSession) {
+        this._cleanSession = cleanSession;
+        return this;
+    }
+
+    /**
+     * Sets the persistence used to store inflight and offline-buffered messages. A persistence instance must not be
+     * shared between clients; use {@link #setPersistenceFactory(Supplier)} when these options are used for several
+     * connections (see {@link ShardedMqttClient}).
+     */
+    public MqttClientOptions setPersistence(MqttClientPersistence persistence) {
+        this._persistence = persistence == null ? null : () -> persistence;
+        return this;
+    }
+
+    /**
+     * Sets a factory creating the persistence of each connection made with these options.
+     */
+    public MqttClientOptions setPersistenceFactory(Supplier<MqttClientPersistence> factory) {
+        this._persistence = factory;
+        return this;
+    }
+
+    /**
+     * Stores inflight and offline-buffered messages as files under the given directory.
+     */
+    public MqttClientOptions setPersistenceDirectory(String directory) {
+        this._persistence = () -> new MqttDefaultFilePersistence(directory);
+        return this;
+    }
+
+    /**
+     * Stores inflight and offline-buffered messages in a memory-mapped, append-only journal under the given directory.
+     * Persisting a message then costs a sequential append instead of a file creation.
+     * @see MappedJournalPersistence
+     */
+    public MqttClientOptions setJournalPersistenceDirectory(String directory) {
+        this._persistence = () -> new MappedJournalPersistence(directory);
+        return this;
+    }
+
+    /**
+     * Enables buffering of messages published while the connection is down. Buffered messages are written to the
+     * persistence (so they spill to disk with a disk-backed persistence) and are replayed as soon as the client
+     * reconnects. Publishing while disconnected never blocks when the buffer is enabled.
+     * @param size maximum number of buffered messages, 0 to disable buffering
+     */
+    public MqttClientOptions setOfflineBufferSize(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("offlineBufferSize must not be negative");
+        }
+        this._offlineBufferSize = size;
+        return this;
+    }
+
+    /**
+     * Uses the given codec for the payloads of the topics matching the given filter: payloads are encoded before being
+     * published, and decoded before being handed to the message callbacks. Every client publishing or subscribing to
+     * these topics must use the same codec for them. Filters are tried in the order they were added.
+     * @param topicFilter topic filter, which may contain the "+" and "#" wildcards
+     * @param codec codec to use, or null to send the payloads of these topics as given
+     */
+    public MqttClientOptions setPayloadCodec(String topicFilter, PayloadCodec codec) {
+        if (codec == null) {
+            this._payloadCodecs.remove(topicFilter);
+        } else {
+            this._payloadCodecs.put(topicFilter, codec);
+        }
+        return this;
+    }
+
+    /**
+     * Similar to {@link #setPayloadCodec(String, PayloadCodec)}, using a codec registered in {@link PayloadCodecs},
+     * such as "deflate" or "gzip".
+     */
+    public MqttClientOptions setPayloadCodec(String topicFilter, String codecName) {
+        return setPayloadCodec(topicFilter, PayloadCodecs.forName(codecName));
+    }
+
+    /**
+     * Sets how long to wait for each connection attempt, in seconds.
+     */
+    public MqttClientOptions setConnectionTimeout(int seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("connectionTimeout must be greater than zero");
+        }
+        this._connectionTimeout = seconds;
+        return this;
+    }
+
+    /**
+     * Replaces Paho's automatic reconnect (fixed delays, token captured at the first connect) with the given policy:
+     * jittered exponential backoff, and a token refreshed before reconnecting. Only used when the client is created
+     * with autoReconnect.
+     */
+    public MqttClientOptions setReconnectPolicy(ReconnectPolicy reconnectPolicy) {
+        this._reconnectPolicy = reconnectPolicy;
+        return this;
+    }
+
+    /**
+     * Sets how long the broker keeps the session (subscriptions and queued QoS 1 / 2 messages) after the connection
+     * is closed, in seconds. Replaces the clean session flag with {@link Mqtt5Client}: the session is resumed on
+     * reconnect as long as it did not expire. MQTT 5 only.
+     * @param seconds session lifetime, 0 to end it with the connection, or 4294967295 to never expire it
+     */
+    public MqttClientOptions setSessionExpiryInterval(Long seconds) {
+        if (seconds != null && (seconds < 0 || seconds > 0xFFFFFFFFL)) {
+            throw new IllegalArgumentException("sessionExpiryInterval must be between 0 and 4294967295");
+        }
+        this._sessionExpiryInterval = seconds;
+        return this;
+    }
+
+    /**
+     * Sets how many QoS 1 / 2 messages the broker may send before they are acknowledged, so a slow consumer is not
+     * flooded. MQTT 5 only.
+     */
+    public MqttClientOptions setReceiveMaximum(Integer receiveMaximum) {
+        if (receiveMaximum != null && (receiveMaximum <= 0 || receiveMaximum > 65535)) {
+            throw new IllegalArgumentException("receiveMaximum must be between 1 and 65535");
+        }
+        this._receiveMaximum = receiveMaximum;
+        return this;
+    }
+
+    /**
+     * Sets how many topic aliases the broker may use for the messages it sends: a topic sent once is then replaced
+     * by a two-byte alias, which saves bandwidth with long topic names. Topics published by the client are aliased
+     * automatically, up to the maximum advertised by the broker. MQTT 5 only.
+     * @param topicAliasMaximum number of aliases, 0 to disable inbound aliasing
+     */
+    public MqttClientOptions setTopicAliasMaximum(int topicAliasMaximum) {
+        if (topicAliasMaximum < 0 || topicAliasMaximum > 65535) {
+            throw new IllegalArgumentException("topicAliasMaximum must be between 0 and 65535");
+        }
+        this._topicAliasMaximum = topicAliasMaximum;
+        return this;
+    }
+
+    /**
+     * Whenever the oldest buffered message is dropped when the offline buffer is full, instead of failing the publish.
+     */
+    public MqttClientOptions setDeleteOldestBufferedMessages(boolean deleteOldest) {
+        this._deleteOldestBufferedMessages = deleteOldest;
+        return this;
+    }
+}
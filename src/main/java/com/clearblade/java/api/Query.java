@@ -7,6 +7,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+import com.clearblade.java.api.auth.AuthContext;
 import com.clearblade.java.api.internal.PlatformResponse;
 import com.clearblade.java.api.internal.RequestEngine;
 import com.clearblade.java.api.internal.RequestProperties;
@@ -57,6 +58,8 @@ public class Query {
 	private int pageNum = -1;
 	
 	private RequestEngine request;	// used to make API requests
+	ClearBladeClient client;		// client making the API calls, null for the default client
+	AuthContext authContext;	// credentials of the API calls, null for the Auth of the client
 
 	/**
 	 * Constructs a new Query object for modifying a collection
@@ -377,7 +380,7 @@ public class Query {
 	protected void fetchSetup(){
 		String queryParam = getFetchURLParameter();
 		RequestProperties headers;
-		headers = new RequestProperties.Builder().method("GET").endPoint(getEndPoint()+ queryParam).build();
+		headers = new RequestProperties.Builder(client).authContext(authContext).method("GET").endPoint(getEndPoint()+ queryParam).build();
 		//System.out.println(headers.getUri());
 		request.setHeaders(headers);
 	}
@@ -620,7 +623,7 @@ public class Query {
 		payload.add("query", toObject);
 		String endPoint = "";
 		
-		RequestProperties headers = new RequestProperties.Builder().method("PUT").endPoint(getEndPoint()).body(payload).build();
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("PUT").endPoint(getEndPoint()).body(payload).build();
 		request.setHeaders(headers);
 	}
 	
@@ -671,7 +674,7 @@ public class Query {
 		String queryParam = getURLParameter();
 		String endPoint = "";
 		
-		RequestProperties headers = new RequestProperties.Builder().method("DELETE").endPoint(getEndPoint()+ queryParam).build();
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("DELETE").endPoint(getEndPoint()+ queryParam).build();
 		request.setHeaders(headers);
 		
 //		DataTask asyncFetch = new DataTask(new PlatformCallback(this, callback){
@@ -704,7 +707,7 @@ public class Query {
 	private String getEndPoint(){
 		String endPoint = "";
 		if(byName){
-			endPoint = "api/v/1/collection/"+Util.getSystemKey() +"/" +collectionId;
+			endPoint = "api/v/1/collection/"+Util.getSystemKey(client) +"/" +collectionId;
 		}else{
 			endPoint = "api/v/1/data/" +collectionId;
 		}
@@ -725,7 +728,7 @@ public class Query {
 	private void removeSetup(){
 		String queryParam = getURLParameter();
 		
-		RequestProperties headers = new RequestProperties.Builder().method("DELETE").endPoint(getEndPoint()+ queryParam).build();
+		RequestProperties headers = new RequestProperties.Builder(client).authContext(authContext).method("DELETE").endPoint(getEndPoint()+ queryParam).build();
 		request.setHeaders(headers);
 	}
 
@@ -772,12 +775,17 @@ public class Query {
 
 	/**
 	 * Similar to {@link #parseItemArrayWith(String, String, boolean)} but gets the collection ID and by name
-     * properties from the current instance.
+     * properties from the current instance, and binds the items to its client and auth context.
 	 * @param rawJson raw Json string to parse
 	 * @return Item array
 	 */
 	private Item[] parseItemArray(String rawJson) {
-		return parseItemArrayWith(rawJson, getCollectionId(), byName);
+		Item[] items = parseItemArrayWith(rawJson, getCollectionId(), byName);
+		for (Item item : items) {
+			item.client = client;
+			item.authContext = authContext;
+		}
+		return items;
 	}
 
 	/**
@@ -811,4 +819,15 @@ public class Query {
 		return result.toArray(ret);
 	}
 
+	/**
+	 * Sets the credentials used by the API calls of this query, in place of the Auth of its client.
+	 * @param authContext the credentials to use, null to use the Auth of the client
+	 */
+	public void setAuthContext(AuthContext authContext) {
+		this.authContext = authContext;
+	}
+
+	public AuthContext getAuthContext() {
+		return authContext;
+	}
 }
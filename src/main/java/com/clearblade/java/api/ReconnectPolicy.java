@@ -0,0 +1,128 @@
+package com.clearblade.java.api;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * ReconnectPolicy controls how a {@link MqttClient} reconnects after losing its connection, see
+ * {@link MqttClientOptions#setReconnectPolicy(ReconnectPolicy)}. The following values are used by default:
+ *
+ *   initialDelay - 1000 ms
+ *   maxDelay - 60000 ms
+ *   multiplier - 2.0
+ *   maxAttempts - 0 (retries forever)
+ *   refreshAuth - true
+ *
+ * The delay before each attempt is drawn at random between zero and an exponentially growing cap ("full jitter"),
+ * so a fleet of clients disconnected at the same instant spreads its reconnections over time instead of hitting the
+ * broker all together.
+ */
+public class ReconnectPolicy {
+
+    private long _initialDelay;
+    private long _maxDelay;
+    private double _multiplier;
+    private int _maxAttempts;
+    private boolean _refreshAuth;
+
+    public ReconnectPolicy() {
+        this._initialDelay = 1000;
+        this._maxDelay = 60000;
+        this._multiplier = 2.0;
+        this._maxAttempts = 0;
+        this._refreshAuth = true;
+    }
+
+    public ReconnectPolicy(ReconnectPolicy other) {
+        this._initialDelay = other._initialDelay;
+        this._maxDelay = other._maxDelay;
+        this._multiplier = other._multiplier;
+        this._maxAttempts = other._maxAttempts;
+        this._refreshAuth = other._refreshAuth;
+    }
+
+    // Getters
+
+    public long getInitialDelay() {
+        return this._initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return this._maxDelay;
+    }
+
+    public double getMultiplier() {
+        return this._multiplier;
+    }
+
+    public int getMaxAttempts() {
+        return this._maxAttempts;
+    }
+
+    public boolean isRefreshAuth() {
+        return this._refreshAuth;
+    }
+
+    /**
+     * @param attempt number of the attempt, starting at 0
+     * @return delay to wait before the given attempt, in milliseconds
+     */
+    public long getDelay(int attempt) {
+        double cap = Math.min(this._maxDelay, this._initialDelay * Math.pow(this._multiplier, attempt));
+        return (long) (ThreadLocalRandom.current().nextDouble() * cap);
+    }
+
+    // Setters
+
+    /**
+     * Sets the cap of the delay before the first attempt, in milliseconds.
+     */
+    public ReconnectPolicy setInitialDelay(long initialDelay) {
+        if (initialDelay < 0) {
+            throw new IllegalArgumentException("initialDelay must not be negative");
+        }
+        this._initialDelay = initialDelay;
+        return this;
+    }
+
+    /**
+     * Sets the maximum delay between two attempts, in milliseconds.
+     */
+    public ReconnectPolicy setMaxDelay(long maxDelay) {
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("maxDelay must not be negative");
+        }
+        this._maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * Sets the factor the delay cap grows by after each failed attempt.
+     */
+    public ReconnectPolicy setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be at least 1");
+        }
+        this._multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Sets the number of attempts after which the client gives up and stays disconnected, 0 to retry forever.
+     */
+    public ReconnectPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 0) {
+            throw new IllegalArgumentException("maxAttempts must not be negative");
+        }
+        this._maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Whenever the auth token is checked (and, if it expired, renewed with {@link com.clearblade.java.api.auth.Auth#doAuth()})
+     * before reconnecting. The token is always renewed after the broker rejected it.
+     */
+    public ReconnectPolicy setRefreshAuth(boolean refreshAuth) {
+        this._refreshAuth = refreshAuth;
+        return this;
+    }
+}
@@ -0,0 +1,97 @@
+package com.clearblade.java.api;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Metrics of the requests made with {@link MqttClient#request(String, byte[], long)} on a single client. Counters are
+ * updated without locking.
+ */
+public class RequestMetrics {
+
+	private final LongAdder sent;
+	private final LongAdder completed;
+	private final LongAdder timedOut;
+	private final LongAdder failed;
+	private final LongAdder latencyNanos;
+	private final LongAdder lateReplies;
+	private final IntSupplier inFlight;
+
+	RequestMetrics(IntSupplier inFlight) {
+		this.sent = new LongAdder();
+		this.completed = new LongAdder();
+		this.timedOut = new LongAdder();
+		this.failed = new LongAdder();
+		this.latencyNanos = new LongAdder();
+		this.lateReplies = new LongAdder();
+		this.inFlight = inFlight;
+	}
+
+	void recordSent() {
+		sent.increment();
+	}
+
+	void recordCompleted(long nanos) {
+		completed.increment();
+		latencyNanos.add(nanos);
+	}
+
+	void recordTimedOut() {
+		timedOut.increment();
+	}
+
+	void recordFailed() {
+		failed.increment();
+	}
+
+	void recordLateReply() {
+		lateReplies.increment();
+	}
+
+	/**
+	 * @return number of requests currently awaiting their reply
+	 */
+	public int getInFlightCount() {
+		return inFlight.getAsInt();
+	}
+
+	public long getSentCount() {
+		return sent.sum();
+	}
+
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+
+	public long getTimedOutCount() {
+		return timedOut.sum();
+	}
+
+	/**
+	 * @return number of requests that could not be published, or were abandoned on disconnect
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return number of replies received after their request timed out (or for unknown requests)
+	 */
+	public long getLateReplyCount() {
+		return lateReplies.sum();
+	}
+
+	/**
+	 * @return average time between sending a request and receiving its reply, in milliseconds
+	 */
+	public double getAverageLatencyMillis() {
+		long count = completed.sum();
+		return count == 0 ? 0 : latencyNanos.sum() / 1e6 / count;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RequestMetrics{inFlight=%d, sent=%d, completed=%d, timedOut=%d, failed=%d, avgLatencyMs=%.2f}",
+				getInFlightCount(), getSentCount(), getCompletedCount(), getTimedOutCount(), getFailedCount(), getAverageLatencyMillis());
+	}
+}
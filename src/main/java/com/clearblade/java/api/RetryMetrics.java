@@ -0,0 +1,91 @@
+package com.clearblade.java.api;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of the retries of the API calls of a single client, see {@link ClearBladeClient#getRetryMetrics()}. Counters
+ * are updated without locking, by the request engine of the client.
+ */
+public class RetryMetrics {
+
+	private final LongAdder calls;
+	private final LongAdder retries;
+	private final LongAdder recovered;
+	private final LongAdder failed;
+	private final LongAdder budgetRejections;
+	private final LongAdder attemptTimeouts;
+
+	RetryMetrics() {
+		this.calls = new LongAdder();
+		this.retries = new LongAdder();
+		this.recovered = new LongAdder();
+		this.failed = new LongAdder();
+		this.budgetRejections = new LongAdder();
+		this.attemptTimeouts = new LongAdder();
+	}
+
+	/**
+	 * Records a call after its last attempt.
+	 * @param attempts number of attempts made
+	 * @param error whenever the last attempt failed
+	 */
+	public void recordCall(int attempts, boolean error) {
+		calls.increment();
+		retries.add(attempts - 1);
+		if (error) {
+			failed.increment();
+		} else if (attempts > 1) {
+			recovered.increment();
+		}
+	}
+
+	public void recordBudgetRejection() {
+		budgetRejections.increment();
+	}
+
+	public void recordAttemptTimeout() {
+		attemptTimeouts.increment();
+	}
+
+	public long getCallCount() {
+		return calls.sum();
+	}
+
+	public long getRetryCount() {
+		return retries.sum();
+	}
+
+	/**
+	 * @return number of calls that failed at first and succeeded after a retry
+	 */
+	public long getRecoveredCount() {
+		return recovered.sum();
+	}
+
+	/**
+	 * @return number of calls whose last attempt failed
+	 */
+	public long getFailedCount() {
+		return failed.sum();
+	}
+
+	/**
+	 * @return number of retries not made because the retry budget was spent
+	 */
+	public long getBudgetRejectionCount() {
+		return budgetRejections.sum();
+	}
+
+	/**
+	 * @return number of attempts abandoned after the attempt timeout
+	 */
+	public long getAttemptTimeoutCount() {
+		return attemptTimeouts.sum();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RetryMetrics{calls=%d, retries=%d, recovered=%d, failed=%d, budgetRejections=%d, attemptTimeouts=%d}",
+				getCallCount(), getRetryCount(), getRecoveredCount(), getFailedCount(), getBudgetRejectionCount(), getAttemptTimeoutCount());
+	}
+}
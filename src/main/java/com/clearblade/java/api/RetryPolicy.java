@@ -0,0 +1,244 @@
+package com.clearblade.java.api;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * RetryPolicy controls how the API calls of a client are retried after a transient failure, see
+ * {@link InitOptions#setRetryPolicy(RetryPolicy)}. The following values are used by default:
+ *
+ *   maxAttempts - 3 (including the first one, 1 disables the retries)
+ *   initialDelay - 100 ms
+ *   maxDelay - 2000 ms
+ *   multiplier - 2.0
+ *   attemptTimeout - 0 (attempts wait for their response as long as the server takes)
+ *   retryNonIdempotent - false (only GET, PUT, DELETE, HEAD and OPTIONS calls are retried)
+ *   retryableStatusCodes - 429, 502, 503, 504
+ *   budgetRatio - 0.1 (retries per successful first attempt)
+ *   budgetMaxRetries - 10
+ *
+ * A call is retried when its connection fails or is reset, when an attempt times out, or when the platform answers
+ * with one of the retryable status codes. The delay before each retry is drawn at random between zero and an
+ * exponentially growing cap ("full jitter"), and is at least the Retry-After delay sent by the platform, up to the max
+ * delay.
+ *
+ * The retries of a client are bounded by a budget: each call that succeeds at its first attempt earns budgetRatio
+ * retries, up to budgetMaxRetries saved, and each retry spends one. When the platform is down, the calls fail after
+ * their first attempt once the budget is spent, instead of multiplying the load by maxAttempts.
+ */
+public class RetryPolicy {
+
+    private int _maxAttempts;
+    private long _initialDelay;
+    private long _maxDelay;
+    private double _multiplier;
+    private int _attemptTimeout;
+    private boolean _retryNonIdempotent;
+    private int[] _retryableStatusCodes;
+    private double _budgetRatio;
+    private int _budgetMaxRetries;
+
+    public RetryPolicy() {
+        this._maxAttempts = 3;
+        this._initialDelay = 100;
+        this._maxDelay = 2000;
+        this._multiplier = 2.0;
+        this._attemptTimeout = 0;
+        this._retryNonIdempotent = false;
+        this._retryableStatusCodes = new int[] { 429, 502, 503, 504 };
+        this._budgetRatio = 0.1;
+        this._budgetMaxRetries = 10;
+    }
+
+    public RetryPolicy(RetryPolicy other) {
+        this._maxAttempts = other._maxAttempts;
+        this._initialDelay = other._initialDelay;
+        this._maxDelay = other._maxDelay;
+        this._multiplier = other._multiplier;
+        this._attemptTimeout = other._attemptTimeout;
+        this._retryNonIdempotent = other._retryNonIdempotent;
+        this._retryableStatusCodes = other._retryableStatusCodes.clone();
+        this._budgetRatio = other._budgetRatio;
+        this._budgetMaxRetries = other._budgetMaxRetries;
+    }
+
+    /**
+     * @return a policy sending each call once
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy().setMaxAttempts(1);
+    }
+
+    // Getters
+
+    public int getMaxAttempts() {
+        return this._maxAttempts;
+    }
+
+    public long getInitialDelay() {
+        return this._initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return this._maxDelay;
+    }
+
+    public double getMultiplier() {
+        return this._multiplier;
+    }
+
+    public int getAttemptTimeout() {
+        return this._attemptTimeout;
+    }
+
+    public boolean isRetryNonIdempotent() {
+        return this._retryNonIdempotent;
+    }
+
+    public int[] getRetryableStatusCodes() {
+        return this._retryableStatusCodes.clone();
+    }
+
+    public double getBudgetRatio() {
+        return this._budgetRatio;
+    }
+
+    public int getBudgetMaxRetries() {
+        return this._budgetMaxRetries;
+    }
+
+    /**
+     * @return whenever calls with the given HTTP method may be retried
+     */
+    public boolean isRetryableMethod(String method) {
+        return this._retryNonIdempotent || isIdempotent(method);
+    }
+
+    /**
+     * @return whenever a call with the given HTTP method can be sent twice without changing its result
+     */
+    public static boolean isIdempotent(String method) {
+        return method.equalsIgnoreCase("GET") || method.equalsIgnoreCase("PUT") || method.equalsIgnoreCase("DELETE")
+                || method.equalsIgnoreCase("HEAD") || method.equalsIgnoreCase("OPTIONS");
+    }
+
+    /**
+     * @return whenever a response with the given status code may be retried
+     */
+    public boolean isRetryableStatus(int statusCode) {
+        for (int code : this._retryableStatusCodes) {
+            if (code == statusCode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param retry number of the retry, starting at 1
+     * @param retryAfter delay requested by the platform in milliseconds, 0 if none
+     * @return delay to wait before the given retry, in milliseconds
+     */
+    public long getDelay(int retry, long retryAfter) {
+        double cap = Math.min(this._maxDelay, this._initialDelay * Math.pow(this._multiplier, retry - 1));
+        long delay = (long) (ThreadLocalRandom.current().nextDouble() * cap);
+        return Math.max(delay, Math.min(retryAfter, this._maxDelay));
+    }
+
+    // Setters
+
+    /**
+     * Sets how many times a call is sent at most, including the first attempt.
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be greater than zero");
+        }
+        this._maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Sets the cap of the delay before the first retry, in milliseconds.
+     */
+    public RetryPolicy setInitialDelay(long initialDelay) {
+        if (initialDelay < 0) {
+            throw new IllegalArgumentException("initialDelay must not be negative");
+        }
+        this._initialDelay = initialDelay;
+        return this;
+    }
+
+    /**
+     * Sets the maximum delay between two attempts, in milliseconds.
+     */
+    public RetryPolicy setMaxDelay(long maxDelay) {
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("maxDelay must not be negative");
+        }
+        this._maxDelay = maxDelay;
+        return this;
+    }
+
+    /**
+     * Sets the factor the delay cap grows by after each retry.
+     */
+    public RetryPolicy setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be at least 1");
+        }
+        this._multiplier = multiplier;
+        return this;
+    }
+
+    /**
+     * Sets how long each attempt waits for its response, in milliseconds, before it is abandoned and retried. Zero
+     * waits as long as the server takes.
+     */
+    public RetryPolicy setAttemptTimeout(int attemptTimeout) {
+        if (attemptTimeout < 0) {
+            throw new IllegalArgumentException("attemptTimeout must not be negative");
+        }
+        this._attemptTimeout = attemptTimeout;
+        return this;
+    }
+
+    /**
+     * Whenever POST calls are retried too. Only enable it when the calls of the application can safely be applied
+     * twice, as a call whose response was lost may have been executed by the platform.
+     */
+    public RetryPolicy setRetryNonIdempotent(boolean retryNonIdempotent) {
+        this._retryNonIdempotent = retryNonIdempotent;
+        return this;
+    }
+
+    /**
+     * Sets the status codes of the responses that are retried.
+     */
+    public RetryPolicy setRetryableStatusCodes(int... retryableStatusCodes) {
+        this._retryableStatusCodes = Arrays.copyOf(retryableStatusCodes, retryableStatusCodes.length);
+        return this;
+    }
+
+    /**
+     * Sets how many retries each call succeeding at its first attempt adds to the budget.
+     */
+    public RetryPolicy setBudgetRatio(double budgetRatio) {
+        if (budgetRatio < 0) {
+            throw new IllegalArgumentException("budgetRatio must not be negative");
+        }
+        this._budgetRatio = budgetRatio;
+        return this;
+    }
+
+    /**
+     * Sets how many retries the budget holds at most, and when the client starts.
+     */
+    public RetryPolicy setBudgetMaxRetries(int budgetMaxRetries) {
+        if (budgetMaxRetries < 0) {
+            throw new IllegalArgumentException("budgetMaxRetries must not be negative");
+        }
+        this._budgetMaxRetries = budgetMaxRetries;
+        return this;
+    }
+}
@@ -0,0 +1,401 @@
+package com.clearblade.java.api;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.clearblade.java.api.auth.Auth;
+import com.clearblade.java.api.codec.Codec;
+
+
+/**
+ * MQTT client spreading its traffic over several connections (shards) to the ClearBlade platform, so a single process
+ * is not capped by one connection and its network thread. Exposes the same subscribe / publish API as
+ * {@link MqttClient}.
+ *
+ * Each shard is a regular MqttClient whose identifier is derived from the given one ("identifier-0",
+ * "identifier-1", ...). Publishes are routed by topic hash, so messages on the same topic keep their order.
+ * Subscriptions are routed by topic filter hash, and the shard owning each filter is recorded in a routing table
+ * shared by all shards.
+ *
+ * When persistence is needed, configure it with {@link MqttClientOptions#setPersistenceDirectory(String)},
+ * {@link MqttClientOptions#setJournalPersistenceDirectory(String)} or
+ * {@link MqttClientOptions#setPersistenceFactory(java.util.function.Supplier)}, so each shard gets its own store.
+ */
+public class ShardedMqttClient {
+
+	/**
+	 * Identifier the shard identifiers are derived from.
+	 */
+	public final String clientIdentifier;
+
+	/**
+	 * The connections, indexed by shard number.
+	 */
+	private final MqttClient[] shards;
+
+	/**
+	 * Routing table: shard owning each subscribed topic filter.
+	 */
+	private final Map<String, Integer> shardByTopic;
+
+	/**
+	 * Creates a new ShardedMqttClient using the given identifier and number of connections. URL and auth method will
+	 * be obtained from the global ClearBlade singleton.
+	 */
+	public ShardedMqttClient(String clientIdentifier, int shardCount) throws ClearBladeException {
+		this(clientIdentifier, MqttClient.QUALITY_OF_SERVICE, shardCount, new MqttClientOptions());
+	}
+
+	/**
+	 * Creates a new ShardedMqttClient using the given identifier, quality of service, number of connections and
+	 * options. URL and auth method will be obtained from the global ClearBlade singleton.
+	 */
+	public ShardedMqttClient(String clientIdentifier, int qualityOfService, int shardCount, MqttClientOptions options) throws ClearBladeException {
+		this(ClearBlade.getMessagingUrl(), ClearBlade.getAuth(), Util.getSystemKey(), clientIdentifier, qualityOfService, MqttClient.AUTO_RECONNECT, shardCount, options);
+	}
+
+	/**
+	 * Creates a new ShardedMqttClient using the given information.
+	 * @param url the messaging url to connect to
+	 * @param auth the authentication method to use
+	 * @param clientIdentifier the identifier shard identifiers are derived from
+	 * @param qualityOfService the default quality of service to use
+	 * @param autoReconnect whenever the shards should automatically connect / reconnect.
+	 * @param shardCount number of connections to open
+	 * @param options connection options used by every shard
+	 */
+	public ShardedMqttClient(String url, Auth auth, String systemKey, String clientIdentifier, int qualityOfService, boolean autoReconnect, int shardCount, MqttClientOptions options) throws ClearBladeException {
+
+		if (shardCount <= 0) {
+			throw new IllegalArgumentException("shardCount must be greater than zero");
+		}
+
+		this.clientIdentifier = clientIdentifier;
+		this.shards = new MqttClient[shardCount];
+		this.shardByTopic = new ConcurrentHashMap<>();
+
+		try {
+			for (int idx = 0; idx < shardCount; idx++) {
+				String shardIdentifier = String.format("%s-%d", clientIdentifier, idx);
+				shards[idx] = new MqttClient(url, auth, systemKey, shardIdentifier, qualityOfService, autoReconnect, options);
+			}
+		} catch (ClearBladeException e) {
+			disconnectQuietly();
+			throw e;
+		}
+	}
+
+	/**
+	 * Package-protected constructor wrapping existing clients, used for testing.
+	 */
+	ShardedMqttClient(String clientIdentifier, MqttClient[] shards) {
+		this.clientIdentifier = clientIdentifier;
+		this.shards = shards;
+		this.shardByTopic = new ConcurrentHashMap<>();
+	}
+
+	public int getShardCount() {
+		return shards.length;
+	}
+
+	/**
+	 * @return the connection used for the given shard number
+	 */
+	public MqttClient getShard(int shard) {
+		return shards[shard];
+	}
+
+	/**
+	 * @return the connection used to publish to the given topic
+	 */
+	public MqttClient shardFor(String topic) {
+		return shards[shardIndex(topic)];
+	}
+
+	public void setQualityOfService(int qualityOfService) {
+		for (MqttClient shard : shards) {
+			shard.setQualityOfService(qualityOfService);
+		}
+	}
+
+	public void onConnectionComplete(MqttClient.OnConnectionComplete callback) {
+		for (MqttClient shard : shards) {
+			shard.onConnectionComplete(callback);
+		}
+	}
+
+	public void onConnectionLost(MqttClient.OnConnectionLost callback) {
+		for (MqttClient shard : shards) {
+			shard.onConnectionLost(callback);
+		}
+	}
+
+	public void onDeliveryComplete(MqttClient.OnDeliveryComplete callback) {
+		for (MqttClient shard : shards) {
+			shard.onDeliveryComplete(callback);
+		}
+	}
+
+	/**
+	 * Connects every shard that is not connected yet.
+	 * @throws ClearBladeException if any connection fails.
+	 */
+	public void connect() throws ClearBladeException {
+		for (MqttClient shard : shards) {
+			shard.connect();
+		}
+	}
+
+	/**
+	 * Disconnects every shard. All shards are disconnected even if some of them fail, in which case the first
+	 * error is thrown.
+	 * @return always true for consistency with {@link MqttClient#disconnect()}
+	 * @throws ClearBladeException if disconnection fails
+	 */
+	public boolean disconnect() throws ClearBladeException {
+		ClearBladeException error = null;
+		for (MqttClient shard : shards) {
+			try {
+				shard.disconnect();
+			} catch (ClearBladeException e) {
+				if (error == null) {
+					error = e;
+				}
+			}
+		}
+		if (error != null) {
+			throw error;
+		}
+		return true;
+	}
+
+	/**
+	 * @see MqttClient#publish(String, String)
+	 */
+	public void publish(String topic, String message) throws ClearBladeException {
+		shardFor(topic).publish(topic, message);
+	}
+
+	/**
+	 * @see MqttClient#publish(String, String, boolean)
+	 */
+	public void publish(String topic, String message, boolean retained) throws ClearBladeException {
+		shardFor(topic).publish(topic, message, retained);
+	}
+
+	/**
+	 * @see MqttClient#publish(String, byte[], int, boolean)
+	 */
+	public void publish(String topic, byte[] payload, int qos, boolean retained) throws ClearBladeException {
+		shardFor(topic).publish(topic, payload, qos, retained);
+	}
+
+	/**
+	 * @see MqttClient#publish(String, Object, Codec)
+	 */
+	public <T> void publish(String topic, T value, Codec<T> codec) throws ClearBladeException {
+		shardFor(topic).publish(topic, value, codec);
+	}
+
+	/**
+	 * @see MqttClient#publish(String, Object, Codec, int, boolean)
+	 */
+	public <T> void publish(String topic, T value, Codec<T> codec, int qos, boolean retained) throws ClearBladeException {
+		shardFor(topic).publish(topic, value, codec, qos, retained);
+	}
+
+	/**
+	 * @see MqttClient#publishAsync(String, byte[], int, boolean)
+	 */
+	public CompletableFuture<Void> publishAsync(String topic, byte[] payload, int qos, boolean retained) {
+		return shardFor(topic).publishAsync(topic, payload, qos, retained);
+	}
+
+	/**
+	 * @see MqttClient#publishAsync(String, byte[])
+	 */
+	public CompletableFuture<Void> publishAsync(String topic, byte[] payload) {
+		return shardFor(topic).publishAsync(topic, payload);
+	}
+
+	/**
+	 * Sends the request on the shard owning the topic, which also receives the reply.
+	 * @see MqttClient#request(String, byte[], int, long)
+	 */
+	public CompletableFuture<byte[]> request(String topic, byte[] payload, int qos, long timeout) {
+		return shardFor(topic).request(topic, payload, qos, timeout);
+	}
+
+	/**
+	 * @see MqttClient#request(String, byte[], long)
+	 */
+	public CompletableFuture<byte[]> request(String topic, byte[] payload, long timeout) {
+		return shardFor(topic).request(topic, payload, timeout);
+	}
+
+	/**
+	 * @see MqttClient#respond(String, int, MqttClient.OnRequest)
+	 */
+	public void respond(String topic, int qos, MqttClient.OnRequest handler) throws ClearBladeException {
+		String filter = String.format("%s/%s/+/+", topic, MqttClient.REQUEST_LEVEL);
+		int shard = shardIndex(filter);
+		shards[shard].respond(topic, qos, handler);
+		shardByTopic.put(filter, shard);
+	}
+
+	/**
+	 * Waits until the asynchronous publishes of every shard have completed.
+	 * @param timeout maximum time to wait, in milliseconds
+	 * @return true if every inflight window drained, false if the timeout elapsed first
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean flush(long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		for (MqttClient shard : shards) {
+			if (!shard.flush(Math.max(0, deadline - System.currentTimeMillis()))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @see MqttClient#subscribe(String, MessageCallback)
+	 */
+	public void subscribe(String topic, MessageCallback callback) throws ClearBladeException {
+		int shard = shardIndex(topic);
+		shards[shard].subscribe(topic, callback);
+		shardByTopic.put(topic, shard);
+	}
+
+	/**
+	 * @see MqttClient#subscribe(String, int, MessageCallback)
+	 */
+	public void subscribe(String topic, int qos, MessageCallback callback) throws ClearBladeException {
+		int shard = shardIndex(topic);
+		shards[shard].subscribe(topic, qos, callback);
+		shardByTopic.put(topic, shard);
+	}
+
+	/**
+	 * @see MqttClient#subscribe(String, int, Codec, TypedMessageCallback)
+	 */
+	public <T> void subscribe(String topic, int qos, Codec<T> codec, TypedMessageCallback<T> callback) throws ClearBladeException {
+		int shard = shardIndex(topic);
+		shards[shard].subscribe(topic, qos, codec, callback);
+		shardByTopic.put(topic, shard);
+	}
+
+	/**
+	 * Subscribes to all the given topics, sending one batched SUBSCRIBE per shard.
+	 * @see MqttClient#subscribe(Map, MessageCallback)
+	 */
+	public void subscribe(Map<String, Integer> qosByTopic, MessageCallback callback) throws ClearBladeException {
+		List<Map<String, Integer>> topicsByShard = new ArrayList<>(shards.length);
+		for (int idx = 0; idx < shards.length; idx++) {
+			topicsByShard.add(new LinkedHashMap<>());
+		}
+		qosByTopic.forEach((topic, qos) -> topicsByShard.get(shardIndex(topic)).put(topic, qos));
+
+		for (int shard = 0; shard < shards.length; shard++) {
+			Map<String, Integer> topics = topicsByShard.get(shard);
+			if (topics.isEmpty()) {
+				continue;
+			}
+			shards[shard].subscribe(topics, callback);
+			for (String topic : topics.keySet()) {
+				shardByTopic.put(topic, shard);
+			}
+		}
+	}
+
+	/**
+	 * @see MqttClient#subscribeShared(String, String, int, MessageCallback)
+	 */
+	public void subscribeShared(String group, String topic, int qos, MessageCallback callback) throws ClearBladeException {
+		String subscription = SharedSubscription.format(group, topic);
+		int shard = shardIndex(subscription);
+		shards[shard].subscribeShared(group, topic, qos, callback);
+		shardByTopic.put(subscription, shard);
+	}
+
+	/**
+	 * @see MqttClient#unsubscribeShared(String, String)
+	 */
+	public boolean unsubscribeShared(String group, String topic) throws ClearBladeException {
+		return unsubscribe(SharedSubscription.format(group, topic));
+	}
+
+	/**
+	 * @see MqttClient#resubscribe()
+	 */
+	public void resubscribe() {
+		for (MqttClient shard : shards) {
+			shard.resubscribe();
+		}
+	}
+
+	/**
+	 * @see MqttClient#unsubscribe(String)
+	 */
+	public boolean unsubscribe(String topic) throws ClearBladeException {
+		Integer shard = shardByTopic.get(topic);
+		if (shard == null) {
+			shard = shardIndex(topic);
+		}
+		boolean result = shards[shard].unsubscribe(topic);
+		shardByTopic.remove(topic);
+		return result;
+	}
+
+	/**
+	 * Unsubscribes from all the given topics, sending one batched UNSUBSCRIBE per shard.
+	 * @see MqttClient#unsubscribe(java.util.Collection)
+	 */
+	public boolean unsubscribe(java.util.Collection<String> topics) throws ClearBladeException {
+		List<List<String>> topicsByShard = new ArrayList<>(shards.length);
+		for (int idx = 0; idx < shards.length; idx++) {
+			topicsByShard.add(new ArrayList<>());
+		}
+		for (String topic : topics) {
+			Integer shard = shardByTopic.get(topic);
+			topicsByShard.get(shard == null ? shardIndex(topic) : shard).add(topic);
+		}
+
+		for (int shard = 0; shard < shards.length; shard++) {
+			List<String> shardTopics = topicsByShard.get(shard);
+			if (shardTopics.isEmpty()) {
+				continue;
+			}
+			shards[shard].unsubscribe(shardTopics);
+			for (String topic : shardTopics) {
+				shardByTopic.remove(topic);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the shard number that owns the given topic or topic filter
+	 */
+	int shardIndex(String topic) {
+		return Math.floorMod(topic.hashCode(), shards.length);
+	}
+
+	private void disconnectQuietly() {
+		for (MqttClient shard : shards) {
+			if (shard == null) {
+				continue;
+			}
+			try {
+				shard.disconnect();
+			} catch (ClearBladeException e) {
+				// ignored, reporting the original error instead
+			}
+		}
+	}
+}
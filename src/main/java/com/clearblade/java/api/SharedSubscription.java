@@ -0,0 +1,95 @@
+package com.clearblade.java.api;
+
+/**
+ * Helpers for MQTT topic filters, including shared subscriptions ("$share/&lt;group&gt;/&lt;filter&gt;"). Messages
+ * received through a shared subscription are published on the plain topic, so routing must match them against the
+ * filter without its share prefix.
+ */
+final class SharedSubscription {
+
+	static final String SHARE_PREFIX = "$share/";
+
+	private SharedSubscription() {
+	}
+
+	/**
+	 * @return the shared subscription string for the given consumer group and topic filter
+	 */
+	static String format(String group, String filter) {
+		if (group == null || group.isEmpty() || group.contains("/") || group.contains("+") || group.contains("#")) {
+			throw new IllegalArgumentException("group must be a non-empty String without '/', '+' or '#'");
+		}
+		return SHARE_PREFIX + group + "/" + filter;
+	}
+
+	static boolean isShared(String subscription) {
+		return subscription.startsWith(SHARE_PREFIX) && subscription.indexOf('/', SHARE_PREFIX.length()) > 0;
+	}
+
+	/**
+	 * @return the consumer group of a shared subscription, or null for a regular subscription
+	 */
+	static String groupOf(String subscription) {
+		if (!isShared(subscription)) {
+			return null;
+		}
+		return subscription.substring(SHARE_PREFIX.length(), subscription.indexOf('/', SHARE_PREFIX.length()));
+	}
+
+	/**
+	 * @return the topic filter of the given subscription, without the share prefix
+	 */
+	static String filterOf(String subscription) {
+		if (!isShared(subscription)) {
+			return subscription;
+		}
+		return subscription.substring(subscription.indexOf('/', SHARE_PREFIX.length()) + 1);
+	}
+
+	/**
+	 * @return whenever the given topic matches the given MQTT topic filter ('+' and '#' wildcards)
+	 */
+	static boolean matches(String filter, String topic) {
+
+		int f = 0;
+		int t = 0;
+		int filterLength = filter.length();
+		int topicLength = topic.length();
+
+		// wildcards at the first level do not match topics starting with '$'
+		if (topicLength > 0 && topic.charAt(0) == '$' && filterLength > 0 && (filter.charAt(0) == '+' || filter.charAt(0) == '#')) {
+			return false;
+		}
+
+		while (f < filterLength) {
+
+			char c = filter.charAt(f);
+
+			if (c == '#') {
+				return true;
+			}
+
+			if (c == '+') {
+				while (t < topicLength && topic.charAt(t) != '/') {
+					t++;
+				}
+				f++;
+				continue;
+			}
+
+			if (t >= topicLength) {
+				// "a/#" also matches "a"
+				return c == '/' && f + 2 == filterLength && filter.charAt(f + 1) == '#';
+			}
+
+			if (c != topic.charAt(t)) {
+				return false;
+			}
+
+			f++;
+			t++;
+		}
+
+		return t == topicLength;
+	}
+}
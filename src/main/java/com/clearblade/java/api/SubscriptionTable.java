@@ -0,0 +1,150 @@
+package com.clearblade.java.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable routing snapshot of the subscriptions of a {@link MqttClient}. Every change builds a new table, so the
+ * MQTT callback thread can route messages from whatever table it last read without taking any lock, while the
+ * subscribing threads publish their changes atomically by swapping the table.
+ *
+ * Subscriptions to plain topics are looked up directly; wildcard and shared subscriptions are kept apart, with their
+ * filter and group already parsed, so only those are matched one by one.
+ */
+final class SubscriptionTable {
+
+	static final SubscriptionTable EMPTY = new SubscriptionTable(new LinkedHashMap<>());
+
+	/**
+	 * A single subscription: the topic filter as subscribed, plus what is needed to route messages to it.
+	 */
+	static final class Route {
+
+		final String topic;
+		final String filter;
+		final String group;
+		final int qos;
+		final MessageCallback callback;
+
+		Route(String topic, int qos, MessageCallback callback) {
+			this.topic = topic;
+			this.filter = SharedSubscription.filterOf(topic);
+			this.group = SharedSubscription.groupOf(topic);
+			this.qos = qos;
+			this.callback = callback;
+		}
+
+		boolean isPattern() {
+			return group != null || filter.indexOf('+') >= 0 || filter.indexOf('#') >= 0;
+		}
+	}
+
+	private final Map<String, Route> routeByTopic;
+	private final Map<String, Route> exactRoutes;
+	private final List<Route> patternRoutes;
+	private final Map<String, MessageCallback> callbackByTopic;
+	private final Map<String, Integer> qosByTopic;
+
+	private SubscriptionTable(LinkedHashMap<String, Route> routeByTopic) {
+
+		Map<String, Route> exact = new LinkedHashMap<>();
+		List<Route> patterns = new ArrayList<>();
+		Map<String, MessageCallback> callbacks = new LinkedHashMap<>();
+		Map<String, Integer> qos = new LinkedHashMap<>();
+
+		for (Route route : routeByTopic.values()) {
+			if (route.isPattern()) {
+				patterns.add(route);
+			} else {
+				exact.put(route.topic, route);
+			}
+			callbacks.put(route.topic, route.callback);
+			qos.put(route.topic, route.qos);
+		}
+
+		this.routeByTopic = Collections.unmodifiableMap(routeByTopic);
+		this.exactRoutes = exact;
+		this.patternRoutes = patterns;
+		this.callbackByTopic = Collections.unmodifiableMap(callbacks);
+		this.qosByTopic = Collections.unmodifiableMap(qos);
+	}
+
+	/**
+	 * @return a copy of this table with the given subscriptions added (or replaced)
+	 */
+	SubscriptionTable with(Map<String, Integer> qosByTopic, MessageCallback callback) {
+		LinkedHashMap<String, Route> routes = new LinkedHashMap<>(routeByTopic);
+		qosByTopic.forEach((topic, qos) -> routes.put(topic, new Route(topic, qos, callback)));
+		return new SubscriptionTable(routes);
+	}
+
+	/**
+	 * @return a copy of this table with the given subscription added (or replaced)
+	 */
+	SubscriptionTable with(String topic, int qos, MessageCallback callback) {
+		return with(Collections.singletonMap(topic, qos), callback);
+	}
+
+	/**
+	 * @return a copy of this table without the given subscriptions, or this table when none of them is present
+	 */
+	SubscriptionTable without(java.util.Collection<String> topics) {
+		LinkedHashMap<String, Route> routes = new LinkedHashMap<>(routeByTopic);
+		if (!routes.keySet().removeAll(topics)) {
+			return this;
+		}
+		return new SubscriptionTable(routes);
+	}
+
+	/**
+	 * Finds the subscription a message received on the given topic belongs to. A subscription to the exact topic
+	 * wins; otherwise the message is routed only when a single wildcard or shared subscription matches it.
+	 * @return the matching subscription, or null when there is none or the match is ambiguous
+	 */
+	Route route(String topic) {
+
+		Route route = exactRoutes.get(topic);
+		if (route != null) {
+			return route;
+		}
+
+		// messages from shared subscriptions arrive on the plain topic, so filters are matched without the
+		// "$share/<group>/" prefix
+		Route match = null;
+		for (Route candidate : patternRoutes) {
+			if (SharedSubscription.matches(candidate.filter, topic)) {
+				if (match != null) {
+					return null; //if there's more than one match, there's a problem
+				}
+				match = candidate;
+			}
+		}
+		return match;
+	}
+
+	boolean isEmpty() {
+		return routeByTopic.isEmpty();
+	}
+
+	/**
+	 * @return every subscription of this table, in subscription order
+	 */
+	java.util.Collection<Route> routes() {
+		return routeByTopic.values();
+	}
+
+	Route get(String topic) {
+		return routeByTopic.get(topic);
+	}
+
+	Map<String, MessageCallback> callbacks() {
+		return callbackByTopic;
+	}
+
+	Map<String, Integer> qos() {
+		return qosByTopic;
+	}
+}
@@ -0,0 +1,23 @@
+package com.clearblade.java.api;
+
+/**
+ * Callback receiving messages decoded by a {@link com.clearblade.java.api.codec.Codec}, see
+ * {@link MqttClient#subscribe(String, com.clearblade.java.api.codec.Codec, TypedMessageCallback)}.
+ * @param <T> type of the decoded messages
+ */
+public abstract class TypedMessageCallback<T> {
+
+	/**
+	 * Override to catch an error, including payloads the codec could not decode.
+	 * @param exception the exception that was thrown
+	 */
+	public void error(ClearBladeException exception) {}
+
+	/**
+	 * Override to receive a message.
+	 * @param topic topic the message is from
+	 * @param message decoded message content
+	 */
+	public abstract void done(String topic, T message);
+
+}
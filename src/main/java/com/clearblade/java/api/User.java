@@ -8,8 +8,8 @@ import com.google.gson.JsonParser;
 
 public class User {
 	
-	private static String email;				//users email address
-	private static String authToken;			//auth token for user
+	private String email;					//users email address
+	private String authToken;				//auth token for user
 	
 	private RequestEngine request;			//used to make api requests
 	
@@ -43,4 +43,11 @@ public class Util {
 	public static String getSystemSecret() {
 		return systemSecret;
 	}
+
+	/**
+	 * Returns the system key of the given client, or the global one when no client is given.
+	 */
+	static String getSystemKey(ClearBladeClient client) {
+		return client != null ? client.getSystemKey() : systemKey;
+	}
 }
@@ -4,7 +4,6 @@ import com.clearblade.java.api.internal.PlatformResponse;
 import com.clearblade.java.api.internal.RequestEngine;
 import com.clearblade.java.api.internal.RequestProperties;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
 public class AnonAuth extends UserAuth {
 
@@ -13,10 +12,11 @@ public class AnonAuth extends UserAuth {
     }
 
     @Override
-    public synchronized void doAuth() throws AuthException {
+    public void doAuth() throws AuthException {
 
         RequestProperties headers = new RequestProperties
-                .Builder()
+                .Builder(this._client)
+                .reauthenticate(false)
                 .method("POST")
                 .endPoint("api/v/1/user/anon")
                 .build();
@@ -24,12 +24,19 @@ public class AnonAuth extends UserAuth {
         RequestEngine request = new RequestEngine();
         request.setHeaders(headers);
 
-        PlatformResponse<String> result = request.execute();
-        if (result.isError()) {
-            throw new AuthException(String.format("unable to authenticate anonymous user: %s", result.getData()));
+        synchronized (this._writeLock) {
+            PlatformResponse<String> result = request.execute();
+            if (result.isError()) {
+                throw new AuthException(String.format("unable to authenticate anonymous user: %s", result.getData()));
+            }
+
+            JsonObject obj = AuthResponses.parseTokenResponse(result.getData(), "user_token");
+            this._credentials.set(new Credentials(TOKEN_HEADER, obj.get("user_token").getAsString(), AuthResponses.parseExpiresAt(obj)));
         }
+    }
 
-        JsonObject obj = (JsonObject) JsonParser.parseString(result.getData());
-        this._token = obj.get("user_token").getAsString();
+    @Override
+    public String getIdentity() {
+        return "anonymous";
     }
 }
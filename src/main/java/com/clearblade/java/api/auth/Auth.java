@@ -2,6 +2,8 @@ package com.clearblade.java.api.auth;
 
 import java.util.Map;
 
+import com.clearblade.java.api.ClearBladeClient;
+
 public interface Auth {
     // doAuth attempts to authenticate using the underlying Auth method.
     void doAuth() throws AuthException;
@@ -20,4 +22,33 @@ public interface Auth {
 
     // requestHeaders returns important headers derived from the Auth method.
     Map<String, String> getRequestHeaders();
+
+    // expiresAt returns when the token expires in milliseconds since the epoch, or 0 if unknown.
+    default long getExpiresAt() {
+        return 0;
+    }
+
+    // identity returns what the token is issued to (a user, a device...), or null if its tokens cannot be cached.
+    default String getIdentity() {
+        return null;
+    }
+
+    // canRestoreTokens returns whenever setToken restores tokens, tokens of the other Auth methods are not cached.
+    default boolean canRestoreTokens() {
+        return false;
+    }
+
+    // setToken restores a token obtained earlier for the same identity, as if doAuth returned it. Only called when
+    // canRestoreTokens returns true.
+    default void setToken(String token, long expiresAt) {
+    }
+
+    // setClient binds the Auth method to the client whose requests it authenticates.
+    default void setClient(ClearBladeClient client) {
+    }
+
+    // client returns the client the Auth method is bound to, or null if it is not bound or does not track it.
+    default ClearBladeClient getClient() {
+        return null;
+    }
 }
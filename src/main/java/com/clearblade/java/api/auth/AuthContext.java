@@ -0,0 +1,61 @@
+package com.clearblade.java.api.auth;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.clearblade.java.api.internal.HeaderSet;
+
+/**
+ * AuthContext is an immutable set of credentials attached to individual API calls, in place of the Auth of the client.
+ * A gateway serving many users keeps one context per user session and attaches it to the calls made for that user:
+ * <pre>
+ * AuthContext session = AuthContext.userToken(token);
+ * Query query = client.query(collectionId);
+ * query.setAuthContext(session);
+ * </pre>
+ *
+ * The system key and secret, the platform URL and the connections are still the ones of the client.
+ */
+public final class AuthContext {
+
+    private final Map<String, String> _headers;
+    private final HeaderSet _headerSet;
+
+    private AuthContext(Map<String, String> headers) {
+        this._headers = Collections.unmodifiableMap(new HashMap<String, String>(headers));
+        this._headerSet = HeaderSet.of(this._headers);
+    }
+
+    /**
+     * Returns a context authenticating as the user owning the given token.
+     */
+    public static AuthContext userToken(String token) {
+        return new AuthContext(Collections.singletonMap("ClearBlade-UserToken", token));
+    }
+
+    /**
+     * Returns a context authenticating as the device owning the given token.
+     */
+    public static AuthContext deviceToken(String token) {
+        return new AuthContext(Collections.singletonMap("ClearBlade-DeviceToken", token));
+    }
+
+    /**
+     * Returns a context holding the current request headers of the given Auth. Later changes of the Auth, such as a
+     * new token, do not affect the returned context.
+     */
+    public static AuthContext of(Auth auth) {
+        return new AuthContext(auth.getRequestHeaders());
+    }
+
+    // requestHeaders returns the headers set on the calls using this context.
+    public Map<String, String> getRequestHeaders() {
+        return this._headers;
+    }
+
+    // headerSet returns the same headers, as set on the connections of the calls.
+    public HeaderSet getHeaderSet() {
+        return this._headerSet;
+    }
+}
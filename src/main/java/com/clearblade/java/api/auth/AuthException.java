@@ -1,7 +1,23 @@
 package com.clearblade.java.api.auth;
 
 public class AuthException extends Exception {
+
+    private final boolean retryable;
+
     public AuthException(String msg) {
+        this(msg, true);
+    }
+
+    /**
+     * @param retryable false when trying again cannot succeed, e.g. missing credentials or a rejected key
+     */
+    public AuthException(String msg, boolean retryable) {
         super(msg);
+        this.retryable = retryable;
+    }
+
+    // retryable returns whenever the authentication may succeed if it is tried again.
+    public boolean isRetryable() {
+        return this.retryable;
     }
 }
@@ -0,0 +1,238 @@
+package com.clearblade.java.api.auth;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * AuthManager keeps the token of an Auth method valid for the client using it.
+ *
+ * After each authentication, if the Auth reports when its token expires, a new token is requested in the background
+ * shortly before that time. When the platform rejects a token anyway, {@link #reauthenticate(Map)} renews it: the
+ * callers that hit the rejection at the same time share a single authentication call, and the callers presenting a
+ * token that was already replaced return at once.
+ *
+ * With a {@link TokenCache}, and an Auth that {@link Auth#canRestoreTokens() can restore tokens}, each new token is
+ * saved, and {@link #authenticate()} starts with the saved token of the same identity when it did not expire,
+ * checking it with {@link Auth#doCheck()} in the background.
+ */
+public class AuthManager {
+
+    /**
+     * Times the background token refreshes of all clients, which then run on {@link #AUTH_THREADS}.
+     */
+    private static final ScheduledExecutorService REFRESHES = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "clearblade-auth-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Runs the background authentications and token checks, which block on the network, so that a slow platform
+     * does not delay the refreshes of the other clients.
+     */
+    private static final ExecutorService AUTH_THREADS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "clearblade-auth");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Auth _auth;
+    private final long _refreshMargin;
+    private final TokenCache _cache;
+    private final String _systemKey;
+    private final AtomicReference<CompletableFuture<Void>> _inflight;
+
+    private ScheduledFuture<?> _refreshTask;
+    private boolean _closed;
+
+    /**
+     * @param auth the Auth method to manage
+     * @param refreshMargin how long before the expiry of a token it is refreshed, in milliseconds. Zero disables the
+     *                      background refresh.
+     */
+    public AuthManager(Auth auth, long refreshMargin) {
+        this(auth, refreshMargin, null, null);
+    }
+
+    /**
+     * @param auth the Auth method to manage
+     * @param refreshMargin how long before the expiry of a token it is refreshed, in milliseconds. Zero disables the
+     *                      background refresh.
+     * @param cache where the tokens are saved between runs, null to disable the cache
+     * @param systemKey the system the tokens are issued for
+     */
+    public AuthManager(Auth auth, long refreshMargin, TokenCache cache, String systemKey) {
+        this._auth = auth;
+        this._refreshMargin = refreshMargin;
+        this._cache = cache;
+        this._systemKey = systemKey;
+        this._inflight = new AtomicReference<>();
+        this._refreshTask = null;
+        this._closed = false;
+    }
+
+    public Auth getAuth() {
+        return this._auth;
+    }
+
+    /**
+     * Authenticates, or restores the cached token of the Auth, and schedules the refresh of the token.
+     */
+    public void authenticate() throws AuthException {
+        if (this.restore()) {
+            return;
+        }
+        this.renew(this._auth.getRequestHeaders(), true);
+    }
+
+    /**
+     * Renews the token after the platform rejected a call made with the given headers. Does nothing if the token was
+     * renewed since those headers were taken, and waits for the authentication already in progress if any.
+     * @param staleHeaders the auth headers of the rejected call
+     * @return true if the call can be made again with the current headers of the Auth
+     */
+    public boolean reauthenticate(Map<String, String> staleHeaders) {
+        try {
+            this.renew(staleHeaders, false);
+            return true;
+        } catch (AuthException e) {
+            String errmsg = String.format("(AuthManager) reauthentication error: %s", e.getMessage());
+            System.out.println(errmsg);
+            return false;
+        }
+    }
+
+    /**
+     * Stops the background refresh.
+     */
+    public synchronized void close() {
+        this._closed = true;
+        if (this._refreshTask != null) {
+            this._refreshTask.cancel(false);
+            this._refreshTask = null;
+        }
+    }
+
+    /**
+     * Runs a single authentication for all the callers holding the same stale headers.
+     */
+    private void renew(Map<String, String> staleHeaders, boolean force) throws AuthException {
+
+        while (true) {
+            if (!force && !this._auth.getRequestHeaders().equals(staleHeaders)) {
+                // another caller already renewed the token
+                return;
+            }
+
+            CompletableFuture<Void> inflight = this._inflight.get();
+            if (inflight == null) {
+                CompletableFuture<Void> mine = new CompletableFuture<>();
+                if (!this._inflight.compareAndSet(null, mine)) {
+                    continue;
+                }
+                try {
+                    // the token may have been renewed between the first check and the claim
+                    if (force || this._auth.getRequestHeaders().equals(staleHeaders)) {
+                        this._auth.doAuth();
+                        this.save();
+                        this.scheduleRefresh();
+                    }
+                    mine.complete(null);
+                } catch (AuthException | RuntimeException e) {
+                    mine.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    this._inflight.set(null);
+                }
+                return;
+            }
+
+            try {
+                inflight.get();
+                if (!force) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AuthException("interrupted while waiting for authentication");
+            } catch (ExecutionException e) {
+                throw new AuthException(e.getCause().getMessage());
+            }
+        }
+    }
+
+    /**
+     * Gives the Auth its cached token, unless it expired or is due for a refresh, and checks the token in the
+     * background.
+     * @return true if a cached token was restored
+     */
+    private boolean restore() {
+
+        String identity = this._auth.getIdentity();
+        if (this._cache == null || identity == null || !this._auth.canRestoreTokens()) {
+            return false;
+        }
+
+        TokenCache.Entry entry = this._cache.load(this._systemKey, identity);
+        if (entry == null || (entry.getExpiresAt() > 0
+                && entry.getExpiresAt() - Math.max(0, this._refreshMargin) <= System.currentTimeMillis())) {
+            return false;
+        }
+
+        this._auth.setToken(entry.getToken(), entry.getExpiresAt());
+        this.scheduleRefresh();
+
+        Map<String, String> restoredHeaders = this._auth.getRequestHeaders();
+        AUTH_THREADS.execute(() -> {
+            try {
+                this._auth.doCheck();
+            } catch (AuthException e) {
+                // the platform no longer accepts the cached token
+                this._cache.remove(this._systemKey, identity);
+                this.reauthenticate(restoredHeaders);
+            }
+        });
+        return true;
+    }
+
+    private void save() {
+        String identity = this._auth.getIdentity();
+        if (this._cache != null && identity != null && this._auth.canRestoreTokens()) {
+            this._cache.store(this._systemKey, identity, this._auth.getToken(), this._auth.getExpiresAt());
+        }
+    }
+
+    private synchronized void scheduleRefresh() {
+
+        if (this._refreshTask != null) {
+            this._refreshTask.cancel(false);
+            this._refreshTask = null;
+        }
+
+        long expiresAt = this._auth.getExpiresAt();
+        if (this._closed || this._refreshMargin <= 0 || expiresAt <= 0) {
+            return;
+        }
+
+        long delay = Math.max(0, expiresAt - this._refreshMargin - System.currentTimeMillis());
+        this._refreshTask = REFRESHES.schedule(() -> AUTH_THREADS.execute(this::refresh), delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void refresh() {
+        try {
+            // the cached token is the one being replaced, it is not restored again
+            this.renew(this._auth.getRequestHeaders(), true);
+        } catch (AuthException e) {
+            // the next rejected call renews the token
+            String errmsg = String.format("(AuthManager) token refresh error: %s", e.getMessage());
+            System.out.println(errmsg);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.clearblade.java.api.auth;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+/**
+ * Helpers reading the responses of the authentication endpoints.
+ */
+final class AuthResponses {
+
+    private AuthResponses() {
+    }
+
+    /**
+     * Returns whenever an authentication whose response had the given HTTP status code may succeed if it is tried
+     * again: the platform could not be reached (0), timed out, throttled the call, or failed.
+     */
+    static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 0 || statusCode == 408 || statusCode == 429 || statusCode >= 500;
+    }
+
+    /**
+     * Parses the response of an authentication endpoint, which holds the token in the given property.
+     * @throws AuthException if the response is not a JSON object holding the token
+     */
+    static JsonObject parseTokenResponse(String data, String tokenProperty) throws AuthException {
+        JsonElement response;
+        try {
+            response = JsonParser.parseString(data);
+        } catch (JsonParseException e) {
+            throw new AuthException(String.format("malformed authentication response: %s", e.getMessage()), false);
+        }
+        JsonElement token = response.isJsonObject() ? response.getAsJsonObject().get(tokenProperty) : null;
+        if (token == null || !token.isJsonPrimitive() || !token.getAsJsonPrimitive().isString()) {
+            throw new AuthException(String.format("malformed authentication response: no %s", tokenProperty), false);
+        }
+        return response.getAsJsonObject();
+    }
+
+    /**
+     * Returns the expiry of the token of the given response, from its "expires_at" property in seconds since the epoch.
+     * @return the expiry in milliseconds since the epoch, or 0 if the response has none
+     */
+    static long parseExpiresAt(JsonObject obj) {
+        JsonElement expiresAt = obj.get("expires_at");
+        if (expiresAt == null || !expiresAt.isJsonPrimitive() || !expiresAt.getAsJsonPrimitive().isNumber()) {
+            return 0;
+        }
+        return expiresAt.getAsLong() * 1000;
+    }
+}
@@ -0,0 +1,43 @@
+package com.clearblade.java.api.auth;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Credentials is an immutable snapshot of the token of an Auth method. The Auth methods replace their snapshot as a
+ * whole, so a request reading it never sees the token of one authentication with the expiry of another, and reads need
+ * no lock. The request headers are built with the snapshot, so every call made with the same token shares them.
+ */
+final class Credentials {
+
+    private final String _token;
+    private final long _expiresAt;
+    private final Map<String, String> _headers;
+
+    /**
+     * @param header name of the request header carrying the token
+     * @param token the token, null when not authenticated
+     * @param expiresAt when the token expires in milliseconds since the epoch, or 0 if unknown
+     */
+    Credentials(String header, String token, long expiresAt) {
+        this._token = token;
+        this._expiresAt = expiresAt;
+        this._headers = Collections.singletonMap(header, this.getToken());
+    }
+
+    boolean isAuthed() {
+        return this._token != null && this._token.length() > 0;
+    }
+
+    String getToken() {
+        return this._token == null ? "" : this._token;
+    }
+
+    long getExpiresAt() {
+        return this._expiresAt;
+    }
+
+    Map<String, String> getRequestHeaders() {
+        return this._headers;
+    }
+}
@@ -1,26 +1,37 @@
 package com.clearblade.java.api.auth;
 
+import com.clearblade.java.api.ClearBladeClient;
 import com.clearblade.java.api.internal.PlatformResponse;
 import com.clearblade.java.api.internal.RequestEngine;
 import com.clearblade.java.api.internal.RequestProperties;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Authenticates as a device of the system. Like {@link UserAuth}, the token is held in an immutable snapshot read
+ * without locking, and replaced by one authentication at a time.
+ */
 public class DeviceAuth implements Auth {
 
+    static final String TOKEN_HEADER = "ClearBlade-DeviceToken";
+    static final Credentials SIGNED_OUT = new Credentials(TOKEN_HEADER, null, 0);
+
     private final String _systemKey;
     private final String _deviceName;
     private final String _activeKey;
-    private String _token;
+    private final AtomicReference<Credentials> _credentials;
+    private final Object _writeLock;
+    private ClearBladeClient _client;
 
     public DeviceAuth(String systemKey, String deviceName, String activeKey) {
         this._systemKey = systemKey;
         this._deviceName = deviceName;
         this._activeKey = activeKey;
-        this._token = null;
+        this._credentials = new AtomicReference<>(SIGNED_OUT);
+        this._writeLock = new Object();
+        this._client = null;
     }
 
     /**
@@ -28,13 +39,20 @@ public class DeviceAuth implements Auth {
      * see: https://docs.clearblade.com/v/4/static/api/index.html#/Device/AuthDevice
      */
     public void doAuth() throws AuthException {
+        this.doAuth(this._client);
+    }
+
+    /**
+     * Authenticates through the given client, without binding the device to it.
+     */
+    void doAuth(ClearBladeClient client) throws AuthException {
 
         boolean systemKeyMissing = this._systemKey == null || this._systemKey.length() <= 0;
         boolean deviceNameMissing = this._deviceName == null || this._deviceName.length() <= 0;
         boolean activeKeyMissing = this._activeKey == null || this._activeKey.length() <= 0;
 
         if (systemKeyMissing || deviceNameMissing || activeKeyMissing) {
-            throw new AuthException("DeviceAuth needs all system key, device name, and active key");
+            throw new AuthException("DeviceAuth needs all system key, device name, and active key", false);
         }
 
         JsonObject payload = new JsonObject();
@@ -44,7 +62,8 @@ public class DeviceAuth implements Auth {
         String requestPath = String.format("api/v/2/devices/%s/auth", this._systemKey);
 
         RequestProperties headers = new RequestProperties
-                .Builder()
+                .Builder(client)
+                .reauthenticate(false)
                 .method("POST")
                 .endPoint(requestPath)
                 .body(payload)
@@ -53,13 +72,16 @@ public class DeviceAuth implements Auth {
         RequestEngine request = new RequestEngine();
         request.setHeaders(headers);
 
-        PlatformResponse<String> result = request.execute();
-        if (result.isError()) {
-            throw new AuthException(String.format("unable to authenticate device: %s", result.getData()));
-        }
+        synchronized (this._writeLock) {
+            PlatformResponse<String> result = request.execute();
+            if (result.isError()) {
+                throw new AuthException(String.format("unable to authenticate device: %s", result.getData()),
+                        AuthResponses.isRetryableStatus(request.getLastResponseCode()));
+            }
 
-        JsonObject obj = (JsonObject) JsonParser.parseString(result.getData());
-        this._token = obj.get("deviceToken").getAsString();
+            JsonObject obj = AuthResponses.parseTokenResponse(result.getData(), "deviceToken");
+            this._credentials.set(new Credentials(TOKEN_HEADER, obj.get("deviceToken").getAsString(), AuthResponses.parseExpiresAt(obj)));
+        }
     }
 
     public void doCheck() throws AuthException {
@@ -69,23 +91,47 @@ public class DeviceAuth implements Auth {
     }
 
     public void doLogout() throws AuthException {
-        if (!this.isAuthed()) {
-            throw new AuthException(("unable to logout device when not authenticated"));
+        synchronized (this._writeLock) {
+            if (!this.isAuthed()) {
+                throw new AuthException(("unable to logout device when not authenticated"));
+            }
+            this._credentials.set(SIGNED_OUT);
         }
-        this._token = null;
     }
 
     public boolean isAuthed() {
-        return this._token != null && this._token.length() > 0;
+        return this._credentials.get().isAuthed();
     }
 
     public String getToken() {
-        return this._token == null ? "" : this._token;
+        return this._credentials.get().getToken();
+    }
+
+    public void setClient(ClearBladeClient client) {
+        this._client = client;
+    }
+
+    public ClearBladeClient getClient() {
+        return this._client;
+    }
+
+    public long getExpiresAt() {
+        return this._credentials.get().getExpiresAt();
+    }
+
+    public String getIdentity() {
+        return "device:" + this._systemKey + "/" + this._deviceName;
+    }
+
+    public boolean canRestoreTokens() {
+        return true;
+    }
+
+    public void setToken(String token, long expiresAt) {
+        this._credentials.set(new Credentials(TOKEN_HEADER, token, expiresAt));
     }
 
     public Map<String, String> getRequestHeaders() {
-        HashMap<String, String> m = new HashMap<String, String>();
-        m.put("ClearBlade-DeviceToken", this.getToken());
-        return m;
+        return this._credentials.get().getRequestHeaders();
     }
 }
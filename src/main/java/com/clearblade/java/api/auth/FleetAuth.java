@@ -0,0 +1,209 @@
+package com.clearblade.java.api.auth;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.clearblade.java.api.ClearBladeClient;
+
+/**
+ * FleetAuth authenticates many devices at once, for device simulators and gateways acting for a whole fleet:
+ * <pre>
+ * FleetAuth fleet = new FleetAuth(client, new FleetAuthOptions().setConcurrency(64).setTokenCache(cache));
+ * FleetAuth.Result result = fleet.authenticate(devices);
+ * </pre>
+ *
+ * The devices authenticate in parallel, up to the configured concurrency, each failed attempt being retried after an
+ * exponential backoff with jitter, unless the error cannot go away (missing credentials, rejected key...). With a
+ * {@link TokenCache}, the devices holding an unexpired cached token do not call the platform, and the new tokens are
+ * saved. The devices authenticate through the client without being bound to it, and once authenticated their token can
+ * be used with {@link AuthContext#of(Auth)}, an MQTT client, or as the Auth of a ClearBladeClient of their own.
+ */
+public class FleetAuth {
+
+    /**
+     * Outcome of {@link FleetAuth#authenticate(Collection)}.
+     */
+    public static final class Result {
+
+        private final List<DeviceAuth> _authenticated;
+        private final Map<DeviceAuth, AuthException> _failures;
+        private final int _restoredCount;
+
+        Result(List<DeviceAuth> authenticated, Map<DeviceAuth, AuthException> failures, int restoredCount) {
+            this._authenticated = Collections.unmodifiableList(authenticated);
+            this._failures = Collections.unmodifiableMap(failures);
+            this._restoredCount = restoredCount;
+        }
+
+        // authenticated returns the devices holding a token, in the order they were given.
+        public List<DeviceAuth> getAuthenticated() {
+            return this._authenticated;
+        }
+
+        // failures returns the error of the last attempt of each device that could not be authenticated.
+        public Map<DeviceAuth, AuthException> getFailures() {
+            return this._failures;
+        }
+
+        // restoredCount returns how many of the authenticated devices got their token from the cache.
+        public int getRestoredCount() {
+            return this._restoredCount;
+        }
+
+        public boolean isComplete() {
+            return this._failures.isEmpty();
+        }
+    }
+
+    private final ClearBladeClient _client;
+    private final FleetAuthOptions _options;
+
+    /**
+     * @param client the client the devices authenticate with
+     * @param options the options of the authentication, copied
+     */
+    public FleetAuth(ClearBladeClient client, FleetAuthOptions options) {
+        this._client = client;
+        this._options = new FleetAuthOptions(options);
+    }
+
+    /**
+     * Authenticates the given devices, and waits until each of them is authenticated or out of attempts.
+     * @return the devices authenticated and the ones that failed
+     * @throws InterruptedException if the calling thread is interrupted while waiting, the remaining devices are
+     *                              not authenticated
+     */
+    public Result authenticate(Collection<DeviceAuth> devices) throws InterruptedException {
+
+        int total = devices.size();
+        Map<DeviceAuth, AuthException> failures = new ConcurrentHashMap<>();
+        AtomicInteger completed = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        AtomicInteger restored = new AtomicInteger();
+
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(this._options.getConcurrency(), Math.max(1, total)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "clearblade-fleet-auth");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            for (DeviceAuth device : devices) {
+                workers.execute(() -> {
+                    try {
+                        if (this.restore(device)) {
+                            restored.incrementAndGet();
+                        } else {
+                            this.authenticate(device);
+                        }
+                    } catch (AuthException e) {
+                        this.fail(device, e, failures, failed);
+                    } catch (RuntimeException e) {
+                        this.fail(device, new AuthException(String.format("unexpected error: %s", e), false), failures, failed);
+                    }
+                    this.reportProgress(completed.incrementAndGet(), failed.get(), total);
+                });
+            }
+            workers.shutdown();
+            while (!workers.awaitTermination(1, TimeUnit.SECONDS)) {
+                // keeps waiting, the attempts of each device are bounded
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        List<DeviceAuth> authenticated = new ArrayList<>(total - failures.size());
+        Map<DeviceAuth, AuthException> orderedFailures = new LinkedHashMap<>();
+        for (DeviceAuth device : devices) {
+            AuthException error = failures.get(device);
+            if (error == null && device.isAuthed()) {
+                authenticated.add(device);
+            } else {
+                orderedFailures.put(device, error != null ? error : new AuthException("device holds no token", false));
+            }
+        }
+        return new Result(authenticated, orderedFailures, restored.get());
+    }
+
+    /**
+     * Gives the device its cached token, unless it expired.
+     * @return true if a cached token was restored
+     */
+    private boolean restore(DeviceAuth device) {
+
+        TokenCache cache = this._options.getTokenCache();
+        if (cache == null) {
+            return false;
+        }
+
+        TokenCache.Entry entry = cache.load(this._client.getSystemKey(), device.getIdentity());
+        if (entry == null || (entry.getExpiresAt() > 0 && entry.getExpiresAt() <= System.currentTimeMillis())) {
+            return false;
+        }
+        device.setToken(entry.getToken(), entry.getExpiresAt());
+        return true;
+    }
+
+    /**
+     * Authenticates the device, retrying after a growing, randomized wait.
+     */
+    private void authenticate(DeviceAuth device) throws AuthException {
+
+        long backoff = this._options.getInitialBackoff();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                device.doAuth(this._client);
+                break;
+            } catch (AuthException e) {
+                if (!e.isRetryable() || attempt >= this._options.getMaxAttempts()) {
+                    throw e;
+                }
+            }
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextLong(backoff / 2, backoff + 1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AuthException("interrupted while waiting to retry the authentication");
+            }
+            backoff = Math.min(this._options.getMaxBackoff(), backoff * 2);
+        }
+
+        TokenCache cache = this._options.getTokenCache();
+        if (cache != null) {
+            cache.store(this._client.getSystemKey(), device.getIdentity(), device.getToken(), device.getExpiresAt());
+        }
+    }
+
+    private void fail(DeviceAuth device, AuthException error, Map<DeviceAuth, AuthException> failures, AtomicInteger failed) {
+        failures.put(device, error);
+        failed.incrementAndGet();
+        this.reportFailure(device, error);
+    }
+
+    private void reportFailure(DeviceAuth device, AuthException error) {
+        FleetAuthOptions.OnFailure onFailure = this._options.getOnFailure();
+        if (onFailure != null) {
+            onFailure.onFailure(device, error);
+        } else {
+            String errmsg = String.format("(FleetAuth) %s authentication error: %s", device.getIdentity(), error.getMessage());
+            System.out.println(errmsg);
+        }
+    }
+
+    private void reportProgress(int completed, int failed, int total) {
+        FleetAuthOptions.OnProgress onProgress = this._options.getOnProgress();
+        if (onProgress != null) {
+            onProgress.onProgress(completed, failed, total);
+        }
+    }
+}
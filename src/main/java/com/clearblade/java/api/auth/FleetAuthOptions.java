@@ -0,0 +1,155 @@
+package com.clearblade.java.api.auth;
+
+/**
+ * FleetAuthOptions is used for customizing a {@link FleetAuth}. The following values are used by default:
+ *
+ *   concurrency - 32 (authentication calls at the same time)
+ *   maxAttempts - 5 (calls per device, including the first one)
+ *   initialBackoff - 200 (milliseconds)
+ *   maxBackoff - 10000 (milliseconds)
+ *   tokenCache - [EMPTY] (every device authenticates)
+ *   onProgress - [EMPTY]
+ *   onFailure - [EMPTY] (failures are logged)
+ */
+public class FleetAuthOptions {
+
+    /**
+     * Called each time a device is done, authenticated or not.
+     */
+    @FunctionalInterface
+    public interface OnProgress {
+        void onProgress(int completed, int failed, int total);
+    }
+
+    /**
+     * Called with each device that could not be authenticated, after its last attempt.
+     */
+    @FunctionalInterface
+    public interface OnFailure {
+        void onFailure(DeviceAuth device, AuthException error);
+    }
+
+    private int _concurrency;
+    private int _maxAttempts;
+    private long _initialBackoff;
+    private long _maxBackoff;
+    private TokenCache _tokenCache;
+    private OnProgress _onProgress;
+    private OnFailure _onFailure;
+
+    public FleetAuthOptions() {
+        this._concurrency = 32;
+        this._maxAttempts = 5;
+        this._initialBackoff = 200;
+        this._maxBackoff = 10000;
+        this._tokenCache = null;
+        this._onProgress = null;
+        this._onFailure = null;
+    }
+
+    public FleetAuthOptions(FleetAuthOptions other) {
+        this._concurrency = other._concurrency;
+        this._maxAttempts = other._maxAttempts;
+        this._initialBackoff = other._initialBackoff;
+        this._maxBackoff = other._maxBackoff;
+        this._tokenCache = other._tokenCache;
+        this._onProgress = other._onProgress;
+        this._onFailure = other._onFailure;
+    }
+
+    // Getters
+
+    public int getConcurrency() {
+        return this._concurrency;
+    }
+
+    public int getMaxAttempts() {
+        return this._maxAttempts;
+    }
+
+    public long getInitialBackoff() {
+        return this._initialBackoff;
+    }
+
+    public long getMaxBackoff() {
+        return this._maxBackoff;
+    }
+
+    public TokenCache getTokenCache() {
+        return this._tokenCache;
+    }
+
+    public OnProgress getOnProgress() {
+        return this._onProgress;
+    }
+
+    public OnFailure getOnFailure() {
+        return this._onFailure;
+    }
+
+    // Setters
+
+    /**
+     * Sets how many devices may authenticate at the same time.
+     */
+    public FleetAuthOptions setConcurrency(int concurrency) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be greater than zero");
+        }
+        this._concurrency = concurrency;
+        return this;
+    }
+
+    /**
+     * Sets how many times the authentication of a device is tried before the device is reported as failed.
+     */
+    public FleetAuthOptions setMaxAttempts(int maxAttempts) {
+        if (maxAttempts <= 0) {
+            throw new IllegalArgumentException("maxAttempts must be greater than zero");
+        }
+        this._maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * Sets the wait before the second attempt, in milliseconds. The wait doubles after each failed attempt, up to the
+     * max backoff, and a random part of it is used so the devices failing together do not retry together.
+     */
+    public FleetAuthOptions setInitialBackoff(long initialBackoff) {
+        if (initialBackoff < 0) {
+            throw new IllegalArgumentException("initialBackoff must not be negative");
+        }
+        this._initialBackoff = initialBackoff;
+        return this;
+    }
+
+    /**
+     * Sets the longest wait between two attempts, in milliseconds.
+     */
+    public FleetAuthOptions setMaxBackoff(long maxBackoff) {
+        if (maxBackoff < 0) {
+            throw new IllegalArgumentException("maxBackoff must not be negative");
+        }
+        this._maxBackoff = maxBackoff;
+        return this;
+    }
+
+    /**
+     * Sets the cache the device tokens are restored from and saved to, so a restarting gateway only authenticates the
+     * devices whose token expired.
+     */
+    public FleetAuthOptions setTokenCache(TokenCache tokenCache) {
+        this._tokenCache = tokenCache;
+        return this;
+    }
+
+    public FleetAuthOptions setOnProgress(OnProgress onProgress) {
+        this._onProgress = onProgress;
+        return this;
+    }
+
+    public FleetAuthOptions setOnFailure(OnFailure onFailure) {
+        this._onFailure = onFailure;
+        return this;
+    }
+}
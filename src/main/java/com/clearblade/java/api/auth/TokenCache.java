@@ -0,0 +1,233 @@
+package com.clearblade.java.api.auth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * TokenCache keeps the tokens of the Auth methods on disk between process runs, so a process can start with the token
+ * of the previous run instead of authenticating again, see {@link com.clearblade.java.api.InitOptions#setTokenCache}.
+ *
+ * Each token is stored in its own file of the cache directory, named after a hash of the system key and the identity
+ * of the Auth (email, device name...), and encrypted with AES-GCM using the key of the cache. Files that cannot be
+ * decrypted, such as files written with another key, are ignored.
+ */
+public class TokenCache {
+
+    /**
+     * A token read from the cache.
+     */
+    public static final class Entry {
+
+        private final String _token;
+        private final long _expiresAt;
+
+        Entry(String token, long expiresAt) {
+            this._token = token;
+            this._expiresAt = expiresAt;
+        }
+
+        public String getToken() {
+            return this._token;
+        }
+
+        // expiresAt returns when the token expires in milliseconds since the epoch, or 0 if unknown.
+        public long getExpiresAt() {
+            return this._expiresAt;
+        }
+    }
+
+    private static final String SALT_FILE = "salt";
+    private static final int KEY_ITERATIONS = 20000;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH = 128;
+
+    private final Path _directory;
+    private final SecretKeySpec _key;
+    private final SecureRandom _random;
+
+    /**
+     * Creates a cache encrypting the tokens with the given AES key.
+     * @param directory directory of the cache files, created if missing
+     * @param key AES key of 16, 24 or 32 bytes
+     */
+    public TokenCache(Path directory, byte[] key) throws IOException {
+        if (key.length != 16 && key.length != 24 && key.length != 32) {
+            throw new IllegalArgumentException("key must be 16, 24 or 32 bytes long");
+        }
+        this._directory = createDirectory(directory);
+        this._key = new SecretKeySpec(key.clone(), "AES");
+        this._random = new SecureRandom();
+    }
+
+    /**
+     * Creates a cache encrypting the tokens with a key derived from the given passphrase (PBKDF2, salted with a random
+     * value kept in the cache directory).
+     * @param directory directory of the cache files, created if missing
+     * @param passphrase secret the key is derived from
+     */
+    public TokenCache(Path directory, char[] passphrase) throws IOException {
+        this._directory = createDirectory(directory);
+        this._random = new SecureRandom();
+        try {
+            PBEKeySpec spec = new PBEKeySpec(passphrase, readSalt(), KEY_ITERATIONS, 256);
+            byte[] key = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+            spec.clearPassword();
+            this._key = new SecretKeySpec(key, "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IOException("unable to derive the token cache key: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the token stored for the given identity.
+     * @return the cached token, or null if there is none or it cannot be read
+     */
+    public Entry load(String systemKey, String identity) {
+        Path file = this.file(systemKey, identity);
+        try {
+            byte[] content = Files.readAllBytes(file);
+            if (content.length <= IV_LENGTH) {
+                return null;
+            }
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, this._key, new GCMParameterSpec(TAG_LENGTH, content, 0, IV_LENGTH));
+            cipher.updateAAD(this.associatedData(systemKey, identity));
+            byte[] plain = cipher.doFinal(content, IV_LENGTH, content.length - IV_LENGTH);
+
+            JsonObject obj = JsonParser.parseString(new String(plain, StandardCharsets.UTF_8)).getAsJsonObject();
+            return new Entry(obj.get("token").getAsString(), obj.get("expires_at").getAsLong());
+
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            String errmsg = String.format("(TokenCache) read error, ignoring %s: %s", file.getFileName(), e.getMessage());
+            System.out.println(errmsg);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the token of the given identity, replacing the previous one.
+     */
+    public void store(String systemKey, String identity, String token, long expiresAt) {
+        Path file = this.file(systemKey, identity);
+        try {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("token", token);
+            obj.addProperty("expires_at", expiresAt);
+            byte[] plain = obj.toString().getBytes(StandardCharsets.UTF_8);
+
+            byte[] iv = new byte[IV_LENGTH];
+            this._random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, this._key, new GCMParameterSpec(TAG_LENGTH, iv));
+            cipher.updateAAD(this.associatedData(systemKey, identity));
+            byte[] encrypted = cipher.doFinal(plain);
+            Arrays.fill(plain, (byte) 0);
+
+            ByteBuffer content = ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted);
+            this.write(file, content.array());
+
+        } catch (IOException | GeneralSecurityException e) {
+            String errmsg = String.format("(TokenCache) write error: %s", e.getMessage());
+            System.out.println(errmsg);
+        }
+    }
+
+    /**
+     * Removes the token of the given identity, when the platform no longer accepts it.
+     */
+    public void remove(String systemKey, String identity) {
+        try {
+            Files.deleteIfExists(this.file(systemKey, identity));
+        } catch (IOException e) {
+            String errmsg = String.format("(TokenCache) remove error: %s", e.getMessage());
+            System.out.println(errmsg);
+        }
+    }
+
+    Path file(String systemKey, String identity) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(this.associatedData(systemKey, identity));
+            StringBuilder name = new StringBuilder(hash.length * 2 + 6);
+            for (byte b : hash) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return this._directory.resolve(name.append(".token").toString());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Binds the encrypted token to its system and identity, so a file copied under another name does not decrypt.
+     */
+    private byte[] associatedData(String systemKey, String identity) {
+        return (systemKey + "\n" + identity).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] readSalt() throws IOException {
+        Path file = this._directory.resolve(SALT_FILE);
+        try {
+            byte[] salt = Files.readAllBytes(file);
+            if (salt.length == 16) {
+                return salt;
+            }
+        } catch (NoSuchFileException e) {
+            // first use of the directory
+        }
+        byte[] salt = new byte[16];
+        this._random.nextBytes(salt);
+        this.write(file, salt);
+        // another process may have written its salt first
+        byte[] stored = Files.readAllBytes(file);
+        return stored.length == 16 ? stored : salt;
+    }
+
+    /**
+     * Writes the file atomically, readable by its owner only when the file system supports it.
+     */
+    private void write(Path file, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(this._directory, "token", ".tmp");
+        try {
+            try {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system
+            }
+            Files.write(temp, content);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static Path createDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        return directory;
+    }
+}
@@ -1,42 +1,56 @@
 package com.clearblade.java.api.auth;
 
+import com.clearblade.java.api.ClearBladeClient;
 import com.clearblade.java.api.internal.PlatformResponse;
 import com.clearblade.java.api.internal.RequestEngine;
 import com.clearblade.java.api.internal.RequestProperties;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Authenticates as a user of the system. The token is held in an immutable snapshot swapped atomically, so the
+ * requests read it without locking, while the calls changing it (doAuth and doLogout) run one at a time.
+ */
 public class UserAuth implements Auth {
 
+    static final String TOKEN_HEADER = "ClearBlade-UserToken";
+    static final Credentials SIGNED_OUT = new Credentials(TOKEN_HEADER, null, 0);
+
     private final String _email;
     private final String _password;
     private final boolean _tryRegister;
-    protected String _token;
+    protected final AtomicReference<Credentials> _credentials;
+    protected final Object _writeLock;
+    protected ClearBladeClient _client;
 
     public UserAuth(String email, String password) {
         this._email = email;
         this._password = password;
         this._tryRegister = false;
-        this._token = null;
+        this._credentials = new AtomicReference<>(SIGNED_OUT);
+        this._writeLock = new Object();
+        this._client = null;
     }
 
     public UserAuth(String email, String password, boolean tryRegister) {
         this._email = email;
         this._password = password;
         this._tryRegister = tryRegister;
-        this._token = null;
+        this._credentials = new AtomicReference<>(SIGNED_OUT);
+        this._writeLock = new Object();
+        this._client = null;
     }
 
-    synchronized public void doAuth() throws AuthException {
+    public void doAuth() throws AuthException {
 
         boolean emailMissing = this._email == null || this._email.length() <= 0;
         boolean passwordMissing = this._password == null || this._password.length() <= 0;
 
         if (emailMissing || passwordMissing) {
-            throw new AuthException("UserAuth needs both email and password");
+            throw new AuthException("UserAuth needs both email and password", false);
         }
 
         JsonObject payload = new JsonObject();
@@ -44,7 +58,8 @@ public class UserAuth implements Auth {
         payload.addProperty("password", this._password);
 
         RequestProperties headers = new RequestProperties
-                .Builder()
+                .Builder(this._client)
+                .reauthenticate(false)
                 .method("POST")
                 .endPoint("api/v/1/user/auth")
                 .body(payload)
@@ -53,19 +68,23 @@ public class UserAuth implements Auth {
         RequestEngine request = new RequestEngine();
         request.setHeaders(headers);
 
-        PlatformResponse<String> result = request.execute();
-        if (result.isError()) {
-            throw new AuthException(String.format("unable to authenticate user: %s", result.getData()));
-        }
+        synchronized (this._writeLock) {
+            PlatformResponse<String> result = request.execute();
+            if (result.isError()) {
+                throw new AuthException(String.format("unable to authenticate user: %s", result.getData()),
+                        AuthResponses.isRetryableStatus(request.getLastResponseCode()));
+            }
 
-        JsonObject obj = (JsonObject) JsonParser.parseString(result.getData());
-        this._token = obj.get("user_token").getAsString();
+            JsonObject obj = AuthResponses.parseTokenResponse(result.getData(), "user_token");
+            this._credentials.set(new Credentials(TOKEN_HEADER, obj.get("user_token").getAsString(), AuthResponses.parseExpiresAt(obj)));
+        }
     }
 
-    synchronized public void doCheck() throws AuthException {
+    public void doCheck() throws AuthException {
 
         RequestProperties headers = new RequestProperties
-                .Builder()
+                .Builder(this._client)
+                .reauthenticate(false)
                 .method("POST")
                 .endPoint("api/v/1/user/checkauth")
                 .build();
@@ -85,10 +104,11 @@ public class UserAuth implements Auth {
         }
     }
 
-    synchronized public void doLogout() throws AuthException {
+    public void doLogout() throws AuthException {
 
         RequestProperties headers = new RequestProperties
-                .Builder()
+                .Builder(this._client)
+                .reauthenticate(false)
                 .method("POST")
                 .endPoint("api/v/1/user/logout")
                 .build();
@@ -96,25 +116,49 @@ public class UserAuth implements Auth {
         RequestEngine request = new RequestEngine();
         request.setHeaders(headers);
 
-        PlatformResponse<String> result = request.execute();
-        if (result.isError()) {
-            throw new AuthException(String.format("unable to logout user: %s", result.getData()));
-        }
+        synchronized (this._writeLock) {
+            PlatformResponse<String> result = request.execute();
+            if (result.isError()) {
+                throw new AuthException(String.format("unable to logout user: %s", result.getData()));
+            }
 
-        this._token = null;
+            this._credentials.set(SIGNED_OUT);
+        }
     }
 
     public boolean isAuthed() {
-        return this._token != null && this._token.length() > 0;
+        return this._credentials.get().isAuthed();
     }
 
     public String getToken() {
-        return this._token == null ? "" : this._token;
+        return this._credentials.get().getToken();
+    }
+
+    public void setClient(ClearBladeClient client) {
+        this._client = client;
+    }
+
+    public ClearBladeClient getClient() {
+        return this._client;
+    }
+
+    public long getExpiresAt() {
+        return this._credentials.get().getExpiresAt();
+    }
+
+    public String getIdentity() {
+        return "user:" + this._email;
+    }
+
+    public boolean canRestoreTokens() {
+        return true;
+    }
+
+    public void setToken(String token, long expiresAt) {
+        this._credentials.set(new Credentials(TOKEN_HEADER, token, expiresAt));
     }
 
     public Map<String, String> getRequestHeaders() {
-        HashMap<String, String> m = new HashMap<String, String>();
-        m.put("ClearBlade-UserToken", this.getToken());
-        return m;
+        return this._credentials.get().getRequestHeaders();
     }
 }
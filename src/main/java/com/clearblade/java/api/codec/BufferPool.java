@@ -0,0 +1,73 @@
+package com.clearblade.java.api.codec;
+
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-thread Deflater / Inflater instances and scratch buffers, so encoding a payload does not allocate (and later
+ * finalize) native zlib streams and intermediate arrays for every message.
+ */
+final class BufferPool {
+
+	private static final int INITIAL_BUFFER_SIZE = 4096;
+
+	/**
+	 * Buffers larger than this are not kept, so one huge message does not pin its buffer for the thread's lifetime.
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 1 << 20;
+
+	private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[INITIAL_BUFFER_SIZE]);
+	private static final ThreadLocal<Deflater[]> DEFLATERS = ThreadLocal.withInitial(() -> new Deflater[Deflater.BEST_COMPRESSION + 2]);
+	private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+
+	private BufferPool() {
+	}
+
+	/**
+	 * @return this thread's scratch buffer, at least the given size
+	 */
+	static byte[] buffer(int size) {
+		byte[] buffer = BUFFER.get();
+		if (buffer.length < size) {
+			buffer = new byte[Math.max(size, buffer.length * 2)];
+			if (buffer.length <= MAX_POOLED_BUFFER_SIZE) {
+				BUFFER.set(buffer);
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * @return the given scratch buffer grown to the given size, keeping its content
+	 */
+	static byte[] grow(byte[] buffer, int size) {
+		byte[] grown = Arrays.copyOf(buffer, Math.max(size, buffer.length));
+		if (grown.length <= MAX_POOLED_BUFFER_SIZE) {
+			BUFFER.set(grown);
+		}
+		return grown;
+	}
+
+	/**
+	 * @return this thread's raw (no zlib header) deflater for the given level, reset and ready to use
+	 */
+	static Deflater deflater(int level) {
+		Deflater[] deflaters = DEFLATERS.get();
+		int slot = level + 1; // Deflater.DEFAULT_COMPRESSION is -1
+		if (deflaters[slot] == null) {
+			deflaters[slot] = new Deflater(level, true);
+		}
+		deflaters[slot].reset();
+		return deflaters[slot];
+	}
+
+	/**
+	 * @return this thread's raw (no zlib header) inflater, reset and ready to use
+	 */
+	static Inflater inflater() {
+		Inflater inflater = INFLATER.get();
+		inflater.reset();
+		return inflater;
+	}
+}
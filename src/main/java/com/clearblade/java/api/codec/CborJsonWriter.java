@@ -0,0 +1,295 @@
+package com.clearblade.java.api.codec;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Map;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Gson stream writer producing CBOR instead of JSON text, so objects are encoded straight from Gson's type adapters
+ * without building a JSON tree. Sizes of arrays and maps are filled in when they end (see
+ * {@link CborWriter#endContainer(int, int, int)}).
+ */
+final class CborJsonWriter extends JsonWriter {
+
+	/**
+	 * JsonWriter requires a character stream, which is never written to.
+	 */
+	private static final Writer UNUSED = new Writer() {
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	private final CborWriter cbor;
+
+	private int[] majors;
+	private int[] starts;
+	private int[] sizes;
+	private int depth;
+
+	private String deferredName;
+	private boolean busy;
+
+	CborJsonWriter() {
+		super(UNUSED);
+		this.cbor = new CborWriter();
+		this.majors = new int[16];
+		this.starts = new int[16];
+		this.sizes = new int[16];
+	}
+
+	/**
+	 * Resets the writer for a new message.
+	 * @return false if the writer is already encoding a message, from a type adapter encoding another one
+	 */
+	boolean open() {
+		if (busy) {
+			return false;
+		}
+		busy = true;
+		cbor.reset();
+		depth = 0;
+		deferredName = null;
+		return true;
+	}
+
+	void release() {
+		busy = false;
+	}
+
+	byte[] toByteArray() {
+		if (depth != 0) {
+			throw new IllegalStateException("incomplete CBOR item");
+		}
+		return cbor.toByteArray();
+	}
+
+	/**
+	 * Writes the given JSON tree, whose array and map sizes are known up front.
+	 */
+	void write(JsonElement element) {
+		beforeValue();
+		writeTree(element);
+	}
+
+	@Override
+	public JsonWriter beginArray() {
+		return begin(CborWriter.MAJOR_ARRAY);
+	}
+
+	@Override
+	public JsonWriter endArray() {
+		return end(CborWriter.MAJOR_ARRAY);
+	}
+
+	@Override
+	public JsonWriter beginObject() {
+		return begin(CborWriter.MAJOR_MAP);
+	}
+
+	@Override
+	public JsonWriter endObject() {
+		return end(CborWriter.MAJOR_MAP);
+	}
+
+	@Override
+	public JsonWriter name(String name) {
+		if (name == null) {
+			throw new NullPointerException("name == null");
+		}
+		if (deferredName != null || depth == 0 || majors[depth - 1] != CborWriter.MAJOR_MAP) {
+			throw new IllegalStateException("name written outside of an object");
+		}
+		deferredName = name;
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(String value) {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		cbor.writeString(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter jsonValue(String value) {
+		if (value == null) {
+			return nullValue();
+		}
+		write(JsonParser.parseString(value));
+		return this;
+	}
+
+	@Override
+	public JsonWriter nullValue() {
+		if (deferredName != null && !getSerializeNulls()) {
+			// the member is left out, like JsonWriter does
+			deferredName = null;
+			return this;
+		}
+		beforeValue();
+		cbor.writeNull();
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(boolean value) {
+		beforeValue();
+		cbor.writeBoolean(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Boolean value) {
+		if (value == null) {
+			return nullValue();
+		}
+		return value(value.booleanValue());
+	}
+
+	@Override
+	public JsonWriter value(double value) {
+		beforeValue();
+		cbor.writeDouble(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(long value) {
+		beforeValue();
+		cbor.writeLong(value);
+		return this;
+	}
+
+	@Override
+	public JsonWriter value(Number value) {
+		if (value == null) {
+			return nullValue();
+		}
+		beforeValue();
+		writeNumber(value);
+		return this;
+	}
+
+	@Override
+	public void flush() {
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	private JsonWriter begin(int major) {
+		beforeValue();
+		if (depth == majors.length) {
+			majors = Arrays.copyOf(majors, depth * 2);
+			starts = Arrays.copyOf(starts, depth * 2);
+			sizes = Arrays.copyOf(sizes, depth * 2);
+		}
+		majors[depth] = major;
+		starts[depth] = cbor.beginContainer();
+		sizes[depth] = 0;
+		depth++;
+		return this;
+	}
+
+	private JsonWriter end(int major) {
+		if (depth == 0 || majors[depth - 1] != major || deferredName != null) {
+			throw new IllegalStateException("nesting problem");
+		}
+		depth--;
+		cbor.endContainer(starts[depth], major, sizes[depth]);
+		return this;
+	}
+
+	/**
+	 * Writes the pending member name, if inside an object, and counts the value in its container.
+	 */
+	private void beforeValue() {
+		if (depth == 0) {
+			return;
+		}
+		if (majors[depth - 1] == CborWriter.MAJOR_MAP) {
+			if (deferredName == null) {
+				throw new IllegalStateException("value written without a name");
+			}
+			cbor.writeString(deferredName);
+			deferredName = null;
+		}
+		sizes[depth - 1]++;
+	}
+
+	private void writeTree(JsonElement element) {
+
+		if (element == null || element.isJsonNull()) {
+			cbor.writeNull();
+
+		} else if (element.isJsonObject()) {
+			cbor.writeMapHeader(element.getAsJsonObject().size());
+			for (Map.Entry<String, JsonElement> entry : element.getAsJsonObject().entrySet()) {
+				cbor.writeString(entry.getKey());
+				writeTree(entry.getValue());
+			}
+
+		} else if (element.isJsonArray()) {
+			JsonArray array = element.getAsJsonArray();
+			cbor.writeArrayHeader(array.size());
+			for (JsonElement item : array) {
+				writeTree(item);
+			}
+
+		} else {
+			JsonPrimitive primitive = element.getAsJsonPrimitive();
+			if (primitive.isBoolean()) {
+				cbor.writeBoolean(primitive.getAsBoolean());
+			} else if (primitive.isNumber()) {
+				writeNumber(primitive.getAsNumber());
+			} else {
+				cbor.writeString(primitive.getAsString());
+			}
+		}
+	}
+
+	private void writeNumber(Number number) {
+
+		if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+			cbor.writeLong(number.longValue());
+			return;
+		}
+		if (number instanceof Double || number instanceof Float) {
+			cbor.writeDouble(number.doubleValue());
+			return;
+		}
+
+		// numbers parsed from JSON text (LazilyParsedNumber) or big numbers
+		String text = number.toString();
+		if (text.indexOf('.') < 0 && text.indexOf('e') < 0 && text.indexOf('E') < 0) {
+			try {
+				cbor.writeLong(Long.parseLong(text));
+				return;
+			} catch (NumberFormatException e) {
+				// too large for a long, written as a double
+			}
+		}
+		cbor.writeDouble(number.doubleValue());
+	}
+}
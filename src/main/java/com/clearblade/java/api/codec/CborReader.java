@@ -0,0 +1,194 @@
+package com.clearblade.java.api.codec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Minimal CBOR (RFC 8949) decoder producing Gson elements. Supports the items {@link CborWriter} writes, plus half
+ * precision floats, tags (which are ignored) and byte strings (decoded as arrays of numbers). Indefinite-length items
+ * are rejected.
+ */
+final class CborReader {
+
+	/**
+	 * Protects against deeply nested (hostile) payloads overflowing the stack.
+	 */
+	private static final int MAX_DEPTH = 256;
+
+	private final byte[] buffer;
+	private int position;
+
+	CborReader(byte[] buffer) {
+		this.buffer = buffer;
+		this.position = 0;
+	}
+
+	/**
+	 * Reads the single item held by the buffer.
+	 * @throws IOException if the buffer does not hold exactly one valid item
+	 */
+	JsonElement readDocument() throws IOException {
+		JsonElement element = readElement(0);
+		if (position != buffer.length) {
+			throw new IOException("unexpected data after CBOR item");
+		}
+		return element;
+	}
+
+	private JsonElement readElement(int depth) throws IOException {
+
+		if (depth > MAX_DEPTH) {
+			throw new IOException("CBOR item nested too deeply");
+		}
+
+		int initial = readByte();
+		int major = initial >>> 5;
+		int info = initial & 0x1f;
+
+		switch (major) {
+			case CborWriter.MAJOR_UNSIGNED: {
+				long value = readArgument(info);
+				if (value < 0) {
+					// above Long.MAX_VALUE
+					return new JsonPrimitive(new java.math.BigInteger(Long.toUnsignedString(value)));
+				}
+				return new JsonPrimitive(value);
+			}
+			case CborWriter.MAJOR_NEGATIVE: {
+				long value = readArgument(info);
+				if (value < 0) {
+					return new JsonPrimitive(new java.math.BigInteger(Long.toUnsignedString(value)).negate().subtract(java.math.BigInteger.ONE));
+				}
+				return new JsonPrimitive(-1 - value);
+			}
+			case CborWriter.MAJOR_BYTES: {
+				int size = readLength(info);
+				JsonArray array = new JsonArray(size);
+				for (int idx = 0; idx < size; idx++) {
+					array.add(buffer[position + idx] & 0xff);
+				}
+				position += size;
+				return array;
+			}
+			case CborWriter.MAJOR_TEXT: {
+				int size = readLength(info);
+				String value = new String(buffer, position, size, StandardCharsets.UTF_8);
+				position += size;
+				return new JsonPrimitive(value);
+			}
+			case CborWriter.MAJOR_ARRAY: {
+				int size = readLength(info);
+				JsonArray array = new JsonArray(size);
+				for (int idx = 0; idx < size; idx++) {
+					array.add(readElement(depth + 1));
+				}
+				return array;
+			}
+			case CborWriter.MAJOR_MAP: {
+				int size = readLength(info);
+				JsonObject object = new JsonObject();
+				for (int idx = 0; idx < size; idx++) {
+					JsonElement key = readElement(depth + 1);
+					if (!key.isJsonPrimitive()) {
+						throw new IOException("unsupported CBOR map key");
+					}
+					object.add(key.getAsString(), readElement(depth + 1));
+				}
+				return object;
+			}
+			case CborWriter.MAJOR_TAG:
+				readArgument(info);
+				return readElement(depth + 1);
+			default:
+				return readSimple(initial);
+		}
+	}
+
+	private JsonElement readSimple(int initial) throws IOException {
+		switch (initial) {
+			case CborWriter.FALSE:
+				return new JsonPrimitive(false);
+			case CborWriter.TRUE:
+				return new JsonPrimitive(true);
+			case CborWriter.NULL:
+			case CborWriter.NULL + 1: // undefined
+				return JsonNull.INSTANCE;
+			case CborWriter.FLOAT16:
+				return new JsonPrimitive(halfToFloat((int) readRaw(2)));
+			case CborWriter.FLOAT32:
+				return new JsonPrimitive(Float.intBitsToFloat((int) readRaw(4)));
+			case CborWriter.FLOAT64:
+				return new JsonPrimitive(Double.longBitsToDouble(readRaw(8)));
+			default:
+				throw new IOException(String.format("unsupported CBOR item: 0x%02x", initial));
+		}
+	}
+
+	private long readArgument(int info) throws IOException {
+		if (info < 24) {
+			return info;
+		}
+		switch (info) {
+			case 24:
+				return readRaw(1);
+			case 25:
+				return readRaw(2);
+			case 26:
+				return readRaw(4);
+			case 27:
+				return readRaw(8);
+			default:
+				throw new IOException("unsupported CBOR length: " + info);
+		}
+	}
+
+	/**
+	 * Reads the length of a string, or the number of items of an array / map (each taking at least one byte), checking
+	 * it fits in the remaining data.
+	 */
+	private int readLength(int info) throws IOException {
+		long size = readArgument(info);
+		if (size < 0 || size > buffer.length - position) {
+			throw new IOException("truncated CBOR data");
+		}
+		return (int) size;
+	}
+
+	private int readByte() throws IOException {
+		if (position >= buffer.length) {
+			throw new IOException("truncated CBOR data");
+		}
+		return buffer[position++] & 0xff;
+	}
+
+	private long readRaw(int bytes) throws IOException {
+		if (bytes > buffer.length - position) {
+			throw new IOException("truncated CBOR data");
+		}
+		long value = 0;
+		for (int idx = 0; idx < bytes; idx++) {
+			value = value << 8 | (buffer[position++] & 0xff);
+		}
+		return value;
+	}
+
+	private static float halfToFloat(int half) {
+		int exponent = half >> 10 & 0x1f;
+		int mantissa = half & 0x3ff;
+		float value;
+		if (exponent == 0) {
+			value = mantissa * (float) Math.pow(2, -24);
+		} else if (exponent == 31) {
+			value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+		} else {
+			value = (mantissa + 1024) * (float) Math.pow(2, exponent - 25);
+		}
+		return (half & 0x8000) != 0 ? -value : value;
+	}
+}
@@ -0,0 +1,199 @@
+package com.clearblade.java.api.codec;
+
+import java.util.Arrays;
+
+/**
+ * Minimal CBOR (RFC 8949) encoder writing into a growable buffer that is reused from one message to the next. Only
+ * definite-length items are written.
+ */
+final class CborWriter {
+
+	static final int MAJOR_UNSIGNED = 0;
+	static final int MAJOR_NEGATIVE = 1;
+	static final int MAJOR_BYTES = 2;
+	static final int MAJOR_TEXT = 3;
+	static final int MAJOR_ARRAY = 4;
+	static final int MAJOR_MAP = 5;
+	static final int MAJOR_TAG = 6;
+	static final int MAJOR_SIMPLE = 7;
+
+	static final int FALSE = 0xf4;
+	static final int TRUE = 0xf5;
+	static final int NULL = 0xf6;
+	static final int FLOAT16 = 0xf9;
+	static final int FLOAT32 = 0xfa;
+	static final int FLOAT64 = 0xfb;
+
+	/**
+	 * Buffers larger than this are dropped by {@link #reset()}, so one huge message does not pin its buffer.
+	 */
+	private static final int MAX_RETAINED_SIZE = 1 << 20;
+
+	private byte[] buffer;
+	private int length;
+
+	CborWriter() {
+		this.buffer = new byte[256];
+		this.length = 0;
+	}
+
+	void reset() {
+		if (buffer.length > MAX_RETAINED_SIZE) {
+			buffer = new byte[256];
+		}
+		length = 0;
+	}
+
+	byte[] toByteArray() {
+		return Arrays.copyOf(buffer, length);
+	}
+
+	void writeNull() {
+		ensure(1);
+		buffer[length++] = (byte) NULL;
+	}
+
+	void writeBoolean(boolean value) {
+		ensure(1);
+		buffer[length++] = (byte) (value ? TRUE : FALSE);
+	}
+
+	void writeLong(long value) {
+		if (value >= 0) {
+			writeHeader(MAJOR_UNSIGNED, value);
+		} else {
+			writeHeader(MAJOR_NEGATIVE, -1 - value);
+		}
+	}
+
+	/**
+	 * Writes the given number as a single precision float when that loses nothing, as a double otherwise.
+	 */
+	void writeDouble(double value) {
+		float single = (float) value;
+		if (single == value || Double.isNaN(value)) {
+			ensure(5);
+			buffer[length++] = (byte) FLOAT32;
+			writeRaw(Float.floatToIntBits(single), 4);
+		} else {
+			ensure(9);
+			buffer[length++] = (byte) FLOAT64;
+			writeRaw(Double.doubleToLongBits(value), 8);
+		}
+	}
+
+	/**
+	 * Writes the given string as UTF-8 text, encoding it straight into the buffer.
+	 */
+	void writeString(String value) {
+
+		int count = value.length();
+		int utf8Length = 0;
+		for (int idx = 0; idx < count; idx++) {
+			char c = value.charAt(idx);
+			if (c < 0x80) {
+				utf8Length++;
+			} else if (c < 0x800) {
+				utf8Length += 2;
+			} else if (Character.isHighSurrogate(c) && idx + 1 < count && Character.isLowSurrogate(value.charAt(idx + 1))) {
+				utf8Length += 4;
+				idx++;
+			} else if (Character.isSurrogate(c)) {
+				utf8Length++;
+			} else {
+				utf8Length += 3;
+			}
+		}
+
+		writeHeader(MAJOR_TEXT, utf8Length);
+		ensure(utf8Length);
+
+		for (int idx = 0; idx < count; idx++) {
+			char c = value.charAt(idx);
+			if (c < 0x80) {
+				buffer[length++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[length++] = (byte) (0xc0 | c >> 6);
+				buffer[length++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && idx + 1 < count && Character.isLowSurrogate(value.charAt(idx + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++idx));
+				buffer[length++] = (byte) (0xf0 | codePoint >> 18);
+				buffer[length++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+				buffer[length++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+				buffer[length++] = (byte) (0x80 | codePoint & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogates are replaced, like String.getBytes does
+				buffer[length++] = '?';
+			} else {
+				buffer[length++] = (byte) (0xe0 | c >> 12);
+				buffer[length++] = (byte) (0x80 | c >> 6 & 0x3f);
+				buffer[length++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+	}
+
+	void writeArrayHeader(int size) {
+		writeHeader(MAJOR_ARRAY, size);
+	}
+
+	void writeMapHeader(int size) {
+		writeHeader(MAJOR_MAP, size);
+	}
+
+	/**
+	 * Starts an array or map whose size is not known yet, reserving a single byte for its header.
+	 * @return position of the header, to pass to {@link #endContainer(int, int, int)}
+	 */
+	int beginContainer() {
+		ensure(1);
+		return length++;
+	}
+
+	/**
+	 * Writes the header of a container started by {@link #beginContainer()}, now that its size is known. Headers
+	 * longer than the reserved byte shift the items written since, so the output is the same as with a known size.
+	 */
+	void endContainer(int start, int major, int size) {
+		int headerLength = size < 24 ? 1 : size < 0x100 ? 2 : size < 0x10000 ? 3 : 5;
+		if (headerLength > 1) {
+			ensure(headerLength - 1);
+			System.arraycopy(buffer, start + 1, buffer, start + headerLength, length - start - 1);
+		}
+		int end = length + headerLength - 1;
+		length = start;
+		writeHeader(major, size);
+		length = end;
+	}
+
+	private void writeHeader(int major, long argument) {
+		ensure(9);
+		int type = major << 5;
+		if (argument < 24) {
+			buffer[length++] = (byte) (type | argument);
+		} else if (argument < 0x100) {
+			buffer[length++] = (byte) (type | 24);
+			writeRaw(argument, 1);
+		} else if (argument < 0x10000) {
+			buffer[length++] = (byte) (type | 25);
+			writeRaw(argument, 2);
+		} else if (argument < 0x100000000L) {
+			buffer[length++] = (byte) (type | 26);
+			writeRaw(argument, 4);
+		} else {
+			buffer[length++] = (byte) (type | 27);
+			writeRaw(argument, 8);
+		}
+	}
+
+	private void writeRaw(long value, int bytes) {
+		for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) {
+			buffer[length++] = (byte) (value >>> shift);
+		}
+	}
+
+	private void ensure(int count) {
+		if (length + count > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(length + count, buffer.length * 2));
+		}
+	}
+}
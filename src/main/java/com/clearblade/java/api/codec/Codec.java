@@ -0,0 +1,26 @@
+package com.clearblade.java.api.codec;
+
+import java.io.IOException;
+
+/**
+ * Serializes values of type T to and from MQTT payloads, for the typed publish / subscribe methods of
+ * {@link com.clearblade.java.api.MqttClient}. Implementations must be thread safe.
+ * @param <T> type of the values
+ * @see CborCodec
+ */
+public interface Codec<T> {
+
+	/**
+	 * @param value value to serialize
+	 * @return payload holding the value
+	 * @throws IOException if the value cannot be serialized
+	 */
+	byte[] encode(T value) throws IOException;
+
+	/**
+	 * @param payload payload as received
+	 * @return the value held by the payload
+	 * @throws IOException if the payload is not valid for this codec
+	 */
+	T decode(byte[] payload) throws IOException;
+}
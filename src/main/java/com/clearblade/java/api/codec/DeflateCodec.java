@@ -0,0 +1,157 @@
+package com.clearblade.java.api.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses payloads with raw deflate (RFC 1951, without zlib header and checksum, since MQTT already guarantees the
+ * integrity of the payload).
+ *
+ * Small messages compress poorly on their own because each one starts with an empty history. A preset dictionary
+ * holding strings common to the messages (JSON keys, enumerated values, a typical message) fixes that; both ends of a
+ * topic must then use the same dictionary:
+ * <pre>
+ * byte[] dictionary = "{\"deviceId\":\"\",\"temperature\":,\"humidity\":,\"timestamp\":}".getBytes(StandardCharsets.UTF_8);
+ * PayloadCodecs.register(new DeflateCodec("telemetry-v1", Deflater.BEST_COMPRESSION, dictionary));
+ * </pre>
+ *
+ * Decoding stops with an IOException once the inflated payload exceeds a maximum size, {@link #DEFAULT_MAX_INFLATED_SIZE}
+ * unless set, so a small hostile message cannot expand into gigabytes.
+ */
+public class DeflateCodec implements PayloadCodec {
+
+	public static final String NAME = "deflate";
+
+	public static final int DEFAULT_MAX_INFLATED_SIZE = 16 * 1024 * 1024;
+
+	private static final byte[] PADDING = new byte[1];
+
+	private final String name;
+	private final int level;
+	private final byte[] dictionary;
+	private final int maxInflatedSize;
+
+	/**
+	 * Creates the default "deflate" codec, using the default compression level and no dictionary.
+	 */
+	public DeflateCodec() {
+		this(NAME, Deflater.DEFAULT_COMPRESSION, null);
+	}
+
+	/**
+	 * Creates a deflate codec using the given compression level and preset dictionary.
+	 * @param name name of the codec, which should identify the dictionary (including its version)
+	 * @param level compression level, from {@link Deflater#BEST_SPEED} to {@link Deflater#BEST_COMPRESSION}, or
+	 * {@link Deflater#DEFAULT_COMPRESSION}
+	 * @param dictionary preset dictionary, or null
+	 */
+	public DeflateCodec(String name, int level, byte[] dictionary) {
+		this(name, level, dictionary, DEFAULT_MAX_INFLATED_SIZE);
+	}
+
+	/**
+	 * Creates a deflate codec like {@link #DeflateCodec(String, int, byte[])}, decoding payloads of at most the given
+	 * size.
+	 * @param maxInflatedSize maximum size of a decoded payload, in bytes
+	 */
+	public DeflateCodec(String name, int level, byte[] dictionary, int maxInflatedSize) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level: " + level);
+		}
+		if (maxInflatedSize <= 0) {
+			throw new IllegalArgumentException("maxInflatedSize must be greater than zero");
+		}
+		this.name = name;
+		this.level = level;
+		this.dictionary = dictionary == null ? null : dictionary.clone();
+		this.maxInflatedSize = maxInflatedSize;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public byte[] encode(byte[] payload) throws IOException {
+		return deflate(payload, level, dictionary, 0, 0);
+	}
+
+	@Override
+	public byte[] decode(byte[] payload) throws IOException {
+		return inflate(payload, 0, payload.length, dictionary, maxInflatedSize);
+	}
+
+	/**
+	 * Deflates the given payload using this thread's pooled deflater and buffer.
+	 * @param prefix number of bytes to leave free before the compressed data
+	 * @param suffix number of bytes to leave free after the compressed data
+	 * @return a new array holding the compressed data between the requested free bytes
+	 */
+	static byte[] deflate(byte[] payload, int level, byte[] dictionary, int prefix, int suffix) {
+
+		Deflater deflater = BufferPool.deflater(level);
+		if (dictionary != null) {
+			deflater.setDictionary(dictionary);
+		}
+		deflater.setInput(payload);
+		deflater.finish();
+
+		byte[] buffer = BufferPool.buffer(prefix + payload.length / 2 + 64);
+		int length = prefix;
+		while (!deflater.finished()) {
+			if (length == buffer.length) {
+				buffer = BufferPool.grow(buffer, buffer.length * 2);
+			}
+			length += deflater.deflate(buffer, length, buffer.length - length);
+		}
+
+		return Arrays.copyOf(buffer, length + suffix);
+	}
+
+	/**
+	 * Inflates the given part of a payload using this thread's pooled inflater and buffer.
+	 * @param maxSize maximum size of the decompressed data
+	 * @return a new array holding the decompressed data
+	 * @throws IOException if the data is corrupted or truncated, or inflates to more than the maximum size
+	 */
+	static byte[] inflate(byte[] payload, int offset, int count, byte[] dictionary, int maxSize) throws IOException {
+
+		Inflater inflater = BufferPool.inflater();
+		if (dictionary != null) {
+			inflater.setDictionary(dictionary);
+		}
+		inflater.setInput(payload, offset, count);
+
+		byte[] buffer = BufferPool.buffer(count * 4 + 64);
+		int length = 0;
+		boolean padded = false;
+		try {
+			while (!inflater.finished()) {
+				if (length == buffer.length) {
+					// one byte over the maximum is enough to tell the data is too large
+					buffer = BufferPool.grow(buffer, (int) Math.min(buffer.length * 2L, maxSize + 1L));
+				}
+				int inflated = inflater.inflate(buffer, length, buffer.length - length);
+				if (inflated == 0 && inflater.needsInput() && !padded) {
+					// without zlib header, the inflater may need an extra "dummy" byte to detect the end of the data
+					inflater.setInput(PADDING);
+					padded = true;
+				} else if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new IOException("truncated deflate data");
+				}
+				length += inflated;
+				if (length > maxSize) {
+					throw new IOException(String.format("inflated payload exceeds %d bytes", maxSize));
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("invalid deflate data: " + e.getMessage(), e);
+		}
+
+		return Arrays.copyOf(buffer, length);
+	}
+}
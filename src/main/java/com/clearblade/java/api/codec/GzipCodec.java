@@ -0,0 +1,132 @@
+package com.clearblade.java.api.codec;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses payloads in the gzip format (RFC 1952), for interoperability with consumers that expect gzip. It adds
+ * 18 bytes to every message compared to {@link DeflateCodec}, and limits the size of decoded payloads the same way.
+ */
+public class GzipCodec implements PayloadCodec {
+
+	public static final String NAME = "gzip";
+
+	private static final int HEADER_SIZE = 10;
+	private static final int TRAILER_SIZE = 8;
+
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	private final int level;
+	private final int maxInflatedSize;
+
+	public GzipCodec() {
+		this(Deflater.DEFAULT_COMPRESSION);
+	}
+
+	public GzipCodec(int level) {
+		this(level, DeflateCodec.DEFAULT_MAX_INFLATED_SIZE);
+	}
+
+	/**
+	 * @param level compression level
+	 * @param maxInflatedSize maximum size of a decoded payload, in bytes
+	 */
+	public GzipCodec(int level, int maxInflatedSize) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("invalid compression level: " + level);
+		}
+		if (maxInflatedSize <= 0) {
+			throw new IllegalArgumentException("maxInflatedSize must be greater than zero");
+		}
+		this.level = level;
+		this.maxInflatedSize = maxInflatedSize;
+	}
+
+	@Override
+	public String getName() {
+		return NAME;
+	}
+
+	@Override
+	public byte[] encode(byte[] payload) throws IOException {
+
+		byte[] result = DeflateCodec.deflate(payload, level, null, HEADER_SIZE, TRAILER_SIZE);
+
+		// magic, CM = deflate, no flags, no mtime, no XFL, OS = unknown
+		result[0] = (byte) 0x1f;
+		result[1] = (byte) 0x8b;
+		result[2] = 8;
+		result[9] = (byte) 0xff;
+
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		int trailer = result.length - TRAILER_SIZE;
+		writeInt(result, trailer, (int) crc.getValue());
+		writeInt(result, trailer + 4, payload.length);
+
+		return result;
+	}
+
+	@Override
+	public byte[] decode(byte[] payload) throws IOException {
+
+		if (payload.length < HEADER_SIZE + TRAILER_SIZE || (payload[0] & 0xff) != 0x1f || (payload[1] & 0xff) != 0x8b || payload[2] != 8) {
+			throw new IOException("not in gzip format");
+		}
+
+		int flags = payload[3] & 0xff;
+		int offset = HEADER_SIZE;
+		if ((flags & FEXTRA) != 0) {
+			offset += 2 + ((payload[offset] & 0xff) | (payload[offset + 1] & 0xff) << 8);
+		}
+		if ((flags & FNAME) != 0) {
+			offset = skipString(payload, offset);
+		}
+		if ((flags & FCOMMENT) != 0) {
+			offset = skipString(payload, offset);
+		}
+		if ((flags & FHCRC) != 0) {
+			offset += 2;
+		}
+
+		int trailer = payload.length - TRAILER_SIZE;
+		if (offset > trailer) {
+			throw new IOException("truncated gzip header");
+		}
+
+		byte[] result = DeflateCodec.inflate(payload, offset, trailer - offset, null, maxInflatedSize);
+
+		CRC32 crc = new CRC32();
+		crc.update(result);
+		if (readInt(payload, trailer) != (int) crc.getValue() || readInt(payload, trailer + 4) != result.length) {
+			throw new IOException("corrupt gzip data");
+		}
+
+		return result;
+	}
+
+	private static int skipString(byte[] payload, int offset) throws IOException {
+		while (offset < payload.length && payload[offset] != 0) {
+			offset++;
+		}
+		if (offset == payload.length) {
+			throw new IOException("truncated gzip header");
+		}
+		return offset + 1;
+	}
+
+	private static void writeInt(byte[] buffer, int offset, int value) {
+		buffer[offset] = (byte) value;
+		buffer[offset + 1] = (byte) (value >>> 8);
+		buffer[offset + 2] = (byte) (value >>> 16);
+		buffer[offset + 3] = (byte) (value >>> 24);
+	}
+
+	private static int readInt(byte[] buffer, int offset) {
+		return (buffer[offset] & 0xff) | (buffer[offset + 1] & 0xff) << 8 | (buffer[offset + 2] & 0xff) << 16 | (buffer[offset + 3] & 0xff) << 24;
+	}
+}
@@ -0,0 +1,36 @@
+package com.clearblade.java.api.codec;
+
+import java.io.IOException;
+
+/**
+ * Transforms MQTT payloads on their way to and from the broker, typically to compress them. Codecs are bound to topic
+ * filters with {@link com.clearblade.java.api.MqttClientOptions#setPayloadCodec(String, PayloadCodec)}; publishers and
+ * subscribers of a topic must agree on the codec used for it.
+ *
+ * Additional codecs can be made available by name to {@link PayloadCodecs#forName(String)} by listing them in a
+ * META-INF/services/com.clearblade.java.api.codec.PayloadCodec file (see {@link java.util.ServiceLoader}).
+ * Implementations must be thread safe.
+ */
+public interface PayloadCodec {
+
+	/**
+	 * @return unique name of this codec, such as "deflate"
+	 */
+	String getName();
+
+	/**
+	 * Encodes a payload before it is published.
+	 * @param payload payload as given by the caller
+	 * @return encoded payload
+	 * @throws IOException if the payload cannot be encoded
+	 */
+	byte[] encode(byte[] payload) throws IOException;
+
+	/**
+	 * Decodes a payload received from the broker, before it is handed to the message callback.
+	 * @param payload payload as received
+	 * @return decoded payload
+	 * @throws IOException if the payload is not valid for this codec
+	 */
+	byte[] decode(byte[] payload) throws IOException;
+}
@@ -0,0 +1,44 @@
+package com.clearblade.java.api.codec;
+
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the available payload codecs. "deflate" and "gzip" are always available; other codecs are discovered
+ * through {@link ServiceLoader} the first time the registry is used, or can be added with {@link #register}.
+ */
+public final class PayloadCodecs {
+
+	private static final Map<String, PayloadCodec> CODECS = new ConcurrentHashMap<>();
+
+	static {
+		register(new DeflateCodec());
+		register(new GzipCodec());
+		for (PayloadCodec codec : ServiceLoader.load(PayloadCodec.class)) {
+			register(codec);
+		}
+	}
+
+	private PayloadCodecs() {
+	}
+
+	/**
+	 * Makes the given codec available by name, replacing any codec with the same name.
+	 */
+	public static void register(PayloadCodec codec) {
+		CODECS.put(codec.getName(), codec);
+	}
+
+	/**
+	 * @return the codec with the given name
+	 * @throws IllegalArgumentException if no such codec is available
+	 */
+	public static PayloadCodec forName(String name) {
+		PayloadCodec codec = CODECS.get(name);
+		if (codec == null) {
+			throw new IllegalArgumentException("unknown payload codec: " + name);
+		}
+		return codec;
+	}
+}
@@ -0,0 +1,184 @@
+package com.clearblade.java.api.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+
+import com.clearblade.java.api.ClearBladeClient;
+
+/**
+ * Prepares the network path of a client before its API calls: the host names of the platform and messaging URLs are
+ * resolved, and connections are opened to the platform with a light call whose response is read in full, so the JVM
+ * keeps them for the following calls. The first calls then skip the DNS lookup, the TCP connection set-up and the TLS
+ * handshake.
+ *
+ * Idle connections are closed after a while by the server or the JVM (5 seconds unless the server says otherwise), so
+ * the warm-up can be repeated periodically with {@link #keepWarm(long, int)}.
+ *
+ * Warming up is best effort: failures are logged when the logging of the client is enabled, and otherwise ignored, the
+ * API calls reporting the actual errors.
+ */
+public class ConnectionWarmer {
+
+	// endpoint answering without authentication
+	private static final String WARM_UP_ENDPOINT = "/api/about";
+
+	/**
+	 * Opens the warm-up connections, in parallel so that each one gets its own connection.
+	 */
+	private static final ExecutorService CONNECTIONS = Executors.newCachedThreadPool(runnable -> {
+		Thread thread = new Thread(runnable, "clearblade-warm-up");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Runs the periodic warm-ups of all clients.
+	 */
+	private static final ScheduledExecutorService KEEP_WARM = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "clearblade-keep-warm");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final String TAG = "ConnectionWarmer";
+
+	private final ClearBladeClient client;
+	private ScheduledFuture<?> keepWarmTask;
+
+	public ConnectionWarmer(ClearBladeClient client) {
+		this.client = client;
+		this.keepWarmTask = null;
+	}
+
+	/**
+	 * Resolves the platform and messaging hosts, and opens the given number of connections to the platform.
+	 * @param connections how many connections to open
+	 * @return true if every connection could be opened
+	 */
+	public boolean warmUp(int connections) {
+
+		resolve(client.getMessagingUrl());
+		if (!resolve(client.getPlatformUrl())) {
+			return false;
+		}
+		if (connections <= 1) {
+			return connections <= 0 || call();
+		}
+
+		List<CompletableFuture<Boolean>> calls = new ArrayList<>(connections);
+		for (int idx = 0; idx < connections; idx++) {
+			calls.add(CompletableFuture.supplyAsync(this::call, CONNECTIONS));
+		}
+		boolean warm = true;
+		for (CompletableFuture<Boolean> call : calls) {
+			warm &= call.join();
+		}
+		return warm;
+	}
+
+	/**
+	 * Warms up the connections to the platform every interval, until {@link #stop()} is called.
+	 * @param interval time between two warm-ups, in milliseconds
+	 * @param connections how many connections to open
+	 */
+	public synchronized void keepWarm(long interval, int connections) {
+		stop();
+		if (interval > 0 && connections > 0) {
+			keepWarmTask = KEEP_WARM.scheduleWithFixedDelay(() -> warmUp(connections), interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Stops the periodic warm-ups.
+	 */
+	public synchronized void stop() {
+		if (keepWarmTask != null) {
+			keepWarmTask.cancel(false);
+			keepWarmTask = null;
+		}
+	}
+
+	/**
+	 * Resolves the host of the given URL, the JVM caching the addresses for the following connections.
+	 */
+	private boolean resolve(String url) {
+		try {
+			String host = new URI(url).getHost();
+			if (host == null) {
+				// messaging URLs such as tcp://host:port are parsed, but not bare host:port forms
+				host = url.contains(":") ? url.substring(0, url.lastIndexOf(':')) : url;
+			}
+			InetAddress.getAllByName(host);
+			return true;
+		} catch (URISyntaxException | IOException e) {
+			log("unable to resolve " + url + ": " + e.getMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Calls the platform and reads the whole response, whatever its status, so the connection is kept open.
+	 */
+	private boolean call() {
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) new URL(client.getPlatformUrl() + WARM_UP_ENDPOINT).openConnection();
+			if (connection instanceof HttpsURLConnection) {
+				SSLSocketFactory socketFactory = client.getSslSocketFactory();
+				if (socketFactory != null) {
+					((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
+				}
+			}
+			connection.setConnectTimeout(client.getCallTimeout());
+			connection.setReadTimeout(client.getCallTimeout());
+			client.getSystemHeaders().applyTo(connection);
+
+			int responseCode = connection.getResponseCode();
+			InputStream in = responseCode / 100 == 2 ? connection.getInputStream() : connection.getErrorStream();
+			if (in != null) {
+				drain(in);
+			}
+			return true;
+		} catch (IOException | GeneralSecurityException e) {
+			log("unable to connect to " + client.getPlatformUrl() + ": " + e.getMessage());
+			if (connection != null) {
+				connection.disconnect();
+			}
+			return false;
+		}
+	}
+
+	private static void drain(InputStream in) throws IOException {
+		try {
+			byte[] buffer = new byte[1024];
+			while (in.read(buffer) >= 0) {
+				// discards the body
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void log(String log) {
+		if (client.isLogging()) {
+			System.out.println(TAG + ": " + log);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package com.clearblade.java.api.internal;
+
+import java.net.URLConnection;
+import java.util.Map;
+
+/**
+ * Immutable list of request headers, set on the connections of the API calls. The header sets are built once, when the
+ * client is created or its credentials change, and shared by every call using them, so preparing a call copies no map
+ * and allocates nothing for its headers.
+ */
+public final class HeaderSet {
+
+	public static final HeaderSet EMPTY = new HeaderSet(new String[0], new String[0]);
+
+	private final String[] names;
+	private final String[] values;
+
+	private HeaderSet(String[] names, String[] values) {
+		this.names = names;
+		this.values = values;
+	}
+
+	/**
+	 * Returns the header set holding the given headers. Headers without a value are left out.
+	 */
+	public static HeaderSet of(Map<String, String> headers) {
+		String[] names = new String[headers.size()];
+		String[] values = new String[headers.size()];
+		int count = 0;
+		for (Map.Entry<String, String> entry : headers.entrySet()) {
+			if (entry.getKey() != null && entry.getValue() != null) {
+				names[count] = entry.getKey();
+				values[count] = entry.getValue();
+				count++;
+			}
+		}
+		if (count < names.length) {
+			String[] trimmedNames = new String[count];
+			String[] trimmedValues = new String[count];
+			System.arraycopy(names, 0, trimmedNames, 0, count);
+			System.arraycopy(values, 0, trimmedValues, 0, count);
+			names = trimmedNames;
+			values = trimmedValues;
+		}
+		return new HeaderSet(names, values);
+	}
+
+	/**
+	 * Sets the headers on the given connection, replacing the values already set for the same names.
+	 */
+	public void applyTo(URLConnection connection) {
+		for (int idx = 0; idx < names.length; idx++) {
+			connection.setRequestProperty(names[idx], values[idx]);
+		}
+	}
+
+	public int size() {
+		return names.length;
+	}
+
+	/**
+	 * Returns whenever the given headers are the ones of this set, without allocating.
+	 */
+	public boolean matches(Map<String, String> headers) {
+		if (headers.size() != names.length) {
+			return false;
+		}
+		for (int idx = 0; idx < names.length; idx++) {
+			if (!values[idx].equals(headers.get(names[idx]))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return the value of the given header, or null if the set does not hold it
+	 */
+	public String get(String name) {
+		for (int idx = 0; idx < names.length; idx++) {
+			if (names[idx].equalsIgnoreCase(name)) {
+				return values[idx];
+			}
+		}
+		return null;
+	}
+}
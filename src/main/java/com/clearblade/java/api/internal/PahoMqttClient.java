@@ -0,0 +1,20 @@
+package com.clearblade.java.api.internal;
+
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttException;
+
+/**
+ * Paho's synchronous MqttClient is a thin blocking wrapper around an MqttAsyncClient. This subclass exposes that
+ * underlying async client so the same connection can be used for both blocking and non-blocking operations.
+ */
+public class PahoMqttClient extends org.eclipse.paho.client.mqttv3.MqttClient {
+
+	public PahoMqttClient(String serverURI, String clientId, MqttClientPersistence persistence) throws MqttException {
+		super(serverURI, clientId, persistence);
+	}
+
+	public MqttAsyncClient getAsyncClient() {
+		return aClient;
+	}
+}
@@ -10,19 +10,17 @@ import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.ProtocolException;
+import java.net.SocketTimeoutException;
 import java.net.URL;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.cert.CertificateException;
+import java.net.UnknownHostException;
 import java.util.Map;
 
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
-import javax.net.ssl.TrustManager;
-import javax.net.ssl.X509TrustManager;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.SSLSocketFactory;
 
-import com.clearblade.java.api.ClearBlade;
-import com.clearblade.java.api.Util;
+import com.clearblade.java.api.ClearBladeClient;
+import com.clearblade.java.api.RetryPolicy;
 
 
 /**
@@ -58,6 +56,15 @@ public class RequestEngine {
 	private int isSSL = -1;
 	
 	private RequestProperties headers;
+
+	// status code of the last response, 0 if the call failed before a response
+	private int lastResponseCode = 0;
+
+	// exception that ended the last attempt, null if it completed
+	private Exception lastFailure = null;
+
+	// delay requested by the Retry-After header of the last response in milliseconds, 0 if none
+	private long lastRetryAfter = 0;
 	
 	/**
 	 * Constructs a RequestEngine Object with null RequestProperties object
@@ -111,6 +118,13 @@ public class RequestEngine {
 	}
 
 		
+	/**
+	 * Returns the HTTP status code of the last response, 0 if the platform did not answer
+	 */
+	public int getLastResponseCode() {
+		return lastResponseCode;
+	}
+
 	/**
 	 * Sets the RequestEngine Object's headers to the given RequestProperties
 	 * object.
@@ -133,7 +147,65 @@ public class RequestEngine {
 		if(this.headers == null){
 			throw new IllegalArgumentException("The headers must not be null!");
 		}
-		
+
+		ClearBladeClient client = this.headers.getClient();
+		RetryPolicy policy = client.getInitOptions().getRetryPolicy();
+		boolean retryable = policy.isRetryableMethod(this.headers.getMethod());
+
+		// transient failures are retried after a jittered exponential delay, within the retry budget of the client
+		int attempts = 1;
+		PlatformResponse<String> result = attempt(client);
+		while (retryable && attempts < policy.getMaxAttempts() && isTransientFailure(policy)) {
+			if (!client.getRetryBudget().tryWithdraw()) {
+				client.getRetryMetrics().recordBudgetRejection();
+				log(client, "retry budget spent, not retrying", false);
+				break;
+			}
+			long delay = policy.getDelay(attempts, lastRetryAfter);
+			log(client, "transient failure, retrying in " + delay + " ms", false);
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			attempts++;
+			result = attempt(client);
+		}
+
+		if (attempts == 1 && !isTransientFailure(policy)) {
+			client.getRetryBudget().deposit();
+		}
+		client.getRetryMetrics().recordCall(attempts, result.isError());
+		return result;
+	}
+
+	/**
+	 * Makes one attempt of the API call. A rejected token is renewed once, shared with the concurrent calls rejected
+	 * with the same token, and the call is replayed if it is safe to send twice.
+	 * @return result stores the condition of the ApiRequest
+	 */
+	private PlatformResponse<String> attempt(ClearBladeClient client){
+
+		Map<String, String> authHeaders = this.headers.getAuthHeaders();
+		PlatformResponse<String> result = send(authHeaders);
+
+		if (lastResponseCode == HttpURLConnection.HTTP_UNAUTHORIZED && this.headers.isReauthenticate()
+				&& client.getInitOptions().isReauthOnUnauthorized()) {
+			log(client, "token rejected, reauthenticating", false);
+			// the token is renewed for the next calls, but a call that may have been applied is not sent twice
+			if (client.getAuthManager().reauthenticate(authHeaders) && RetryPolicy.isIdempotent(this.headers.getMethod())) {
+				result = send(this.headers.getAuthHeaders());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sends the API call once with the given auth headers, and records the status code of the response.
+	 * @return result stores the condition of the ApiRequest
+	 */
+	private PlatformResponse<String> send(Map<String, String> authHeaders){
 		HttpURLConnection urlConnection = null;
 		// used to determine if error happened during call
 		boolean err = false;
@@ -143,18 +215,23 @@ public class RequestEngine {
 		String responseMessage = null;
 
 		PlatformResponse<String> result = null;
-		SSLContext ctx=null;
+		ClearBladeClient client = this.headers.getClient();
+		lastResponseCode = 0;
+		lastFailure = null;
+		lastRetryAfter = 0;
 		try {
-			if (isSSL() && ClearBlade.isAllowUntrusted()) {
-				ctx = createUntrustedManager(ctx);
-				HttpsURLConnection.setDefaultSSLSocketFactory(ctx.getSocketFactory());
-			}
 			String method = this.headers.getMethod();
 			String charset = "UTF-8";
 			URL url = new URL(this.headers.getUri());
 			
 			if (isSSL()){
-				urlConnection = (HttpsURLConnection) url.openConnection();
+				HttpsURLConnection httpsConnection = (HttpsURLConnection) url.openConnection();
+				// accepts untrusted certificates for this client only
+				SSLSocketFactory socketFactory = client.getSslSocketFactory();
+				if (socketFactory != null) {
+					httpsConnection.setSSLSocketFactory(socketFactory);
+				}
+				urlConnection = httpsConnection;
 				
 			}else {
 				urlConnection = (HttpURLConnection) url.openConnection();
@@ -163,31 +240,21 @@ public class RequestEngine {
 			
 			urlConnection.setRequestMethod(method);
 			urlConnection.setConnectTimeout(this.headers.getTimeout());
+			int attemptTimeout = client.getInitOptions().getRetryPolicy().getAttemptTimeout();
+			if (attemptTimeout > 0) {
+				urlConnection.setReadTimeout(attemptTimeout);
+			}
 
 			// things get ugly here. most requests should just need usertoken, but you need key/secret
 			// to get token on the auth request and to register new user. also both token and key/secret 
 			// are needed for logout and auth check requests. so if the url cotains the logout or check 
 			// endpoints, we add all 3, otherwise we add token
 
-            // sets system key and system secret
-
-			String systemKey = Util.getSystemKey();
-			String systemSecret = Util.getSystemSecret();
-
-			if (systemKey != null) {
-				urlConnection.setRequestProperty("CLEARBLADE-SYSTEMKEY", systemKey);
-			}
-
-			if (systemSecret != null) {
-				urlConnection.setRequestProperty("CLEARBLADE-SYSTEMSECRET", systemSecret);
-			}
-
-			// sets headers obtained from Auth method
+			// sets system key, system secret and accepted content, then the headers obtained from the auth context
+			// of the call or from the Auth method. both sets are built once per client and per token.
 
-			Map<String, String> authHeaders = ClearBlade.getAuth().getRequestHeaders();
-			for (Map.Entry<String, String> entry : authHeaders.entrySet()) {
-			    urlConnection.setRequestProperty(entry.getKey(), entry.getValue());
-			}
+			client.getSystemHeaders().applyTo(urlConnection);
+			this.headers.getAuthHeaderSet(authHeaders).applyTo(urlConnection);
 
 //			// set headers (old legacy code, commented out for reference)
 //			// TODO: do we really need to set headers based on path? We should be able to set all headers without
@@ -209,9 +276,6 @@ public class RequestEngine {
 //				urlConnection.setRequestProperty("ClearBlade-UserToken", userToken);
 //			}
 
-			urlConnection.setRequestProperty("Accept", "application/json");
-			urlConnection.setRequestProperty("Accept-Charset", charset);
-			
 			OutputStream output = null;
 
 			if (method.equalsIgnoreCase("POST") || method.equalsIgnoreCase("PUT")) {
@@ -224,29 +288,36 @@ public class RequestEngine {
 				
 				output = urlConnection.getOutputStream();
 				output.write(this.headers.getBody().getBytes(charset));
+				output.close();
 			}
 			
 			//TODO : what is the expense of getResponseCode(), getResponseMessage(), getInputStream()
 			responseCode = urlConnection.getResponseCode();
+			lastResponseCode = responseCode;
+			lastRetryAfter = parseRetryAfter(urlConnection.getHeaderField("Retry-After"));
 			responseMessage = urlConnection.getResponseMessage();
 
 			if(responseCode / 100 == 2) {  // If the response code is within 200 range success
 				InputStream in = new BufferedInputStream(urlConnection.getInputStream());
 				String json = readStream(in);
 				result = new PlatformResponse<String>(err, json);
-				Util.logger(TAG,method + " "+ responseCode + ":" + responseMessage, false);
+				log(client,method + " "+ responseCode + ":" + responseMessage, false);
 
 			} else {	// else an Error Occurred 
 				String errMessage;
 				InputStream in = new BufferedInputStream(urlConnection.getErrorStream());
 				errMessage = readStream(in);
 				String errResp = responseCode + ":" + responseMessage + ":" + errMessage;
-				Util.logger(TAG,errResp, true);
+				log(client,errResp, true);
 				err = true;
 				result = new PlatformResponse<String>(err,errResp);
 			}
 		}catch(Exception e) {
 
+			lastFailure = e;
+			if (e instanceof SocketTimeoutException) {
+				client.getRetryMetrics().recordAttemptTimeout();
+			}
 			String caught = null;
 			if(e instanceof MalformedURLException) {
 				caught = "MalformedURLException: ";
@@ -262,13 +333,14 @@ public class RequestEngine {
 			err = true;
 			e.printStackTrace();
 			result = new PlatformResponse<String>(err,"RequestEngine Caught " + caught + e.getMessage());
-		}
-		finally {
-			// Make sure to close connection
+
+			// the connection may be in an unknown state, so it is closed instead of being reused
 			if (urlConnection!= null){
 				urlConnection.disconnect();
 			}
 		}
+		// the response was read in full and its stream closed, which hands the connection back to the
+		// keep-alive cache of the JVM for the next calls to the same server
 
 		return result;
 	}
@@ -293,36 +365,44 @@ public class RequestEngine {
 	}
 	
 	/**
-	 * Internal function to hack around unsigned certificates on platform servers.  
-	 * @param ctx
-	 * @return SSLContext object that has a TrustManager that will accept all certificates
-	 * @throws KeyManagementException
-	 * @throws NoSuchAlgorithmException
+	 * Returns whenever the last attempt failed in a way that another attempt may not: the connection failed or was
+	 * reset, the attempt timed out, or the platform answered with a retryable status code. Errors in the URL, the
+	 * protocol, the host name or the certificate of the server are not transient.
 	 */
-	private SSLContext createUntrustedManager(SSLContext ctx) throws KeyManagementException, NoSuchAlgorithmException{
-		ctx = SSLContext.getInstance("SSL");
-		ctx.init(null, new TrustManager[] {
-			
-	       new X509TrustManager() {
-	          public java.security.cert.X509Certificate[] getAcceptedIssuers() {
-	            return null;
-	          }
-
-			public void checkClientTrusted(java.security.cert.X509Certificate[] chain, String authType)
-					throws CertificateException {
-				System.out.println("AARON : checking for client trusted");
-			}
+	private boolean isTransientFailure(RetryPolicy policy) {
+		if (lastFailure != null) {
+			return lastFailure instanceof IOException && !(lastFailure instanceof MalformedURLException
+					|| lastFailure instanceof ProtocolException || lastFailure instanceof UnknownHostException
+					|| lastFailure instanceof SSLHandshakeException);
+		}
+		return policy.isRetryableStatus(lastResponseCode);
+	}
 
-			public void checkServerTrusted(java.security.cert.X509Certificate[] chain, String authType)
-					throws CertificateException {
-				System.out.println("AARON : checking for server trusted");
-				
-			}
+	/**
+	 * Returns the delay of a Retry-After header given in seconds, in milliseconds. HTTP dates are ignored.
+	 */
+	private static long parseRetryAfter(String retryAfter) {
+		if (retryAfter == null) {
+			return 0;
+		}
+		try {
+			return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
 
-	       }
-		}, new java.security.SecureRandom());
-		return ctx;
+	/**
+	 * Displays internal log messages when the logging of the client is enabled
+	 */
+	private void log(ClearBladeClient client, String log, boolean error) {
+		if (client.isLogging()) {
+			if (error) {
+				System.err.println(TAG + ": " + log);
+			} else {
+				System.out.println(TAG + ": " + log);
+			}
+		}
 	}
 
 }
-
@@ -2,9 +2,13 @@ package com.clearblade.java.api.internal;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import com.clearblade.java.api.ClearBlade;
+import com.clearblade.java.api.ClearBladeClient;
+import com.clearblade.java.api.auth.AuthContext;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 /**
@@ -14,7 +18,7 @@ import com.google.gson.JsonObject;
  * <p>Headers are typically used in conjunction with the Request Engine Class
  * like so:
  * <pre>
- * RequestProperties headers = new RequestProperties.Builder(ClearBlade.getUri(), ClearBlade.getCallTimeOut()).build();
+ * RequestProperties headers = new RequestProperties.Builder(client).method("GET").endPoint(endPoint).build();
  * request.setHeaders(headers);
  * </pre>
  * </p>
@@ -30,6 +34,9 @@ public class RequestProperties {
 	private String qs;					// the query string to be used
 	private int timeout;				// the time the API CALL will wait for a connection until it aborts.
 	private String uri;					// the backend uri
+	private transient ClearBladeClient client;	// the client making the API call
+	private AuthContext authContext;	// credentials of the API call, null for the Auth of the client
+	private boolean reauthenticate;		// whenever a rejected token is renewed and the API call replayed
 
 	/**
 	 * Class consists of methods that configure the RequestProperties object 
@@ -40,6 +47,9 @@ public class RequestProperties {
 	public static class Builder {
 
 		//optional 
+		private ClearBladeClient client;
+		private AuthContext authContext;
+		private boolean reauthenticate = true;
 		private String uri;
 		private String body = "";
 		private String endPoint = "";
@@ -86,12 +96,21 @@ public class RequestProperties {
 			return encodedString.toString();
 		}
 		/**
-		 * Constructs a new Builder object.
+		 * Constructs a new Builder object for the default client.
 		 * 
 		 */
 		public Builder () {
-		    uri = ClearBlade.getPlatformUrl();
-		    timeout = ClearBlade.getCallTimeout();
+		    this(null);
+		}
+
+		/**
+		 * Constructs a new Builder object for the given client.
+		 * @param client the client making the API call, null for the default client
+		 */
+		public Builder (ClearBladeClient client) {
+		    this.client = client != null ? client : ClearBlade.getDefaultClient();
+		    uri = this.client.getPlatformUrl();
+		    timeout = this.client.getCallTimeout();
 		}
 
 		/** 
@@ -105,6 +124,29 @@ public class RequestProperties {
 			return this;
 		}
 
+		/** 
+		 * returns the current Builder Object with the credentials
+		 * of the API call set as the given context.
+		 * @param context credentials to use, null to use the Auth of the client
+		 * @return this the builder Object being modified
+		 */
+		public Builder authContext (AuthContext context) {
+			authContext = context;
+			return this;
+		}
+
+		/** 
+		 * returns the current Builder Object with the renewal of
+		 * rejected tokens enabled or not. Calls to the authentication
+		 * endpoints disable it.
+		 * @param enabled whenever a 401 response renews the token of the client
+		 * @return this the builder Object being modified
+		 */
+		public Builder reauthenticate (boolean enabled) {
+			reauthenticate = enabled;
+			return this;
+		}
+
 		/** 
 		 * returns the current Builder Object with timeout
 		 * set as the given time in milliseconds.
@@ -142,6 +184,17 @@ public class RequestProperties {
 			return this;
 		}
 
+		/** 
+		 * returns the current Builder Object with body
+		 * set as the given array.
+		 * @param data the payload for the request
+		 * @return this the builder Object being modified
+		 */
+		public Builder body (JsonArray data) {
+			body = data.toString();
+			return this;
+		}
+
 		/** 
 		 * returns the current Builder Object with url end Point
 		 * set as the given endPoint.
@@ -221,6 +274,47 @@ public class RequestProperties {
 		return uri;
 	}
 
+	/**
+	 * Returns the client making the API call, whose system, auth and transport settings are used
+	 * @return client
+	 */
+	public ClearBladeClient getClient() {
+		return client;
+	}
+
+	/**
+	 * Returns the credentials of the API call
+	 * @return authContext, or null if the Auth of the client is used
+	 */
+	public AuthContext getAuthContext() {
+		return authContext;
+	}
+
+	/**
+	 * Returns whenever the token of the client may be renewed when the API call is rejected
+	 * @return false for calls to the authentication endpoints and calls using an auth context
+	 */
+	public boolean isReauthenticate() {
+		return reauthenticate && authContext == null;
+	}
+
+	/**
+	 * Returns the request headers authenticating the API call
+	 * @return headers of the auth context, or of the Auth of the client
+	 */
+	public Map<String, String> getAuthHeaders() {
+		return authContext != null ? authContext.getRequestHeaders() : client.getAuth().getRequestHeaders();
+	}
+
+	/**
+	 * Returns the header set of the given auth headers, shared with the other calls using the same credentials
+	 * @param authHeaders headers returned by {@link #getAuthHeaders()}
+	 * @return header set of the auth context, or of the Auth of the client
+	 */
+	public HeaderSet getAuthHeaderSet(Map<String, String> authHeaders) {
+		return authContext != null ? authContext.getHeaderSet() : client.getAuthHeaderSet(authHeaders);
+	}
+
 	/**
 	 * Constructs a RequestProperties object that is made from given
 	 * builder object.
@@ -233,10 +327,13 @@ public class RequestProperties {
 		method = builder.method;
 		qs = builder.qs;
 		uri = builder.uri;
+		client = builder.client;
+		authContext = builder.authContext;
+		reauthenticate = builder.reauthenticate;
 		if(builder.timeout != 0) {
 			timeout = builder.timeout;
 		} else {
-			timeout = ClearBlade.getCallTimeout();
+			timeout = client.getCallTimeout();
 		}
 		if(!endPoint.equals(""))
 			uri += "/" + endPoint;
@@ -0,0 +1,58 @@
+package com.clearblade.java.api.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket bounding the retries of a client: each call succeeding at its first attempt deposits a fraction of a
+ * retry, and each retry withdraws one. Deposits and withdrawals never block.
+ */
+public final class RetryBudget {
+
+	// the balance is kept in thousandths of a retry
+	private static final long UNIT = 1000;
+
+	private final long deposit;
+	private final long capacity;
+	private final AtomicLong balance;
+
+	/**
+	 * @param ratio retries earned by each call succeeding at its first attempt
+	 * @param maxRetries retries the budget holds at most, and at first
+	 */
+	public RetryBudget(double ratio, int maxRetries) {
+		this.deposit = (long) (ratio * UNIT);
+		this.capacity = maxRetries * UNIT;
+		this.balance = new AtomicLong(capacity);
+	}
+
+	/**
+	 * Records a call that succeeded at its first attempt.
+	 */
+	public void deposit() {
+		if (deposit <= 0) {
+			return;
+		}
+		long current;
+		do {
+			current = balance.get();
+			if (current >= capacity) {
+				return;
+			}
+		} while (!balance.compareAndSet(current, Math.min(capacity, current + deposit)));
+	}
+
+	/**
+	 * Withdraws one retry.
+	 * @return false if the budget is spent, and the call must not be retried
+	 */
+	public boolean tryWithdraw() {
+		long current;
+		do {
+			current = balance.get();
+			if (current < UNIT) {
+				return false;
+			}
+		} while (!balance.compareAndSet(current, current - UNIT));
+		return true;
+	}
+}
@@ -0,0 +1,259 @@
+package com.clearblade.java.api.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel, made for large numbers of short timeouts that are usually cancelled before they expire (such
+ * as request timeouts). Scheduling and cancelling are O(1) and never block; a single daemon thread advances the wheel
+ * every tick and runs the expired tasks, so timeouts fire with up to one tick of delay.
+ *
+ * Expired tasks run on the timer thread and must be short.
+ */
+public final class TimerWheel {
+
+	/**
+	 * Handle of a scheduled task.
+	 */
+	public interface Timeout {
+
+		/**
+		 * Cancels the task if it did not run yet.
+		 * @return true if the task was cancelled, false if it already ran (or was already cancelled)
+		 */
+		boolean cancel();
+	}
+
+	private static final int PENDING = 0;
+	private static final int CANCELLED = 1;
+	private static final int EXPIRED = 2;
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Queue<Entry> added;
+	private final Queue<Entry> cancelled;
+	private final String threadName;
+	private final AtomicInteger pending;
+
+	private Thread worker;
+	private volatile boolean stopped;
+	private volatile long startTime;
+	private long tick;
+
+	/**
+	 * @param tickDuration duration of one tick, the precision of the timeouts
+	 * @param unit unit of the tick duration
+	 * @param ticksPerWheel number of buckets, rounded up to a power of two
+	 * @param threadName name of the timer thread
+	 */
+	public TimerWheel(long tickDuration, TimeUnit unit, int ticksPerWheel, String threadName) {
+
+		if (tickDuration <= 0 || ticksPerWheel <= 0) {
+			throw new IllegalArgumentException("tickDuration and ticksPerWheel must be greater than zero");
+		}
+
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.wheel = new Bucket[size];
+		for (int idx = 0; idx < size; idx++) {
+			this.wheel[idx] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.added = new ConcurrentLinkedQueue<>();
+		this.cancelled = new ConcurrentLinkedQueue<>();
+		this.threadName = threadName;
+		this.pending = new AtomicInteger();
+		this.worker = null;
+		this.stopped = false;
+		this.tick = 0;
+	}
+
+	/**
+	 * Schedules the given task to run once the given delay elapsed. The timer thread is started on first use.
+	 * @return handle to cancel the task
+	 */
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+
+		if (stopped) {
+			throw new IllegalStateException("timer wheel is stopped");
+		}
+		start();
+
+		Entry entry = new Entry(task, System.nanoTime() - startTime + unit.toNanos(Math.max(0, delay)));
+		pending.incrementAndGet();
+		added.add(entry);
+		return entry;
+	}
+
+	/**
+	 * @return the number of tasks scheduled and not yet run or cancelled
+	 */
+	public int getPendingCount() {
+		return pending.get();
+	}
+
+	/**
+	 * Stops the timer thread. Pending tasks never run.
+	 */
+	public void stop() {
+		stopped = true;
+		synchronized (this) {
+			if (worker != null) {
+				worker.interrupt();
+			}
+		}
+	}
+
+	private synchronized void start() {
+		if (worker != null) {
+			return;
+		}
+		startTime = System.nanoTime();
+		worker = new Thread(this::run, threadName);
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	private void run() {
+		while (!stopped) {
+			long deadline = (tick + 1) * tickNanos;
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				} catch (InterruptedException e) {
+					if (stopped) {
+						return;
+					}
+				}
+				continue;
+			}
+
+			removeCancelled();
+			transferAdded();
+			wheel[(int) (tick & mask)].expire(deadline);
+			tick++;
+		}
+	}
+
+	private void removeCancelled() {
+		for (Entry entry; (entry = cancelled.poll()) != null; ) {
+			if (entry.bucket != null) {
+				entry.bucket.remove(entry);
+			}
+		}
+	}
+
+	private void transferAdded() {
+		// bounded, so a flood of new timeouts cannot starve the wheel
+		for (int count = 0; count < 100_000; count++) {
+			Entry entry = added.poll();
+			if (entry == null) {
+				return;
+			}
+			if (entry.state.get() != PENDING) {
+				continue;
+			}
+			long ticks = Math.max(entry.deadline / tickNanos, tick);
+			entry.rounds = (ticks - tick) / wheel.length;
+			wheel[(int) (ticks & mask)].add(entry);
+		}
+	}
+
+	private final class Entry implements Timeout {
+
+		final Runnable task;
+		final long deadline;
+		final AtomicInteger state;
+		long rounds;
+		Bucket bucket;
+		Entry prev;
+		Entry next;
+
+		Entry(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+			this.state = new AtomicInteger(PENDING);
+		}
+
+		@Override
+		public boolean cancel() {
+			if (!state.compareAndSet(PENDING, CANCELLED)) {
+				return false;
+			}
+			pending.decrementAndGet();
+			cancelled.add(this);
+			return true;
+		}
+
+		void expire() {
+			if (!state.compareAndSet(PENDING, EXPIRED)) {
+				return;
+			}
+			pending.decrementAndGet();
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				String errmsg = String.format("(TimerWheel) timeout task error: %s", e.getMessage());
+				System.out.println(errmsg);
+			}
+		}
+	}
+
+	/**
+	 * Doubly linked list of the entries hashed to one slot of the wheel, only used by the timer thread.
+	 */
+	private static final class Bucket {
+
+		private Entry head;
+		private Entry tail;
+
+		void add(Entry entry) {
+			entry.bucket = this;
+			if (head == null) {
+				head = tail = entry;
+			} else {
+				tail.next = entry;
+				entry.prev = tail;
+				tail = entry;
+			}
+		}
+
+		void remove(Entry entry) {
+			if (entry.prev != null) {
+				entry.prev.next = entry.next;
+			} else {
+				head = entry.next;
+			}
+			if (entry.next != null) {
+				entry.next.prev = entry.prev;
+			} else {
+				tail = entry.prev;
+			}
+			entry.prev = entry.next = null;
+			entry.bucket = null;
+		}
+
+		void expire(long deadline) {
+			Entry entry = head;
+			while (entry != null) {
+				Entry next = entry.next;
+				if (entry.rounds <= 0 && entry.deadline <= deadline) {
+					remove(entry);
+					entry.expire();
+				} else if (entry.state.get() == CANCELLED) {
+					remove(entry);
+				} else {
+					entry.rounds--;
+				}
+				entry = next;
+			}
+		}
+	}
+}
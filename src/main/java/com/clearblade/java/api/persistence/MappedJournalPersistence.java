@@ -0,0 +1,551 @@
+package com.clearblade.java.api.persistence;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+
+/**
+ * MqttClientPersistence backed by an append-only journal of memory-mapped segment files. Persisting a message costs a
+ * sequential append into the current segment instead of creating (and later deleting) one file per message, like
+ * Paho's MqttDefaultFilePersistence does.
+ *
+ * An in-memory index maps every live key to its latest record. Segments are deleted once none of their records are
+ * live anymore, and the oldest segment is compacted (its live records copied to the current segment) once less than
+ * half of it is live, so disk usage stays proportional to the number of inflight messages.
+ *
+ * Record layout: [type:int][length:int][crc32:int][keyLength:int][key][headerLength:int][header][payloadLength:int][payload]
+ * where the type is written last, so a partially written record is never replayed.
+ */
+public class MappedJournalPersistence implements MqttClientPersistence {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String LOCK_FILE = ".lck";
+
+    private static final int RECORD_PUT = 1;
+    private static final int RECORD_REMOVE = 2;
+    private static final int RECORD_PREFIX = 12; // type + length + crc
+
+    private final File rootDirectory;
+    private final int segmentSize;
+    private final boolean forceOnWrite;
+
+    private File clientDirectory;
+    private RandomAccessFile lockFile;
+    private FileLock lock;
+
+    private final TreeMap<Long, Segment> segments;
+    private final Map<String, Location> index;
+    private Segment active;
+
+    /**
+     * Creates a journal persistence storing its segments under the given directory, using the default segment size.
+     */
+    public MappedJournalPersistence(String directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * @param directory directory under which a sub-directory is created for each client
+     * @param segmentSize size in bytes of each memory-mapped segment
+     * @param forceOnWrite whenever every write is forced to the storage device (survives OS crashes, but slower).
+     *                     When false, writes survive process crashes only.
+     */
+    public MappedJournalPersistence(String directory, int segmentSize, boolean forceOnWrite) {
+        if (segmentSize <= RECORD_PREFIX) {
+            throw new IllegalArgumentException("segmentSize is too small");
+        }
+        this.rootDirectory = new File(directory);
+        this.segmentSize = segmentSize;
+        this.forceOnWrite = forceOnWrite;
+        this.segments = new TreeMap<>();
+        this.index = new HashMap<>();
+        this.active = null;
+    }
+
+    // MqttClientPersistence
+
+    @Override
+    public synchronized void open(String clientId, String serverURI) throws MqttPersistenceException {
+
+        if (clientDirectory != null) {
+            throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE);
+        }
+
+        File directory = new File(rootDirectory, sanitize(clientId + "-" + serverURI));
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new MqttPersistenceException(new IOException("could not create directory " + directory));
+        }
+
+        try {
+            lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+            lock = lockFile.getChannel().tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            lock = null;
+        }
+
+        if (lock == null) {
+            closeQuietly(lockFile);
+            lockFile = null;
+            throw new MqttPersistenceException(MqttPersistenceException.REASON_CODE_PERSISTENCE_IN_USE);
+        }
+
+        clientDirectory = directory;
+
+        try {
+            load();
+        } catch (IOException e) {
+            closeSegments();
+            releaseLock();
+            throw new MqttPersistenceException(e);
+        } catch (MqttPersistenceException e) {
+            closeSegments();
+            releaseLock();
+            throw e;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws MqttPersistenceException {
+        if (clientDirectory == null) {
+            return;
+        }
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+        closeSegments();
+        releaseLock();
+    }
+
+    @Override
+    public synchronized void put(String key, MqttPersistable persistable) throws MqttPersistenceException {
+        checkOpen();
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int headerLength = persistable.getHeaderBytes() == null ? 0 : persistable.getHeaderLength();
+        int payloadLength = persistable.getPayloadBytes() == null ? 0 : persistable.getPayloadLength();
+        int bodyLength = 4 + keyBytes.length + 4 + headerLength + 4 + payloadLength;
+
+        try {
+            Segment segment = reserve(RECORD_PREFIX + bodyLength);
+            int offset = segment.position;
+
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.position(offset + RECORD_PREFIX);
+            buffer.putInt(keyBytes.length).put(keyBytes);
+            buffer.putInt(headerLength);
+            if (headerLength > 0) {
+                buffer.put(persistable.getHeaderBytes(), persistable.getHeaderOffset(), headerLength);
+            }
+            buffer.putInt(payloadLength);
+            if (payloadLength > 0) {
+                buffer.put(persistable.getPayloadBytes(), persistable.getPayloadOffset(), payloadLength);
+            }
+
+            commit(segment, offset, RECORD_PUT, bodyLength);
+
+            Location location = new Location(segment, offset, RECORD_PREFIX + bodyLength);
+            release(index.put(key, location));
+            segment.liveRecords++;
+            segment.liveBytes += location.length;
+
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+
+        compact();
+    }
+
+    @Override
+    public synchronized MqttPersistable get(String key) throws MqttPersistenceException {
+        checkOpen();
+
+        Location location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+
+        MappedByteBuffer buffer = location.segment.buffer;
+        int position = location.offset + RECORD_PREFIX;
+        position += 4 + buffer.getInt(position);
+
+        int headerLength = buffer.getInt(position);
+        byte[] header = read(buffer, position + 4, headerLength);
+        position += 4 + headerLength;
+
+        int payloadLength = buffer.getInt(position);
+        byte[] payload = read(buffer, position + 4, payloadLength);
+
+        return new MqttPersistentData(key, header, 0, headerLength, payload, 0, payloadLength);
+    }
+
+    @Override
+    public synchronized void remove(String key) throws MqttPersistenceException {
+        checkOpen();
+
+        Location location = index.remove(key);
+        if (location == null) {
+            return;
+        }
+
+        // the tombstone is needed until the segment holding the removed record is gone
+
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int bodyLength = 4 + keyBytes.length;
+
+        try {
+            Segment segment = reserve(RECORD_PREFIX + bodyLength);
+            int offset = segment.position;
+            segment.buffer.position(offset + RECORD_PREFIX);
+            segment.buffer.putInt(keyBytes.length).put(keyBytes);
+            commit(segment, offset, RECORD_REMOVE, bodyLength);
+
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+
+        release(location);
+        compact();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public synchronized Enumeration keys() throws MqttPersistenceException {
+        checkOpen();
+        return Collections.enumeration(new ArrayList<>(index.keySet()));
+    }
+
+    @Override
+    public synchronized void clear() throws MqttPersistenceException {
+        checkOpen();
+
+        index.clear();
+        for (Segment segment : new ArrayList<>(segments.values())) {
+            delete(segment);
+        }
+        active = null;
+
+        try {
+            active = createSegment(1, segmentSize);
+        } catch (IOException e) {
+            throw new MqttPersistenceException(e);
+        }
+    }
+
+    @Override
+    public synchronized boolean containsKey(String key) throws MqttPersistenceException {
+        checkOpen();
+        return index.containsKey(key);
+    }
+
+    /**
+     * @return the number of segment files currently in use
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    // Journal internals
+
+    private void load() throws IOException, MqttPersistenceException {
+
+        File[] files = clientDirectory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                long id;
+                try {
+                    id = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()), 16);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                segments.put(id, mapSegment(id, file, (int) Math.max(file.length(), segmentSize)));
+            }
+        }
+
+        for (Segment segment : segments.values()) {
+            replay(segment);
+        }
+
+        if (segments.isEmpty()) {
+            active = createSegment(1, segmentSize);
+        } else {
+            active = segments.lastEntry().getValue();
+        }
+
+        compact();
+    }
+
+    private void replay(Segment segment) {
+
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+
+        while (position + RECORD_PREFIX <= segment.capacity) {
+
+            int type = buffer.getInt(position);
+            int bodyLength = buffer.getInt(position + 4);
+            int crc = buffer.getInt(position + 8);
+
+            boolean valid = (type == RECORD_PUT || type == RECORD_REMOVE)
+                    && bodyLength >= 4 && bodyLength <= segment.capacity - position - RECORD_PREFIX
+                    && crc == checksum(buffer, position + RECORD_PREFIX, bodyLength);
+            if (!valid) {
+                break; // end of data, or a torn write
+            }
+
+            int keyLength = buffer.getInt(position + RECORD_PREFIX);
+            String key = new String(read(buffer, position + RECORD_PREFIX + 4, keyLength), StandardCharsets.UTF_8);
+
+            if (type == RECORD_PUT) {
+                Location location = new Location(segment, position, RECORD_PREFIX + bodyLength);
+                release(index.put(key, location));
+                segment.liveRecords++;
+                segment.liveBytes += location.length;
+            } else {
+                release(index.remove(key));
+            }
+
+            position += RECORD_PREFIX + bodyLength;
+        }
+
+        segment.position = position;
+    }
+
+    /**
+     * Returns a segment with room for a record of the given size, rolling over to a new segment if needed.
+     */
+    private Segment reserve(int recordLength) throws IOException {
+        if (active.capacity - active.position >= recordLength) {
+            return active;
+        }
+        if (forceOnWrite) {
+            active.buffer.force();
+        }
+        active = createSegment(active.id + 1, Math.max(segmentSize, recordLength));
+        return active;
+    }
+
+    private void commit(Segment segment, int offset, int type, int bodyLength) {
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putInt(offset + 4, bodyLength);
+        buffer.putInt(offset + 8, checksum(buffer, offset + RECORD_PREFIX, bodyLength));
+        buffer.putInt(offset, type);
+        segment.position = offset + RECORD_PREFIX + bodyLength;
+        if (forceOnWrite) {
+            buffer.force();
+        }
+    }
+
+    private void release(Location location) {
+        if (location != null) {
+            location.segment.liveRecords--;
+            location.segment.liveBytes -= location.length;
+        }
+    }
+
+    /**
+     * Deletes dead segments (oldest first, so tombstones never outlive the records they remove), and relocates the
+     * live records of the oldest segment once it is mostly garbage.
+     */
+    private void compact() throws MqttPersistenceException {
+
+        while (segments.size() > 1) {
+
+            Segment oldest = segments.firstEntry().getValue();
+            if (oldest == active) {
+                return;
+            }
+
+            if (oldest.liveRecords > 0) {
+                if (oldest.liveBytes * 2 >= oldest.position) {
+                    return;
+                }
+                try {
+                    relocate(oldest);
+                } catch (IOException e) {
+                    throw new MqttPersistenceException(e);
+                }
+            }
+
+            delete(oldest);
+        }
+    }
+
+    private void relocate(Segment from) throws IOException {
+
+        List<Map.Entry<String, Location>> moving = new ArrayList<>();
+        for (Map.Entry<String, Location> entry : index.entrySet()) {
+            if (entry.getValue().segment == from) {
+                moving.add(entry);
+            }
+        }
+
+        for (Map.Entry<String, Location> entry : moving) {
+            Location location = entry.getValue();
+            Segment to = reserve(location.length);
+            int offset = to.position;
+
+            byte[] record = read(from.buffer, location.offset, location.length);
+            to.buffer.position(offset);
+            to.buffer.put(record);
+            to.position = offset + location.length;
+
+            Location moved = new Location(to, offset, location.length);
+            release(location);
+            to.liveRecords++;
+            to.liveBytes += moved.length;
+            entry.setValue(moved);
+        }
+
+        if (forceOnWrite) {
+            active.buffer.force();
+        }
+    }
+
+    private Segment createSegment(long id, int capacity) throws IOException {
+        File file = new File(clientDirectory, String.format("%016x%s", id, SEGMENT_SUFFIX));
+        Segment segment = mapSegment(id, file, capacity);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    private Segment mapSegment(long id, File file, int capacity) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            return new Segment(id, file, buffer, capacity);
+        }
+    }
+
+    /**
+     * Deletes the file of a segment that no live record points to. Java offers no supported way to unmap a buffer, so
+     * the mapping is dropped and unmapped once the buffer is garbage collected: on POSIX systems the file is removed
+     * right away and its disk space freed with the mapping, while Windows refuses to delete a mapped file, which is
+     * then deleted on exit.
+     */
+    private void delete(Segment segment) {
+        segments.remove(segment.id);
+        segment.buffer = null;
+        if (!segment.file.delete()) {
+            segment.file.deleteOnExit();
+        }
+    }
+
+    private void closeSegments() {
+        segments.clear();
+        index.clear();
+        active = null;
+    }
+
+    private void releaseLock() {
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+        } catch (IOException e) {
+            // ignored, the lock goes away with the file handle
+        }
+        closeQuietly(lockFile);
+        lock = null;
+        lockFile = null;
+        clientDirectory = null;
+    }
+
+    private void checkOpen() throws MqttPersistenceException {
+        if (clientDirectory == null) {
+            throw new MqttPersistenceException(new IllegalStateException("persistence is not open"));
+        }
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(slice(buffer, offset, length));
+        return (int) crc.getValue();
+    }
+
+    private static byte[] read(MappedByteBuffer buffer, int offset, int length) {
+        byte[] result = new byte[length];
+        slice(buffer, offset, length).get(result);
+        return result;
+    }
+
+    private static ByteBuffer slice(MappedByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view;
+    }
+
+    private static String sanitize(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        for (char c : name.toCharArray()) {
+            if (Character.isLetterOrDigit(c) || c == '-') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void closeQuietly(RandomAccessFile file) {
+        try {
+            if (file != null) {
+                file.close();
+            }
+        } catch (IOException e) {
+            // ignored
+        }
+    }
+
+    private static class Segment {
+        final long id;
+        final File file;
+        MappedByteBuffer buffer;
+        final int capacity;
+        int position;
+        int liveRecords;
+        long liveBytes;
+
+        Segment(long id, File file, MappedByteBuffer buffer, int capacity) {
+            this.id = id;
+            this.file = file;
+            this.buffer = buffer;
+            this.capacity = capacity;
+            this.position = 0;
+            this.liveRecords = 0;
+            this.liveBytes = 0;
+        }
+    }
+
+    private static class Location {
+        final Segment segment;
+        final int offset;
+        final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.clearblade.java.api.stream;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses numbers straight from ASCII payload bytes, without decoding them to a String first.
+ */
+public final class AsciiNumbers {
+
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private AsciiNumbers() {
+	}
+
+	/**
+	 * Same as {@link #parseDouble(byte[], int, int)} over the whole array.
+	 */
+	public static double parseDouble(byte[] bytes) {
+		return parseDouble(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Parses a decimal number ("42", "-3.5", "1.2e-3"), ignoring surrounding whitespace. Numbers of up to 15
+	 * significant digits with a small exponent (the vast majority of telemetry values) are converted with a single
+	 * exact floating point operation; others go through {@link Double#parseDouble(String)}, so the result is always
+	 * the correctly rounded value.
+	 * @throws NumberFormatException if the bytes are not a decimal number
+	 */
+	public static double parseDouble(byte[] bytes, int offset, int length) {
+
+		int pos = offset;
+		int end = offset + length;
+		while (pos < end && isWhitespace(bytes[pos])) {
+			pos++;
+		}
+		while (end > pos && isWhitespace(bytes[end - 1])) {
+			end--;
+		}
+		int start = pos;
+
+		boolean negative = false;
+		if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+			negative = bytes[pos] == '-';
+			pos++;
+		}
+
+		long mantissa = 0;
+		int exponent = 0;
+		int digits = 0;
+		boolean exact = true;
+
+		for (; pos < end && isDigit(bytes[pos]); pos++) {
+			if (mantissa < MAX_EXACT_MANTISSA) {
+				mantissa = mantissa * 10 + (bytes[pos] - '0');
+			} else {
+				exponent++;
+				exact &= bytes[pos] == '0';
+			}
+			digits++;
+		}
+		if (pos < end && bytes[pos] == '.') {
+			pos++;
+			for (; pos < end && isDigit(bytes[pos]); pos++) {
+				if (mantissa < MAX_EXACT_MANTISSA) {
+					mantissa = mantissa * 10 + (bytes[pos] - '0');
+					exponent--;
+				} else {
+					exact &= bytes[pos] == '0';
+				}
+				digits++;
+			}
+		}
+		if (digits == 0) {
+			throw invalid(bytes, offset, length);
+		}
+
+		if (pos < end && (bytes[pos] == 'e' || bytes[pos] == 'E')) {
+			pos++;
+			boolean negativeExponent = false;
+			if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+				negativeExponent = bytes[pos] == '-';
+				pos++;
+			}
+			int exponentDigits = 0;
+			int value = 0;
+			for (; pos < end && isDigit(bytes[pos]); pos++) {
+				if (value < 100_000) {
+					value = value * 10 + (bytes[pos] - '0');
+				}
+				exponentDigits++;
+			}
+			if (exponentDigits == 0) {
+				throw invalid(bytes, offset, length);
+			}
+			exponent += negativeExponent ? -value : value;
+		}
+		if (pos != end) {
+			throw invalid(bytes, offset, length);
+		}
+
+		if (!exact || mantissa > MAX_EXACT_MANTISSA || exponent < -22 || exponent > 22) {
+			return Double.parseDouble(new String(bytes, start, end - start, StandardCharsets.US_ASCII));
+		}
+
+		// both the mantissa and the power of ten are exact doubles, so a single operation rounds correctly
+		double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+		return negative ? -value : value;
+	}
+
+	private static boolean isDigit(byte value) {
+		return value >= '0' && value <= '9';
+	}
+
+	private static boolean isWhitespace(byte value) {
+		return value == ' ' || value == '\t' || value == '\r' || value == '\n';
+	}
+
+	private static NumberFormatException invalid(byte[] bytes, int offset, int length) {
+		String text = new String(bytes, offset, Math.min(length, 32), StandardCharsets.US_ASCII);
+		return new NumberFormatException(String.format("not a decimal number: \"%s\"", text));
+	}
+}
@@ -0,0 +1,158 @@
+package com.clearblade.java.api.stream;
+
+import java.util.function.Function;
+
+import com.clearblade.java.api.Item;
+import com.clearblade.java.api.MessageView;
+
+/**
+ * IngestionOptions is used for customizing an {@link IngestionPipeline}. The following values are used by default:
+ *
+ *   itemMapper - [EMPTY] (the payload is a JSON object holding the item properties)
+ *   batchSize - 500 (items)
+ *   maxLatency - 1000 (milliseconds)
+ *   chunkSize - 100 (items per insert call)
+ *   parallelism - 4 (concurrent insert calls)
+ *   queueCapacity - 10000 (items)
+ *   onBatchError - [EMPTY] (failures are logged)
+ */
+public class IngestionOptions {
+
+    /**
+     * Called with the items of an insert call that failed.
+     */
+    @FunctionalInterface
+    public interface OnBatchError {
+        void onBatchError(Item[] items, Exception error);
+    }
+
+    private Function<MessageView, Item> _itemMapper;
+    private int _batchSize;
+    private long _maxLatency;
+    private int _chunkSize;
+    private int _parallelism;
+    private int _queueCapacity;
+    private OnBatchError _onBatchError;
+
+    public IngestionOptions() {
+        this._itemMapper = null;
+        this._batchSize = 500;
+        this._maxLatency = 1000;
+        this._chunkSize = 100;
+        this._parallelism = 4;
+        this._queueCapacity = 10000;
+        this._onBatchError = null;
+    }
+
+    public IngestionOptions(IngestionOptions other) {
+        this._itemMapper = other._itemMapper;
+        this._batchSize = other._batchSize;
+        this._maxLatency = other._maxLatency;
+        this._chunkSize = other._chunkSize;
+        this._parallelism = other._parallelism;
+        this._queueCapacity = other._queueCapacity;
+        this._onBatchError = other._onBatchError;
+    }
+
+    // Getters
+
+    public Function<MessageView, Item> getItemMapper() {
+        return this._itemMapper;
+    }
+
+    public int getBatchSize() {
+        return this._batchSize;
+    }
+
+    public long getMaxLatency() {
+        return this._maxLatency;
+    }
+
+    public int getChunkSize() {
+        return this._chunkSize;
+    }
+
+    public int getParallelism() {
+        return this._parallelism;
+    }
+
+    public int getQueueCapacity() {
+        return this._queueCapacity;
+    }
+
+    public OnBatchError getOnBatchError() {
+        return this._onBatchError;
+    }
+
+    // Setters
+
+    /**
+     * Converts each message to the item to insert. Returning null skips the message, and throwing a RuntimeException
+     * rejects it.
+     */
+    public IngestionOptions setItemMapper(Function<MessageView, Item> itemMapper) {
+        this._itemMapper = itemMapper;
+        return this;
+    }
+
+    /**
+     * Sets how many items are collected before a batch is inserted.
+     */
+    public IngestionOptions setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than zero");
+        }
+        this._batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets how long an item may wait for its batch to fill up before the batch is inserted anyway, in milliseconds.
+     */
+    public IngestionOptions setMaxLatency(long maxLatency) {
+        if (maxLatency <= 0) {
+            throw new IllegalArgumentException("maxLatency must be greater than zero");
+        }
+        this._maxLatency = maxLatency;
+        return this;
+    }
+
+    /**
+     * Sets how many items are sent by each insert call. A batch is split in chunks inserted in parallel.
+     */
+    public IngestionOptions setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be greater than zero");
+        }
+        this._chunkSize = chunkSize;
+        return this;
+    }
+
+    /**
+     * Sets how many insert calls may run at the same time.
+     */
+    public IngestionOptions setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be greater than zero");
+        }
+        this._parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets how many items may wait for insertion. Once the queue is full, the delivery of MQTT messages blocks until
+     * the inserts catch up, so the broker holds back the messages instead of the client buffering them.
+     */
+    public IngestionOptions setQueueCapacity(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queueCapacity must be greater than zero");
+        }
+        this._queueCapacity = queueCapacity;
+        return this;
+    }
+
+    public IngestionOptions setOnBatchError(OnBatchError onBatchError) {
+        this._onBatchError = onBatchError;
+        return this;
+    }
+}
@@ -0,0 +1,262 @@
+package com.clearblade.java.api.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+import com.clearblade.java.api.Collection;
+import com.clearblade.java.api.Item;
+import com.clearblade.java.api.MessageView;
+import com.clearblade.java.api.MessageViewCallback;
+import com.google.gson.JsonParser;
+
+/**
+ * Saves the messages of a subscription to a {@link Collection}, attached to the subscription like any other callback:
+ * <pre>
+ * IngestionPipeline pipeline = new IngestionPipeline(new Collection(collectionId), new IngestionOptions());
+ * mqttClient.subscribe("devices/+/telemetry", pipeline);
+ * </pre>
+ *
+ * Messages are mapped to items and queued, a batch is cut once it is full or its oldest item waited for the maximum
+ * latency, and each batch is split in chunks inserted in parallel, one API call per chunk. When the platform slows
+ * down, the insert slots fill up, then the queue, and the MQTT delivery thread blocks: the backpressure reaches the
+ * broker instead of growing the memory of the client.
+ */
+public class IngestionPipeline extends MessageViewCallback implements AutoCloseable {
+
+	private static final AtomicInteger PIPELINE_COUNT = new AtomicInteger();
+
+	// longest wait of an idle batcher, so it sees the pipeline closing even with a long max latency
+	private static final long IDLE_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final Collection collection;
+	private final Function<MessageView, Item> itemMapper;
+	private final int batchSize;
+	private final long maxLatencyNanos;
+	private final int chunkSize;
+	private final IngestionOptions.OnBatchError onBatchError;
+
+	private final BlockingQueue<Item> queue;
+	private final Semaphore insertSlots;
+	private final ExecutorService inserters;
+	private final Thread batcher;
+
+	private final LongAdder insertedCount;
+	private final LongAdder failedCount;
+	private final LongAdder rejectedCount;
+
+	// held shared while queuing an item and exclusively to close, so no item is queued after the batcher's last drain
+	private final ReadWriteLock closeLock;
+	private volatile boolean closed;
+
+	public IngestionPipeline(Collection collection, IngestionOptions options) {
+
+		int id = PIPELINE_COUNT.incrementAndGet();
+
+		this.collection = collection;
+		this.itemMapper = options.getItemMapper() != null
+				? options.getItemMapper()
+				: message -> collection.newItem(JsonParser.parseString(message.asString()).getAsJsonObject());
+		this.batchSize = options.getBatchSize();
+		this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(options.getMaxLatency());
+		this.chunkSize = options.getChunkSize();
+		this.onBatchError = options.getOnBatchError();
+		this.queue = new ArrayBlockingQueue<>(options.getQueueCapacity());
+		this.insertSlots = new Semaphore(options.getParallelism());
+		this.inserters = Executors.newFixedThreadPool(options.getParallelism(), runnable -> {
+			Thread thread = new Thread(runnable, "clearblade-ingest-" + id + "-insert");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.insertedCount = new LongAdder();
+		this.failedCount = new LongAdder();
+		this.rejectedCount = new LongAdder();
+		this.closeLock = new ReentrantReadWriteLock();
+		this.closed = false;
+
+		this.batcher = new Thread(this::run, "clearblade-ingest-" + id);
+		this.batcher.setDaemon(true);
+		this.batcher.start();
+	}
+
+	@Override
+	public void done(MessageView message) {
+
+		if (closed) {
+			rejectedCount.increment();
+			return;
+		}
+
+		Item item;
+		try {
+			item = itemMapper.apply(message);
+		} catch (RuntimeException e) {
+			rejectedCount.increment();
+			return;
+		}
+		if (item == null) {
+			return;
+		}
+
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				rejectedCount.increment();
+				return;
+			}
+			// blocks the MQTT delivery thread while the queue is full
+			queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			rejectedCount.increment();
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Stops accepting messages, inserts the queued items and waits for the inserts to complete.
+	 * @param timeout maximum time to wait
+	 * @param unit unit of the timeout
+	 * @return true if every item was handed to the platform within the timeout
+	 */
+	public boolean close(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		// waits for the messages being queued, which wait for the batcher while the queue is full
+		boolean locked = closeLock.writeLock().tryLock(timeout, unit);
+		closed = true;
+		if (locked) {
+			closeLock.writeLock().unlock();
+		}
+		batcher.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+		inserters.shutdown();
+		return locked && !batcher.isAlive()
+				&& inserters.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Same as {@link #close(long, TimeUnit)}, waiting up to 30 seconds.
+	 */
+	@Override
+	public void close() {
+		try {
+			close(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return the number of items waiting to be inserted
+	 */
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	/**
+	 * @return the number of items inserted successfully
+	 */
+	public long getInsertedCount() {
+		return insertedCount.sum();
+	}
+
+	/**
+	 * @return the number of items whose insert call failed
+	 */
+	public long getFailedCount() {
+		return failedCount.sum();
+	}
+
+	/**
+	 * @return the number of messages that could not be mapped to an item, or arrived after close
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * Cuts the batches, until the pipeline is closed and the queue drained.
+	 */
+	private void run() {
+
+		List<Item> batch = new ArrayList<>(batchSize);
+		try {
+			while (!closed || !queue.isEmpty()) {
+				Item first = queue.poll(Math.min(maxLatencyNanos, IDLE_POLL_NANOS), TimeUnit.NANOSECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+
+				// the batch is cut when full, or when its first item waited for the maximum latency
+				long deadline = System.nanoTime() + maxLatencyNanos;
+				while (batch.size() < batchSize) {
+					if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+						continue;
+					}
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0 || closed) {
+						break;
+					}
+					Item next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+
+				insert(batch);
+				batch.clear();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Splits the batch in chunks and hands them to the inserters, waiting for a free slot for each chunk. Once close
+	 * timed out and shut the inserters down, the remaining chunks are failed.
+	 */
+	private void insert(List<Item> batch) throws InterruptedException {
+		for (int from = 0; from < batch.size(); from += chunkSize) {
+			Item[] chunk = batch.subList(from, Math.min(from + chunkSize, batch.size())).toArray(new Item[0]);
+			insertSlots.acquire();
+			try {
+				inserters.execute(() -> {
+					try {
+						collection.insertSync(chunk);
+						insertedCount.add(chunk.length);
+					} catch (Exception e) {
+						fail(chunk, e);
+					} finally {
+						insertSlots.release();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				insertSlots.release();
+				fail(chunk, e);
+			}
+		}
+	}
+
+	private void fail(Item[] chunk, Exception error) {
+		failedCount.add(chunk.length);
+		if (onBatchError != null) {
+			onBatchError.onBatchError(chunk, error);
+		} else {
+			String errmsg = String.format("(IngestionPipeline) insert error, %d items lost: %s", chunk.length, error.getMessage());
+			System.out.println(errmsg);
+		}
+	}
+}
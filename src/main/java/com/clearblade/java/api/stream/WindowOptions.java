@@ -0,0 +1,162 @@
+package com.clearblade.java.api.stream;
+
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import com.clearblade.java.api.MessageView;
+
+/**
+ * WindowOptions is used for customizing a {@link WindowedAggregator}. The following values are used by default:
+ *
+ *   keyLevel - 1 (the second topic level, such as the device id of "devices/&lt;id&gt;/temperature")
+ *   windowSize - 60000 (milliseconds)
+ *   slide - [EMPTY] (tumbling windows, the window size)
+ *   allowedLateness - 0 (milliseconds)
+ *   flushInterval - 0 (windows are only flushed as messages arrive)
+ *   valueExtractor - [EMPTY] (the payload is a plain ASCII number, see {@link AsciiNumbers})
+ *   timestampExtractor - [EMPTY] (the arrival time of the message)
+ */
+public class WindowOptions {
+
+    private int _keyLevel;
+    private long _windowSize;
+    private long _slide;
+    private long _allowedLateness;
+    private long _flushInterval;
+    private ToDoubleFunction<MessageView> _valueExtractor;
+    private ToLongFunction<MessageView> _timestampExtractor;
+
+    public WindowOptions() {
+        this._keyLevel = 1;
+        this._windowSize = 60000;
+        this._slide = 0;
+        this._allowedLateness = 0;
+        this._flushInterval = 0;
+        this._valueExtractor = null;
+        this._timestampExtractor = null;
+    }
+
+    public WindowOptions(WindowOptions other) {
+        this._keyLevel = other._keyLevel;
+        this._windowSize = other._windowSize;
+        this._slide = other._slide;
+        this._allowedLateness = other._allowedLateness;
+        this._flushInterval = other._flushInterval;
+        this._valueExtractor = other._valueExtractor;
+        this._timestampExtractor = other._timestampExtractor;
+    }
+
+    // Getters
+
+    public int getKeyLevel() {
+        return this._keyLevel;
+    }
+
+    public long getWindowSize() {
+        return this._windowSize;
+    }
+
+    /**
+     * @return the interval between the starts of two consecutive windows
+     */
+    public long getSlide() {
+        return this._slide == 0 ? this._windowSize : this._slide;
+    }
+
+    public long getAllowedLateness() {
+        return this._allowedLateness;
+    }
+
+    public long getFlushInterval() {
+        return this._flushInterval;
+    }
+
+    public ToDoubleFunction<MessageView> getValueExtractor() {
+        return this._valueExtractor;
+    }
+
+    public ToLongFunction<MessageView> getTimestampExtractor() {
+        return this._timestampExtractor;
+    }
+
+    // Setters
+
+    /**
+     * Groups the values by the given topic level, counted from 0.
+     */
+    public WindowOptions setKeyLevel(int keyLevel) {
+        if (keyLevel < 0) {
+            throw new IllegalArgumentException("keyLevel must not be negative");
+        }
+        this._keyLevel = keyLevel;
+        return this;
+    }
+
+    /**
+     * Sets the duration of the windows, in milliseconds. Windows are aligned on the epoch, so all the keys share the
+     * same window boundaries.
+     */
+    public WindowOptions setWindowSize(long windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be greater than zero");
+        }
+        this._windowSize = windowSize;
+        return this;
+    }
+
+    /**
+     * Makes the windows slide: a new window starts every given number of milliseconds, so windows overlap and each
+     * value is part of windowSize / slide windows. The window size must be a multiple of the slide.
+     * @param slide interval between the starts of two consecutive windows, 0 for tumbling windows
+     */
+    public WindowOptions setSlide(long slide) {
+        if (slide < 0) {
+            throw new IllegalArgumentException("slide must not be negative");
+        }
+        this._slide = slide;
+        return this;
+    }
+
+    /**
+     * Sets how long a window waits for out-of-order values once its end has been reached, in milliseconds: a window
+     * is flushed when the watermark (the latest timestamp seen minus the allowed lateness) passes its end. Values
+     * arriving after all their windows were flushed are dropped.
+     */
+    public WindowOptions setAllowedLateness(long allowedLateness) {
+        if (allowedLateness < 0) {
+            throw new IllegalArgumentException("allowedLateness must not be negative");
+        }
+        this._allowedLateness = allowedLateness;
+        return this;
+    }
+
+    /**
+     * Advances the watermark to the current time every given number of milliseconds, so windows are flushed even
+     * when no message arrives. Only meaningful when timestamps follow the wall clock.
+     * @param flushInterval interval in milliseconds, 0 to only flush windows as messages arrive
+     */
+    public WindowOptions setFlushInterval(long flushInterval) {
+        if (flushInterval < 0) {
+            throw new IllegalArgumentException("flushInterval must not be negative");
+        }
+        this._flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Reads the value to aggregate from a message, for payloads that are not plain numbers. Throwing a
+     * RuntimeException rejects the message.
+     */
+    public WindowOptions setValueExtractor(ToDoubleFunction<MessageView> valueExtractor) {
+        this._valueExtractor = valueExtractor;
+        return this;
+    }
+
+    /**
+     * Reads the event time of a message, in milliseconds since the epoch, such as a timestamp set by the device.
+     */
+    public WindowOptions setTimestampExtractor(ToLongFunction<MessageView> timestampExtractor) {
+        this._timestampExtractor = timestampExtractor;
+        return this;
+    }
+}
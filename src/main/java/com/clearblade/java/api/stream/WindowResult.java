@@ -0,0 +1,72 @@
+package com.clearblade.java.api.stream;
+
+/**
+ * Aggregates of the values received for one key during one window.
+ */
+public final class WindowResult {
+
+	private final String key;
+	private final long start;
+	private final long end;
+	private final long count;
+	private final double sum;
+	private final double min;
+	private final double max;
+
+	WindowResult(String key, long start, long end, long count, double sum, double min, double max) {
+		this.key = key;
+		this.start = start;
+		this.end = end;
+		this.count = count;
+		this.sum = sum;
+		this.min = min;
+		this.max = max;
+	}
+
+	/**
+	 * @return the topic level the values were grouped by (such as a device id)
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the start of the window, inclusive, in milliseconds since the epoch
+	 */
+	public long getStart() {
+		return start;
+	}
+
+	/**
+	 * @return the end of the window, exclusive, in milliseconds since the epoch
+	 */
+	public long getEnd() {
+		return end;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getSum() {
+		return sum;
+	}
+
+	public double getMin() {
+		return min;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	public double getAverage() {
+		return sum / count;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("WindowResult{key=%s, start=%d, end=%d, count=%d, avg=%s, min=%s, max=%s}",
+				key, start, end, count, getAverage(), min, max);
+	}
+}
@@ -0,0 +1,331 @@
+package com.clearblade.java.api.stream;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import com.clearblade.java.api.MessageView;
+import com.clearblade.java.api.MessageViewCallback;
+
+/**
+ * Streaming aggregation of numeric telemetry, attached to a subscription like any other callback:
+ * <pre>
+ * WindowedAggregator aggregator = new WindowedAggregator(
+ *     new WindowOptions().setWindowSize(60000).setSlide(10000).setAllowedLateness(2000),
+ *     result -&gt; System.out.println(result.getKey() + " " + result.getAverage()));
+ * mqttClient.subscribe("devices/+/temperature", aggregator);
+ * </pre>
+ *
+ * Values are grouped by a topic level (the key), and count, sum, min and max are computed per key over tumbling or
+ * sliding windows. Each window is reported once, when the watermark passes its end. Messages are never materialized:
+ * the value is parsed from the payload bytes and folded into primitive accumulators, so a message costs a map lookup
+ * and a few arithmetic operations.
+ *
+ * Sliding windows are built from panes of one slide each, so a value is added to a single pane, however many windows
+ * it belongs to, and a window is computed from its panes when it is flushed. The state of a key is dropped once all its
+ * windows were flushed.
+ *
+ * The window callback runs on the thread delivering the messages (or on the flush thread), one window at a time, and
+ * must be short.
+ */
+public class WindowedAggregator extends MessageViewCallback implements AutoCloseable {
+
+	/**
+	 * Receives the aggregates of each window.
+	 */
+	@FunctionalInterface
+	public interface WindowCallback {
+		void onWindow(WindowResult result);
+	}
+
+	/**
+	 * Flushes the windows of the aggregators using a flush interval.
+	 */
+	private static final ScheduledExecutorService FLUSHES = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "clearblade-window-flush");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final WindowCallback callback;
+	private final int keyLevel;
+	private final long windowSize;
+	private final long slide;
+	private final long allowedLateness;
+	private final int panesPerWindow;
+	private final int panesPerKey;
+	private final ToDoubleFunction<MessageView> valueExtractor;
+	private final ToLongFunction<MessageView> timestampExtractor;
+
+	private final Map<String, KeyState> stateByKey;
+	private final LongAdder lateCount;
+	private final LongAdder rejectedCount;
+
+	private long watermark;
+	private long nextWindowEnd;
+	private ScheduledFuture<?> flushTask;
+
+	public WindowedAggregator(WindowOptions options, WindowCallback callback) {
+
+		if (options.getWindowSize() % options.getSlide() != 0) {
+			throw new IllegalArgumentException("windowSize must be a multiple of slide");
+		}
+
+		this.callback = callback;
+		this.keyLevel = options.getKeyLevel();
+		this.windowSize = options.getWindowSize();
+		this.slide = options.getSlide();
+		this.allowedLateness = options.getAllowedLateness();
+		this.panesPerWindow = (int) (windowSize / slide);
+		// a pane is only reused once every window it belongs to was flushed
+		this.panesPerKey = (int) ((windowSize + allowedLateness + slide - 1) / slide) + 1;
+		this.valueExtractor = options.getValueExtractor() != null
+				? options.getValueExtractor()
+				: message -> AsciiNumbers.parseDouble(message.getBytes());
+		this.timestampExtractor = options.getTimestampExtractor() != null
+				? options.getTimestampExtractor()
+				: message -> System.currentTimeMillis();
+		this.stateByKey = new HashMap<>();
+		this.lateCount = new LongAdder();
+		this.rejectedCount = new LongAdder();
+		this.watermark = Long.MIN_VALUE;
+		this.nextWindowEnd = Long.MAX_VALUE;
+		this.flushTask = null;
+
+		if (options.getFlushInterval() > 0) {
+			this.flushTask = FLUSHES.scheduleWithFixedDelay(() -> advanceWatermark(System.currentTimeMillis() - allowedLateness),
+					options.getFlushInterval(), options.getFlushInterval(), TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public void done(MessageView message) {
+
+		String key = key(message.getTopic());
+		if (key == null) {
+			rejectedCount.increment();
+			return;
+		}
+
+		double value;
+		long timestamp;
+		try {
+			value = valueExtractor.applyAsDouble(message);
+			timestamp = timestampExtractor.applyAsLong(message);
+		} catch (RuntimeException e) {
+			rejectedCount.increment();
+			return;
+		}
+
+		synchronized (this) {
+			// flushes the windows that end before this value first, so the panes they use can be reused
+			advanceWatermark(timestamp - allowedLateness);
+
+			long pane = Math.floorDiv(timestamp, slide);
+			if ((pane + 1) * slide + windowSize - slide <= watermark) {
+				// every window of this value was already flushed
+				lateCount.increment();
+				return;
+			}
+
+			// the first window to report for this value is the earliest one containing it and not flushed yet
+			long firstWindowEnd = (pane + 1) * slide;
+			if (firstWindowEnd <= watermark) {
+				firstWindowEnd = (Math.floorDiv(watermark, slide) + 1) * slide;
+			}
+			KeyState state = stateByKey.get(key);
+			if (state == null) {
+				state = new KeyState(panesPerKey, firstWindowEnd);
+				stateByKey.put(key, state);
+			} else if (firstWindowEnd < state.nextWindowEnd) {
+				// a late value for an earlier pane than the key had so far
+				state.nextWindowEnd = firstWindowEnd;
+			}
+			nextWindowEnd = Math.min(nextWindowEnd, firstWindowEnd);
+			state.add(pane, value);
+		}
+	}
+
+	/**
+	 * Moves the watermark forward and flushes every window ending at or before it. Has no effect if the watermark is
+	 * already past the given time.
+	 * @param timestamp new watermark, in milliseconds since the epoch
+	 */
+	public synchronized void advanceWatermark(long timestamp) {
+
+		if (timestamp <= watermark) {
+			return;
+		}
+		watermark = timestamp;
+
+		// all keys share the window boundaries, so there is nothing to flush until the earliest pending window ends
+		if (watermark < nextWindowEnd) {
+			return;
+		}
+
+		long earliest = Long.MAX_VALUE;
+		for (Iterator<Map.Entry<String, KeyState>> it = stateByKey.entrySet().iterator(); it.hasNext(); ) {
+			Map.Entry<String, KeyState> entry = it.next();
+			KeyState state = entry.getValue();
+			if (flush(entry.getKey(), state)) {
+				it.remove();
+			} else {
+				earliest = Math.min(earliest, state.nextWindowEnd);
+			}
+		}
+		nextWindowEnd = earliest;
+	}
+
+	/**
+	 * Stops the periodic flush, and flushes every pending window, whether its end was reached or not. Values received
+	 * afterwards are dropped as late.
+	 */
+	@Override
+	public synchronized void close() {
+		if (flushTask != null) {
+			flushTask.cancel(false);
+			flushTask = null;
+		}
+		advanceWatermark(Long.MAX_VALUE - windowSize);
+	}
+
+	/**
+	 * @return the current watermark, in milliseconds since the epoch
+	 */
+	public synchronized long getWatermark() {
+		return watermark;
+	}
+
+	/**
+	 * @return the number of keys with pending windows
+	 */
+	public synchronized int getKeyCount() {
+		return stateByKey.size();
+	}
+
+	/**
+	 * @return the number of values dropped because all their windows were already flushed
+	 */
+	public long getLateCount() {
+		return lateCount.sum();
+	}
+
+	/**
+	 * @return the number of messages dropped because their topic has no key level or their value could not be read
+	 */
+	public long getRejectedCount() {
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * Reports the windows of the given key ending at or before the watermark.
+	 * @return whenever the key has no pending window left
+	 */
+	private boolean flush(String key, KeyState state) {
+
+		long dataEnd = (state.lastPane + 1) * slide;
+		while (state.nextWindowEnd <= watermark) {
+			long end = state.nextWindowEnd;
+			long start = end - windowSize;
+			if (start >= dataEnd) {
+				return true;
+			}
+			WindowResult result = state.aggregate(key, start, end, Math.floorDiv(start, slide), panesPerWindow);
+			if (result != null) {
+				callback.onWindow(result);
+			}
+			state.nextWindowEnd += slide;
+		}
+		return state.nextWindowEnd - windowSize >= dataEnd;
+	}
+
+	/**
+	 * @return the key level of the given topic, or null if the topic is too short
+	 */
+	private String key(String topic) {
+		int start = 0;
+		for (int level = 0; level < keyLevel; level++) {
+			start = topic.indexOf('/', start) + 1;
+			if (start == 0) {
+				return null;
+			}
+		}
+		int end = topic.indexOf('/', start);
+		return topic.substring(start, end < 0 ? topic.length() : end);
+	}
+
+	/**
+	 * Accumulators of one key: a ring of panes, each holding the aggregates of one slide.
+	 */
+	private static final class KeyState {
+
+		final long[] paneIndex;
+		final long[] count;
+		final double[] sum;
+		final double[] min;
+		final double[] max;
+		long lastPane;
+		long nextWindowEnd;
+
+		KeyState(int panes, long nextWindowEnd) {
+			this.paneIndex = new long[panes];
+			this.count = new long[panes];
+			this.sum = new double[panes];
+			this.min = new double[panes];
+			this.max = new double[panes];
+			this.lastPane = Long.MIN_VALUE;
+			this.nextWindowEnd = nextWindowEnd;
+			Arrays.fill(paneIndex, Long.MIN_VALUE);
+		}
+
+		void add(long pane, double value) {
+			int slot = (int) Math.floorMod(pane, (long) paneIndex.length);
+			if (paneIndex[slot] != pane) {
+				paneIndex[slot] = pane;
+				count[slot] = 1;
+				sum[slot] = value;
+				min[slot] = value;
+				max[slot] = value;
+			} else {
+				count[slot]++;
+				sum[slot] += value;
+				if (value < min[slot]) {
+					min[slot] = value;
+				}
+				if (value > max[slot]) {
+					max[slot] = value;
+				}
+			}
+			lastPane = Math.max(lastPane, pane);
+		}
+
+		/**
+		 * @return the aggregates of the given panes, or null if they hold no value
+		 */
+		WindowResult aggregate(String key, long start, long end, long firstPane, int panes) {
+			long totalCount = 0;
+			double totalSum = 0;
+			double totalMin = Double.POSITIVE_INFINITY;
+			double totalMax = Double.NEGATIVE_INFINITY;
+			for (long pane = firstPane; pane < firstPane + panes; pane++) {
+				int slot = (int) Math.floorMod(pane, (long) paneIndex.length);
+				if (paneIndex[slot] != pane) {
+					continue;
+				}
+				totalCount += count[slot];
+				totalSum += sum[slot];
+				totalMin = Math.min(totalMin, min[slot]);
+				totalMax = Math.max(totalMax, max[slot]);
+			}
+			return totalCount == 0 ? null : new WindowResult(key, start, end, totalCount, totalSum, totalMin, totalMax);
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package com.clearblade.java.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.clearblade.java.api.auth.Auth;
+import com.clearblade.java.api.auth.AuthContext;
+import com.clearblade.java.api.auth.AuthException;
+import com.clearblade.java.api.auth.UserAuth;
+import com.clearblade.java.api.internal.HeaderSet;
+import com.clearblade.java.api.internal.RequestProperties;
+import com.google.gson.JsonObject;
+
+
+public class ClearBladeClientTests {
+
+    private FakePlatform platform;
+    private List<String> requests;
+    private List<String> connections;
+
+    @BeforeEach
+    void startPlatform() throws IOException {
+        requests = new CopyOnWriteArrayList<>();
+        connections = new CopyOnWriteArrayList<>();
+        platform = new FakePlatform(exchange -> {
+            requests.add(exchange.getRequestURI().getPath() + " "
+                    + exchange.getRequestHeaders().getFirst("ClearBlade-SystemKey") + " "
+                    + exchange.getRequestHeaders().getFirst("ClearBlade-UserToken"));
+            connections.add(exchange.getRequestURI().getPath() + " " + exchange.getRemoteAddress().getPort());
+            if (exchange.getRequestURI().getPath().equals("/api/about")) {
+                // keeps the warm-up calls overlapping
+                FakePlatform.pause(50);
+            }
+            boolean expired = "expired-token".equals(exchange.getRequestHeaders().getFirst("ClearBlade-UserToken"));
+            FakePlatform.respond(exchange, expired ? 401 : 200, expired ? "{\"error\":\"expired\"}" : "{\"DATA\":[],\"TOTAL\":0}");
+        });
+    }
+
+    @AfterEach
+    void stopPlatform() {
+        platform.close();
+    }
+
+    private ClearBladeClient client(String systemKey, String token) {
+        Auth auth = mock(Auth.class);
+        when(auth.getRequestHeaders()).thenReturn(Collections.singletonMap("ClearBlade-UserToken", token));
+        InitOptions options = new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(auth);
+        return new ClearBladeClient(systemKey, "secret", options);
+    }
+
+    @Test
+    void missingSystemKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ClearBladeClient("", "secret", new InitOptions()));
+        assertThrows(IllegalArgumentException.class, () -> new ClearBladeClient("key", null, new InitOptions()));
+    }
+
+    @Test
+    void reinitializingTheDefaultClientClosesThePreviousOne() {
+        UserAuth auth = new UserAuth("user@example.com", "password");
+        InitOptions options = new InitOptions().setPlatformUrl(platform.getUrl()).setAuth(auth);
+
+        ClearBlade.initializeAsync("key", "secret", options);
+        ClearBladeClient first = ClearBlade.getDefaultClient();
+        ClearBlade.initializeAsync("key", "secret", options);
+        ClearBladeClient second = ClearBlade.getDefaultClient();
+
+        assertTrue(first.isClosed());
+        assertSame(second, auth.getClient());
+
+        ClearBlade.initializeAsync("key", "secret", new InitOptions().setPlatformUrl(platform.getUrl())
+                .setAuth(new UserAuth("other@example.com", "password")));
+
+        assertTrue(second.isClosed());
+        ClearBlade.getDefaultClient().close();
+    }
+
+    @Test
+    void createdObjectsAreBoundToTheClient() {
+        ClearBladeClient client = client("key", "token");
+
+        assertSame(client, client.query("collection").client);
+        assertSame(client, client.item("collection").client);
+        assertSame(client, client.collection("collection").client);
+        assertSame(client, client.code("service").client);
+        verify(client.getAuth()).setClient(client);
+    }
+
+    @Test
+    void requestPropertiesUseTheClientSettings() {
+        ClearBladeClient client = client("key", "token");
+        client.getInitOptions().setCallTimeout(1234);
+
+        RequestProperties headers = new RequestProperties.Builder(client).endPoint("api/v/1/data/collection").build();
+
+        assertSame(client, headers.getClient());
+        assertEquals(client.getPlatformUrl() + "/api/v/1/data/collection", headers.getUri());
+        assertEquals(1234, headers.getTimeout());
+    }
+
+    @Test
+    void callsOfEachClientCarryItsSystemAndAuth() {
+        ClearBladeClient first = client("first-key", "first-token");
+        ClearBladeClient second = client("second-key", "second-token");
+        CodeCallback callback = mock(CodeCallback.class);
+
+        first.code("service").executeWithoutParams(callback);
+        second.code("service", new JsonObject()).executeWithParams(callback);
+
+        verify(callback, times(2)).done(any(JsonObject.class));
+        assertEquals("/api/v/1/code/first-key/service first-key first-token", requests.get(0));
+        assertEquals("/api/v/1/code/second-key/service second-key second-token", requests.get(1));
+    }
+
+    @Test
+    void callsWithAnAuthContextCarryItsCredentials() {
+        ClearBladeClient client = client("key", "client-token");
+        CodeCallback callback = mock(CodeCallback.class);
+
+        Code code = client.code("service");
+        code.setAuthContext(AuthContext.userToken("session-token"));
+        code.executeWithoutParams(callback);
+        client.code("service").executeWithoutParams(callback);
+
+        assertEquals("/api/v/1/code/key/service key session-token", requests.get(0));
+        assertEquals("/api/v/1/code/key/service key client-token", requests.get(1));
+    }
+
+    @Test
+    void authContextIsASnapshot() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("ClearBlade-UserToken", "first");
+        Auth auth = mock(Auth.class);
+        when(auth.getRequestHeaders()).thenReturn(headers);
+
+        AuthContext context = AuthContext.of(auth);
+        headers.put("ClearBlade-UserToken", "second");
+
+        assertEquals("first", context.getRequestHeaders().get("ClearBlade-UserToken"));
+        assertThrows(UnsupportedOperationException.class, () -> context.getRequestHeaders().clear());
+    }
+
+    @Test
+    void collectionsPassTheirAuthContextOn() {
+        Collection collection = new ClearBladeClient("key", "secret", new InitOptions()).collection("collection");
+        AuthContext context = AuthContext.deviceToken("token");
+        collection.setAuthContext(context);
+
+        Item item = collection.newItem(new JsonObject());
+
+        assertSame(context, item.getAuthContext());
+        assertSame(collection.client, item.client);
+    }
+
+    @Test
+    void rejectedTokensAreRenewedAndIdempotentCallsReplayed() throws Exception {
+        AtomicReference<String> token = new AtomicReference<>("expired-token");
+        Auth auth = mock(Auth.class);
+        when(auth.getRequestHeaders()).thenAnswer(invocation -> Collections.singletonMap("ClearBlade-UserToken", token.get()));
+        doAnswer(invocation -> {
+            token.set("fresh-token");
+            return null;
+        }).when(auth).doAuth();
+        ClearBladeClient client = new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(auth));
+
+        assertEquals(0, client.query("collection").fetchSync().length);
+
+        verify(auth, times(1)).doAuth();
+        assertEquals("/api/v/1/data/collection key expired-token", requests.get(0));
+        assertEquals("/api/v/1/data/collection key fresh-token", requests.get(1));
+    }
+
+    @Test
+    void rejectedPostsRenewTheTokenWithoutReplay() throws Exception {
+        AtomicReference<String> token = new AtomicReference<>("expired-token");
+        Auth auth = mock(Auth.class);
+        when(auth.getRequestHeaders()).thenAnswer(invocation -> Collections.singletonMap("ClearBlade-UserToken", token.get()));
+        doAnswer(invocation -> {
+            token.set("fresh-token");
+            return null;
+        }).when(auth).doAuth();
+        ClearBladeClient client = new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(auth));
+        CodeCallback callback = mock(CodeCallback.class);
+
+        client.code("service").executeWithoutParams(callback);
+
+        verify(callback, times(1)).error(any(ClearBladeException.class));
+        verify(auth, times(1)).doAuth();
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void headerSetsAreBuiltOncePerToken() {
+        AtomicReference<String> token = new AtomicReference<>("first-token");
+        Auth auth = mock(Auth.class);
+        when(auth.getRequestHeaders()).thenAnswer(invocation -> Collections.singletonMap("ClearBlade-UserToken", token.get()));
+        ClearBladeClient client = new ClearBladeClient("key", "secret", new InitOptions().setAuth(auth));
+
+        HeaderSet first = client.getAuthHeaderSet(auth.getRequestHeaders());
+        assertSame(first, client.getAuthHeaderSet(auth.getRequestHeaders()));
+        token.set("second-token");
+        HeaderSet second = client.getAuthHeaderSet(auth.getRequestHeaders());
+
+        assertNotSame(first, second);
+        assertEquals("second-token", second.get("ClearBlade-UserToken"));
+        assertEquals("key", client.getSystemHeaders().get("ClearBlade-SystemKey"));
+        assertEquals("application/json", client.getSystemHeaders().get("Accept"));
+    }
+
+    @Test
+    void asyncInitializationWarmsUpWhileAuthenticating() throws Exception {
+        CountDownLatch connected = new CountDownLatch(1);
+        try (ServerSocket platform = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"))) {
+            Thread acceptor = new Thread(() -> {
+                try (Socket socket = platform.accept()) {
+                    connected.countDown();
+                    socket.getOutputStream().write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                } catch (IOException e) {
+                    // closed by the test
+                }
+            });
+            acceptor.start();
+            Auth auth = mock(Auth.class);
+            doAnswer(invocation -> {
+                // completes only if the warm-up runs at the same time
+                assertTrue(connected.await(5, TimeUnit.SECONDS));
+                return null;
+            }).when(auth).doAuth();
+            ClearBladeClient client = new ClearBladeClient("key", "secret", new InitOptions()
+                    .setPlatformUrl("http://127.0.0.1:" + platform.getLocalPort())
+                    .setMessagingUrl("tcp://127.0.0.1:1883")
+                    .setAuth(auth));
+
+            assertSame(client, client.initializeAsync().get(5, TimeUnit.SECONDS));
+            verify(auth, times(1)).doAuth();
+        }
+    }
+
+    @Test
+    void asyncInitializationReportsAuthenticationErrors() throws Exception {
+        Auth auth = mock(Auth.class);
+        doThrow(new AuthException("bad credentials")).when(auth).doAuth();
+        ClearBladeClient client = new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(auth));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> client.initializeAsync().get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof ClearBladeException);
+    }
+
+    @Test
+    void asyncMqttClientsConnectOnceAuthenticated() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Auth auth = mock(Auth.class);
+        AtomicBoolean authed = new AtomicBoolean();
+        when(auth.isAuthed()).thenAnswer(invocation -> authed.get());
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            authed.set(true);
+            return null;
+        }).when(auth).doAuth();
+        ClearBladeClient client = new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setMessagingUrl("tcp://127.0.0.1:1")
+                .setAuth(auth));
+
+        client.initializeAsync();
+        CompletableFuture<MqttClient> mqtt = client.mqttClientAsync("client", 1, new MqttClientOptions());
+        Thread.sleep(100);
+        assertFalse(mqtt.isDone());
+
+        release.countDown();
+        ExecutionException error = assertThrows(ExecutionException.class, () -> mqtt.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause() instanceof ClearBladeException);
+    }
+
+    @Test
+    void warmUpOpensConnectionsReusedByTheCalls() throws Exception {
+        ClearBladeClient client = client("key", "token");
+        client.getInitOptions().setWarmConnections(3);
+
+        assertTrue(client.warmUp());
+        Set<String> warmPorts = new HashSet<>();
+        for (String connection : connections) {
+            warmPorts.add(connection.substring(connection.indexOf(' ') + 1));
+        }
+        for (int idx = 0; idx < 3; idx++) {
+            client.query("collection").fetchSync();
+        }
+
+        assertEquals(3, warmPorts.size());
+        for (String connection : connections.subList(3, 6)) {
+            assertTrue(warmPorts.contains(connection.substring(connection.indexOf(' ') + 1)), connection);
+        }
+    }
+
+    @Test
+    void warmUpOfAnUnreachablePlatformFails() {
+        ClearBladeClient client = new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl("http://127.0.0.1:1")
+                .setMessagingUrl("tcp://127.0.0.1:1883"));
+
+        assertFalse(client.warmUp());
+    }
+
+    @Test
+    void connectionsAreKeptWarmUntilTheClientIsClosed() throws Exception {
+        ClearBladeClient client = client("key", "token");
+        client.getInitOptions().setKeepWarmInterval(20);
+        client.initialize(mock(InitCallback.class));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connections.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        client.close();
+        Thread.sleep(100);
+        int warmUps = connections.size();
+        Thread.sleep(100);
+
+        assertTrue(warmUps >= 2);
+        assertEquals(warmUps, connections.size());
+        assertTrue(connections.stream().allMatch(connection -> connection.startsWith("/api/about ")));
+    }
+
+    @Test
+    void optionsAreCopied() {
+        InitOptions options = new InitOptions().setCallTimeout(1000);
+        ClearBladeClient client = new ClearBladeClient("key", "secret", options);
+        options.setCallTimeout(2000);
+
+        assertEquals(1000, client.getCallTimeout());
+    }
+}
@@ -0,0 +1,211 @@
+package com.clearblade.java.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.clearblade.java.api.auth.Auth;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.mqttv5.client.IMqttToken;
+import org.eclipse.paho.mqttv5.client.MqttActionListener;
+import org.eclipse.paho.mqttv5.client.MqttAsyncClient;
+import org.eclipse.paho.mqttv5.client.MqttCallback;
+import org.eclipse.paho.mqttv5.client.MqttConnectionOptions;
+import org.eclipse.paho.mqttv5.common.MqttMessage;
+import org.eclipse.paho.mqttv5.common.packet.MqttProperties;
+import org.eclipse.paho.mqttv5.common.packet.UserProperty;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+public class Mqtt5ClientTests {
+
+    private Auth mockAuth;
+    private MqttAsyncClient mockClient;
+    private IMqttToken mockToken;
+    private Mqtt5Client spyClient;
+
+    @BeforeEach
+    void setupSpyClient() throws Exception {
+        mockAuth = mock(Auth.class);
+        when(mockAuth.isAuthed()).thenReturn(true);
+        when(mockAuth.getToken()).thenReturn("token");
+
+        mockToken = mock(IMqttToken.class);
+        mockClient = mock(MqttAsyncClient.class);
+        when(mockClient.connect(any(MqttConnectionOptions.class))).thenReturn(mockToken);
+        when(mockClient.subscribe(any(String[].class), any(int[].class))).thenReturn(mockToken);
+        when(mockClient.unsubscribe(any(String[].class))).thenReturn(mockToken);
+        when(mockClient.publish(anyString(), any(MqttMessage.class))).thenReturn(mockToken);
+        when(mockClient.isConnected()).thenReturn(true);
+
+        MqttClientOptions options = new MqttClientOptions()
+                .setSessionExpiryInterval(3600L)
+                .setReceiveMaximum(100)
+                .setTopicAliasMaximum(20);
+        spyClient = spy(new Mqtt5Client("url", mockAuth, "systemKey", "identifier", 1, false, options));
+        doReturn(mockClient).when(spyClient).createClient();
+    }
+
+    @Test
+    void connectingSendsTheMqtt5Options() throws Exception {
+        spyClient.connect();
+
+        ArgumentCaptor<MqttConnectionOptions> captor = ArgumentCaptor.forClass(MqttConnectionOptions.class);
+        verify(mockClient).connect(captor.capture());
+        MqttConnectionOptions options = captor.getValue();
+        assertEquals("token", options.getUserName());
+        assertEquals(3600L, options.getSessionExpiryInterval());
+        assertEquals(100, options.getReceiveMaximum());
+        assertEquals(20, options.getTopicAliasMaximum());
+        assertTrue(spyClient.isConnected());
+    }
+
+    @Test
+    void failingToConnectClosesThePahoClient() throws Exception {
+        doThrow(new org.eclipse.paho.mqttv5.common.MqttException(org.eclipse.paho.mqttv5.common.MqttException.REASON_CODE_CLIENT_EXCEPTION))
+                .when(mockToken).waitForCompletion(anyLong());
+
+        assertThrows(ClearBladeException.class, () -> spyClient.connect());
+
+        verify(mockClient).close(true);
+        assertFalse(spyClient.isConnected());
+    }
+
+    @Test
+    void subscribingSendsTheTopicsThroughTheMqtt5Client() throws Exception {
+        spyClient.connect();
+
+        spyClient.subscribe("topic-0", 1, new MessageCallback());
+
+        verify(mockClient).subscribe(new String[] { "topic-0" }, new int[] { 1 });
+        assertEquals(1, spyClient.callbackByTopic.size());
+    }
+
+    @Test
+    void subscribingFailsWhenTheBrokerRejectsTheTopic() throws Exception {
+        spyClient.connect();
+        when(mockToken.getReasonCodes()).thenReturn(new int[] { 0x87 });
+
+        assertThrows(ClearBladeException.class, () -> spyClient.subscribe("topic-0", 1, new MessageCallback()));
+        assertEquals(0, spyClient.callbackByTopic.size());
+    }
+
+    @Test
+    void publishingSendsTheUserProperties() throws Exception {
+        spyClient.connect();
+
+        Map<String, String> userProperties = new LinkedHashMap<>();
+        userProperties.put("content-type", "application/json");
+        spyClient.publish("topic-0", "{}".getBytes(), 1, false, userProperties);
+
+        ArgumentCaptor<MqttMessage> captor = ArgumentCaptor.forClass(MqttMessage.class);
+        verify(mockClient).publish(eq("topic-0"), captor.capture());
+        MqttMessage message = captor.getValue();
+        assertEquals(1, message.getQos());
+        assertEquals(Collections.singletonList(new UserProperty("content-type", "application/json")), message.getProperties().getUserProperties());
+    }
+
+    @Test
+    void receivedUserPropertiesAreDeliveredWithTheMessage() throws Exception {
+        spyClient.connect();
+        ArgumentCaptor<MqttCallback> callbackCaptor = ArgumentCaptor.forClass(MqttCallback.class);
+        verify(mockClient).setCallback(callbackCaptor.capture());
+
+        AtomicReference<MessageView> received = new AtomicReference<>();
+        spyClient.subscribe("topic-0", 1, new MessageViewCallback() {
+            @Override
+            public void done(MessageView message) {
+                received.set(message);
+            }
+        });
+
+        MqttProperties properties = new MqttProperties();
+        properties.setUserProperties(Arrays.asList(new UserProperty("source", "sensor-1")));
+        MqttMessage message = new MqttMessage("42".getBytes(), 1, false, properties);
+        callbackCaptor.getValue().messageArrived("topic-0", message);
+
+        assertEquals("42", received.get().asString());
+        assertEquals(Collections.singletonMap("source", "sensor-1"), received.get().getUserProperties());
+    }
+
+    private Mqtt5Client connected(MqttClientOptions options) throws Exception {
+        Mqtt5Client client = spy(new Mqtt5Client("url", mockAuth, "systemKey", "identifier", 1, false, options));
+        doReturn(mockClient).when(client).createClient();
+        client.connect();
+        return client;
+    }
+
+    @Test
+    void publishAsyncWithUserPropertiesWaitsForAnInflightSlot() throws Exception {
+        Mqtt5Client client = connected(new MqttClientOptions().setMaxInflight(1));
+        ArgumentCaptor<Object> context = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<MqttActionListener> listener = ArgumentCaptor.forClass(MqttActionListener.class);
+        Map<String, String> userProperties = Collections.singletonMap("source", "sensor-1");
+
+        CompletableFuture<Void> first = client.publishAsync("topic-0", "1".getBytes(), 1, false, userProperties);
+        assertEquals(1, client.getInflightCount());
+        CompletableFuture<CompletableFuture<Void>> second = CompletableFuture.supplyAsync(
+                () -> client.publishAsync("topic-0", "2".getBytes(), 1, false, userProperties));
+        Thread.sleep(100);
+        assertFalse(second.isDone());
+
+        verify(mockClient).publish(eq("topic-0"), any(MqttMessage.class), context.capture(), listener.capture());
+        IMqttToken delivered = mock(IMqttToken.class);
+        when(delivered.getUserContext()).thenReturn(context.getValue());
+        listener.getValue().onSuccess(delivered);
+
+        assertTrue(first.isDone());
+        assertFalse(second.get(5, TimeUnit.SECONDS).isDone());
+        assertEquals(1, client.getInflightCount());
+    }
+
+    @Test
+    void publishingWithUserPropertiesWhileDisconnectedIsBuffered() throws Exception {
+        Mqtt5Client client = connected(new MqttClientOptions().setOfflineBufferSize(100));
+        IMqttToken buffered = mock(IMqttToken.class);
+        when(mockClient.publish(anyString(), any(MqttMessage.class))).thenReturn(buffered);
+        when(mockClient.isConnected()).thenReturn(false);
+
+        client.publish("topic-0", "{}".getBytes(), 1, false, Collections.singletonMap("source", "sensor-1"));
+
+        verify(mockClient).publish(eq("topic-0"), any(MqttMessage.class));
+        verify(buffered, never()).waitForCompletion(anyLong());
+    }
+
+    @Test
+    void deliveriesAreReported() throws Exception {
+        spyClient.connect();
+        ArgumentCaptor<MqttCallback> callbackCaptor = ArgumentCaptor.forClass(MqttCallback.class);
+        verify(mockClient).setCallback(callbackCaptor.capture());
+        AtomicReference<IMqttDeliveryToken> reported = new AtomicReference<>();
+        spyClient.onDeliveryComplete(reported::set);
+
+        IMqttToken delivered = mock(IMqttToken.class);
+        when(delivered.getMessageId()).thenReturn(7);
+        when(delivered.getMessage()).thenReturn(new MqttMessage("42".getBytes(), 1, false, null));
+        callbackCaptor.getValue().deliveryComplete(delivered);
+
+        assertEquals(7, reported.get().getMessageId());
+        assertEquals("42", new String(reported.get().getMessage().getPayload()));
+    }
+
+    @Test
+    void authenticationFailuresAreReportedAsMqtt3ReasonCodes() {
+        org.eclipse.paho.mqttv5.common.MqttException e = new org.eclipse.paho.mqttv5.common.MqttException(0x86);
+
+        assertEquals(org.eclipse.paho.client.mqttv3.MqttException.REASON_CODE_FAILED_AUTHENTICATION, Mqtt5Client.convert(e).getReasonCode());
+    }
+}
@@ -1,14 +1,41 @@
 package com.clearblade.java.api;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import com.clearblade.java.api.auth.Auth;
+import com.clearblade.java.api.auth.AuthManager;
+import com.clearblade.java.api.codec.CborCodec;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 public class MqttClientTests {
@@ -17,6 +44,7 @@ public class MqttClientTests {
 
     private Auth mockAuth;
     private org.eclipse.paho.client.mqttv3.MqttClient mockClient;
+    private IMqttAsyncClient mockAsyncClient;
     private MqttClient spyClient;
 
     @BeforeEach
@@ -25,7 +53,9 @@ public class MqttClientTests {
         mockAuth = mock(Auth.class);
         mockClient = mock(org.eclipse.paho.client.mqttv3.MqttClient.class);
         spyClient = spy(client);
+        mockAsyncClient = mock(IMqttAsyncClient.class);
         spyClient.mqttClient = mockClient;
+        spyClient.mqttAsyncClient = mockAsyncClient;
     }
 
     @Test
@@ -55,6 +85,7 @@ public class MqttClientTests {
         spyClient.resubscribe();
 
         verify(mockClient, times(0)).subscribe(anyString(), anyInt());
+        verify(mockClient, times(0)).subscribe(any(String[].class), any(int[].class));
     }
 
     @Test
@@ -62,33 +93,79 @@ public class MqttClientTests {
         spyClient.subscribe("topic-0", 0, noopMessageCallback);
         spyClient.resubscribe();
 
-        verify(mockClient, times(2)).subscribe("topic-0", 0);
+        verify(mockClient, times(1)).subscribe("topic-0", 0);
+        verify(mockClient, times(1)).subscribe(new String[] { "topic-0" }, new int[] { 0 });
     }
 
     @Test
-    void resubscribingWithTwoPreviousSubscribeResubscribesToTwoTopics() throws Exception {
+    void resubscribingWithTwoPreviousSubscribeResubscribesToTwoTopicsInOnePacket() throws Exception {
         spyClient.subscribe("topic-0", 0, noopMessageCallback);
         spyClient.subscribe("topic-1", 1, noopMessageCallback);
         spyClient.resubscribe();
 
-        verify(mockClient, times(2)).subscribe("topic-0", 0);
-        verify(mockClient, times(2)).subscribe("topic-1", 1);
+        ArgumentCaptor<String[]> topics = ArgumentCaptor.forClass(String[].class);
+        ArgumentCaptor<int[]> qos = ArgumentCaptor.forClass(int[].class);
+        verify(mockClient, times(1)).subscribe(topics.capture(), qos.capture());
+
+        Map<String, Integer> resubscribed = new HashMap<>();
+        for (int idx = 0; idx < topics.getValue().length; idx++) {
+            resubscribed.put(topics.getValue()[idx], qos.getValue()[idx]);
+        }
+        assertEquals(2, resubscribed.size());
+        assertEquals(0, resubscribed.get("topic-0"));
+        assertEquals(1, resubscribed.get("topic-1"));
+    }
+
+    @Test
+    void resubscribingManyTopicsUsesBatches() throws Exception {
+        for (int idx = 0; idx < MqttClient.SUBSCRIBE_BATCH_SIZE + 1; idx++) {
+            spyClient.subscribe("topic-" + idx, 0, noopMessageCallback);
+        }
+        spyClient.resubscribe();
+
+        verify(mockClient, times(2)).subscribe(any(String[].class), any(int[].class));
     }
 
     @Test
     void resubscribingWithErrorReportsErrorToCallback() throws Exception {
-        Throwable throwable = mock(MqttException.class);
+        Throwable throwable = new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION);
         MessageCallback mockCallback = mock(MessageCallback.class);
 
         spyClient.subscribe("topic-0", 0, mockCallback);
+        spyClient.subscribe("topic-1", 0, mockCallback);
 
-        doThrow(throwable).when(mockClient).subscribe("topic-0", 0);
+        doThrow(throwable).when(mockClient).subscribe(any(String[].class), any(int[].class));
 
         spyClient.resubscribe();
 
         verify(mockCallback, times(1)).error(any());
     }
 
+    @Test
+    void subscribingToManyTopicsRegistersAllCallbacks() throws Exception {
+        Map<String, Integer> topics = new LinkedHashMap<>();
+        topics.put("topic-0", 0);
+        topics.put("topic-1", 1);
+
+        spyClient.subscribe(topics, noopMessageCallback);
+
+        verify(mockClient).subscribe(new String[] { "topic-0", "topic-1" }, new int[] { 0, 1 });
+        assertEquals(2, spyClient.callbackByTopic.size());
+        assertEquals(1, spyClient.qosByTopic.get("topic-1"));
+    }
+
+    @Test
+    void unsubscribingFromManyTopicsRemovesCallbacks() throws Exception {
+        spyClient.subscribe("topic-0", 0, noopMessageCallback);
+        spyClient.subscribe("topic-1", 1, noopMessageCallback);
+
+        spyClient.unsubscribe(Arrays.asList("topic-0", "topic-1"));
+
+        verify(mockClient).unsubscribe(new String[] { "topic-0", "topic-1" });
+        assertEquals(0, spyClient.callbackByTopic.size());
+        assertEquals(0, spyClient.qosByTopic.size());
+    }
+
     @Test
     void unsubscribingFromTopicRemovesCallback() throws Exception {
         spyClient.subscribe("topic-0", 0, noopMessageCallback);
@@ -186,4 +263,389 @@ public class MqttClientTests {
         verify(mockCallback, times(1)).done("multi/foo/topic", "bar".getBytes());
         verify(mockCallback, times(1)).done("multi/foo/topic", "bar");
     }
+
+    @Test
+    void messageArrivedWithViewCallbackOnlyDeliversView() throws Exception {
+        MessageViewCallback mockCallback = mock(MessageViewCallback.class);
+
+        spyClient.subscribe("topic-0", 0, mockCallback);
+
+        MqttMessage mockMessage = mock(MqttMessage.class);
+
+        when(mockMessage.getPayload()).thenReturn("foo".getBytes());
+
+        spyClient.messageArrived("topic-0", mockMessage);
+
+        verify(mockCallback, times(1)).done(any(MessageView.class));
+        verify(mockCallback, times(0)).done(anyString(), any(byte[].class));
+        verify(mockCallback, times(0)).done(anyString(), anyString());
+    }
+
+    @Test
+    void messageViewDecodesPayloadLazilyAsUtf8() {
+        byte[] payload = "h\u00e9llo".getBytes(java.nio.charset.StandardCharsets.UTF_8);
+        MessageView view = new MessageView("topic-0", payload, 1, false);
+
+        assertSame(payload, view.getBytes());
+        assertEquals(payload.length, view.getByteBuffer().remaining());
+        assertEquals("h\u00e9llo", view.asString());
+        assertSame(view.asString(), view.asString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void publishAsyncCompletesFutureWhenDeliveryCompletes() throws Exception {
+        CompletableFuture<Void> future = spyClient.publishAsync("topic-0", "foo".getBytes(), 1, false);
+
+        ArgumentCaptor<Object> context = ArgumentCaptor.forClass(Object.class);
+        ArgumentCaptor<IMqttActionListener> listener = ArgumentCaptor.forClass(IMqttActionListener.class);
+        verify(mockAsyncClient).publish(eq("topic-0"), any(byte[].class), eq(1), eq(false), context.capture(), listener.capture());
+
+        assertFalse(future.isDone());
+        assertEquals(1, spyClient.getInflightCount());
+
+        IMqttToken mockToken = mock(IMqttToken.class);
+        when(mockToken.getUserContext()).thenReturn(context.getValue());
+        listener.getValue().onSuccess(mockToken);
+
+        assertTrue(future.isDone());
+        assertFalse(future.isCompletedExceptionally());
+        assertEquals(0, spyClient.getInflightCount());
+        assertTrue(spyClient.flush(0));
+    }
+
+    @Test
+    void publishAsyncWithErrorCompletesFutureExceptionally() throws Exception {
+        Throwable throwable = new MqttException(MqttException.REASON_CODE_CLIENT_EXCEPTION);
+
+        doThrow(throwable).when(mockAsyncClient).publish(anyString(), any(byte[].class), anyInt(), anyBoolean(), any(), any());
+
+        CompletableFuture<Void> future = spyClient.publishAsync("topic-0", "foo".getBytes(), 1, false);
+
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(0, spyClient.getInflightCount());
+    }
+
+    @Test
+    void publishingWhileDisconnectedWithOfflineBufferDoesNotBlock() throws Exception {
+        MqttClientOptions options = new MqttClientOptions().setOfflineBufferSize(100);
+        MqttClient client = new MqttClient("url", mockAuth, "systemKey", "identifier", 0, false, options);
+        client.mqttClient = mockClient;
+        client.mqttAsyncClient = mockAsyncClient;
+
+        when(mockClient.isConnected()).thenReturn(false);
+
+        client.publish("topic-0", "foo".getBytes(), 1, false);
+
+        verify(mockAsyncClient, times(1)).publish("topic-0", "foo".getBytes(), 1, false);
+        verify(mockClient, times(0)).publish(anyString(), any(byte[].class), anyInt(), anyBoolean());
+    }
+
+    @Test
+    void subscribingSharedUsesSharePrefix() throws Exception {
+        spyClient.subscribeShared("workers", "devices/+/telemetry", 1, noopMessageCallback);
+
+        verify(mockClient).subscribe("$share/workers/devices/+/telemetry", 1);
+        assertEquals(1, spyClient.callbackByTopic.size());
+    }
+
+    @Test
+    void messageArrivedOnSharedSubscriptionUsesCallbackAndRecordsMetrics() throws Exception {
+        MessageCallback mockCallback = mock(MessageCallback.class);
+
+        spyClient.subscribe("topic-0", 0, mockCallback);
+        spyClient.subscribeShared("workers", "devices/+/telemetry", 0, mockCallback);
+
+        MqttMessage mockMessage = mock(MqttMessage.class);
+
+        when(mockMessage.getPayload()).thenReturn("bar".getBytes());
+
+        spyClient.messageArrived("devices/foo/telemetry", mockMessage);
+        verify(mockCallback, times(1)).done("devices/foo/telemetry", "bar".getBytes());
+        verify(mockCallback, times(1)).done("devices/foo/telemetry", "bar");
+
+        ConsumerGroupMetrics metrics = spyClient.getConsumerGroupMetrics("workers");
+        assertEquals(1, metrics.getMessageCount());
+        assertEquals(3, metrics.getByteCount());
+    }
+
+    @Test
+    void messageArrivedWhileSubscriptionsChangeKeepsDispatching() throws Exception {
+        java.util.concurrent.atomic.AtomicInteger delivered = new java.util.concurrent.atomic.AtomicInteger();
+        spyClient.subscribe("stable/+", 0, new MessageViewCallback() {
+            @Override
+            public void done(MessageView message) {
+                delivered.incrementAndGet();
+            }
+        });
+
+        Thread churn = new Thread(() -> {
+            try {
+                for (int idx = 0; idx < 2000; idx++) {
+                    spyClient.subscribe("churn/" + idx, 0, noopMessageCallback);
+                    spyClient.unsubscribe("churn/" + idx);
+                }
+            } catch (ClearBladeException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        churn.start();
+
+        MqttMessage message = new MqttMessage("bar".getBytes());
+        for (int idx = 0; idx < 2000; idx++) {
+            spyClient.messageArrived("stable/foo", message);
+            spyClient.resubscribe();
+        }
+        churn.join();
+
+        assertEquals(2000, delivered.get());
+        assertEquals(1, spyClient.callbackByTopic.size());
+    }
+
+    @Test
+    void payloadCodecEncodesPublishesAndDecodesArrivals() throws Exception {
+        MqttClientOptions options = new MqttClientOptions().setPayloadCodec("telemetry/#", "deflate");
+        MqttClient client = spy(new MqttClient("url", mockAuth, "systemKey", "identifier", 0, false, options));
+        client.mqttClient = mockClient;
+        when(mockClient.isConnected()).thenReturn(true);
+
+        byte[] payload = "{\"temperature\":21.5,\"temperature2\":21.5,\"temperature3\":21.5}".getBytes();
+        client.publish("telemetry/foo", payload, 0, false);
+        client.publish("other", payload, 0, false);
+
+        ArgumentCaptor<byte[]> published = ArgumentCaptor.forClass(byte[].class);
+        verify(mockClient).publish(eq("telemetry/foo"), published.capture(), eq(0), eq(false));
+        verify(mockClient).publish("other", payload, 0, false);
+        assertTrue(published.getValue().length < payload.length);
+
+        MessageCallback mockCallback = mock(MessageCallback.class);
+        client.subscribe("telemetry/+", 0, mockCallback);
+        client.messageArrived("telemetry/foo", new MqttMessage(published.getValue()));
+
+        verify(mockCallback).done("telemetry/foo", payload);
+    }
+
+    @Test
+    void payloadCodecDecodeErrorIsReportedToCallback() throws Exception {
+        MqttClientOptions options = new MqttClientOptions().setPayloadCodec("telemetry/#", "gzip");
+        MqttClient client = spy(new MqttClient("url", mockAuth, "systemKey", "identifier", 0, false, options));
+        client.mqttClient = mockClient;
+
+        MessageCallback mockCallback = mock(MessageCallback.class);
+        client.subscribe("telemetry/+", 0, mockCallback);
+        client.messageArrived("telemetry/foo", new MqttMessage("not gzip".getBytes()));
+
+        verify(mockCallback).error(any());
+        verify(mockCallback, never()).done(anyString(), any(byte[].class));
+    }
+
+    @Test
+    void typedPublishAndSubscribeUseTheCodec() throws Exception {
+        JsonElement value = JsonParser.parseString("{\"temperature\":21.5}");
+        spyClient.publish("telemetry", value, CborCodec.json());
+
+        ArgumentCaptor<byte[]> published = ArgumentCaptor.forClass(byte[].class);
+        verify(mockClient).publish(eq("telemetry"), published.capture(), eq(0), eq(false));
+
+        @SuppressWarnings("unchecked")
+        TypedMessageCallback<JsonElement> mockCallback = mock(TypedMessageCallback.class);
+        spyClient.subscribe("telemetry", CborCodec.json(), mockCallback);
+        spyClient.messageArrived("telemetry", new MqttMessage(published.getValue()));
+        spyClient.messageArrived("telemetry", new MqttMessage("not cbor".getBytes()));
+
+        verify(mockCallback).done("telemetry", value);
+        verify(mockCallback).error(any());
+    }
+
+    @Test
+    void requestCompletesWithReplyAndUpdatesMetrics() throws Exception {
+        when(mockAsyncClient.publish(anyString(), any(byte[].class), anyInt(), anyBoolean(), any(), any())).thenReturn(mock(IMqttDeliveryToken.class));
+
+        CompletableFuture<byte[]> future = spyClient.request("devices/42/commands", "reboot".getBytes(), 5000);
+
+        verify(mockClient).subscribe("_reply/identifier/+", 0);
+        ArgumentCaptor<String> requestTopic = ArgumentCaptor.forClass(String.class);
+        verify(mockAsyncClient).publish(requestTopic.capture(), eq("reboot".getBytes()), eq(0), eq(false), any(), any());
+        assertTrue(requestTopic.getValue().startsWith("devices/42/commands/_req/identifier/"));
+        assertEquals(1, spyClient.getRequestMetrics().getInFlightCount());
+
+        String correlationId = requestTopic.getValue().substring(requestTopic.getValue().lastIndexOf('/') + 1);
+        spyClient.messageArrived("_reply/identifier/" + correlationId, new MqttMessage("ok".getBytes()));
+
+        assertArrayEquals("ok".getBytes(), future.get(1, TimeUnit.SECONDS));
+        assertEquals(0, spyClient.getRequestMetrics().getInFlightCount());
+        assertEquals(1, spyClient.getRequestMetrics().getCompletedCount());
+    }
+
+    @Test
+    void requestOnAClosedClientFailsItsFuture() throws Exception {
+        MqttClient client = new MqttClient("url", mockAuth, "systemKey", "identifier", 0, false);
+
+        CompletableFuture<byte[]> future = client.request("devices/a/commands", "reboot".getBytes(), 1000);
+
+        assertTrue(future.isCompletedExceptionally());
+        assertEquals(1, client.getRequestMetrics().getFailedCount());
+    }
+
+    @Test
+    void requestWithoutReplyTimesOut() throws Exception {
+        when(mockAsyncClient.publish(anyString(), any(byte[].class), anyInt(), anyBoolean(), any(), any())).thenReturn(mock(IMqttDeliveryToken.class));
+
+        CompletableFuture<byte[]> future = spyClient.request("devices/42/commands", "reboot".getBytes(), 20);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> future.get(2, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getCause() instanceof TimeoutException);
+        assertEquals(0, spyClient.getRequestMetrics().getInFlightCount());
+        assertEquals(1, spyClient.getRequestMetrics().getTimedOutCount());
+    }
+
+    @Test
+    void respondPublishesHandlerReplyToRequester() throws Exception {
+        spyClient.respond("devices/42/commands", 1, (topic, payload) -> ("done " + new String(payload)).getBytes());
+
+        verify(mockClient).subscribe("devices/42/commands/_req/+/+", 1);
+
+        spyClient.messageArrived("devices/42/commands/_req/other-client/7", new MqttMessage("reboot".getBytes()));
+
+        verify(mockAsyncClient).publish(eq("_reply/other-client/7"), eq("done reboot".getBytes()), eq(1), eq(false),
+                any(), any(IMqttActionListener.class));
+        assertEquals(1, spyClient.getInflightCount());
+    }
+
+    @Test
+    void synchronousPublishHoldsASlotOfTheInflightWindow() throws Exception {
+        int[] inflightDuringPublish = new int[1];
+        doAnswer(invocation -> inflightDuringPublish[0] = spyClient.getInflightCount())
+                .when(mockClient).publish(anyString(), any(byte[].class), anyInt(), anyBoolean());
+
+        spyClient.publish("topic-0", "{}".getBytes(), 1, false);
+
+        assertEquals(1, inflightDuringPublish[0]);
+        assertEquals(0, spyClient.getInflightCount());
+    }
+
+    @Test
+    void reconnectPolicyDelaysStayWithinTheJitteredCap() {
+        ReconnectPolicy policy = new ReconnectPolicy().setInitialDelay(100).setMaxDelay(1000);
+
+        for (int attempt = 0; attempt < 10; attempt++) {
+            long delay = policy.getDelay(attempt);
+            assertTrue(delay >= 0 && delay <= Math.min(1000, 100 << attempt));
+        }
+    }
+
+    @Test
+    void connectionLostWithPolicyRefreshesTokenAndReconnects() throws Exception {
+        Auth auth = mock(Auth.class);
+        when(auth.isAuthed()).thenReturn(true);
+        when(auth.getToken()).thenReturn("fresh-token");
+        MqttClientOptions options = new MqttClientOptions()
+                .setReconnectPolicy(new ReconnectPolicy().setInitialDelay(1).setMaxDelay(1));
+        MqttClient client = new MqttClient("url", auth, "systemKey", "identifier", 0, false, options);
+        client.setAutoReconnect(true);
+        client.mqttClient = mockClient;
+
+        doThrow(new MqttException(MqttException.REASON_CODE_FAILED_AUTHENTICATION))
+                .doNothing()
+                .when(mockClient).connect(any(MqttConnectOptions.class));
+
+        client.connectionLost(new Exception("broker restarted"));
+
+        ArgumentCaptor<MqttConnectOptions> connectOptions = ArgumentCaptor.forClass(MqttConnectOptions.class);
+        verify(mockClient, timeout(2000).times(2)).connect(connectOptions.capture());
+        verify(auth).doCheck();
+        verify(auth).doAuth();
+        assertEquals("fresh-token", connectOptions.getValue().getUserName());
+        assertFalse(connectOptions.getValue().isAutomaticReconnect());
+    }
+
+    @Test
+    void clientsSharingAnAuthManagerRenewARejectedTokenOnce() throws Exception {
+        Auth auth = mock(Auth.class);
+        AtomicInteger tokens = new AtomicInteger();
+        when(auth.isAuthed()).thenReturn(true);
+        when(auth.getRequestHeaders()).thenAnswer(invocation -> Collections.singletonMap("token", "t" + tokens.get()));
+        doAnswer(invocation -> tokens.incrementAndGet()).when(auth).doAuth();
+        AuthManager manager = new AuthManager(auth, 0);
+        MqttClientOptions options = new MqttClientOptions()
+                .setReconnectPolicy(new ReconnectPolicy().setInitialDelay(1).setMaxDelay(1));
+
+        CountDownLatch bothRejected = new CountDownLatch(2);
+        AtomicInteger connects = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (connects.incrementAndGet() <= 2) {
+                bothRejected.countDown();
+                bothRejected.await(5, TimeUnit.SECONDS);
+                throw new MqttException(MqttException.REASON_CODE_FAILED_AUTHENTICATION);
+            }
+            return null;
+        }).when(mockClient).connect(any(MqttConnectOptions.class));
+
+        MqttClient first = new MqttClient("url", auth, "systemKey", "first", 0, false, options);
+        MqttClient second = new MqttClient("url", auth, "systemKey", "second", 0, false, options);
+        for (MqttClient client : Arrays.asList(first, second)) {
+            client.setAuthManager(manager);
+            client.setAutoReconnect(true);
+            client.mqttClient = mockClient;
+        }
+        try {
+            first.connectionLost(new Exception("broker restarted"));
+            second.connectionLost(new Exception("broker restarted"));
+
+            verify(mockClient, timeout(2000).times(4)).connect(any(MqttConnectOptions.class));
+            verify(auth, times(1)).doAuth();
+        } finally {
+            manager.close();
+        }
+    }
+
+    @Test
+    void disconnectingALostConnectionClosesTheClient() throws Exception {
+        when(mockClient.isConnected()).thenReturn(false);
+
+        assertTrue(spyClient.disconnect());
+
+        verify(mockClient, never()).disconnect();
+        verify(mockClient).close();
+        assertFalse(spyClient.isOpen());
+    }
+
+    @Test
+    void aSlowReconnectDoesNotDelayTheOtherClients() throws Exception {
+        Auth auth = mock(Auth.class);
+        when(auth.isAuthed()).thenReturn(true);
+        MqttClientOptions options = new MqttClientOptions()
+                .setReconnectPolicy(new ReconnectPolicy().setInitialDelay(1).setMaxDelay(1));
+        CountDownLatch release = new CountDownLatch(1);
+        org.eclipse.paho.client.mqttv3.MqttClient stuckClient = mock(org.eclipse.paho.client.mqttv3.MqttClient.class);
+        doAnswer(invocation -> release.await(5, TimeUnit.SECONDS)).when(stuckClient).connect(any(MqttConnectOptions.class));
+
+        MqttClient stuck = new MqttClient("url", auth, "systemKey", "stuck", 0, false, options);
+        stuck.setAutoReconnect(true);
+        stuck.mqttClient = stuckClient;
+        MqttClient other = new MqttClient("url", auth, "systemKey", "other", 0, false, options);
+        other.setAutoReconnect(true);
+        other.mqttClient = mockClient;
+        try {
+            stuck.connectionLost(new Exception("broker restarted"));
+            verify(stuckClient, timeout(2000)).connect(any(MqttConnectOptions.class));
+
+            other.connectionLost(new Exception("broker restarted"));
+            verify(mockClient, timeout(2000)).connect(any(MqttConnectOptions.class));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void topicFiltersMatchLikeTheBroker() {
+        assertTrue(SharedSubscription.matches("a/+/c", "a/b/c"));
+        assertTrue(SharedSubscription.matches("a/#", "a"));
+        assertTrue(SharedSubscription.matches("a/#", "a/b/c"));
+        assertFalse(SharedSubscription.matches("a/+/c", "a/b/d/c"));
+        assertFalse(SharedSubscription.matches("a/b", "a/bc"));
+        assertFalse(SharedSubscription.matches("#", "$SYS/info"));
+        assertEquals("a/+/c", SharedSubscription.filterOf("$share/g/a/+/c"));
+        assertEquals("g", SharedSubscription.groupOf("$share/g/a/+/c"));
+    }
 }
@@ -0,0 +1,141 @@
+package com.clearblade.java.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.clearblade.java.api.auth.Auth;
+
+
+public class RetryPolicyTests {
+
+    private FakePlatform platform;
+    private AtomicInteger calls;
+    private volatile int failures;
+    private volatile int failureStatus;
+    private volatile long firstAttemptDelay;
+
+    @BeforeEach
+    void startPlatform() throws IOException {
+        calls = new AtomicInteger();
+        failures = 0;
+        failureStatus = 503;
+        firstAttemptDelay = 0;
+        // the first calls fail, or take firstAttemptDelay to answer
+        platform = new FakePlatform(exchange -> {
+            int call = calls.incrementAndGet();
+            if (call == 1 && firstAttemptDelay > 0) {
+                FakePlatform.pause(firstAttemptDelay);
+            }
+            boolean failing = call <= failures;
+            FakePlatform.respond(exchange, failing ? failureStatus : 200,
+                    failing ? "{\"error\":\"unavailable\"}" : "{\"DATA\":[],\"TOTAL\":0}");
+        });
+    }
+
+    @AfterEach
+    void stopPlatform() {
+        platform.close();
+    }
+
+    private ClearBladeClient client(RetryPolicy policy) {
+        Auth auth = mock(Auth.class);
+        when(auth.getRequestHeaders()).thenReturn(Collections.singletonMap("ClearBlade-UserToken", "token"));
+        return new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(auth)
+                .setRetryPolicy(policy));
+    }
+
+    @Test
+    void transientFailuresOfIdempotentCallsAreRetried() throws Exception {
+        failures = 2;
+        ClearBladeClient client = client(new RetryPolicy().setInitialDelay(1));
+
+        assertEquals(0, client.query("collection").fetchSync().length);
+
+        assertEquals(3, calls.get());
+        assertEquals(1, client.getRetryMetrics().getRecoveredCount());
+        assertEquals(2, client.getRetryMetrics().getRetryCount());
+        assertEquals(0, client.getRetryMetrics().getFailedCount());
+    }
+
+    @Test
+    void callsFailAfterTheMaxAttempts() {
+        failures = 10;
+        ClearBladeClient client = client(new RetryPolicy().setInitialDelay(1).setMaxAttempts(4));
+
+        assertThrows(ClearBladeException.class, () -> client.query("collection").fetchSync());
+
+        assertEquals(4, calls.get());
+        assertEquals(1, client.getRetryMetrics().getFailedCount());
+    }
+
+    @Test
+    void otherErrorsAreNotRetried() {
+        failures = 1;
+        failureStatus = 400;
+        ClearBladeClient client = client(new RetryPolicy().setInitialDelay(1));
+
+        assertThrows(ClearBladeException.class, () -> client.query("collection").fetchSync());
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void postsAreOnlyRetriedOnRequest() {
+        failures = 1;
+        CodeCallback callback = mock(CodeCallback.class);
+
+        client(new RetryPolicy().setInitialDelay(1)).code("service").executeWithoutParams(callback);
+        assertEquals(1, calls.get());
+        verify(callback).error(any(ClearBladeException.class));
+
+        client(new RetryPolicy().setInitialDelay(1).setRetryNonIdempotent(true)).code("service").executeWithoutParams(callback);
+        assertEquals(2, calls.get());
+        verify(callback).done(any());
+    }
+
+    @Test
+    void retriesStopWhenTheBudgetIsSpent() {
+        failures = 100;
+        ClearBladeClient client = client(new RetryPolicy().setInitialDelay(1).setBudgetRatio(0).setBudgetMaxRetries(2));
+
+        assertThrows(ClearBladeException.class, () -> client.query("collection").fetchSync());
+        assertThrows(ClearBladeException.class, () -> client.query("collection").fetchSync());
+
+        assertEquals(4, calls.get());
+        assertEquals(2, client.getRetryMetrics().getRetryCount());
+        assertEquals(1, client.getRetryMetrics().getBudgetRejectionCount());
+    }
+
+    @Test
+    void slowAttemptsAreAbandonedAfterTheAttemptTimeout() throws Exception {
+        firstAttemptDelay = 1000;
+        ClearBladeClient client = client(new RetryPolicy().setInitialDelay(1).setAttemptTimeout(100));
+
+        assertEquals(0, client.query("collection").fetchSync().length);
+
+        assertEquals(1, client.getRetryMetrics().getAttemptTimeoutCount());
+        assertEquals(1, client.getRetryMetrics().getRecoveredCount());
+    }
+
+    @Test
+    void delaysGrowUpToTheMaxDelayAndFollowRetryAfter() {
+        RetryPolicy policy = new RetryPolicy().setInitialDelay(100).setMaxDelay(1000);
+
+        for (int retry = 1; retry <= 10; retry++) {
+            long delay = policy.getDelay(retry, 0);
+            assertTrue(delay >= 0 && delay <= Math.min(1000, 100 << (retry - 1)), "delay " + delay);
+        }
+        assertTrue(policy.getDelay(1, 500) >= 500);
+        assertTrue(policy.getDelay(1, 60000) <= 1000);
+    }
+}
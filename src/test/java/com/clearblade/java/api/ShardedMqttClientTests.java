@@ -0,0 +1,53 @@
+package com.clearblade.java.api;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+import org.junit.jupiter.api.Test;
+
+import com.clearblade.java.api.auth.Auth;
+
+
+public class ShardedMqttClientTests {
+
+    private final MessageCallback noopMessageCallback = new MessageCallback();
+
+    @Test
+    void shardsUseDerivedIdentifiers() throws Exception {
+        ShardedMqttClient client = new ShardedMqttClient("url", mock(Auth.class), "systemKey", "identifier", 0, false, 3, new MqttClientOptions());
+
+        assertEquals(3, client.getShardCount());
+        assertEquals("identifier-0", client.getShard(0).clientIdentifier);
+        assertEquals("identifier-2", client.getShard(2).clientIdentifier);
+    }
+
+    @Test
+    void publishesOnTheSameTopicUseTheSameShard() throws Exception {
+        MqttClient[] shards = { mock(MqttClient.class), mock(MqttClient.class), mock(MqttClient.class) };
+        ShardedMqttClient client = new ShardedMqttClient("identifier", shards);
+
+        int shard = client.shardIndex("devices/1/telemetry");
+        client.publish("devices/1/telemetry", "foo".getBytes(), 1, false);
+        client.publish("devices/1/telemetry", "bar".getBytes(), 1, false);
+
+        verify(shards[shard], times(2)).publish(eq("devices/1/telemetry"), any(byte[].class), eq(1), eq(false));
+        for (int idx = 0; idx < shards.length; idx++) {
+            if (idx != shard) {
+                verifyNoInteractions(shards[idx]);
+            }
+        }
+    }
+
+    @Test
+    void unsubscribeUsesTheShardThatSubscribed() throws Exception {
+        MqttClient[] shards = { mock(MqttClient.class), mock(MqttClient.class) };
+        ShardedMqttClient client = new ShardedMqttClient("identifier", shards);
+
+        int shard = client.shardIndex("devices/+/telemetry");
+        client.subscribe("devices/+/telemetry", 1, noopMessageCallback);
+        client.unsubscribe("devices/+/telemetry");
+
+        verify(shards[shard]).subscribe("devices/+/telemetry", 1, noopMessageCallback);
+        verify(shards[shard]).unsubscribe("devices/+/telemetry");
+    }
+}
@@ -0,0 +1,270 @@
+package com.clearblade.java.api.auth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+public class AuthManagerTests {
+
+    /**
+     * Hands out numbered tokens, slowly.
+     */
+    static class CountingAuth implements Auth {
+        final AtomicInteger authCount = new AtomicInteger();
+        final AtomicInteger checkCount = new AtomicInteger();
+        volatile String token = "token-0";
+        volatile long expiresAt = 0;
+        volatile long lifetime = 0;
+        volatile boolean failing = false;
+        volatile boolean rejected = false;
+
+        public void doAuth() throws AuthException {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new AuthException("interrupted");
+            }
+            if (failing) {
+                throw new AuthException("bad credentials");
+            }
+            token = "token-" + authCount.incrementAndGet();
+            expiresAt = lifetime > 0 ? System.currentTimeMillis() + lifetime : 0;
+        }
+
+        public void doCheck() throws AuthException {
+            checkCount.incrementAndGet();
+            if (rejected) {
+                throw new AuthException("user is not authenticated");
+            }
+        }
+
+        public void doLogout() {
+        }
+
+        public boolean isAuthed() {
+            return true;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public Map<String, String> getRequestHeaders() {
+            return Collections.singletonMap("ClearBlade-UserToken", token);
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public String getIdentity() {
+            return "user:test";
+        }
+
+        public boolean canRestoreTokens() {
+            return true;
+        }
+
+        public void setToken(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void cachedTokensAreReusedByTheNextRun() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[16]);
+        CountingAuth first = new CountingAuth();
+        new AuthManager(first, 0, cache, "system").authenticate();
+
+        CountingAuth second = new CountingAuth();
+        new AuthManager(second, 0, cache, "system").authenticate();
+
+        assertEquals(0, second.authCount.get());
+        assertEquals("token-1", second.getToken());
+    }
+
+    @Test
+    void rejectedCachedTokensAreReplacedInTheBackground() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[16]);
+        cache.store("system", "user:test", "revoked", 0);
+        CountingAuth auth = new CountingAuth();
+        auth.rejected = true;
+
+        new AuthManager(auth, 0, cache, "system").authenticate();
+        assertEquals("revoked", auth.getToken());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"token-1".equals(auth.getToken()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals("token-1", auth.getToken());
+        // the token is saved right after doAuth returns
+        Thread.sleep(100);
+        assertEquals("token-1", cache.load("system", "user:test").getToken());
+    }
+
+    @Test
+    void expiredCachedTokensAreNotReused() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[16]);
+        cache.store("system", "user:test", "expired", System.currentTimeMillis() - 1000);
+        CountingAuth auth = new CountingAuth();
+
+        new AuthManager(auth, 0, cache, "system").authenticate();
+
+        assertEquals(1, auth.authCount.get());
+        assertEquals("token-1", auth.getToken());
+    }
+
+    @Test
+    void cachedTokensDueForRefreshAreNotReused() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[16]);
+        cache.store("system", "user:test", "expiring", System.currentTimeMillis() + 500);
+        CountingAuth auth = new CountingAuth();
+        auth.lifetime = 60000;
+        AuthManager manager = new AuthManager(auth, 1000, cache, "system");
+
+        manager.authenticate();
+        Thread.sleep(200);
+        manager.close();
+
+        assertEquals(1, auth.authCount.get());
+        assertEquals(0, auth.checkCount.get());
+        assertEquals("token-1", auth.getToken());
+    }
+
+    @Test
+    void authsThatCannotRestoreTokensSkipTheCache() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[16]);
+        cache.store("system", "user:test", "cached", 0);
+        Auth auth = new CountingAuth() {
+            @Override
+            public boolean canRestoreTokens() {
+                return false;
+            }
+        };
+
+        new AuthManager(auth, 0, cache, "system").authenticate();
+
+        assertEquals("token-1", auth.getToken());
+        assertEquals("cached", cache.load("system", "user:test").getToken());
+    }
+
+    @Test
+    void aSlowPlatformDoesNotDelayTheRefreshesOfOtherClients() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[16]);
+        cache.store("system", "user:test", "cached", 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountingAuth stuck = new CountingAuth() {
+            @Override
+            public void doCheck() throws AuthException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new AuthException("interrupted");
+                }
+            }
+        };
+        CountingAuth other = new CountingAuth();
+        other.lifetime = 1100;
+        AuthManager manager = new AuthManager(other, 1000);
+        try {
+            new AuthManager(stuck, 0, cache, "system").authenticate();
+            manager.authenticate();
+
+            long deadline = System.currentTimeMillis() + 2000;
+            while (other.authCount.get() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(other.authCount.get() >= 2);
+        } finally {
+            manager.close();
+            release.countDown();
+        }
+    }
+
+    @Test
+    void concurrentRejectionsShareOneAuthentication() throws Exception {
+        CountingAuth auth = new CountingAuth();
+        AuthManager manager = new AuthManager(auth, 0);
+        Map<String, String> stale = auth.getRequestHeaders();
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int idx = 0; idx < 16; idx++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return manager.reauthenticate(stale);
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(5, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assertEquals(1, auth.authCount.get());
+        assertEquals("token-1", auth.getToken());
+    }
+
+    @Test
+    void rejectionOfAReplacedTokenDoesNotAuthenticate() {
+        CountingAuth auth = new CountingAuth();
+        AuthManager manager = new AuthManager(auth, 0);
+        Map<String, String> stale = auth.getRequestHeaders();
+
+        assertTrue(manager.reauthenticate(stale));
+        assertTrue(manager.reauthenticate(stale));
+
+        assertEquals(1, auth.authCount.get());
+    }
+
+    @Test
+    void failedReauthenticationIsReported() {
+        CountingAuth auth = new CountingAuth();
+        auth.failing = true;
+        AuthManager manager = new AuthManager(auth, 0);
+
+        assertFalse(manager.reauthenticate(auth.getRequestHeaders()));
+        assertThrows(AuthException.class, manager::authenticate);
+    }
+
+    @Test
+    void tokensAreRefreshedBeforeTheirExpiry() throws Exception {
+        CountingAuth auth = new CountingAuth();
+        auth.lifetime = 1100;
+        AuthManager manager = new AuthManager(auth, 1000);
+
+        manager.authenticate();
+        assertEquals(1, auth.authCount.get());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (auth.authCount.get() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        manager.close();
+        assertTrue(auth.authCount.get() >= 3);
+
+        int count = auth.authCount.get();
+        Thread.sleep(400);
+        assertTrue(auth.authCount.get() <= count + 1);
+    }
+}
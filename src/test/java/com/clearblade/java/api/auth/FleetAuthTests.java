@@ -0,0 +1,172 @@
+package com.clearblade.java.api.auth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.clearblade.java.api.ClearBladeClient;
+import com.clearblade.java.api.FakePlatform;
+import com.clearblade.java.api.InitOptions;
+import com.google.gson.JsonParser;
+
+
+public class FleetAuthTests {
+
+    private FakePlatform platform;
+    private AtomicInteger calls;
+    private AtomicInteger active;
+    private AtomicInteger maxActive;
+    private Map<String, AtomicInteger> attempts;
+
+    @BeforeEach
+    void startPlatform() throws IOException {
+        calls = new AtomicInteger();
+        active = new AtomicInteger();
+        maxActive = new AtomicInteger();
+        attempts = new ConcurrentHashMap<>();
+        // "flaky" devices fail their first attempt, "bad" devices always fail, "rejected" devices have a wrong key and
+        // "broken" devices get a response without token
+        platform = new FakePlatform(exchange -> {
+            calls.incrementAndGet();
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            String deviceName = JsonParser.parseString(FakePlatform.readBody(exchange)).getAsJsonObject().get("deviceName").getAsString();
+            int attempt = attempts.computeIfAbsent(deviceName, name -> new AtomicInteger()).incrementAndGet();
+            FakePlatform.pause(20);
+            boolean ok = !deviceName.startsWith("bad") && !(deviceName.startsWith("flaky") && attempt == 1);
+            active.decrementAndGet();
+            if (deviceName.startsWith("rejected")) {
+                FakePlatform.respond(exchange, 401, "{\"error\":\"invalid key\"}");
+            } else if (deviceName.startsWith("broken")) {
+                FakePlatform.respond(exchange, 200, "{}");
+            } else {
+                FakePlatform.respond(exchange, ok ? 200 : 503,
+                        ok ? "{\"deviceToken\":\"token-" + deviceName + "\",\"expires_at\":4102444800}" : "{\"error\":\"unavailable\"}");
+            }
+        });
+    }
+
+    @AfterEach
+    void stopPlatform() {
+        platform.close();
+    }
+
+    private ClearBladeClient client() {
+        return new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl()));
+    }
+
+    private static List<DeviceAuth> devices(String prefix, int count) {
+        List<DeviceAuth> devices = new ArrayList<>();
+        for (int idx = 0; idx < count; idx++) {
+            devices.add(new DeviceAuth("key", prefix + idx, "active-key"));
+        }
+        return devices;
+    }
+
+    @Test
+    void devicesAuthenticateInParallelUpToTheConcurrency() throws Exception {
+        List<DeviceAuth> devices = devices("device-", 20);
+        List<Integer> progress = new CopyOnWriteArrayList<>();
+
+        FleetAuth.Result result = new FleetAuth(client(), new FleetAuthOptions()
+                .setConcurrency(4)
+                .setOnProgress((completed, failed, total) -> progress.add(completed)))
+                .authenticate(devices);
+
+        assertTrue(result.isComplete());
+        assertEquals(devices, result.getAuthenticated());
+        assertEquals("token-device-7", devices.get(7).getToken());
+        assertTrue(maxActive.get() > 1);
+        assertTrue(maxActive.get() <= 4);
+        assertEquals(20, progress.size());
+        assertTrue(progress.contains(20));
+    }
+
+    @Test
+    void authenticatedDevicesCanBeTheAuthOfTheirOwnClient() throws Exception {
+        List<DeviceAuth> devices = devices("device-", 2);
+
+        FleetAuth.Result result = new FleetAuth(client(), new FleetAuthOptions()).authenticate(devices);
+
+        assertTrue(result.isComplete());
+        assertNull(devices.get(0).getClient());
+        ClearBladeClient own = new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(devices.get(0)));
+        assertSame(own, devices.get(0).getClient());
+    }
+
+    @Test
+    void failedAttemptsAreRetriedUpToTheMaxAttempts() throws Exception {
+        List<DeviceAuth> devices = new ArrayList<>(devices("flaky-", 3));
+        devices.addAll(devices("bad-", 2));
+        Map<DeviceAuth, AuthException> reported = new ConcurrentHashMap<>();
+
+        FleetAuth.Result result = new FleetAuth(client(), new FleetAuthOptions()
+                .setMaxAttempts(3)
+                .setInitialBackoff(10)
+                .setOnFailure(reported::put))
+                .authenticate(devices);
+
+        assertEquals(devices.subList(0, 3), result.getAuthenticated());
+        assertEquals(devices.subList(3, 5), new ArrayList<>(result.getFailures().keySet()));
+        assertEquals(result.getFailures(), reported);
+        assertEquals(2, attempts.get("flaky-0").get());
+        assertEquals(3, attempts.get("bad-1").get());
+        assertFalse(devices.get(4).isAuthed());
+    }
+
+    @Test
+    void permanentFailuresAreReportedWithoutRetries() throws Exception {
+        List<DeviceAuth> devices = new ArrayList<>(devices("rejected-", 2));
+        devices.addAll(devices("broken-", 2));
+        devices.add(new DeviceAuth("key", "no-key", ""));
+        devices.add(new DeviceAuth("key", "device-0", "active-key"));
+        List<Integer> failedCounts = new CopyOnWriteArrayList<>();
+
+        FleetAuth.Result result = new FleetAuth(client(), new FleetAuthOptions()
+                .setMaxAttempts(3)
+                .setInitialBackoff(10)
+                .setOnFailure((device, error) -> { })
+                .setOnProgress((completed, failed, total) -> failedCounts.add(failed)))
+                .authenticate(devices);
+
+        assertEquals(devices.subList(5, 6), result.getAuthenticated());
+        assertEquals(devices.subList(0, 5), new ArrayList<>(result.getFailures().keySet()));
+        assertEquals(6, failedCounts.size());
+        assertTrue(failedCounts.contains(5));
+        assertEquals(1, attempts.get("rejected-0").get());
+        assertEquals(1, attempts.get("broken-1").get());
+        assertNull(attempts.get("no-key"));
+        assertFalse(result.getFailures().get(devices.get(2)).isRetryable());
+    }
+
+    @Test
+    void cachedTokensAreRestoredWithoutCallingThePlatform(@TempDir Path directory) throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[16]);
+        FleetAuthOptions options = new FleetAuthOptions().setTokenCache(cache);
+        new FleetAuth(client(), options).authenticate(devices("device-", 5));
+        int callsOfFirstRun = calls.get();
+
+        List<DeviceAuth> restarted = devices("device-", 6);
+        FleetAuth.Result result = new FleetAuth(client(), options).authenticate(restarted);
+
+        assertEquals(5, callsOfFirstRun);
+        assertEquals(6, calls.get());
+        assertEquals(5, result.getRestoredCount());
+        assertEquals("token-device-3", restarted.get(3).getToken());
+        assertEquals(4102444800000L, restarted.get(3).getExpiresAt());
+    }
+}
@@ -0,0 +1,66 @@
+package com.clearblade.java.api.auth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+public class TokenCacheTests {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void storedTokensAreLoadedBack() throws Exception {
+        TokenCache cache = new TokenCache(directory, "passphrase".toCharArray());
+        cache.store("system", "user:a@example.com", "secret-token", 1234L);
+
+        TokenCache.Entry entry = new TokenCache(directory, "passphrase".toCharArray()).load("system", "user:a@example.com");
+
+        assertEquals("secret-token", entry.getToken());
+        assertEquals(1234L, entry.getExpiresAt());
+    }
+
+    @Test
+    void tokensAreKeyedBySystemAndIdentity() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[32]);
+        cache.store("system", "user:a@example.com", "token-a", 0);
+
+        assertNull(cache.load("system", "user:b@example.com"));
+        assertNull(cache.load("other", "user:a@example.com"));
+    }
+
+    @Test
+    void tokensAreEncrypted() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[32]);
+        cache.store("system", "user:a@example.com", "secret-token", 0);
+
+        byte[] content = Files.readAllBytes(cache.file("system", "user:a@example.com"));
+        assertFalse(new String(content, StandardCharsets.ISO_8859_1).contains("secret-token"));
+        assertNull(new TokenCache(directory, new byte[16]).load("system", "user:a@example.com"));
+    }
+
+    @Test
+    void filesCopiedToAnotherIdentityAreRejected() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[32]);
+        cache.store("system", "user:a@example.com", "token-a", 0);
+
+        Files.copy(cache.file("system", "user:a@example.com"), cache.file("system", "user:b@example.com"));
+
+        assertNull(cache.load("system", "user:b@example.com"));
+    }
+
+    @Test
+    void removedTokensAreGone() throws Exception {
+        TokenCache cache = new TokenCache(directory, new byte[32]);
+        cache.store("system", "device:system/sensor-1", "token", 0);
+        cache.remove("system", "device:system/sensor-1");
+
+        assertNull(cache.load("system", "device:system/sensor-1"));
+    }
+}
@@ -0,0 +1,158 @@
+package com.clearblade.java.api.auth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.clearblade.java.api.ClearBladeClient;
+import com.clearblade.java.api.FakePlatform;
+import com.clearblade.java.api.InitOptions;
+
+
+public class UserAuthTests {
+
+    private FakePlatform platform;
+    private CountDownLatch release;
+    private CountDownLatch received;
+    private AtomicInteger active;
+    private AtomicInteger maxActive;
+    private AtomicInteger issued;
+
+    @BeforeEach
+    void startPlatform() throws IOException {
+        release = new CountDownLatch(1);
+        received = new CountDownLatch(1);
+        active = new AtomicInteger();
+        maxActive = new AtomicInteger();
+        issued = new AtomicInteger();
+        platform = new FakePlatform(exchange -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            received.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            active.decrementAndGet();
+            FakePlatform.respond(exchange, 200, "{\"user_token\":\"token-" + issued.incrementAndGet() + "\",\"expires_at\":4102444800}");
+        });
+    }
+
+    @AfterEach
+    void stopPlatform() {
+        release.countDown();
+        platform.close();
+    }
+
+    private UserAuth auth() {
+        UserAuth auth = new UserAuth("user@example.com", "password");
+        new ClearBladeClient("key", "secret", new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(auth));
+        return auth;
+    }
+
+    @Test
+    void readsAreNotBlockedByAnAuthenticationInProgress() throws Exception {
+        UserAuth auth = auth();
+        auth.setToken("old-token", 1000);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> authenticating = pool.submit(() -> {
+                auth.doAuth();
+                return null;
+            });
+            assertTrue(received.await(5, TimeUnit.SECONDS));
+
+            assertEquals("old-token", auth.getToken());
+            assertEquals(1000, auth.getExpiresAt());
+            assertEquals("old-token", auth.getRequestHeaders().get("ClearBlade-UserToken"));
+
+            release.countDown();
+            authenticating.get(5, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals("token-1", auth.getToken());
+        assertEquals(4102444800000L, auth.getExpiresAt());
+    }
+
+    @Test
+    void authenticationsRunOneAtATime() throws Exception {
+        UserAuth auth = auth();
+        release.countDown();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] authenticating = new Future<?>[4];
+            for (int i = 0; i < authenticating.length; i++) {
+                authenticating[i] = pool.submit(() -> {
+                    auth.doAuth();
+                    return null;
+                });
+            }
+            for (Future<?> future : authenticating) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(4, issued.get());
+        assertEquals(1, maxActive.get());
+        assertTrue(auth.isAuthed());
+    }
+
+    @Test
+    void eachTenantNeedsItsOwnAuth() throws Exception {
+        release.countDown();
+        InitOptions shared = new InitOptions()
+                .setPlatformUrl(platform.getUrl())
+                .setAuth(new UserAuth("a@example.com", "password"));
+        ClearBladeClient tenantA = new ClearBladeClient("key-a", "secret", shared);
+
+        assertThrows(IllegalArgumentException.class, () -> new ClearBladeClient("key-b", "secret", new InitOptions(shared)));
+        assertSame(tenantA, tenantA.getAuth().getClient());
+
+        ClearBladeClient tenantB = new ClearBladeClient("key-b", "secret", new InitOptions(shared)
+                .setAuth(new UserAuth("b@example.com", "password")));
+        tenantA.getAuth().doAuth();
+        tenantB.getAuth().doAuth();
+
+        assertNotEquals(tenantA.getAuth().getToken(), tenantB.getAuth().getToken());
+        assertSame(tenantA, tenantA.getAuth().getClient());
+        assertSame(tenantB, tenantB.getAuth().getClient());
+
+        // a closed client releases its Auth
+        tenantA.close();
+        ClearBladeClient replacement = new ClearBladeClient("key-a", "secret", shared);
+        assertSame(replacement, shared.getAuth().getClient());
+        replacement.close();
+        tenantB.close();
+    }
+
+    @Test
+    void setTokenReplacesTheWholeSnapshot() {
+        UserAuth auth = new UserAuth("user@example.com", "password");
+        assertFalse(auth.isAuthed());
+        assertEquals("", auth.getToken());
+
+        auth.setToken("token", 1234);
+
+        assertTrue(auth.isAuthed());
+        assertEquals("token", auth.getToken());
+        assertEquals(1234, auth.getExpiresAt());
+        assertSame(auth.getRequestHeaders(), auth.getRequestHeaders());
+        assertEquals("token", auth.getRequestHeaders().get("ClearBlade-UserToken"));
+    }
+}
@@ -0,0 +1,115 @@
+package com.clearblade.java.api.codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+
+public class CborCodecTests {
+
+    static class Telemetry {
+        String deviceId;
+        double temperature;
+        long timestamp;
+        boolean online;
+        int[] readings;
+    }
+
+    @Test
+    void encodesLikeTheSpecification() throws Exception {
+        JsonElement value = JsonParser.parseString("{\"a\":1,\"b\":[2,3]}");
+
+        byte[] encoded = CborCodec.json().encode(value);
+
+        assertArrayEquals(bytes(0xa2, 0x61, 0x61, 0x01, 0x61, 0x62, 0x82, 0x02, 0x03), encoded);
+        assertArrayEquals(bytes(0x39, 0x03, 0xe7), CborCodec.json().encode(JsonParser.parseString("-1000")));
+        assertArrayEquals(bytes(0xfa, 0x3f, 0xc0, 0x00, 0x00), CborCodec.json().encode(JsonParser.parseString("1.5")));
+        assertArrayEquals(bytes(0xfb, 0x3f, 0xf1, 0x99, 0x99, 0x99, 0x99, 0x99, 0x9a), CborCodec.json().encode(JsonParser.parseString("1.1")));
+    }
+
+    @Test
+    void jsonTreesRoundTrip() throws Exception {
+        JsonElement value = JsonParser.parseString("{\"name\":\"caf\u00e9 \ud83d\ude00\",\"big\":12345678901,\"negative\":-25,"
+                + "\"ratio\":0.1,\"flag\":false,\"nothing\":null,\"nested\":{\"list\":[1,\"two\",3.5]}}");
+
+        JsonElement decoded = CborCodec.json().decode(CborCodec.json().encode(value));
+
+        assertEquals("caf\u00e9 \ud83d\ude00", decoded.getAsJsonObject().get("name").getAsString());
+        assertEquals(12345678901L, decoded.getAsJsonObject().get("big").getAsLong());
+        assertEquals(-25, decoded.getAsJsonObject().get("negative").getAsInt());
+        assertEquals(0.1, decoded.getAsJsonObject().get("ratio").getAsDouble());
+        assertTrue(decoded.getAsJsonObject().get("nothing").isJsonNull());
+        assertEquals("two", decoded.getAsJsonObject().getAsJsonObject("nested").getAsJsonArray("list").get(1).getAsString());
+    }
+
+    @Test
+    void objectsRoundTripAndAreSmallerThanJson() throws Exception {
+        Telemetry telemetry = new Telemetry();
+        telemetry.deviceId = "sensor-42";
+        telemetry.temperature = 21.5;
+        telemetry.timestamp = 1700000000000L;
+        telemetry.online = true;
+        telemetry.readings = new int[] { 1, 200, 30000, 4000000 };
+        Codec<Telemetry> codec = new CborCodec<>(Telemetry.class);
+
+        byte[] encoded = codec.encode(telemetry);
+        Telemetry decoded = codec.decode(encoded);
+
+        assertEquals("sensor-42", decoded.deviceId);
+        assertEquals(21.5, decoded.temperature);
+        assertEquals(1700000000000L, decoded.timestamp);
+        assertTrue(decoded.online);
+        assertArrayEquals(telemetry.readings, decoded.readings);
+        assertTrue(encoded.length < new com.google.gson.Gson().toJson(telemetry).getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void objectsEncodeLikeTheirJsonTree() throws Exception {
+        Map<String, Object> value = new LinkedHashMap<>();
+        for (int idx = 0; idx < 30; idx++) {
+            value.put("key" + idx, idx * 1000);
+        }
+        value.put("list", Collections.nCopies(300, "item"));
+        value.put("nothing", null);
+        value.put("nested", Collections.singletonMap("ratio", 0.1));
+        Gson gson = new Gson();
+
+        byte[] encoded = new CborCodec<Map<String, Object>>(Map.class, gson).encode(value);
+
+        assertArrayEquals(CborCodec.json().encode(gson.toJsonTree(value)), encoded);
+        assertEquals(gson.toJsonTree(value), CborCodec.json().decode(encoded));
+    }
+
+    @Test
+    void invalidPayloadsAreRejected() {
+        Codec<JsonElement> codec = CborCodec.json();
+
+        assertThrows(IOException.class, () -> codec.decode(new byte[0]));
+        assertThrows(IOException.class, () -> codec.decode(bytes(0x82, 0x01)));
+        assertThrows(IOException.class, () -> codec.decode(bytes(0x01, 0x02)));
+        assertThrows(IOException.class, () -> codec.decode(bytes(0x7a, 0xff, 0xff, 0xff, 0xff)));
+        assertThrows(IOException.class, () -> codec.decode(bytes(0x9f, 0x01, 0xff)));
+        assertThrows(IOException.class, () -> new CborCodec<>(Telemetry.class).decode(bytes(0x63, 0x61, 0x62, 0x63)));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int idx = 0; idx < values.length; idx++) {
+            result[idx] = (byte) values[idx];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,117 @@
+package com.clearblade.java.api.codec;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+
+public class PayloadCodecTests {
+
+    private static final byte[] TELEMETRY = ("{\"deviceId\":\"sensor-42\",\"temperature\":21.5,\"humidity\":40.2,"
+            + "\"timestamp\":1700000000,\"status\":\"ok\",\"status2\":\"ok\",\"status3\":\"ok\"}").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void deflateRoundTrips() throws Exception {
+        PayloadCodec codec = PayloadCodecs.forName("deflate");
+
+        byte[] encoded = codec.encode(TELEMETRY);
+
+        assertTrue(encoded.length < TELEMETRY.length);
+        assertArrayEquals(TELEMETRY, codec.decode(encoded));
+    }
+
+    @Test
+    void largePayloadsRoundTrip() throws Exception {
+        byte[] payload = new byte[200_000];
+        for (int idx = 0; idx < payload.length; idx++) {
+            payload[idx] = (byte) (idx % 7 == 0 ? idx : 'a');
+        }
+        PayloadCodec codec = new DeflateCodec();
+
+        assertArrayEquals(payload, codec.decode(codec.encode(payload)));
+        assertArrayEquals(new byte[0], codec.decode(codec.encode(new byte[0])));
+    }
+
+    @Test
+    void dictionaryShrinksSmallMessages() throws Exception {
+        byte[] dictionary = "{\"deviceId\":\"sensor-\",\"temperature\":,\"humidity\":,\"timestamp\":,\"status\":\"ok\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        PayloadCodec plain = new DeflateCodec();
+        PayloadCodec withDictionary = new DeflateCodec("telemetry-v1", Deflater.BEST_COMPRESSION, dictionary);
+
+        byte[] encoded = withDictionary.encode(TELEMETRY);
+
+        assertTrue(encoded.length < plain.encode(TELEMETRY).length);
+        assertArrayEquals(TELEMETRY, withDictionary.decode(encoded));
+    }
+
+    @Test
+    void gzipInteroperatesWithJdkStreams() throws Exception {
+        PayloadCodec codec = PayloadCodecs.forName("gzip");
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(codec.encode(TELEMETRY)))) {
+            assertArrayEquals(TELEMETRY, readAll(in));
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(TELEMETRY);
+        }
+        assertArrayEquals(TELEMETRY, codec.decode(out.toByteArray()));
+    }
+
+    @Test
+    void corruptPayloadsAreRejected() throws Exception {
+        PayloadCodec gzip = new GzipCodec();
+        byte[] encoded = gzip.encode(TELEMETRY);
+        encoded[encoded.length - 5] ^= 1;
+
+        assertThrows(IOException.class, () -> gzip.decode(encoded));
+        assertThrows(IOException.class, () -> gzip.decode(TELEMETRY));
+
+        byte[] deflated = new DeflateCodec().encode(TELEMETRY);
+        assertThrows(IOException.class, () -> new DeflateCodec().decode(Arrays.copyOf(deflated, deflated.length / 2)));
+    }
+
+    @Test
+    void payloadsInflatingPastTheMaximumAreRejected() throws Exception {
+        PayloadCodec deflate = new DeflateCodec(DeflateCodec.NAME, Deflater.DEFAULT_COMPRESSION, null, 100_000);
+        PayloadCodec gzip = new GzipCodec(Deflater.DEFAULT_COMPRESSION, 100_000);
+
+        assertEquals(100_000, deflate.decode(deflate.encode(new byte[100_000])).length);
+        assertEquals(100_000, gzip.decode(gzip.encode(new byte[100_000])).length);
+        assertThrows(IOException.class, () -> deflate.decode(deflate.encode(new byte[100_001])));
+        assertThrows(IOException.class, () -> gzip.decode(gzip.encode(new byte[10_000_000])));
+    }
+
+    @Test
+    void registeredCodecsAreFoundByName() {
+        PayloadCodec codec = new DeflateCodec("custom", Deflater.BEST_SPEED, null);
+        PayloadCodecs.register(codec);
+
+        assertSame(codec, PayloadCodecs.forName("custom"));
+        assertThrows(IllegalArgumentException.class, () -> PayloadCodecs.forName("unknown"));
+    }
+
+    private static byte[] readAll(GZIPInputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        for (int read; (read = in.read(buffer)) > 0; ) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
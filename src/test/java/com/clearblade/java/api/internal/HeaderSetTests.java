@@ -0,0 +1,52 @@
+package com.clearblade.java.api.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+
+public class HeaderSetTests {
+
+    @Test
+    void headersWithoutValueAreLeftOut() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("ClearBlade-UserToken", "token");
+        headers.put("ClearBlade-DeviceToken", null);
+
+        HeaderSet headerSet = HeaderSet.of(headers);
+
+        assertEquals(1, headerSet.size());
+        assertEquals("token", headerSet.get("clearblade-usertoken"));
+        assertNull(headerSet.get("ClearBlade-DeviceToken"));
+    }
+
+    @Test
+    void matchesComparesNamesAndValues() {
+        HeaderSet headerSet = HeaderSet.of(Collections.singletonMap("ClearBlade-UserToken", "token"));
+
+        assertTrue(headerSet.matches(new HashMap<>(Collections.singletonMap("ClearBlade-UserToken", "token"))));
+        assertFalse(headerSet.matches(Collections.singletonMap("ClearBlade-UserToken", "other")));
+        assertFalse(headerSet.matches(Collections.singletonMap("ClearBlade-DeviceToken", "token")));
+        assertFalse(headerSet.matches(Collections.emptyMap()));
+        assertTrue(HeaderSet.EMPTY.matches(Collections.emptyMap()));
+    }
+
+    @Test
+    void headersAreSetOnTheConnection() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:1/").openConnection();
+        connection.setRequestProperty("Accept", "text/plain");
+
+        HeaderSet.of(Collections.singletonMap("Accept", "application/json")).applyTo(connection);
+
+        assertEquals("application/json", connection.getRequestProperty("Accept"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.clearblade.java.api.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+
+public class TimerWheelTests {
+
+    private TimerWheel wheel;
+
+    @BeforeEach
+    void setupWheel() {
+        wheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 8, "test-timer");
+    }
+
+    @AfterEach
+    void stopWheel() {
+        wheel.stop();
+    }
+
+    @Test
+    void expiredTasksRunAfterTheirDelay() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        long start = System.nanoTime();
+
+        wheel.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+        // longer than a whole rotation of the wheel
+        wheel.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    void cancelledTasksNeverRun() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        TimerWheel.Timeout timeout = wheel.schedule(runs::incrementAndGet, 10, TimeUnit.MILLISECONDS);
+        wheel.schedule(latch::countDown, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(0, runs.get());
+    }
+}
@@ -0,0 +1,124 @@
+package com.clearblade.java.api.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.eclipse.paho.client.mqttv3.internal.MqttPersistentData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+public class MappedJournalPersistenceTests {
+
+    @TempDir
+    Path directory;
+
+    private static MqttPersistable persistable(String header, String payload) {
+        byte[] h = header.getBytes();
+        byte[] p = payload.getBytes();
+        return new MqttPersistentData("", h, 0, h.length, p, 0, p.length);
+    }
+
+    private static String payloadOf(MqttPersistable persistable) throws MqttPersistenceException {
+        return new String(persistable.getPayloadBytes(), persistable.getPayloadOffset(), persistable.getPayloadLength());
+    }
+
+    @Test
+    void putThenGetReturnsStoredRecord() throws Exception {
+        MappedJournalPersistence persistence = new MappedJournalPersistence(directory.toString());
+        persistence.open("client", "tcp://localhost:1883");
+
+        persistence.put("s-1", persistable("header", "payload"));
+
+        assertTrue(persistence.containsKey("s-1"));
+        MqttPersistable result = persistence.get("s-1");
+        assertEquals("header", new String(result.getHeaderBytes(), 0, result.getHeaderLength()));
+        assertEquals("payload", payloadOf(result));
+
+        persistence.close();
+    }
+
+    @Test
+    void removedKeysAreGone() throws Exception {
+        MappedJournalPersistence persistence = new MappedJournalPersistence(directory.toString());
+        persistence.open("client", "tcp://localhost:1883");
+
+        persistence.put("s-1", persistable("h", "a"));
+        persistence.put("s-2", persistable("h", "b"));
+        persistence.remove("s-1");
+
+        assertFalse(persistence.containsKey("s-1"));
+        assertNull(persistence.get("s-1"));
+        List<?> keys = Collections.list(persistence.keys());
+        assertEquals(Collections.singletonList("s-2"), keys);
+
+        persistence.close();
+    }
+
+    @Test
+    void reopeningReplaysTheJournal() throws Exception {
+        MappedJournalPersistence persistence = new MappedJournalPersistence(directory.toString());
+        persistence.open("client", "tcp://localhost:1883");
+        persistence.put("s-1", persistable("h", "first"));
+        persistence.put("s-1", persistable("h", "second"));
+        persistence.put("s-2", persistable("h", "other"));
+        persistence.remove("s-2");
+        persistence.close();
+
+        MappedJournalPersistence reopened = new MappedJournalPersistence(directory.toString());
+        reopened.open("client", "tcp://localhost:1883");
+
+        assertEquals("second", payloadOf(reopened.get("s-1")));
+        assertFalse(reopened.containsKey("s-2"));
+
+        reopened.close();
+    }
+
+    @Test
+    void deadSegmentsAreCompactedAway() throws Exception {
+        MappedJournalPersistence persistence = new MappedJournalPersistence(directory.toString(), 256, false);
+        persistence.open("client", "tcp://localhost:1883");
+
+        persistence.put("keep", persistable("h", "kept"));
+        for (int idx = 0; idx < 200; idx++) {
+            persistence.put("s-" + idx, persistable("header", "payload " + idx));
+            persistence.remove("s-" + idx);
+        }
+
+        assertTrue(persistence.getSegmentCount() <= 2);
+        assertEquals("kept", payloadOf(persistence.get("keep")));
+        persistence.close();
+
+        MappedJournalPersistence reopened = new MappedJournalPersistence(directory.toString(), 256, false);
+        reopened.open("client", "tcp://localhost:1883");
+        assertEquals(Collections.singletonList("keep"), Collections.list(reopened.keys()));
+        reopened.close();
+    }
+
+    @Test
+    void openingTwiceFails() throws Exception {
+        MappedJournalPersistence persistence = new MappedJournalPersistence(directory.toString());
+        persistence.open("client", "tcp://localhost:1883");
+
+        assertThrows(MqttPersistenceException.class, () -> persistence.open("client", "tcp://localhost:1883"));
+
+        persistence.close();
+    }
+
+    @Test
+    void clearRemovesEverything() throws Exception {
+        MappedJournalPersistence persistence = new MappedJournalPersistence(directory.toString());
+        persistence.open("client", "tcp://localhost:1883");
+        persistence.put("s-1", persistable("h", "a"));
+
+        persistence.clear();
+
+        assertFalse(persistence.keys().hasMoreElements());
+        persistence.close();
+    }
+}
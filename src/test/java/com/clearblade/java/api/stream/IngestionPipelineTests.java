@@ -0,0 +1,171 @@
+package com.clearblade.java.api.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.clearblade.java.api.ClearBladeException;
+import com.clearblade.java.api.Collection;
+import com.clearblade.java.api.Item;
+import com.clearblade.java.api.MessageView;
+
+
+public class IngestionPipelineTests {
+
+    private Collection spyCollection;
+    private List<Item[]> inserted;
+
+    @BeforeEach
+    void setupSpyCollection() throws ClearBladeException {
+        spyCollection = spy(new Collection("collection"));
+        inserted = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            inserted.add(invocation.getArgument(0));
+            return null;
+        }).when(spyCollection).insertSync(any(Item[].class));
+    }
+
+    private static MessageView message(int value) {
+        byte[] payload = String.format("{\"value\":%d}", value).getBytes(StandardCharsets.UTF_8);
+        return new MessageView("devices/a/telemetry", payload, 1, false);
+    }
+
+    @Test
+    void fullBatchesAreSplitInChunks() throws Exception {
+        IngestionPipeline pipeline = new IngestionPipeline(spyCollection, new IngestionOptions()
+                .setBatchSize(10).setChunkSize(4).setMaxLatency(60000));
+
+        for (int idx = 0; idx < 10; idx++) {
+            pipeline.done(message(idx));
+        }
+        assertTrue(pipeline.close(5, TimeUnit.SECONDS));
+
+        assertEquals(3, inserted.size());
+        assertEquals(10, inserted.stream().mapToInt(chunk -> chunk.length).sum());
+        assertEquals(10, pipeline.getInsertedCount());
+    }
+
+    @Test
+    void partialBatchesAreInsertedAfterTheMaxLatency() throws Exception {
+        IngestionPipeline pipeline = new IngestionPipeline(spyCollection, new IngestionOptions()
+                .setBatchSize(100).setMaxLatency(20));
+
+        pipeline.done(message(1));
+        pipeline.done(message(2));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getInsertedCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, pipeline.getInsertedCount());
+        assertEquals(1, inserted.size());
+        assertEquals(1, inserted.get(0)[0].getInt("value"));
+        pipeline.close();
+    }
+
+    @Test
+    void messagesRacingTheCloseAreInsertedOrRejected() throws Exception {
+        IngestionPipeline pipeline = new IngestionPipeline(spyCollection, new IngestionOptions()
+                .setBatchSize(10).setMaxLatency(1).setQueueCapacity(4));
+        ExecutorService producers = Executors.newFixedThreadPool(4);
+        for (int thread = 0; thread < 4; thread++) {
+            producers.execute(() -> {
+                for (int idx = 0; idx < 500; idx++) {
+                    pipeline.done(message(idx));
+                }
+            });
+        }
+        Thread.sleep(5);
+        assertTrue(pipeline.close(5, TimeUnit.SECONDS));
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(2000, pipeline.getInsertedCount() + pipeline.getRejectedCount());
+        assertEquals(pipeline.getInsertedCount(), inserted.stream().mapToInt(chunk -> chunk.length).sum());
+    }
+
+    @Test
+    void fullQueueBlocksTheDeliveryThread() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(spyCollection).insertSync(any(Item[].class));
+
+        IngestionPipeline pipeline = new IngestionPipeline(spyCollection, new IngestionOptions()
+                .setBatchSize(1).setChunkSize(1).setParallelism(1).setQueueCapacity(2).setMaxLatency(1));
+
+        Thread producer = new Thread(() -> {
+            for (int idx = 0; idx < 10; idx++) {
+                pipeline.done(message(idx));
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(5000);
+        assertFalse(producer.isAlive());
+        assertTrue(pipeline.close(5, TimeUnit.SECONDS));
+        assertEquals(10, pipeline.getInsertedCount());
+    }
+
+    @Test
+    void itemsLeftAfterACloseTimeoutAreFailed() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await();
+            return null;
+        }).when(spyCollection).insertSync(any(Item[].class));
+        List<Item> failed = new CopyOnWriteArrayList<>();
+
+        IngestionPipeline pipeline = new IngestionPipeline(spyCollection, new IngestionOptions()
+                .setBatchSize(1).setChunkSize(1).setParallelism(1).setMaxLatency(1)
+                .setOnBatchError((items, error) -> failed.addAll(java.util.Arrays.asList(items))));
+
+        for (int idx = 0; idx < 3; idx++) {
+            pipeline.done(message(idx));
+        }
+        assertFalse(pipeline.close(50, TimeUnit.MILLISECONDS));
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pipeline.getInsertedCount() + pipeline.getFailedCount() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, pipeline.getInsertedCount());
+        assertEquals(2, pipeline.getFailedCount());
+        assertEquals(2, failed.size());
+    }
+
+    @Test
+    void failedInsertsAreReported() throws Exception {
+        doThrow(new ClearBladeException("unavailable")).when(spyCollection).insertSync(any(Item[].class));
+        List<Item> failed = new CopyOnWriteArrayList<>();
+
+        IngestionPipeline pipeline = new IngestionPipeline(spyCollection, new IngestionOptions()
+                .setBatchSize(2).setOnBatchError((items, error) -> failed.addAll(java.util.Arrays.asList(items))));
+
+        pipeline.done(message(1));
+        pipeline.done(message(2));
+        pipeline.done(new MessageView("devices/a/telemetry", "not json".getBytes(StandardCharsets.UTF_8), 1, false));
+        assertTrue(pipeline.close(5, TimeUnit.SECONDS));
+
+        assertEquals(2, failed.size());
+        assertEquals(2, pipeline.getFailedCount());
+        assertEquals(1, pipeline.getRejectedCount());
+    }
+}
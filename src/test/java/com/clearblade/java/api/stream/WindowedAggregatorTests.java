@@ -0,0 +1,146 @@
+package com.clearblade.java.api.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.clearblade.java.api.MessageView;
+
+
+public class WindowedAggregatorTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private List<WindowResult> results;
+
+    @BeforeEach
+    void setupResults() {
+        results = new ArrayList<>();
+    }
+
+    private WindowedAggregator aggregator(WindowOptions options) {
+        return new WindowedAggregator(options.setTimestampExtractor(message -> now.get()), results::add);
+    }
+
+    private void send(WindowedAggregator aggregator, long timestamp, String topic, String payload) {
+        now.set(timestamp);
+        aggregator.done(new MessageView(topic, payload.getBytes(StandardCharsets.US_ASCII), 0, false));
+    }
+
+    @Test
+    void asciiNumbersAreParsedLikeDoubleParseDouble() {
+        String[] values = { "0", "42", "-3.5", "+7", "1.25e3", "1E-5", " 12.75\n", "0.1", "123456789012345678901234",
+                "3.141592653589793238", "1e300", "-0.0", "9007199254740993" };
+        for (String value : values) {
+            assertEquals(Double.parseDouble(value.trim()), AsciiNumbers.parseDouble(value.getBytes(StandardCharsets.US_ASCII)), value);
+        }
+    }
+
+    @Test
+    void invalidNumbersAreRejected() {
+        String[] values = { "", "-", ".", "1e", "12a", "{\"value\":1}" };
+        for (String value : values) {
+            assertThrows(NumberFormatException.class, () -> AsciiNumbers.parseDouble(value.getBytes(StandardCharsets.US_ASCII)), value);
+        }
+    }
+
+    @Test
+    void tumblingWindowsAreFlushedWhenTheWatermarkPassesTheirEnd() {
+        WindowedAggregator aggregator = aggregator(new WindowOptions().setWindowSize(1000));
+
+        send(aggregator, 100, "devices/a/temperature", "10");
+        send(aggregator, 200, "devices/b/temperature", "5");
+        send(aggregator, 900, "devices/a/temperature", "20");
+        assertEquals(0, results.size());
+
+        send(aggregator, 1000, "devices/a/temperature", "30");
+
+        assertEquals(2, results.size());
+        WindowResult a = results.stream().filter(result -> result.getKey().equals("a")).findFirst().get();
+        assertEquals(0, a.getStart());
+        assertEquals(1000, a.getEnd());
+        assertEquals(2, a.getCount());
+        assertEquals(15.0, a.getAverage());
+        assertEquals(10.0, a.getMin());
+        assertEquals(20.0, a.getMax());
+        // b has no value left, its state is dropped
+        assertEquals(1, aggregator.getKeyCount());
+    }
+
+    @Test
+    void slidingWindowsShareTheirPanes() {
+        WindowedAggregator aggregator = aggregator(new WindowOptions().setWindowSize(300).setSlide(100));
+
+        send(aggregator, 50, "devices/a", "1");
+        send(aggregator, 150, "devices/a", "2");
+        send(aggregator, 250, "devices/a", "3");
+        aggregator.close();
+
+        // windows ending at 100, 200, 300, 400 and 500
+        assertEquals(5, results.size());
+        long[] counts = results.stream().mapToLong(WindowResult::getCount).toArray();
+        assertEquals("[1, 2, 3, 2, 1]", java.util.Arrays.toString(counts));
+        assertEquals(6.0, results.get(2).getSum());
+        assertEquals(0, results.get(2).getStart());
+        assertEquals(0, aggregator.getKeyCount());
+    }
+
+    @Test
+    void lateValuesAreAcceptedWithinTheAllowedLateness() {
+        WindowedAggregator aggregator = aggregator(new WindowOptions().setWindowSize(1000).setAllowedLateness(500));
+
+        send(aggregator, 900, "devices/a", "1");
+        send(aggregator, 1400, "devices/a", "2");
+        send(aggregator, 950, "devices/a", "3");
+        assertEquals(0, results.size());
+
+        send(aggregator, 1500, "devices/a", "4");
+        assertEquals(1, results.size());
+        assertEquals(4.0, results.get(0).getSum());
+
+        send(aggregator, 990, "devices/a", "5");
+        assertEquals(1, aggregator.getLateCount());
+    }
+
+    @Test
+    void lateValuesOfEarlierPanesAreReported() {
+        WindowedAggregator aggregator = aggregator(new WindowOptions().setWindowSize(1000).setAllowedLateness(5000));
+
+        send(aggregator, 10500, "devices/a", "1");
+        send(aggregator, 8500, "devices/a", "2");
+        aggregator.advanceWatermark(20000);
+
+        assertEquals(2, results.size());
+        assertEquals(8000, results.get(0).getStart());
+        assertEquals(1, results.get(0).getCount());
+        assertEquals(2.0, results.get(0).getSum());
+        assertEquals(10000, results.get(1).getStart());
+        assertEquals(1, results.get(1).getCount());
+        assertEquals(0, aggregator.getLateCount());
+    }
+
+    @Test
+    void messagesWithoutKeyOrNumberAreRejected() {
+        WindowedAggregator aggregator = aggregator(new WindowOptions().setKeyLevel(2));
+
+        send(aggregator, 0, "devices/a", "1");
+        send(aggregator, 0, "devices/a/temperature", "warm");
+        send(aggregator, 0, "devices/a/temperature", "21.5");
+        aggregator.close();
+
+        assertEquals(2, aggregator.getRejectedCount());
+        assertEquals(1, results.size());
+        assertEquals("temperature", results.get(0).getKey());
+    }
+
+    @Test
+    void windowSizeMustBeAMultipleOfTheSlide() {
+        assertThrows(IllegalArgumentException.class, () -> aggregator(new WindowOptions().setWindowSize(1000).setSlide(300)));
+    }
+}